@@ -45,6 +45,7 @@ import javax.xml.transform.stream.StreamResult;
 import org.apache.kerby.kerberos.kerb.server.SimpleKdcServer;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.spnego.SpnegoTokenContext;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -54,6 +55,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.dom.message.WSSecEncrypt;
 import org.apache.wss4j.dom.message.WSSecHeader;
@@ -215,6 +217,128 @@ public class KerberosTest {
         assertTrue(principal.getName().contains("alice"));
     }
 
+    /**
+     * Process several Kerberos tokens with a KerberosTokenValidator that caches the service Subject.
+     */
+    @Test
+    public void testKerberosCachedServiceSubject() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+
+        // Configure the Validator
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        KerberosTokenValidator validator = new KerberosTokenValidator();
+        validator.setContextName("bob");
+        validator.setServiceName("bob@service.ws.apache.org");
+        validator.setCallbackHandler(callbackHandler);
+        validator.setCacheServiceSubject(true);
+        wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+
+        for (int i = 0; i < 3; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            KerberosSecurity bst = new KerberosSecurity(doc);
+            bst.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeaderElement(), bst.getElement());
+
+            WSHandlerResult results =
+                secEngine.processSecurityHeader(doc, null, callbackHandler, null);
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.BST).get(0);
+            Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+            assertTrue(principal instanceof KerberosPrincipal);
+            assertTrue(principal.getName().contains("alice"));
+        }
+    }
+
+    /**
+     * Process the same Kerberos token twice with a KerberosTicketCache, which detects the replay.
+     */
+    @Test
+    public void testKerberosTicketReplay() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        KerberosSecurity bst = new KerberosSecurity(doc);
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+        bst.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+        WSSecurityUtil.prependChildElement(secHeader.getSecurityHeaderElement(), bst.getElement());
+        Document replayedDoc = (Document)doc.cloneNode(true);
+
+        // Configure the Validator
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        KerberosTokenValidator validator = new KerberosTokenValidator();
+        validator.setContextName("bob");
+        validator.setServiceName("bob@service.ws.apache.org");
+        wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+
+        RequestData data = new RequestData();
+        data.setWssConfig(wssConfig);
+        data.setCallbackHandler(callbackHandler);
+        data.setKerberosTicketCache(ticketCache);
+        WSHandlerResult results =
+            secEngine.processSecurityHeader(WSSecurityUtil.getSecurityHeader(doc, null), data);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.BST).get(0);
+        Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+        assertTrue(principal.getName().contains("alice"));
+
+        // The accepted token can be looked up by the digest of the AP-REQ
+        KerberosTicketCache.CachedTicket ticket =
+            ticketCache.get(KeyUtils.generateDigest(bst.getToken()));
+        assertNotNull(ticket);
+        assertEquals(principal, ticket.getPrincipal());
+
+        data = new RequestData();
+        data.setWssConfig(wssConfig);
+        data.setCallbackHandler(callbackHandler);
+        data.setKerberosTicketCache(ticketCache);
+        try {
+            secEngine.processSecurityHeader(WSSecurityUtil.getSecurityHeader(replayedDoc, null), data);
+            fail("Failure expected on a replayed Kerberos token");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, ex.getErrorCode());
+        }
+    }
+
     /**
      * Get and validate a SPNEGO token.
      */
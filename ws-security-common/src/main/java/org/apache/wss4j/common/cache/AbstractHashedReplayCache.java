@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+
+import org.apache.wss4j.common.util.EnginePool;
+
+/**
+ * A base class for ReplayCache implementations that store a 128-bit digest of each identifier, together with
+ * its expiry, in a fixed-size open-addressing hash table with linear probing. The table is split into segments,
+ * each of which is guarded by its own lock. Subclasses provide the storage of the slots.
+ *
+ * Expired slots are reclaimed lazily when a new identifier is added. A live entry is never evicted: if no
+ * free slot is found within the probe distance of an identifier, the cache fails closed, i.e. addIfAbsent
+ * rejects the identifier (and add does not store it). The default TTL is 5 minutes and the max TTL is
+ * 60 minutes, as for the MemoryReplayCache.
+ */
+abstract class AbstractHashedReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = MemoryReplayCache.DEFAULT_TTL;
+    public static final long MAX_TTL = MemoryReplayCache.MAX_TTL;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(AbstractHashedReplayCache.class);
+
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MAX_PROBE = 64;
+
+    private final int tableSize;
+    private final Object[] locks;
+    private final int segmentSize;
+    private final int segmentMask;
+    private final int maxProbe;
+
+    /**
+     * @param tableSize The number of slots, which must be a power of two
+     */
+    AbstractHashedReplayCache(int tableSize) {
+        if (tableSize < 1 || Integer.bitCount(tableSize) != 1) {
+            throw new IllegalArgumentException("The table size must be a power of two");
+        }
+        this.tableSize = tableSize;
+        int segments = Math.min(MAX_SEGMENTS, tableSize);
+        segmentSize = tableSize / segments;
+        segmentMask = segmentSize - 1;
+        maxProbe = Math.min(MAX_PROBE, segmentSize);
+        locks = new Object[segments];
+        for (int i = 0; i < segments; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Return the expiry of the given slot in milliseconds since the epoch, or 0 if the slot has never been used
+     */
+    protected abstract long getExpiry(int slot);
+
+    /**
+     * Return true if the given slot holds the given digest
+     */
+    protected abstract boolean matches(int slot, long digestHigh, long digestLow);
+
+    /**
+     * Store the given digest and expiry (in milliseconds since the epoch) in the given slot
+     */
+    protected abstract void setSlot(int slot, long digestHigh, long digestLow, long expiry);
+
+    /**
+     * Update the expiry (in milliseconds since the epoch) of the given slot
+     */
+    protected abstract void setExpiry(int slot, long expiry);
+
+    /**
+     * Called with the lock of the given segment held, before the slots of the segment are accessed.
+     * Subclasses that share the table with other processes can extend the lock here.
+     * @return false if the segment could not be locked, in which case the operation fails closed: the
+     *         identifier is reported as contained in the cache, and it is not added to the cache
+     */
+    protected boolean lockSegment(int segment) {
+        return true;
+    }
+
+    /**
+     * Called with the lock of the given segment held, after the slots of the segment have been accessed
+     * @return false if the segment was not locked for the whole of the access, in which case the operation
+     *         fails closed as for lockSegment
+     */
+    protected boolean unlockSegment(int segment) {
+        return true;
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+
+        put(digest(identifier), getValidExpiry(expiry), false);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, if it is not already
+     * contained in the cache. The check and the insert are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return false if the identifier was already contained in the cache, true otherwise
+     */
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        return put(digest(identifier), getValidExpiry(expiry), true);
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+
+        long[] digest = digest(identifier);
+        int segment = getSegment(digest);
+        int start = segment * segmentSize;
+        int home = (int) digest[1] & segmentMask;
+        synchronized (locks[segment]) {
+            if (!lockSegment(segment)) {
+                return true;
+            }
+            boolean found = true;
+            try {
+                found = find(start, home, digest);
+            } finally {
+                if (!unlockSegment(segment)) {
+                    found = true;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Return the number of slots in each segment
+     */
+    protected int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Return the number of identifiers that can be stored
+     */
+    public int getCapacity() {
+        return tableSize;
+    }
+
+    /**
+     * Mark every slot as unused
+     */
+    protected void clear() {
+        for (int segment = 0; segment < locks.length; segment++) {
+            synchronized (locks[segment]) {
+                if (!lockSegment(segment)) {
+                    LOG.warn("The segment {} of the replay cache could not be cleared", segment);
+                    continue;
+                }
+                try {
+                    int start = segment * segmentSize;
+                    for (int slot = start; slot < start + segmentSize; slot++) {
+                        setSlot(slot, 0L, 0L, 0L);
+                    }
+                } finally {
+                    if (!unlockSegment(segment)) {
+                        LOG.warn("The segment {} of the replay cache may not have been cleared", segment);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean put(long[] digest, long expiry, boolean onlyIfAbsent) {
+        int segment = getSegment(digest);
+        int start = segment * segmentSize;
+        int home = (int) digest[1] & segmentMask;
+        synchronized (locks[segment]) {
+            if (!lockSegment(segment)) {
+                return false;
+            }
+            boolean added = false;
+            try {
+                added = insert(start, home, digest, expiry, onlyIfAbsent);
+            } finally {
+                if (!unlockSegment(segment)) {
+                    added = false;
+                }
+            }
+            return added;
+        }
+    }
+
+    private boolean find(int start, int home, long[] digest) {
+        long now = System.currentTimeMillis();
+        for (int probe = 0; probe < maxProbe; probe++) {
+            int slot = start + ((home + probe) & segmentMask);
+            long slotExpiry = getExpiry(slot);
+            if (slotExpiry == 0) {
+                return false;
+            }
+            if (slotExpiry > now && matches(slot, digest[0], digest[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean insert(int start, int home, long[] digest, long expiry, boolean onlyIfAbsent) {
+        long now = System.currentTimeMillis();
+        int free = -1;
+        for (int probe = 0; probe < maxProbe; probe++) {
+            int slot = start + ((home + probe) & segmentMask);
+            long slotExpiry = getExpiry(slot);
+            if (slotExpiry == 0) {
+                // Never used, so the identifier can not be stored any further along
+                if (free < 0) {
+                    free = slot;
+                }
+                break;
+            }
+            if (slotExpiry <= now) {
+                // Expired, so it can be reclaimed
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (matches(slot, digest[0], digest[1])) {
+                if (onlyIfAbsent) {
+                    return false;
+                }
+                setExpiry(slot, expiry);
+                return true;
+            }
+        }
+
+        if (free < 0) {
+            LOG.warn("The replay cache is full, rejecting the identifier");
+            return false;
+        }
+        setSlot(free, digest[0], digest[1], expiry);
+        return true;
+    }
+
+    private int getSegment(long[] digest) {
+        return (int) (digest[0] >>> 32) & (locks.length - 1);
+    }
+
+    private static long getValidExpiry(Instant expiry) {
+        Instant now = Instant.now();
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            expiry = now.plusSeconds(DEFAULT_TTL);
+        }
+        return expiry.toEpochMilli();
+    }
+
+    /**
+     * Return the first 128 bits of the SHA-256 digest of the identifier. A cryptographic digest is used so that
+     * an attacker can not craft identifiers that collide with the identifiers of other messages.
+     */
+    private static long[] digest(String identifier) {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-256");
+        byte[] bytes;
+        try {
+            MessageDigest sha = pool.get();
+            bytes = sha.digest(identifier.getBytes(StandardCharsets.UTF_8));
+            pool.release(sha);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+        long[] digest = new long[2];
+        for (int i = 0; i < 8; i++) {
+            digest[0] = (digest[0] << 8) | (bytes[i] & 0xFFL);
+            digest[1] = (digest[1] << 8) | (bytes[i + 8] & 0xFFL);
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.util.EnginePool;
+
+/**
+ * A bounded cache of the Subjects that have been authenticated with a username and a cleartext password,
+ * e.g. by a JAAS LoginContext, so that a login backend (such as LDAP or a database) is not queried for
+ * every request of the same user. An entry is keyed by the username, and holds a salted SHA-256 hash of
+ * the password. The salt is random and is generated for each cache, and the password itself is never
+ * stored. A Subject is only returned if the presented password matches, and until the TTL of its entry
+ * elapses. The least recently used entries are evicted once the cache is full.
+ *
+ * A cache must only be used with a single login configuration. A changed or revoked password remains
+ * valid until the entry expires, unless the entry is invalidated. This class is thread-safe.
+ */
+public class AuthenticatedSubjectCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final byte[] salt = new byte[16];
+    private final long ttl;
+    private final int maxEntries;
+    private final Map<String, CachedSubject> subjects;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AuthenticatedSubjectCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries the maximum number of users in the cache
+     * @param ttl the time for which an authenticated Subject is cached, in seconds
+     */
+    public AuthenticatedSubjectCache(int maxEntries, long ttl) {
+        if (maxEntries <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries and the TTL must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        new SecureRandom().nextBytes(salt);
+        subjects = new LinkedHashMap<String, CachedSubject>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSubject> eldest) {
+                if (size() > AuthenticatedSubjectCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the Subject that has been authenticated with the given username and password
+     * @param username the username
+     * @param password the cleartext password
+     * @return a copy of the cached Subject, or null if the user is not in the cache, if the password
+     *         does not match or if the entry has expired
+     */
+    public Subject get(String username, String password) throws GeneralSecurityException {
+        if (username == null || password == null) {
+            return null;
+        }
+        byte[] passwordHash = hash(password);
+        Subject subject = null;
+        synchronized (subjects) {
+            CachedSubject cached = subjects.get(username);
+            if (cached != null) {
+                if (System.currentTimeMillis() >= cached.expires) {
+                    subjects.remove(username);
+                } else if (MessageDigest.isEqual(cached.passwordHash, passwordHash)) {
+                    subject = cached.subject;
+                }
+            }
+        }
+        if (subject == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        // The cached Subject is not handed out, as the callers may modify it
+        return new Subject(
+            false, subject.getPrincipals(), subject.getPublicCredentials(), subject.getPrivateCredentials()
+        );
+    }
+
+    /**
+     * Store the Subject that has been authenticated with the given username and password. It replaces
+     * the Subject that was cached for the user, if any.
+     * @param username the username
+     * @param password the cleartext password
+     * @param subject the authenticated Subject
+     */
+    public void put(String username, String password, Subject subject) throws GeneralSecurityException {
+        if (username == null || password == null || subject == null) {
+            return;
+        }
+        Subject copy = new Subject(
+            false, subject.getPrincipals(), subject.getPublicCredentials(), subject.getPrivateCredentials()
+        );
+        CachedSubject cached = new CachedSubject(copy, hash(password), System.currentTimeMillis() + ttl * 1000L);
+        synchronized (subjects) {
+            subjects.put(username, cached);
+        }
+    }
+
+    /**
+     * Remove the Subject of the given user, e.g. once the password of the user has been changed
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        synchronized (subjects) {
+            subjects.remove(username);
+        }
+    }
+
+    /**
+     * Remove all of the Subjects
+     */
+    public void invalidateAll() {
+        synchronized (subjects) {
+            subjects.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (subjects) {
+            return subjects.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups that returned a Subject
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not return a Subject
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries that were evicted as the cache was full
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private byte[] hash(String password) throws GeneralSecurityException {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool(HASH_ALGORITHM);
+        MessageDigest digest = pool.get();
+        try {
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            pool.release(digest);
+        }
+    }
+
+    private static final class CachedSubject {
+        private final Subject subject;
+        private final byte[] passwordHash;
+        private final long expires;
+
+        CachedSubject(Subject subject, byte[] passwordHash, long expires) {
+            this.subject = subject;
+            this.passwordHash = passwordHash;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+/**
+ * An in-memory cache to prevent against replay attacks, that uses a fixed amount of heap regardless of the
+ * length of the identifiers. Instead of the identifier itself, a 128-bit digest of it is stored, together
+ * with an int expiry, in parallel primitive arrays that form an open-addressing hash table. There are
+ * no objects per entry, so each identifier costs 20 bytes.
+ *
+ * Expired slots are reclaimed lazily when a new identifier is added. If no free slot is found within the
+ * probe distance of an identifier, the identifier is rejected, so the capacity should be sized for the
+ * expected number of live identifiers. The default TTL is 5 minutes and the max TTL is
+ * 60 minutes, as for the MemoryReplayCache.
+ */
+public class CompactReplayCache extends AbstractHashedReplayCache {
+
+    /**
+     * The default number of identifiers that can be stored
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAX_CAPACITY = 1 << 29;
+    // The granularity of the stored expiry. An int of these covers more than six years after the cache is created.
+    private static final long TICK_MILLIS = 100L;
+
+    // Two longs per slot - the high and low 64 bits of the digest
+    private final long[] digests;
+    // The expiry of each slot in ticks after baseTick, where 0 means that the slot has never been used
+    private final int[] expiries;
+    private final long baseTick;
+
+    public CompactReplayCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity The number of identifiers that can be stored. It is rounded up to the next power of two.
+     *                 Rejections become likely once more than about three quarters of it is in use.
+     */
+    public CompactReplayCache(int capacity) {
+        super(getTableSize(capacity));
+        digests = new long[getCapacity() * 2];
+        expiries = new int[getCapacity()];
+        // Make sure that a valid expiry is never 0
+        baseTick = System.currentTimeMillis() / TICK_MILLIS - 1L;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    @Override
+    protected long getExpiry(int slot) {
+        int expiry = expiries[slot];
+        return expiry == 0 ? 0L : (baseTick + expiry) * TICK_MILLIS;
+    }
+
+    @Override
+    protected boolean matches(int slot, long digestHigh, long digestLow) {
+        return digests[slot * 2] == digestHigh && digests[slot * 2 + 1] == digestLow;
+    }
+
+    @Override
+    protected void setSlot(int slot, long digestHigh, long digestLow, long expiry) {
+        digests[slot * 2] = digestHigh;
+        digests[slot * 2 + 1] = digestLow;
+        setExpiry(slot, expiry);
+    }
+
+    @Override
+    protected void setExpiry(int slot, long expiry) {
+        // Round up, so that an identifier never expires early
+        expiries[slot] = expiry == 0L ? 0 : (int) ((expiry + TICK_MILLIS - 1L) / TICK_MILLIS - baseTick);
+    }
+
+    private static int getTableSize(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity parameter must be between 1 and " + MAX_CAPACITY);
+        }
+        return Integer.highestOneBit(capacity * 2 - 1);
+    }
+}
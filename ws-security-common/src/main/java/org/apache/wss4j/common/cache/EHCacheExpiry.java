@@ -45,14 +45,19 @@ public class EHCacheExpiry implements ExpiryPolicy<String, EHCacheValue> {
 
     @Override
     public Duration getExpiryForCreation(String s, EHCacheValue ehCacheValue) {
-        Instant expiry = ehCacheValue.getExpiry();
         Instant now = Instant.now();
+        return Duration.of(getExpiry(ehCacheValue.getExpiry(), now) - now.toEpochMilli(), ChronoUnit.MILLIS);
+    }
 
+    /**
+     * Get the time in milliseconds since the epoch at which an identifier with the given (requested) expiry
+     * expires, i.e. the requested expiry if it is valid, or the default TTL from now
+     */
+    static long getExpiry(Instant expiry, Instant now) {
         if (expiry == null || expiry.isBefore(now) || expiry.isAfter(now.plusSeconds(MAX_TTL))) {
-            return Duration.of(DEFAULT_TTL, ChronoUnit.SECONDS);
+            return now.plusSeconds(DEFAULT_TTL).toEpochMilli();
         }
-
-        return Duration.of(expiry.toEpochMilli() - now.toEpochMilli(), ChronoUnit.MILLIS);
+        return expiry.toEpochMilli();
     }
 
     @Override
@@ -38,17 +38,30 @@ import org.ehcache.config.units.MemoryUnit;
 /**
  * An in-memory EHCache implementation of the ReplayCache interface, that overflows to disk.
  * The default TTL is 60 minutes and the max TTL is 12 hours.
+ *
+ * Optionally, a Bloom filter can be placed in front of the cache. As almost no message is a replay,
+ * most lookups are for identifiers that are not in the cache, which would otherwise have to go to the
+ * disk tier. The Bloom filter answers these lookups without touching EHCache at all.
  */
 public class EHCacheReplayCache implements ReplayCache {
 
     private static final org.slf4j.Logger LOG =
             org.slf4j.LoggerFactory.getLogger(EHCacheReplayCache.class);
 
+    /**
+     * The number of entries per megabyte of disk store that the Bloom filter is sized for
+     */
+    private static final long BLOOM_FILTER_ENTRIES_PER_MB = 2048L;
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+    private static final int LOCK_STRIPES = 64;
+
     private final Cache<String, EHCacheValue> cache;
     private final CacheManager cacheManager;
     private final String key;
     private final Path diskstorePath;
     private final boolean persistent;
+    private final RotatingBloomFilter bloomFilter;
+    private final Object[] locks;
 
     public EHCacheReplayCache(String key) throws WSSecurityException {
         this(key, null);
@@ -60,6 +73,18 @@ public class EHCacheReplayCache implements ReplayCache {
 
     public EHCacheReplayCache(String key, Path diskstorePath, long diskSize, long heapEntries, boolean persistent)
             throws WSSecurityException {
+        this(key, diskstorePath, diskSize, heapEntries, persistent, false);
+    }
+
+    /**
+     * @param useBloomFilter Whether to answer lookups for identifiers that have definitely not been seen from an
+     *                       in-heap Bloom filter. Each generation of the filter is sized for as many identifiers as
+     *                       the heapEntries and diskSize parameters allow, and rotates once it holds as many. It
+     *                       can not be used with a persistent cache, as the filter does not know about entries
+     *                       from a previous run.
+     */
+    public EHCacheReplayCache(String key, Path diskstorePath, long diskSize, long heapEntries, boolean persistent,
+                              boolean useBloomFilter) throws WSSecurityException {
         this.key = key;
         this.diskstorePath = diskstorePath;
         this.persistent = persistent;
@@ -74,6 +99,26 @@ public class EHCacheReplayCache implements ReplayCache {
         if (heapEntries < 100) {
             throw new IllegalArgumentException("The heapEntries parameter must be greater than 100 (entries)");
         }
+        if (useBloomFilter && persistent) {
+            throw new IllegalArgumentException("A Bloom filter can not be used with a persistent cache");
+        }
+
+        if (useBloomFilter) {
+            long expectedEntries = heapEntries;
+            if (diskstorePath != null) {
+                expectedEntries += diskSize * BLOOM_FILTER_ENTRIES_PER_MB;
+            }
+            // Each generation of the filter holds as many identifiers as the cache, and the filter forgets
+            // them once they have expired
+            bloomFilter = new RotatingBloomFilter(expectedEntries, BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+            locks = new Object[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                locks[i] = new Object();
+            }
+        } else {
+            bloomFilter = null;
+            locks = null;
+        }
 
         try {
             ResourcePoolsBuilder resourcePoolsBuilder = ResourcePoolsBuilder.newResourcePoolsBuilder()
@@ -124,7 +169,41 @@ public class EHCacheReplayCache implements ReplayCache {
             return;
         }
 
-        cache.put(identifier, new EHCacheValue(identifier, expiry));
+        if (bloomFilter != null) {
+            synchronized (getLock(identifier)) {
+                bloomFilter.add(identifier, EHCacheExpiry.getExpiry(expiry, Instant.now()));
+                cache.put(identifier, new EHCacheValue(identifier, expiry));
+            }
+        } else {
+            cache.put(identifier, new EHCacheValue(identifier, expiry));
+        }
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, if it is not already
+     * contained in the cache. The check and the insert are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return false if the identifier was already contained in the cache, true otherwise
+     */
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        EHCacheValue value = new EHCacheValue(identifier, expiry);
+        if (bloomFilter != null) {
+            // The filter check and update must be atomic with the cache update for the same identifier
+            synchronized (getLock(identifier)) {
+                if (!bloomFilter.mightContain(identifier)) {
+                    bloomFilter.add(identifier, EHCacheExpiry.getExpiry(expiry, Instant.now()));
+                    cache.put(identifier, value);
+                    return true;
+                }
+                return cache.putIfAbsent(identifier, value) == null;
+            }
+        }
+        return cache.putIfAbsent(identifier, value) == null;
     }
 
     /**
@@ -135,6 +214,9 @@ public class EHCacheReplayCache implements ReplayCache {
         if (cache == null) {
             return false;
         }
+        if (bloomFilter != null && (identifier == null || !bloomFilter.mightContain(identifier))) {
+            return false;
+        }
         EHCacheValue element = cache.get(identifier);
         return element != null;
     }
@@ -144,6 +226,15 @@ public class EHCacheReplayCache implements ReplayCache {
         return cache.get(identifier);
     }
 
+    // Only exposed for testing
+    RotatingBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private Object getLock(String identifier) {
+        return locks[identifier.hashCode() & (LOCK_STRIPES - 1)];
+    }
+
     @Override
     public synchronized void close() {
         if (cacheManager.getStatus() == Status.AVAILABLE) {
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache to prevent against replay attacks that is backed by a memory-mapped file, so that the cached
+ * identifiers survive a restart of the JVM. The file holds a fixed-size hash table of slots, each of which
+ * stores a 128-bit digest of an identifier and its expiry, so a lookup costs a single page access.
+ * Expired slots are reclaimed lazily when a new identifier is added.
+ *
+ * Writes go to the page cache and are flushed to disk on close, so identifiers survive a crash of the JVM,
+ * but not necessarily a crash of the operating system. The file is locked while the cache is open, so that
+ * it can not be used by more than one cache instance at the same time.
+ */
+public class MappedFileReplayCache extends AbstractHashedReplayCache {
+
+    /**
+     * The default number of identifiers that can be stored
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    static final int MAGIC = 0x57535243;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 24;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MappedFileReplayCache.class);
+
+    // Keeps the mapped file within the 2 GB that a single MappedByteBuffer can address
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private boolean closed;
+
+    public MappedFileReplayCache(Path file) throws WSSecurityException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param file The file that backs the cache. It is created if it does not exist.
+     * @param capacity The number of identifiers that can be stored. It is rounded up to the next power of two.
+     *                 An existing file must have been created with the same capacity.
+     */
+    public MappedFileReplayCache(Path file, int capacity) throws WSSecurityException {
+        this(file, capacity, false);
+    }
+
+    /**
+     * @param shared Whether the file may be used by other processes at the same time. If not, the whole
+     *               file is locked while the cache is open. Otherwise only the header is locked while the
+     *               file is opened, and subclasses must lock the segments they access.
+     */
+    MappedFileReplayCache(Path file, int capacity, boolean shared) throws WSSecurityException {
+        super(getTableSize(capacity));
+        if (file == null) {
+            throw new NullPointerException();
+        }
+
+        FileChannel fileChannel = null;
+        try {
+            fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                           StandardOpenOption.WRITE);
+            FileLock headerLock = null;
+            if (shared) {
+                // Serialize the creation of the file with the other processes
+                headerLock = fileChannel.lock(0, HEADER_SIZE, false);
+            } else if (fileChannel.tryLock() == null) {
+                // Released when the channel is closed
+                throw new IllegalStateException("The replay cache file " + file + " is already in use");
+            }
+            try {
+                buffer = mapFile(fileChannel, file);
+            } finally {
+                if (headerLock != null) {
+                    headerLock.release();
+                }
+            }
+            channel = fileChannel;
+        } catch (IOException | RuntimeException ex) {
+            LOG.error("Error configuring MappedFileReplayCache: {}", ex.getMessage());
+            closeChannel(fileChannel);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex, "replayCacheError");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    protected long getExpiry(int slot) {
+        return buffer.getLong(offset(slot) + 16);
+    }
+
+    @Override
+    protected boolean matches(int slot, long digestHigh, long digestLow) {
+        int offset = offset(slot);
+        return buffer.getLong(offset) == digestHigh && buffer.getLong(offset + 8) == digestLow;
+    }
+
+    @Override
+    protected void setSlot(int slot, long digestHigh, long digestLow, long expiry) {
+        int offset = offset(slot);
+        buffer.putLong(offset, digestHigh);
+        buffer.putLong(offset + 8, digestLow);
+        buffer.putLong(offset + 16, expiry);
+    }
+
+    @Override
+    protected void setExpiry(int slot, long expiry) {
+        buffer.putLong(offset(slot) + 16, expiry);
+    }
+
+    static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    static int getTableSize(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity parameter must be between 1 and " + MAX_CAPACITY);
+        }
+        return Integer.highestOneBit(capacity * 2 - 1);
+    }
+
+    private MappedByteBuffer mapFile(FileChannel fileChannel, Path file) throws IOException {
+        boolean created = fileChannel.size() == 0;
+        long size = HEADER_SIZE + (long) getCapacity() * SLOT_SIZE;
+        if (!created && fileChannel.size() != size) {
+            throw new IllegalStateException("The replay cache file " + file + " has the wrong size");
+        }
+        MappedByteBuffer mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (created) {
+            mappedBuffer.putInt(0, MAGIC);
+            mappedBuffer.putInt(4, VERSION);
+            mappedBuffer.putInt(8, getCapacity());
+        } else if (mappedBuffer.getInt(0) != MAGIC || mappedBuffer.getInt(4) != VERSION
+            || mappedBuffer.getInt(8) != getCapacity()) {
+            throw new IllegalStateException("The replay cache file " + file + " has an unknown format");
+        }
+        return mappedBuffer;
+    }
+
+    private static void closeChannel(FileChannel fileChannel) {
+        if (fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                LOG.debug("Error in closing the replay cache file", e);
+            }
+        }
+    }
+}
@@ -60,21 +60,34 @@ public class MemoryReplayCache implements ReplayCache {
             return;
         }
 
-        Instant now = Instant.now();
-        Instant maxTTL = now.plusSeconds(MAX_TTL);
-        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
-            expiry = now.plusSeconds(DEFAULT_TTL);
+        Instant validExpiry = getValidExpiry(expiry);
+        synchronized (cache) {
+            addExpiry(identifier, validExpiry);
+        }
+        ids.add(identifier);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, if it is not already
+     * contained in the cache. The check and the insert are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return false if the identifier was already contained in the cache, true otherwise
+     */
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
         }
 
+        Instant validExpiry = getValidExpiry(expiry);
+        processTokenExpiry();
         synchronized (cache) {
-            List<String> list = cache.get(expiry);
-            if (list == null) {
-                list = new ArrayList<>(1);
-                cache.put(expiry, list);
+            if (!ids.add(identifier)) {
+                return false;
             }
-            list.add(identifier);
+            addExpiry(identifier, validExpiry);
         }
-        ids.add(identifier);
+        return true;
     }
 
     /**
@@ -90,6 +103,25 @@ public class MemoryReplayCache implements ReplayCache {
         return false;
     }
 
+    private static Instant getValidExpiry(Instant expiry) {
+        Instant now = Instant.now();
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            return now.plusSeconds(DEFAULT_TTL);
+        }
+        return expiry;
+    }
+
+    // Must be called while holding the lock on the cache
+    private void addExpiry(String identifier, Instant expiry) {
+        List<String> list = cache.get(expiry);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            cache.put(expiry, list);
+        }
+        list.add(identifier);
+    }
+
     protected void processTokenExpiry() {
         Instant current = Instant.now();
         synchronized (cache) {
@@ -47,4 +47,25 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Add the given identifier to the cache to be cached for the given time, if it is not already
+     * contained in the cache. Implementations should perform the check and the insert atomically,
+     * so that two concurrent calls with the same identifier can not both succeed. The default
+     * implementation just calls contains and then add.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return false if the identifier was already contained in the cache, true otherwise
+     */
+    default boolean addIfAbsent(String identifier, Instant expiry) {
+        if (contains(identifier)) {
+            return false;
+        }
+        if (expiry == null) {
+            add(identifier);
+        } else {
+            add(identifier, expiry);
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter that forgets identifiers once they have expired. It consists of two
+ * generations: identifiers are added to the current generation, and looked up in both. Each generation
+ * is sized for the expected number of identifiers, and once the current generation holds that many it
+ * becomes the previous generation, and the old previous generation is dropped. So the false positive
+ * probability stays close to the target however many identifiers are added over time.
+ *
+ * A generation is normally only dropped once all of its identifiers have expired. If it has to be dropped
+ * earlier, as identifiers are added faster than the filter is sized for, the filter can no longer rule
+ * out any identifier until the dropped identifiers have expired, so that it never returns a false
+ * negative for an identifier that has not expired.
+ */
+class RotatingBloomFilter {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(RotatingBloomFilter.class);
+
+    private static final double LN2 = Math.log(2);
+
+    private final long expectedEntries;
+    private final int numBits;
+    private final int numHashes;
+    private volatile Generation current;
+    private volatile Generation previous;
+    // The time in milliseconds until which the filter may have forgotten identifiers that have not expired
+    private volatile long unreliableUntil;
+
+    /**
+     * @param expectedEntries The number of identifiers that each generation holds
+     * @param falsePositiveProbability The target false positive probability
+     */
+    RotatingBloomFilter(long expectedEntries, double falsePositiveProbability) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException("The expectedEntries parameter must be greater than 0");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("The falsePositiveProbability parameter must be between 0 and 1");
+        }
+        long bits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveProbability) / (LN2 * LN2));
+        // Round up to a whole number of longs, and cap it at what an array of longs can index
+        bits = Math.min((bits + 63L) & ~63L, (long) Integer.MAX_VALUE + 1L - 64L);
+        this.expectedEntries = expectedEntries;
+        this.numBits = (int) bits;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedEntries * LN2));
+
+        current = new Generation(numBits);
+        previous = new Generation(numBits);
+    }
+
+    /**
+     * Add the given identifier to the filter
+     * @param identifier The identifier to add
+     * @param expiryMillis The time in milliseconds since the epoch at which the identifier expires
+     */
+    void add(String identifier, long expiryMillis) {
+        long hash = hash(identifier);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        Generation generation = current;
+        while (true) {
+            for (int i = 0; i < numHashes; i++) {
+                generation.set(index(h1, h2, i));
+            }
+            generation.maxExpiry.accumulateAndGet(expiryMillis, Math::max);
+            if (generation.count.incrementAndGet() >= expectedEntries) {
+                rotate(generation);
+            }
+            // Add it again if the generation has been dropped meanwhile
+            if (generation == current || generation == previous) {
+                return;
+            }
+            generation = current;
+        }
+    }
+
+    /**
+     * Return false if the given identifier has definitely not been added, or has expired,
+     * and true if it might have been added.
+     */
+    boolean mightContain(String identifier) {
+        if (System.currentTimeMillis() < unreliableUntil) {
+            return true;
+        }
+        long hash = hash(identifier);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return mightContain(current, h1, h2) || mightContain(previous, h1, h2);
+    }
+
+    int getNumBits() {
+        return numBits;
+    }
+
+    int getNumHashes() {
+        return numHashes;
+    }
+
+    private boolean mightContain(Generation generation, int h1, int h2) {
+        for (int i = 0; i < numHashes; i++) {
+            if (!generation.get(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void rotate(Generation full) {
+        if (full != current) {
+            return;
+        }
+        long maxExpiry = previous.maxExpiry.get();
+        if (maxExpiry > System.currentTimeMillis()) {
+            LOG.warn("The replay cache Bloom filter is full before its identifiers have expired, it is bypassed "
+                     + "until they have expired");
+            unreliableUntil = Math.max(unreliableUntil, maxExpiry);
+        }
+        previous = full;
+        current = new Generation(numBits);
+    }
+
+    private int index(int h1, int h2, int i) {
+        // Kirsch-Mitzenmacher double hashing
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % numBits;
+    }
+
+    // FNV-1a over the characters, followed by a finalizer to spread the bits over both halves
+    private static long hash(String identifier) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            h ^= identifier.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Generation {
+        private final AtomicLongArray words;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong maxExpiry = new AtomicLong();
+
+        Generation(int numBits) {
+            this.words = new AtomicLongArray(numBits >>> 6);
+        }
+
+        void set(int bit) {
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long value = words.get(word);
+            while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                value = words.get(word);
+            }
+        }
+
+        boolean get(int bit) {
+            return (words.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory cache to prevent against replay attacks, that scales with the number of concurrent threads.
+ * Identifiers are striped across a number of shards, each of which is backed by a ConcurrentHashMap, so that
+ * neither add nor contains take a global lock. Expired identifiers are removed by a background sweeper
+ * thread using a hierarchical timer wheel, and are never returned by contains in the meantime.
+ *
+ * The default TTL is 5 minutes and the max TTL is 60 minutes, as for the MemoryReplayCache.
+ */
+public class ShardedMemoryReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = MemoryReplayCache.DEFAULT_TTL;
+    public static final long MAX_TTL = MemoryReplayCache.MAX_TTL;
+
+    /**
+     * The default interval in milliseconds between runs of the sweeper
+     */
+    public static final long DEFAULT_TICK = 1000L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ShardedMemoryReplayCache.class);
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long tickMillis;
+    private final TimerWheel<ExpiryEntry> timerWheel;
+    private final ScheduledExecutorService sweeper;
+
+    public ShardedMemoryReplayCache() {
+        this(Runtime.getRuntime().availableProcessors() * 4, DEFAULT_TICK);
+    }
+
+    /**
+     * @param concurrencyLevel The expected number of concurrently updating threads. It is rounded up
+     *                         to the next power of two to give the number of shards.
+     * @param tickMillis The interval in milliseconds between runs of the sweeper
+     */
+    public ShardedMemoryReplayCache(int concurrencyLevel, long tickMillis) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("The concurrencyLevel parameter must be greater than 0");
+        }
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("The tickMillis parameter must be greater than 0");
+        }
+        int shardCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        shardMask = shardCount - 1;
+        this.tickMillis = tickMillis;
+
+        timerWheel = new TimerWheel<>(System.currentTimeMillis() / tickMillis);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wss4j-replay-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+
+        Long expiryMillis = getValidExpiry(expiry);
+        Shard shard = getShard(identifier);
+        shard.ids.put(identifier, expiryMillis);
+        shard.pending.offer(new ExpiryEntry(shard, identifier, expiryMillis));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, if it is not already
+     * contained in the cache. The check and the insert are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return false if the identifier was already contained in the cache, true otherwise
+     */
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Long expiryMillis = getValidExpiry(expiry);
+        Shard shard = getShard(identifier);
+        long now = System.currentTimeMillis();
+        while (true) {
+            Long existing = shard.ids.putIfAbsent(identifier, expiryMillis);
+            if (existing == null) {
+                break;
+            }
+            if (existing >= now) {
+                return false;
+            }
+            // The existing entry has expired, but the sweeper has not got to it yet
+            if (shard.ids.replace(identifier, existing, expiryMillis)) {
+                break;
+            }
+        }
+        shard.pending.offer(new ExpiryEntry(shard, identifier, expiryMillis));
+        return true;
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+
+        Shard shard = getShard(identifier);
+        Long expiry = shard.ids.get(identifier);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            // The sweeper has not got to it yet
+            shard.ids.remove(identifier, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the (approximate) number of identifiers in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.ids.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        for (Shard shard : shards) {
+            shard.ids.clear();
+            shard.pending.clear();
+        }
+        synchronized (timerWheel) {
+            timerWheel.clear();
+        }
+    }
+
+    private static Long getValidExpiry(Instant expiry) {
+        Instant now = Instant.now();
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            return now.plusSeconds(DEFAULT_TTL).toEpochMilli();
+        }
+        return expiry.toEpochMilli();
+    }
+
+    private Shard getShard(String identifier) {
+        int h = identifier.hashCode();
+        // Spread the hash, as ConcurrentHashMap uses the low-order bits
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return shards[h & shardMask];
+    }
+
+    // Only called from the sweeper thread (and from tests)
+    void sweep() {
+        try {
+            synchronized (timerWheel) {
+                for (Shard shard : shards) {
+                    ExpiryEntry entry = shard.pending.poll();
+                    while (entry != null) {
+                        timerWheel.schedule(entry, (entry.expiry + tickMillis - 1) / tickMillis);
+                        entry = shard.pending.poll();
+                    }
+                }
+
+                List<ExpiryEntry> expired = timerWheel.advance(System.currentTimeMillis() / tickMillis);
+                for (ExpiryEntry entry : expired) {
+                    // Only remove the identifier if it has not been re-added with a different expiry
+                    entry.shard.ids.remove(entry.identifier, entry.expiry);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Don't let an exception cancel the scheduled sweeper
+            LOG.debug("Error in expiring replay cache entries", ex);
+        }
+    }
+
+    private static final class Shard {
+        private final ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+        private final Queue<ExpiryEntry> pending = new ConcurrentLinkedQueue<>();
+    }
+
+    private static final class ExpiryEntry {
+        private final Shard shard;
+        private final String identifier;
+        private final Long expiry;
+
+        ExpiryEntry(Shard shard, String identifier, Long expiry) {
+            this.shard = shard;
+            this.identifier = identifier;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache to prevent against replay attacks that is shared by several processes on the same host, for example
+ * several WSS4J JVMs behind the same load balancer. The cached identifiers live in a memory-mapped file, laid
+ * out as for the MappedFileReplayCache, that every process maps. Each segment of the hash table is guarded by
+ * a lock on its region of the file, so that checking for and adding an identifier is atomic across all of the
+ * processes, without the need for a network service. If a segment can not be locked, e.g. because of an I/O
+ * error, the cache fails closed: the identifier is reported as a replay.
+ *
+ * Every process must use the same file and capacity, and only one instance per file should be created in each
+ * JVM. The file must not be used with a MappedFileReplayCache at the same time.
+ */
+public class SharedFileReplayCache extends MappedFileReplayCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SharedFileReplayCache.class);
+
+    private static final long LOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10L);
+    private static final long LOCK_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50L);
+
+    // All of the region locks are taken on this channel. Unlike a FileChannel, it is not closed when a
+    // thread that accesses it is interrupted, which would release the locks of all of the threads.
+    private final AsynchronousFileChannel lockChannel;
+
+    // Only accessed while holding the lock of the corresponding segment
+    private final FileLock[] segmentLocks;
+
+    public SharedFileReplayCache(Path file) throws WSSecurityException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param file The file that backs the cache. It is created if it does not exist.
+     * @param capacity The number of identifiers that can be stored. It is rounded up to the next power of two.
+     *                 Every process must use the same capacity.
+     */
+    public SharedFileReplayCache(Path file, int capacity) throws WSSecurityException {
+        super(file, capacity, true);
+        segmentLocks = new FileLock[getCapacity() / getSegmentSize()];
+        try {
+            lockChannel = AsynchronousFileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            LOG.error("Error configuring SharedFileReplayCache: {}", ex.getMessage());
+            try {
+                super.close();
+            } catch (IOException closeEx) {
+                LOG.debug("Error closing the replay cache file: {}", closeEx.getMessage());
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex, "replayCacheError");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            lockChannel.close();
+        } finally {
+            super.close();
+        }
+    }
+
+    AsynchronousFileChannel getLockChannel() {
+        return lockChannel;
+    }
+
+    /**
+     * Poll for the lock of the region of the segment in the file. If the lock can not be acquired in time, or
+     * the cache has been closed, the operation fails closed.
+     */
+    @Override
+    protected boolean lockSegment(int segment) {
+        long position = offset(segment * getSegmentSize());
+        long size = (long) getSegmentSize() * SLOT_SIZE;
+        long deadline = System.nanoTime() + LOCK_TIMEOUT_NANOS;
+        try {
+            while (true) {
+                FileLock lock = lockChannel.tryLock(position, size, false);
+                if (lock != null) {
+                    segmentLocks[segment] = lock;
+                    return true;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    LOG.warn("Timed out waiting for the lock of the replay cache file, rejecting the identifier");
+                    return false;
+                }
+                LockSupport.parkNanos(LOCK_RETRY_NANOS);
+            }
+        } catch (ClosedChannelException ex) {
+            LOG.warn("The replay cache has been closed, rejecting the identifier");
+            return false;
+        } catch (IOException ex) {
+            LOG.warn("Error locking the replay cache file, rejecting the identifier: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Release the lock of the region of the segment in the file. If the lock has been lost in the meantime,
+     * because the cache was closed, the other processes may have accessed the segment concurrently, and so
+     * the operation fails closed.
+     */
+    @Override
+    protected boolean unlockSegment(int segment) {
+        FileLock lock = segmentLocks[segment];
+        segmentLocks[segment] = null;
+        if (lock == null || !lock.isValid()) {
+            LOG.warn("The lock of the segment {} of the replay cache file was lost, rejecting the identifier",
+                     segment);
+            return false;
+        }
+        try {
+            lock.release();
+            return true;
+        } catch (IOException ex) {
+            LOG.warn("Error unlocking the replay cache file, rejecting the identifier: {}", ex.getMessage());
+            return false;
+        }
+    }
+}
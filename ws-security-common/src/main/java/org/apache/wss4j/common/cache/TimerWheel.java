@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel. Each level has 64 slots, and a slot on level n covers 64^n ticks. Scheduling
+ * and expiring a timer costs amortized O(1), as a timer is only moved down to a finer level when the
+ * wheel turns over the coarser slot that holds it.
+ *
+ * This class is not thread-safe - it is only ever accessed by a single sweeper thread.
+ */
+class TimerWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final long MASK = SLOTS - 1L;
+    private static final int LEVELS = 3;
+
+    private final List<List<Timer<T>>> wheel = new ArrayList<>(LEVELS * SLOTS);
+    private final List<Timer<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    TimerWheel(long currentTick) {
+        this.currentTick = currentTick;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedule the given value to expire at the given tick
+     */
+    void schedule(T value, long expiryTick) {
+        // Timers that are already due fire on the next tick
+        schedule(new Timer<>(value, Math.max(expiryTick, currentTick + 1)));
+        size++;
+    }
+
+    /**
+     * Advance the wheel up to (and including) the given tick, and return every value that has expired.
+     */
+    List<T> advance(long tick) {
+        List<T> expired = new ArrayList<>();
+        while (currentTick < tick) {
+            currentTick++;
+            if ((currentTick & MASK) == 0) {
+                cascade();
+            }
+
+            List<Timer<T>> slot = wheel.get((int)(currentTick & MASK));
+            for (Timer<T> timer : slot) {
+                expired.add(timer.value);
+            }
+            size -= slot.size();
+            slot.clear();
+        }
+        return expired;
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (List<Timer<T>> slot : wheel) {
+            slot.clear();
+        }
+        overflow.clear();
+        size = 0;
+    }
+
+    private void schedule(Timer<T> timer) {
+        long expiryTick = timer.expiryTick;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if (expiryTick >>> shift == currentTick >>> shift) {
+                int index = (int)((expiryTick >>> (BITS * level)) & MASK);
+                wheel.get(level * SLOTS + index).add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    /**
+     * Move the timers of the coarser slots that the wheel has just reached down to the finer levels.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int index = (int)((currentTick >>> (BITS * level)) & MASK);
+            reschedule(wheel.get(level * SLOTS + index));
+            if (index != 0) {
+                return;
+            }
+        }
+        reschedule(overflow);
+    }
+
+    private void reschedule(List<Timer<T>> timers) {
+        if (timers.isEmpty()) {
+            return;
+        }
+        List<Timer<T>> copy = new ArrayList<>(timers);
+        timers.clear();
+        for (Timer<T> timer : copy) {
+            schedule(timer);
+        }
+    }
+
+    private static final class Timer<T> {
+        private final T value;
+        private final long expiryTick;
+
+        Timer(T value, long expiryTick) {
+            this.value = value;
+            this.expiryTick = expiryTick;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.cert.CRL;
+import java.security.cert.CRLReason;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertStore;
+import java.security.cert.CertStoreException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * An immutable index of the revoked serial numbers of the CRLs of a Collection CertStore, by issuer, so that
+ * checking whether a certificate has been revoked costs a hash lookup instead of a search of the CRLs.
+ *
+ * Only complete, direct CRLs without critical extensions are indexed. If the CertStore holds any other CRL,
+ * for example a delta CRL or an indirect CRL, no index is created, and revocation is left to the PKIX
+ * CertPathValidator.
+ */
+final class CRLIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CRLIndex.class);
+
+    // The keyUsage bit of the cRLSign usage
+    private static final int CRL_SIGN = 6;
+
+    private final CertStore crlCertStore;
+    private final Map<X500Principal, List<IndexedCRL>> issuerIndex;
+
+    private CRLIndex(CertStore crlCertStore, Map<X500Principal, List<IndexedCRL>> issuerIndex) {
+        this.crlCertStore = crlCertStore;
+        this.issuerIndex = issuerIndex;
+    }
+
+    /**
+     * Index the CRLs of the given CertStore
+     * @return the index, or null if the CertStore is not a Collection CertStore, or holds a CRL that
+     *         cannot be indexed
+     */
+    static CRLIndex create(CertStore crlCertStore) throws CertStoreException {
+        if (!"Collection".equals(crlCertStore.getType())) {
+            return null;
+        }
+        Map<X500Principal, List<IndexedCRL>> issuerIndex = new HashMap<>();
+        for (CRL crl : crlCertStore.getCRLs(null)) {
+            IndexedCRL indexedCRL = crl instanceof X509CRL ? IndexedCRL.create((X509CRL) crl) : null;
+            if (indexedCRL == null) {
+                return null;
+            }
+            issuerIndex.computeIfAbsent(indexedCRL.getIssuer(), k -> new ArrayList<>(1)).add(indexedCRL);
+        }
+        return new CRLIndex(crlCertStore, issuerIndex);
+    }
+
+    /**
+     * Create the index of a CertStore which differs from the indexed one only in that a CRL has been
+     * replaced. Only the new CRL is indexed.
+     * @param newCrlCertStore The new CertStore
+     * @param oldCRL The CRL that has been replaced, or null if the CRL has been added
+     * @param newCRL The new CRL
+     * @return the index, or null if the new CRL cannot be indexed
+     */
+    CRLIndex update(CertStore newCrlCertStore, X509CRL oldCRL, X509CRL newCRL) {
+        IndexedCRL indexedCRL = IndexedCRL.create(newCRL);
+        if (indexedCRL == null) {
+            return null;
+        }
+        Map<X500Principal, List<IndexedCRL>> updatedIndex = new HashMap<>(issuerIndex);
+        if (oldCRL != null) {
+            List<IndexedCRL> crls = new ArrayList<>(getCRLs(oldCRL.getIssuerX500Principal()));
+            crls.removeIf(crl -> crl.getCRL() == oldCRL);
+            if (crls.isEmpty()) {
+                updatedIndex.remove(oldCRL.getIssuerX500Principal());
+            } else {
+                updatedIndex.put(oldCRL.getIssuerX500Principal(), crls);
+            }
+        }
+        List<IndexedCRL> crls = new ArrayList<>(updatedIndex.getOrDefault(indexedCRL.getIssuer(),
+                                                                           Collections.<IndexedCRL>emptyList()));
+        crls.add(indexedCRL);
+        updatedIndex.put(indexedCRL.getIssuer(), crls);
+        return new CRLIndex(newCrlCertStore, updatedIndex);
+    }
+
+    /**
+     * Return true if the index was built from the given CertStore
+     */
+    boolean isCurrent(CertStore store) {
+        return store == crlCertStore;
+    }
+
+    /**
+     * Check that a certificate has not been revoked
+     * @param cert The certificate
+     * @param issuerCerts The candidates for the certificate of the issuer, whose key must have signed the CRL
+     * @param date The date at which the CRL must be valid
+     * @throws CertPathValidatorException if the certificate has been revoked, or if there is no valid CRL
+     *                                    for its issuer
+     */
+    void check(X509Certificate cert, Collection<X509Certificate> issuerCerts, Date date)
+        throws CertPathValidatorException {
+        boolean determined = false;
+        for (IndexedCRL crl : getCRLs(cert.getIssuerX500Principal())) {
+            if (crl.isValid(date) && crl.isSignedBy(issuerCerts)) {
+                determined = true;
+                if (crl.isRevoked(cert.getSerialNumber())) {
+                    throw new CertPathValidatorException(
+                        "Certificate has been revoked: " + cert.getSubjectX500Principal().getName(),
+                        null, null, -1, CertPathValidatorException.BasicReason.REVOKED
+                    );
+                }
+            }
+        }
+        if (!determined) {
+            throw new CertPathValidatorException(
+                "Could not determine revocation status: no valid CRL found for "
+                    + cert.getIssuerX500Principal().getName(),
+                null, null, -1, CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS
+            );
+        }
+    }
+
+    private List<IndexedCRL> getCRLs(X500Principal issuer) {
+        List<IndexedCRL> crls = issuerIndex.get(issuer);
+        return crls == null ? Collections.<IndexedCRL>emptyList() : crls;
+    }
+
+    /**
+     * A CRL together with the set of its revoked serial numbers, and the issuer keys its signature
+     * has been verified with
+     */
+    private static final class IndexedCRL {
+        private final X509CRL crl;
+        private final Set<BigInteger> revokedSerials;
+        private final Set<PublicKey> verifiedKeys = ConcurrentHashMap.newKeySet();
+
+        private IndexedCRL(X509CRL crl, Set<BigInteger> revokedSerials) {
+            this.crl = crl;
+            this.revokedSerials = revokedSerials;
+        }
+
+        /**
+         * Index the given CRL, or return null if it cannot be indexed
+         */
+        static IndexedCRL create(X509CRL crl) {
+            Set<String> criticalExtensions = crl.getCriticalExtensionOIDs();
+            if (criticalExtensions != null && !criticalExtensions.isEmpty()) {
+                LOG.debug("The CRL of {} has critical extensions {}", crl.getIssuerX500Principal(), criticalExtensions);
+                return null;
+            }
+            Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+            Set<BigInteger> revokedSerials = new HashSet<>(entries == null ? 16 : entries.size() * 4 / 3 + 1);
+            if (entries != null) {
+                for (X509CRLEntry entry : entries) {
+                    Set<String> entryExtensions = entry.getCriticalExtensionOIDs();
+                    if (entry.getCertificateIssuer() != null
+                        || entryExtensions != null && !entryExtensions.isEmpty()) {
+                        LOG.debug("The CRL of {} is an indirect CRL, or has an entry with critical extensions",
+                                  crl.getIssuerX500Principal());
+                        return null;
+                    }
+                    if (entry.getRevocationReason() != CRLReason.REMOVE_FROM_CRL) {
+                        revokedSerials.add(entry.getSerialNumber());
+                    }
+                }
+            }
+            return new IndexedCRL(crl, revokedSerials);
+        }
+
+        X509CRL getCRL() {
+            return crl;
+        }
+
+        X500Principal getIssuer() {
+            return crl.getIssuerX500Principal();
+        }
+
+        boolean isValid(Date date) {
+            Date nextUpdate = crl.getNextUpdate();
+            return !crl.getThisUpdate().after(date) && (nextUpdate == null || !nextUpdate.before(date));
+        }
+
+        boolean isRevoked(BigInteger serialNumber) {
+            return revokedSerials.contains(serialNumber);
+        }
+
+        /**
+         * Return true if the CRL has been signed by the key of one of the given certificates, which
+         * must be allowed to sign CRLs
+         */
+        boolean isSignedBy(Collection<X509Certificate> issuerCerts) {
+            for (X509Certificate issuerCert : issuerCerts) {
+                boolean[] keyUsage = issuerCert.getKeyUsage();
+                if (keyUsage != null && (keyUsage.length <= CRL_SIGN || !keyUsage[CRL_SIGN])) {
+                    continue;
+                }
+                PublicKey key = issuerCert.getPublicKey();
+                if (verifiedKeys.contains(key)) {
+                    return true;
+                }
+                try {
+                    crl.verify(key);
+                    verifiedKeys.add(key);
+                    return true;
+                } catch (GeneralSecurityException ex) {
+                    LOG.debug("The CRL of {} is not signed by the key of {}: {}", getIssuer(),
+                              issuerCert.getSubjectX500Principal(), ex.getMessage());
+                }
+            }
+            return false;
+        }
+    }
+}
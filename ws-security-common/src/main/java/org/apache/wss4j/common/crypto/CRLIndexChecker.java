@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.Certificate;
+import java.security.cert.PKIXCertPathChecker;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * A PKIXCertPathChecker that checks the certificates of a path against a CRLIndex, instead of having the
+ * PKIX CertPathValidator search the CRLs. The certificates are checked from the trust anchor to the target,
+ * so that the issuer of each certificate, which must have signed its CRL, is either a trust anchor or the
+ * certificate that was checked before it.
+ */
+class CRLIndexChecker extends PKIXCertPathChecker {
+
+    private final CRLIndex crlIndex;
+    private final Map<X500Principal, List<X509Certificate>> trustedCerts;
+    private X509Certificate previousCert;
+
+    CRLIndexChecker(CRLIndex crlIndex, Set<TrustAnchor> trustAnchors) {
+        this.crlIndex = crlIndex;
+        trustedCerts = new HashMap<>();
+        for (TrustAnchor trustAnchor : trustAnchors) {
+            X509Certificate trustedCert = trustAnchor.getTrustedCert();
+            if (trustedCert != null) {
+                trustedCerts.computeIfAbsent(trustedCert.getSubjectX500Principal(), k -> new ArrayList<>(1))
+                    .add(trustedCert);
+            }
+        }
+    }
+
+    @Override
+    public void init(boolean forward) throws CertPathValidatorException {
+        if (forward) {
+            throw new CertPathValidatorException("Forward checking is not supported");
+        }
+        previousCert = null;
+    }
+
+    @Override
+    public boolean isForwardCheckingSupported() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getSupportedExtensions() {
+        return null;
+    }
+
+    @Override
+    public void check(Certificate cert, Collection<String> unresolvedCritExts) throws CertPathValidatorException {
+        X509Certificate x509Cert = (X509Certificate) cert;
+        Collection<X509Certificate> issuerCerts;
+        if (previousCert == null) {
+            issuerCerts = trustedCerts.get(x509Cert.getIssuerX500Principal());
+            if (issuerCerts == null) {
+                issuerCerts = Collections.emptyList();
+            }
+        } else {
+            issuerCerts = Collections.singletonList(previousCert);
+        }
+        previousCert = x509Cert;
+        crlIndex.check(x509Cert, issuerCerts, new Date());
+    }
+}
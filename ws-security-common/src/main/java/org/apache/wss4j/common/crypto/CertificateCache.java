@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
+
+/**
+ * A cache of the certificates that a Crypto implementation has parsed from the bytes of a BinarySecurityToken
+ * or a similar encoding, so that the certificates of a sender that has been seen before are not parsed again.
+ * The parsed certificates are cached by the SHA-256 digest of the bytes they were parsed from. The Subject Key
+ * Identifier and the SHA-1 thumbprint of a cached certificate are cached with it once they are first computed.
+ *
+ * When the cache is full, the least recently used entry is evicted. The certificates are only valid for the
+ * CertificateFactory that parsed them, so the cache must be cleared when the CertificateFactory changes.
+ */
+public class CertificateCache {
+
+    /**
+     * The default maximum number of cached encodings
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * The encoding of a single certificate
+     */
+    static final byte CERTIFICATE = 1;
+
+    /**
+     * The encoding of a certificate path
+     */
+    static final byte CERT_PATH = 2;
+
+    private static final EnginePool<MessageDigest> SHA256_POOL = EnginePool.getMessageDigestPool("SHA-256");
+
+    private final Map<ByteBuffer, X509Certificate[]> certificates;
+    private final Map<X509Certificate, Derived> derived;
+
+    public CertificateCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of cached encodings
+     */
+    public CertificateCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maxSize parameter must be positive");
+        }
+        certificates = new LinkedHashMap<ByteBuffer, X509Certificate[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, X509Certificate[]> eldest) {
+                return size() > maxSize;
+            }
+        };
+        derived = new LinkedHashMap<X509Certificate, Derived>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<X509Certificate, Derived> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Create the key under which the certificates parsed from the given bytes are cached
+     * @param type The type of the encoding, CERTIFICATE or CERT_PATH
+     * @param data The bytes
+     */
+    static ByteBuffer createKey(byte type, byte[] data) throws WSSecurityException {
+        MessageDigest sha;
+        try {
+            sha = SHA256_POOL.get();
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+        try {
+            sha.update(type);
+            return ByteBuffer.wrap(sha.digest(data));
+        } finally {
+            SHA256_POOL.release(sha);
+        }
+    }
+
+    /**
+     * Get the certificates that were parsed from the bytes with the given key, or null if they are not cached
+     */
+    synchronized X509Certificate[] get(ByteBuffer key) {
+        X509Certificate[] certs = certificates.get(key);
+        return certs == null ? null : certs.clone();
+    }
+
+    /**
+     * Cache the certificates that were parsed from the bytes with the given key
+     */
+    synchronized void put(ByteBuffer key, X509Certificate[] certs) {
+        certificates.put(key, certs.clone());
+        for (X509Certificate cert : certs) {
+            derived.putIfAbsent(cert, new Derived());
+        }
+    }
+
+    /**
+     * Get the Subject Key Identifier of a cached certificate, or null if it is not known
+     */
+    byte[] getSKI(X509Certificate cert) {
+        Derived values = getDerived(cert);
+        byte[] ski = values == null ? null : values.ski;
+        return ski == null ? null : ski.clone();
+    }
+
+    /**
+     * Cache the Subject Key Identifier of a certificate, if the certificate is cached
+     */
+    void putSKI(X509Certificate cert, byte[] ski) {
+        Derived values = getDerived(cert);
+        if (values != null) {
+            values.ski = ski.clone();
+        }
+    }
+
+    /**
+     * Get the SHA-1 thumbprint of a cached certificate, or null if it is not known
+     */
+    byte[] getThumbprint(X509Certificate cert) {
+        Derived values = getDerived(cert);
+        byte[] thumbprint = values == null ? null : values.thumbprint;
+        return thumbprint == null ? null : thumbprint.clone();
+    }
+
+    /**
+     * Cache the SHA-1 thumbprint of a certificate, if the certificate is cached
+     */
+    void putThumbprint(X509Certificate cert, byte[] thumbprint) {
+        Derived values = getDerived(cert);
+        if (values != null) {
+            values.thumbprint = thumbprint.clone();
+        }
+    }
+
+    /**
+     * Remove all of the cached certificates
+     */
+    public synchronized void clear() {
+        certificates.clear();
+        derived.clear();
+    }
+
+    /**
+     * Return the number of cached encodings
+     */
+    public synchronized int size() {
+        return certificates.size();
+    }
+
+    private synchronized Derived getDerived(X509Certificate cert) {
+        return derived.get(cert);
+    }
+
+    /**
+     * The values that are derived from a certificate
+     */
+    private static final class Derived {
+        private volatile byte[] ski;
+        private volatile byte[] thumbprint;
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
+
+/**
+ * An immutable set of hash indexes over the X509 certificate (chain) entries of a KeyStore, so that a
+ * certificate can be found by its issuer and serial number, SHA-1 thumbprint, Subject Key Identifier,
+ * Subject DN or public key without enumerating the aliases of the KeyStore. Where several entries share
+ * the same key, the lookups return the first one in the order of the aliases of the KeyStore, as a linear
+ * search would.
+ *
+ * The index does not see changes that are made to the KeyStore after it has been built, other than
+ * changes to the number of entries, which cause {@link #isCurrent(KeyStore)} to return false.
+ */
+class CertificateIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CertificateIndex.class);
+
+    private static final EnginePool<MessageDigest> SHA1_POOL = EnginePool.getMessageDigestPool("SHA1");
+
+    private final KeyStore store;
+    private final int size;
+
+    private final Map<IssuerSerial, Entry> issuerSerialIndex = new HashMap<>();
+    private final Map<ByteBuffer, Entry> thumbprintIndex = new HashMap<>();
+    private final Map<ByteBuffer, Entry> skiIndex = new HashMap<>();
+    private final Map<ByteBuffer, Entry> keyIdentifierIndex = new HashMap<>();
+    private final Map<Object, List<Entry>> subjectIndex = new HashMap<>();
+    private final Map<ByteBuffer, Entry> publicKeyIndex = new HashMap<>();
+
+    /**
+     * Build the indexes for the given KeyStore
+     * @param store The KeyStore to index
+     * @param crypto The Crypto instance that is used to compute the Subject Key Identifiers and
+     *               to normalize the DNs of the certificates
+     */
+    CertificateIndex(KeyStore store, CryptoBase crypto) throws KeyStoreException, WSSecurityException {
+        this.store = store;
+        size = store.size();
+
+        MessageDigest sha = getSHA1();
+        try {
+            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
+                String alias = e.nextElement();
+                Certificate[] certs = store.getCertificateChain(alias);
+                if (certs == null || certs.length == 0) {
+                    // no cert chain, so lets check if getCertificate gives us a result.
+                    Certificate cert = store.getCertificate(alias);
+                    if (cert != null) {
+                        certs = new Certificate[]{cert};
+                    }
+                }
+
+                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
+                    index(new Entry(alias, certs), crypto, sha);
+                }
+            }
+        } finally {
+            SHA1_POOL.release(sha);
+        }
+        LOG.debug("Indexed {} certificates of {} entries", thumbprintIndex.size(), size);
+    }
+
+    /**
+     * Return true if the index was built from the given KeyStore, and the number of entries of the
+     * KeyStore has not changed since.
+     */
+    boolean isCurrent(KeyStore keyStore) throws KeyStoreException {
+        return keyStore == store && keyStore.size() == size;
+    }
+
+    /**
+     * Get the entry whose certificate has the given issuer and serial number
+     * @param issuerName The issuer DN, as returned by {@link CryptoBase#getCanonicalName(String)}
+     */
+    Entry getByIssuerSerial(Object issuerName, BigInteger serialNumber) {
+        return issuerSerialIndex.get(new IssuerSerial(issuerName, serialNumber));
+    }
+
+    /**
+     * Get the entry whose certificate has the given SHA-1 thumbprint
+     */
+    Entry getByThumbprint(byte[] thumbprint) {
+        return thumbprintIndex.get(ByteBuffer.wrap(thumbprint));
+    }
+
+    /**
+     * Get the entry for the given certificate
+     * @param thumbprint The SHA-1 thumbprint of the certificate
+     */
+    Entry getByCertificate(Certificate cert, byte[] thumbprint) {
+        Entry entry = thumbprintIndex.get(ByteBuffer.wrap(thumbprint));
+        if (entry != null && entry.getCertificates()[0].equals(cert)) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Get the entry whose certificate has the given Subject Key Identifier bytes, as returned by
+     * {@link CryptoBase#getSKIBytesFromCert(X509Certificate)}
+     */
+    Entry getBySKI(byte[] skiBytes) {
+        return skiIndex.get(ByteBuffer.wrap(skiBytes));
+    }
+
+    /**
+     * Get the entry whose certificate has a Subject Key Identifier extension with the given key identifier,
+     * for example the key identifier of the Authority Key Identifier extension of a certificate it issued
+     */
+    Entry getByKeyIdentifier(byte[] keyIdentifier) {
+        return keyIdentifierIndex.get(ByteBuffer.wrap(keyIdentifier));
+    }
+
+    /**
+     * Get the entries whose certificate has the given Subject DN
+     * @param subjectName The subject DN, as returned by {@link CryptoBase#getCanonicalName(String)}
+     */
+    List<Entry> getBySubject(Object subjectName) {
+        List<Entry> entries = subjectIndex.get(subjectName);
+        return entries == null ? Collections.<Entry>emptyList() : entries;
+    }
+
+    /**
+     * Get the entry whose certificate has the given public key
+     */
+    Entry getByPublicKey(PublicKey publicKey) {
+        byte[] encoded = publicKey.getEncoded();
+        if (encoded == null) {
+            return null;
+        }
+        Entry entry = publicKeyIndex.get(ByteBuffer.wrap(encoded));
+        if (entry != null && publicKey.equals(entry.getCertificates()[0].getPublicKey())) {
+            return entry;
+        }
+        return null;
+    }
+
+    private void index(Entry entry, CryptoBase crypto, MessageDigest sha) throws WSSecurityException {
+        X509Certificate cert = (X509Certificate) entry.getCertificates()[0];
+
+        Object issuerName = crypto.getCanonicalName(cert.getIssuerX500Principal());
+        issuerSerialIndex.putIfAbsent(new IssuerSerial(issuerName, cert.getSerialNumber()), entry);
+
+        thumbprintIndex.putIfAbsent(ByteBuffer.wrap(getThumbprint(cert, sha)), entry);
+
+        try {
+            skiIndex.putIfAbsent(ByteBuffer.wrap(crypto.getSKIBytesFromCert(cert)), entry);
+        } catch (WSSecurityException ex) {
+            LOG.debug("No Subject Key Identifier available for {}: {}", entry.getAlias(), ex.getMessage());
+        }
+        byte[] keyIdentifier = getKeyIdentifier(cert);
+        if (keyIdentifier != null) {
+            keyIdentifierIndex.putIfAbsent(ByteBuffer.wrap(keyIdentifier), entry);
+        }
+
+        Object subjectName = crypto.getCanonicalName(cert.getSubjectX500Principal());
+        subjectIndex.computeIfAbsent(subjectName, k -> new ArrayList<>(1)).add(entry);
+
+        byte[] publicKey = cert.getPublicKey().getEncoded();
+        if (publicKey != null) {
+            publicKeyIndex.putIfAbsent(ByteBuffer.wrap(publicKey), entry);
+        }
+    }
+
+    /**
+     * Get the key identifier of the Subject Key Identifier extension of the certificate, or null if the
+     * certificate has no such extension
+     */
+    private static byte[] getKeyIdentifier(X509Certificate cert) {
+        byte[] derEncodedValue = cert.getExtensionValue(CryptoBase.SKI_OID);
+        if (derEncodedValue == null) {
+            return null;
+        }
+        try {
+            DERDecoder extVal = new DERDecoder(derEncodedValue);
+            extVal.expect(DERDecoder.TYPE_OCTET_STRING);  // ExtensionValue OCTET STRING
+            extVal.getLength();
+            extVal.expect(DERDecoder.TYPE_OCTET_STRING);  // KeyIdentifier OCTET STRING
+            int keyIDLen = extVal.getLength();
+            return extVal.getBytes(keyIDLen);
+        } catch (WSSecurityException ex) {
+            LOG.debug("Invalid Subject Key Identifier extension: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the SHA-1 thumbprint of the given certificate
+     */
+    static byte[] getThumbprint(Certificate cert) throws WSSecurityException {
+        MessageDigest sha = getSHA1();
+        try {
+            return getThumbprint(cert, sha);
+        } finally {
+            SHA1_POOL.release(sha);
+        }
+    }
+
+    private static byte[] getThumbprint(Certificate cert, MessageDigest sha) throws WSSecurityException {
+        try {
+            return sha.digest(cert.getEncoded());
+        } catch (CertificateEncodingException ex) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+            );
+        }
+    }
+
+    private static MessageDigest getSHA1() throws WSSecurityException {
+        try {
+            return SHA1_POOL.get();
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+    }
+
+    /**
+     * A certificate (chain) of the KeyStore, together with its alias
+     */
+    static final class Entry {
+        private final String alias;
+        private final Certificate[] certificates;
+
+        Entry(String alias, Certificate[] certificates) {
+            this.alias = alias;
+            this.certificates = certificates;
+        }
+
+        String getAlias() {
+            return alias;
+        }
+
+        Certificate[] getCertificates() {
+            return certificates;
+        }
+    }
+
+    private static final class IssuerSerial {
+        private final Object issuerName;
+        private final BigInteger serialNumber;
+
+        IssuerSerial(Object issuerName, BigInteger serialNumber) {
+            this.issuerName = issuerName;
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * issuerName.hashCode() + serialNumber.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IssuerSerial)) {
+                return false;
+            }
+            IssuerSerial other = (IssuerSerial) obj;
+            return serialNumber.equals(other.serialNumber) && issuerName.equals(other.issuerName);
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.wss4j.common.crypto;
 
 import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -38,9 +39,9 @@ import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.CallbackHandler;
-import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 
 /**
  * A Crypto implementation based on a simple array of X509Certificate(s). PrivateKeys are not
@@ -283,10 +284,29 @@ public class CertificateStore extends CryptoBase {
     @Override
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation, Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        ValidatedCertPathCache cache = getValidatedCertPathCache();
+        ValidatedCertPathCache.Key key = null;
+        if (cache != null && certs != null && certs.length > 0) {
+            key = ValidatedCertPathCache.createKey(
+                certs, enableRevocation, subjectCertConstraints, issuerCertConstraints
+            );
+            // The trusted certs never change, so they represent the state of the trust material
+            if (cache.contains(key, trustedCerts)) {
+                LOG.debug(
+                    "Cached trust for certificate with {}", certs[0].getSubjectX500Principal().getName()
+                );
+                return;
+            }
+        }
+
         verifyTrust(certs, enableRevocation, subjectCertConstraints);
         if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (key != null) {
+            cache.add(key, trustedCerts, certs, null);
+        }
     }
 
     /**
@@ -326,26 +346,11 @@ public class CertificateStore extends CryptoBase {
         String issuer,
         BigInteger serialNumber
     ) throws WSSecurityException {
-        //
-        // Convert the subject DN to a java X500Principal object first. This is to ensure
-        // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
-        // Then convert it to a BouncyCastle X509Name, which will order the attributes of
-        // the DN in a particular way (see WSS-168). If the conversion to an X500Principal
-        // object fails (e.g. if the DN contains "E" instead of "EMAILADDRESS"), then fall
-        // back on a direct conversion to a BC X509Name
-        //
-        Object issuerName = null;
-        try {
-            X500Principal issuerRDN = new X500Principal(issuer);
-            issuerName = createBCX509Name(issuerRDN.getName());
-        } catch (java.lang.IllegalArgumentException ex) {
-            issuerName = createBCX509Name(issuer);
-        }
+        Object issuerName = getCanonicalName(issuer);
 
         for (X509Certificate trustedCert : trustedCerts) {
             if (trustedCert.getSerialNumber().compareTo(serialNumber) == 0) {
-                Object certName =
-                    createBCX509Name(trustedCert.getIssuerX500Principal().getName());
+                Object certName = getCanonicalName(trustedCert.getIssuerX500Principal());
                 if (certName.equals(issuerName)) {
                     return new X509Certificate[]{trustedCert};
                 }
@@ -369,26 +374,31 @@ public class CertificateStore extends CryptoBase {
             return null;
         }
 
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA1");
         try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
+            sha = pool.get();
+        } catch (GeneralSecurityException e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
         }
-        for (X509Certificate trustedCert : trustedCerts) {
-            try {
-                sha.update(trustedCert.getEncoded());
-            } catch (CertificateEncodingException ex) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                );
-            }
-            byte[] data = sha.digest();
+        try {
+            for (X509Certificate trustedCert : trustedCerts) {
+                try {
+                    sha.update(trustedCert.getEncoded());
+                } catch (CertificateEncodingException ex) {
+                    throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+                    );
+                }
+                byte[] data = sha.digest();
 
-            if (Arrays.equals(data, thumb)) {
-                return new X509Certificate[]{trustedCert};
+                if (Arrays.equals(data, thumb)) {
+                    return new X509Certificate[]{trustedCert};
+                }
             }
+        } finally {
+            pool.release(sha);
         }
         return null;
     }
@@ -421,26 +431,11 @@ public class CertificateStore extends CryptoBase {
      */
     private X509Certificate[] getX509CertificatesSubjectDN(String subjectDN)
         throws WSSecurityException {
-        //
-        // Convert the subject DN to a java X500Principal object first. This is to ensure
-        // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
-        // Then convert it to a BouncyCastle X509Name, which will order the attributes of
-        // the DN in a particular way (see WSS-168). If the conversion to an X500Principal
-        // object fails (e.g. if the DN contains "E" instead of "EMAILADDRESS"), then fall
-        // back on a direct conversion to a BC X509Name
-        //
-        Object subject;
-        try {
-            X500Principal subjectRDN = new X500Principal(subjectDN);
-            subject = createBCX509Name(subjectRDN.getName());
-        } catch (java.lang.IllegalArgumentException ex) {
-            subject = createBCX509Name(subjectDN);
-        }
+        Object subject = getCanonicalName(subjectDN);
 
         if (trustedCerts != null) {
             for (X509Certificate trustedCert : trustedCerts) {
-                X500Principal foundRDN = trustedCert.getSubjectX500Principal();
-                Object certName = createBCX509Name(foundRDN.getName());
+                Object certName = getCanonicalName(trustedCert.getSubjectX500Principal());
 
                 if (subject.equals(certName)) {
                     return new X509Certificate[]{trustedCert};
@@ -18,6 +18,8 @@
  */
 package org.apache.wss4j.common.crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.security.PrivateKey;
 import java.security.PublicKey;
@@ -110,6 +112,23 @@ public interface Crypto {
      */
     X509Certificate loadCertificate(InputStream in) throws WSSecurityException;
 
+    /**
+     * Load a X509Certificate from a byte array.
+     *
+     * @param data The <code>byte</code> array containing the X509 data
+     * @return An X509 certificate
+     * @throws WSSecurityException
+     */
+    default X509Certificate loadCertificate(byte[] data) throws WSSecurityException {
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            return loadCertificate(in);
+        } catch (IOException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
+            );
+        }
+    }
+
     /**
      * Reads the SubjectKeyIdentifier information from the certificate.
      * <p/>
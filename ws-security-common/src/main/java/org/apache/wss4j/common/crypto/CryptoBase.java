@@ -23,6 +23,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertPath;
@@ -34,12 +35,12 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 
 /**
  * This Abstract Base Class implements the accessor and keystore-independent methods and
@@ -64,6 +65,9 @@ public abstract class CryptoBase implements Crypto {
     private String defaultAlias;
     private String cryptoProvider;
     private String trustProvider;
+    private ValidatedCertPathCache validatedCertPathCache;
+    private CertificateCache certificateCache = new CertificateCache();
+    private DistinguishedNameCache nameCache = new DistinguishedNameCache();
 
     static {
         Constructor<?> cons = null;
@@ -146,6 +150,9 @@ public abstract class CryptoBase implements Crypto {
      */
     public void setCertificateFactory(CertificateFactory certFactory) {
         this.certificateFactory = certFactory;
+        if (certificateCache != null) {
+            certificateCache.clear();
+        }
     }
 
     /**
@@ -180,6 +187,66 @@ public abstract class CryptoBase implements Crypto {
         return certificateFactory;
     }
 
+    /**
+     * Get the cache of certificate chains that have been found to be trusted, if any
+     *
+     * @return the cache of certificate chains that have been found to be trusted, or null if
+     *         certificate chains are validated every time
+     */
+    public ValidatedCertPathCache getValidatedCertPathCache() {
+        return validatedCertPathCache;
+    }
+
+    /**
+     * Set a cache of certificate chains that have been found to be trusted, so that a chain that
+     * has been seen before does not need to be validated again. It is not used by default.
+     *
+     * @param validatedCertPathCache the cache of certificate chains, or null to disable caching
+     */
+    public void setValidatedCertPathCache(ValidatedCertPathCache validatedCertPathCache) {
+        this.validatedCertPathCache = validatedCertPathCache;
+    }
+
+    /**
+     * Get the cache of the certificates that have been parsed from bytes, if any
+     *
+     * @return the cache of parsed certificates, or null if certificates are parsed every time
+     */
+    public CertificateCache getCertificateCache() {
+        return certificateCache;
+    }
+
+    /**
+     * Set a cache of the certificates that have been parsed from bytes, so that the certificates
+     * of a sender that has been seen before are not parsed again. A cache of
+     * CertificateCache.DEFAULT_MAX_SIZE encodings is used by default.
+     *
+     * @param certificateCache the cache of parsed certificates, or null to disable caching
+     */
+    public void setCertificateCache(CertificateCache certificateCache) {
+        this.certificateCache = certificateCache;
+    }
+
+    /**
+     * Get the cache of the canonical forms of distinguished names, if any
+     *
+     * @return the cache of canonical names, or null if names are parsed every time
+     */
+    public DistinguishedNameCache getNameCache() {
+        return nameCache;
+    }
+
+    /**
+     * Set a cache of the canonical forms of distinguished names, so that the issuer and subject DNs
+     * that are compared are not parsed again every time. A cache of
+     * DistinguishedNameCache.DEFAULT_MAX_SIZE names is used by default.
+     *
+     * @param nameCache the cache of canonical names, or null to disable caching
+     */
+    public void setNameCache(DistinguishedNameCache nameCache) {
+        this.nameCache = nameCache;
+    }
+
     /**
      * Load a X509Certificate from the input stream.
      *
@@ -198,6 +265,40 @@ public abstract class CryptoBase implements Crypto {
         }
     }
 
+    /**
+     * Load a X509Certificate from a byte array. The certificate is taken from the CertificateCache
+     * if the same bytes have been parsed before.
+     *
+     * @param data The <code>byte</code> array containing the X509Certificate
+     * @return An X509 certificate
+     * @throws WSSecurityException
+     */
+    @Override
+    public X509Certificate loadCertificate(byte[] data) throws WSSecurityException {
+        CertificateCache cache = certificateCache;
+        ByteBuffer key = null;
+        if (cache != null) {
+            key = CertificateCache.createKey(CertificateCache.CERTIFICATE, data);
+            X509Certificate[] certs = cache.get(key);
+            if (certs != null) {
+                return certs[0];
+            }
+        }
+
+        X509Certificate cert;
+        try (InputStream in = new ByteArrayInputStream(data)) {
+            cert = loadCertificate(in);
+        } catch (IOException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
+            );
+        }
+        if (cache != null) {
+            cache.put(key, new X509Certificate[] {cert});
+        }
+        return cert;
+    }
+
     /**
      * Reads the SubjectKeyIdentifier information from the certificate.
      * <p/>
@@ -206,11 +307,45 @@ public abstract class CryptoBase implements Crypto {
      * SHA-1 hash value of the public key. The second method described
      * in RFC3280 is not support. Also only RSA public keys are supported.
      * If we cannot compute the SKI throw a WSSecurityException.
+     * The SKI of a certificate in the CertificateCache is cached with it.
      *
      * @param cert The certificate to read SKI
      * @return The byte array containing the binary SKI data
      */
     public byte[] getSKIBytesFromCert(X509Certificate cert) throws WSSecurityException {
+        CertificateCache cache = certificateCache;
+        if (cache == null) {
+            return computeSKIBytes(cert);
+        }
+        byte[] ski = cache.getSKI(cert);
+        if (ski == null) {
+            ski = computeSKIBytes(cert);
+            cache.putSKI(cert, ski);
+        }
+        return ski;
+    }
+
+    /**
+     * Get the SHA-1 thumbprint of a certificate, that is the SHA-1 digest of its encoding. The
+     * thumbprint of a certificate in the CertificateCache is cached with it.
+     *
+     * @param cert The certificate
+     * @return The thumbprint of the certificate
+     * @throws WSSecurityException
+     */
+    public byte[] getThumbprint(X509Certificate cert) throws WSSecurityException {
+        CertificateCache cache = certificateCache;
+        byte[] thumbprint = cache == null ? null : cache.getThumbprint(cert);
+        if (thumbprint == null) {
+            thumbprint = CertificateIndex.getThumbprint(cert);
+            if (cache != null) {
+                cache.putThumbprint(cert, thumbprint);
+            }
+        }
+        return thumbprint;
+    }
+
+    private static byte[] computeSKIBytes(X509Certificate cert) throws WSSecurityException {
         //
         // Gets the DER-encoded OCTET string for the extension value (extnValue)
         // identified by the passed-in oid String. The oid string is represented
@@ -222,8 +357,11 @@ public abstract class CryptoBase implements Crypto {
             X509SubjectPublicKeyInfo spki = new X509SubjectPublicKeyInfo(cert.getPublicKey());
             byte[] value = spki.getSubjectPublicKey();
             try {
-                MessageDigest digest = MessageDigest.getInstance("SHA-1");
-                return digest.digest(value);
+                EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-1");
+                MessageDigest digest = pool.get();
+                byte[] ski = digest.digest(value);
+                pool.release(digest);
+                return ski;
             } catch (Exception ex) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.UNSUPPORTED_SECURITY_TOKEN, ex, "noSKIHandling",
@@ -278,6 +416,16 @@ public abstract class CryptoBase implements Crypto {
      */
     public X509Certificate[] getCertificatesFromBytes(byte[] data)
         throws WSSecurityException {
+        CertificateCache cache = certificateCache;
+        ByteBuffer key = null;
+        if (cache != null) {
+            key = CertificateCache.createKey(CertificateCache.CERT_PATH, data);
+            X509Certificate[] certs = cache.get(key);
+            if (certs != null) {
+                return certs;
+            }
+        }
+
         CertPath path = null;
         try (InputStream in = new ByteArrayInputStream(data)) {
             path = getCertificateFactory().generateCertPath(in);
@@ -293,6 +441,9 @@ public abstract class CryptoBase implements Crypto {
         for (Iterator<?> iterator = l.iterator(); iterator.hasNext();) {
             certs[i++] = (X509Certificate) iterator.next();
         }
+        if (cache != null) {
+            cache.put(key, certs);
+        }
         return certs;
     }
 
@@ -307,6 +458,52 @@ public abstract class CryptoBase implements Crypto {
         return new X500Principal(s);
     }
 
+    /**
+     * Get the canonical form of an X500Principal, as returned by {@link #createBCX509Name(String)}
+     * for its RFC 2253 name. The canonical form is taken from the DistinguishedNameCache, if it is
+     * cached there.
+     */
+    protected Object getCanonicalName(X500Principal principal) {
+        DistinguishedNameCache cache = nameCache;
+        if (cache == null) {
+            return createBCX509Name(principal.getName());
+        }
+        ByteBuffer key = ByteBuffer.wrap(principal.getEncoded());
+        Object name = cache.get(key);
+        if (name == null) {
+            name = cache.put(key, createBCX509Name(principal.getName()));
+        }
+        return name;
+    }
+
+    /**
+     * Get the canonical form of a DN String. The canonical form is taken from the
+     * DistinguishedNameCache, if it is cached there.
+     */
+    protected Object getCanonicalName(String dn) {
+        DistinguishedNameCache cache = nameCache;
+        Object name = cache == null ? null : cache.get(dn);
+        if (name != null) {
+            return name;
+        }
+
+        //
+        // Convert the DN to a java X500Principal object first. This is to ensure
+        // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
+        // Then convert it to a BouncyCastle X509Name, which will order the attributes of
+        // the DN in a particular way (see WSS-168). If the conversion to an X500Principal
+        // object fails (e.g. if the DN contains "E" instead of "EMAILADDRESS"), then fall
+        // back on a direct conversion to a BC X509Name
+        //
+        try {
+            X500Principal principal = new X500Principal(dn);
+            name = createBCX509Name(principal.getName());
+        } catch (java.lang.IllegalArgumentException ex) {
+            name = createBCX509Name(dn);
+        }
+        return cache == null ? name : cache.put(dn, name);
+    }
+
     /**
      * @return      true if the certificate's SubjectDN matches the constraints defined in the
      *              subject DNConstraints; false, otherwise. The certificate subject DN only
@@ -348,7 +545,8 @@ public abstract class CryptoBase implements Crypto {
     /**
      * @return      true if the provided name matches the constraints defined in the
      *              subject DNConstraints; false, otherwise. The certificate (subject) DN only
-     *              has to match ONE of the (subject) cert constraints (not all).
+     *              has to match ONE of the (subject) cert constraints (not all). If the constraints
+     *              are a DNPatternMatcher, it is used to match them.
      */
     protected boolean
     matchesName(
@@ -359,18 +557,7 @@ public abstract class CryptoBase implements Crypto {
                 LOG.debug("The name is null so no constraints matching was possible");
                 return false;
             }
-            boolean subjectMatch = false;
-            for (Pattern subjectDNPattern : patterns) {
-                final Matcher matcher = subjectDNPattern.matcher(name);
-                if (matcher.matches()) {
-                    LOG.debug("Name {} matches with pattern {}", name, subjectDNPattern);
-                    subjectMatch = true;
-                    break;
-                }
-            }
-            if (!subjectMatch) {
-                return false;
-            }
+            return DNPatternMatcher.matches(name, patterns);
         }
 
         return true;
@@ -0,0 +1,388 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A process-wide registry of the Crypto instances that are created from Properties, so that the endpoints
+ * that use the same crypto configuration share a single Crypto instance, and the keystore and truststore of
+ * the configuration are only loaded (and their passwords only decrypted) once.
+ *
+ * The configurations are canonicalized before they are compared: the properties are sorted, their values are
+ * trimmed, the legacy "org.apache.ws.security" property names are mapped to the current ones, and the
+ * PasswordEncryptor is only taken into account if one of the values is an encrypted password. The ClassLoader
+ * that the keystores are loaded with is always part of the configuration.
+ *
+ * A Crypto instance is obtained with {@link #acquire(Properties, ClassLoader, PasswordEncryptor)}, which counts
+ * a reference to it, and given back with {@link #release(Crypto)} once it is no longer used. A Crypto that is
+ * no longer referenced stays in the registry, so that it can be acquired again, until more than the maximum
+ * number of idle instances are held, in which case the least recently released one is evicted. The shared
+ * instances must not be reconfigured by the code that acquires them.
+ */
+public final class CryptoRegistry {
+
+    /**
+     * The default maximum number of Crypto instances that are held when they are no longer referenced
+     */
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CryptoRegistry.class);
+
+    private static final String PROVIDER = "org.apache.wss4j.crypto.provider";
+    private static final String OLD_PROVIDER = "org.apache.ws.security.crypto.provider";
+    private static final String OLD_MERLIN = "org.apache.ws.security.components.crypto.Merlin";
+
+    private static final CryptoRegistry INSTANCE = new CryptoRegistry();
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final Map<Crypto, Entry> entriesByCrypto = new IdentityHashMap<>();
+    private final Map<Key, Entry> idleEntries = new LinkedHashMap<>();
+    private int maxIdle;
+
+    public CryptoRegistry() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdle The maximum number of Crypto instances that are held when they are no longer referenced
+     */
+    public CryptoRegistry(int maxIdle) {
+        setMaxIdle(maxIdle);
+    }
+
+    /**
+     * Get the process-wide registry
+     */
+    public static CryptoRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the shared Crypto instance of the given configuration, and create it via
+     * {@link CryptoFactory#getInstance(Properties, ClassLoader, PasswordEncryptor)} if there is none.
+     * The Crypto instance must be given back with {@link #release(Crypto)} once it is no longer used.
+     *
+     * @param properties The Properties that are forwarded to the crypto implementation
+     * @param classLoader The class loader to use
+     * @param passwordEncryptor The PasswordEncryptor to use to decrypt encrypted passwords
+     * @return the shared Crypto instance
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public Crypto acquire(
+        Properties properties,
+        ClassLoader classLoader,
+        PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        checkProperties(properties);
+        Properties snapshot = copy(properties);
+        String cryptoClassName = snapshot.getProperty(PROVIDER);
+        if (cryptoClassName == null) {
+            cryptoClassName = snapshot.getProperty(OLD_PROVIDER);
+        }
+        if (cryptoClassName == null || OLD_MERLIN.equals(cryptoClassName.trim())) {
+            cryptoClassName = Merlin.class.getName();
+        }
+        Key key = new Key(cryptoClassName.trim(), snapshot, classLoader, passwordEncryptor);
+        return acquire(key, () -> CryptoFactory.getInstance(snapshot, classLoader, passwordEncryptor));
+    }
+
+    /**
+     * Get the shared instance of the given Crypto class for the given configuration, and create it with
+     * the (Properties, ClassLoader, PasswordEncryptor) constructor of the class if there is none.
+     * The Crypto instance must be given back with {@link #release(Crypto)} once it is no longer used.
+     *
+     * @param cryptoClass The Crypto implementation
+     * @param properties The Properties that are forwarded to the crypto implementation
+     * @param classLoader The class loader to use
+     * @param passwordEncryptor The PasswordEncryptor to use to decrypt encrypted passwords
+     * @return the shared Crypto instance
+     * @throws WSSecurityException if the Crypto instance cannot be created
+     */
+    public <T extends Crypto> T acquire(
+        Class<T> cryptoClass,
+        Properties properties,
+        ClassLoader classLoader,
+        PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException {
+        checkProperties(properties);
+        Properties snapshot = copy(properties);
+        Key key = new Key(cryptoClass.getName(), snapshot, classLoader, passwordEncryptor);
+        Crypto crypto = acquire(key, () -> {
+            try {
+                Constructor<T> ctor =
+                    cryptoClass.getConstructor(Properties.class, ClassLoader.class, PasswordEncryptor.class);
+                return ctor.newInstance(snapshot, classLoader, passwordEncryptor);
+            } catch (java.lang.Exception e) {
+                LOG.debug("Unable to instantiate: " + cryptoClass.getName(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e,
+                        "empty", new Object[] {cryptoClass + " cannot create instance"});
+            }
+        });
+        if (!cryptoClass.isInstance(crypto)) {
+            // A different class of the same name
+            release(crypto);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                    "empty", new Object[] {cryptoClass + " cannot create instance"});
+        }
+        return cryptoClass.cast(crypto);
+    }
+
+    /**
+     * Give back a Crypto instance that was obtained from this registry. A Crypto instance that was not obtained
+     * from this registry, or that has already been evicted, is ignored.
+     * @return whether the Crypto instance was held by this registry
+     */
+    public boolean release(Crypto crypto) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = entriesByCrypto.get(crypto);
+            if (entry == null || entry.references == 0) {
+                return false;
+            }
+            entry.references--;
+            if (entry.references == 0) {
+                idleEntries.put(entry.key, entry);
+                evictIdleEntries(maxIdle, evicted);
+            }
+        }
+        close(evicted);
+        return true;
+    }
+
+    /**
+     * Evict all of the Crypto instances that are no longer referenced
+     */
+    public void clear() {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            evictIdleEntries(0, evicted);
+        }
+        close(evicted);
+    }
+
+    /**
+     * Set the maximum number of Crypto instances that are held when they are no longer referenced
+     */
+    public void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("The maxIdle parameter must not be negative");
+        }
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            this.maxIdle = maxIdle;
+            evictIdleEntries(maxIdle, evicted);
+        }
+        close(evicted);
+    }
+
+    public synchronized int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Return the number of Crypto instances that are held, whether they are referenced or not
+     */
+    public synchronized int size() {
+        return entriesByCrypto.size();
+    }
+
+    /**
+     * Return the number of references to a Crypto instance of this registry
+     */
+    public synchronized int getReferenceCount(Crypto crypto) {
+        Entry entry = entriesByCrypto.get(crypto);
+        return entry == null ? 0 : entry.references;
+    }
+
+    private Crypto acquire(Key key, Factory factory) throws WSSecurityException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+            }
+            idleEntries.remove(key);
+            entry.references++;
+        }
+
+        // The keystores are loaded outside of the lock of the registry, and only once per configuration
+        synchronized (entry) {
+            if (entry.crypto == null) {
+                try {
+                    Crypto crypto = factory.create();
+                    synchronized (this) {
+                        entry.crypto = crypto;
+                        entriesByCrypto.put(crypto, entry);
+                    }
+                } catch (WSSecurityException | RuntimeException e) {
+                    synchronized (this) {
+                        entry.references--;
+                        if (entry.references == 0 && entries.get(key) == entry) {
+                            entries.remove(key);
+                        }
+                    }
+                    throw e;
+                }
+            }
+            return entry.crypto;
+        }
+    }
+
+    private void evictIdleEntries(int max, List<Entry> evicted) {
+        Iterator<Entry> iterator = idleEntries.values().iterator();
+        while (idleEntries.size() > max && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            entries.remove(entry.key);
+            entriesByCrypto.remove(entry.crypto);
+            evicted.add(entry);
+        }
+    }
+
+    private static void close(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            LOG.debug("Evicting the Crypto instance of {}", entry.key.cryptoClassName);
+            if (entry.crypto instanceof Merlin) {
+                ((Merlin)entry.crypto).stopReloading();
+            }
+        }
+    }
+
+    private static void checkProperties(Properties properties) throws WSSecurityException {
+        if (properties == null) {
+            LOG.debug("Cannot load Crypto instance as properties object is null");
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                    "empty", new Object[] {"Cannot load Crypto instance as properties object is null"});
+        }
+    }
+
+    /**
+     * Take a copy of the properties, including their defaults, so that the shared Crypto instance does not
+     * see the later changes of the caller
+     */
+    private static Properties copy(Properties properties) {
+        Properties snapshot = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            snapshot.setProperty(name, properties.getProperty(name));
+        }
+        for (Map.Entry<Object, Object> property : properties.entrySet()) {
+            snapshot.putIfAbsent(property.getKey(), property.getValue());
+        }
+        return snapshot;
+    }
+
+    private interface Factory {
+        Crypto create() throws WSSecurityException;
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private Crypto crypto;
+        private int references;
+
+        Entry(Key key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The canonical form of a crypto configuration
+     */
+    private static final class Key {
+        private final String cryptoClassName;
+        private final SortedMap<String, Object> properties = new TreeMap<>();
+        private final ClassLoader classLoader;
+        private final PasswordEncryptor passwordEncryptor;
+        private final int hashCode;
+
+        Key(String cryptoClassName, Properties snapshot, ClassLoader classLoader, PasswordEncryptor passwordEncryptor) {
+            this.cryptoClassName = cryptoClassName;
+            this.classLoader = classLoader;
+
+            // Merlin reads either the current or the legacy property names, whichever it finds first
+            boolean legacy = true;
+            for (Object name : snapshot.keySet()) {
+                if (name instanceof String && ((String)name).startsWith(Merlin.PREFIX)) {
+                    legacy = false;
+                    break;
+                }
+            }
+            boolean encryptedPassword = false;
+            for (Map.Entry<Object, Object> property : snapshot.entrySet()) {
+                if (!(property.getKey() instanceof String)) {
+                    continue;
+                }
+                String name = (String)property.getKey();
+                if (PROVIDER.equals(name) || OLD_PROVIDER.equals(name)) {
+                    continue;
+                }
+                if (legacy && name.startsWith(Merlin.OLD_PREFIX)) {
+                    name = Merlin.PREFIX + name.substring(Merlin.OLD_PREFIX.length());
+                }
+                Object value = property.getValue();
+                if (value instanceof String) {
+                    value = ((String)value).trim();
+                    encryptedPassword |= ((String)value).startsWith(Merlin.ENCRYPTED_PASSWORD_PREFIX);
+                }
+                properties.put(name, value);
+            }
+            this.passwordEncryptor = encryptedPassword ? passwordEncryptor : null;
+            hashCode = Objects.hash(cryptoClassName, properties, System.identityHashCode(classLoader),
+                                    System.identityHashCode(this.passwordEncryptor));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)object;
+            return hashCode == other.hashCode
+                && classLoader == other.classLoader
+                && passwordEncryptor == other.passwordEncryptor
+                && cryptoClassName.equals(other.cryptoClassName)
+                && properties.equals(other.properties);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled form of a collection of subject or issuer DN constraints. A name matches the constraints if
+ * it matches ONE of the patterns (not all), as with {@link Pattern#matcher(CharSequence)}.matches().
+ *
+ * The patterns with the same flags are combined into a single alternation, so that a name is matched
+ * against the whole collection in one pass. Patterns that cannot be combined, such as patterns with
+ * back references or named groups, are matched on their own. The verdicts for the names that have been
+ * matched are kept in a bounded cache, so that the DN of a known partner is accepted in one lookup.
+ *
+ * A matcher is an unmodifiable collection of its patterns. It should be built once where the constraints
+ * are configured, and passed on as the constraint collection, e.g. to
+ * {@link Crypto#verifyTrust(java.security.cert.X509Certificate[], boolean, Collection, Collection)}.
+ */
+public final class DNPatternMatcher extends AbstractCollection<Pattern> {
+
+    /**
+     * The default maximum number of names whose verdict is cached
+     */
+    public static final int DEFAULT_MAX_VERDICTS = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(DNPatternMatcher.class);
+
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?<[a-zA-Z]");
+
+    private final List<Pattern> patterns;
+    private final Pattern[] compiledPatterns;
+    private final Map<String, Boolean> verdicts;
+
+    /**
+     * @param patterns The DN constraints
+     */
+    public DNPatternMatcher(Collection<Pattern> patterns) {
+        this(patterns, DEFAULT_MAX_VERDICTS);
+    }
+
+    /**
+     * @param patterns The DN constraints
+     * @param maxVerdicts The maximum number of names whose verdict is cached
+     */
+    public DNPatternMatcher(Collection<Pattern> patterns, final int maxVerdicts) {
+        if (maxVerdicts < 1) {
+            throw new IllegalArgumentException("The maxVerdicts parameter must be positive");
+        }
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+        compiledPatterns = compile(this.patterns);
+        verdicts = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxVerdicts;
+            }
+        };
+    }
+
+    /**
+     * @return true if the name matches one of the given DN constraints. If the constraints are a
+     *         DNPatternMatcher, it is used, otherwise the patterns are matched one after the other.
+     */
+    public static boolean matches(String name, Collection<Pattern> patterns) {
+        if (patterns instanceof DNPatternMatcher) {
+            return ((DNPatternMatcher)patterns).matches(name);
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                LOG.debug("Name {} matches with pattern {}", name, pattern);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the name matches one of the patterns
+     */
+    public boolean matches(String name) {
+        Boolean verdict;
+        synchronized (verdicts) {
+            verdict = verdicts.get(name);
+        }
+        if (verdict != null) {
+            return verdict;
+        }
+
+        boolean match = false;
+        for (Pattern pattern : compiledPatterns) {
+            if (pattern.matcher(name).matches()) {
+                match = true;
+                break;
+            }
+        }
+        if (match && LOG.isDebugEnabled()) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(name).matches()) {
+                    LOG.debug("Name {} matches with pattern {}", name, pattern);
+                    break;
+                }
+            }
+        }
+        synchronized (verdicts) {
+            verdicts.put(name, match);
+        }
+        return match;
+    }
+
+    /**
+     * Get the DN constraints of this matcher
+     */
+    public List<Pattern> getPatterns() {
+        return patterns;
+    }
+
+    @Override
+    public Iterator<Pattern> iterator() {
+        return patterns.iterator();
+    }
+
+    @Override
+    public int size() {
+        return patterns.size();
+    }
+
+    private static Pattern[] compile(List<Pattern> patterns) {
+        List<Pattern> compiled = new ArrayList<>();
+        Map<Integer, List<Pattern>> combinable = new TreeMap<>();
+        for (Pattern pattern : patterns) {
+            if ((pattern.flags() & (Pattern.LITERAL | Pattern.CANON_EQ)) != 0
+                || NOT_COMBINABLE.matcher(pattern.pattern()).find()) {
+                compiled.add(pattern);
+            } else {
+                combinable.computeIfAbsent(pattern.flags(), k -> new ArrayList<>()).add(pattern);
+            }
+        }
+
+        for (Map.Entry<Integer, List<Pattern>> group : combinable.entrySet()) {
+            if (group.getValue().size() == 1) {
+                compiled.add(group.getValue().get(0));
+                continue;
+            }
+            StringBuilder alternation = new StringBuilder();
+            for (Pattern pattern : group.getValue()) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(pattern.pattern()).append(')');
+            }
+            try {
+                compiled.add(Pattern.compile(alternation.toString(), group.getKey()));
+            } catch (PatternSyntaxException ex) {
+                LOG.debug("The DN constraints cannot be combined: {}", ex.getMessage());
+                compiled.addAll(group.getValue());
+            }
+        }
+        return compiled.toArray(new Pattern[0]);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the canonical forms of distinguished names, as returned by
+ * {@link CryptoBase#createBCX509Name(String)}, so that the issuer and subject DNs of certificates and
+ * messages are not parsed again every time they are compared. The canonical forms of X500Principals are
+ * cached by their encoding, and the canonical forms of DN Strings by the String.
+ *
+ * The canonical forms are interned, so that equal DNs share a single canonical instance, which makes
+ * their comparison an identity check. When the cache is full, the least recently used entries are evicted.
+ */
+public class DistinguishedNameCache {
+
+    /**
+     * The default maximum number of cached names
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final Map<ByteBuffer, Object> encodedNames;
+    private final Map<String, Object> stringNames;
+    private final Map<Object, Object> canonicalNames;
+
+    public DistinguishedNameCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of cached names
+     */
+    public DistinguishedNameCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maxSize parameter must be positive");
+        }
+        encodedNames = createMap(maxSize);
+        stringNames = createMap(maxSize);
+        canonicalNames = createMap(maxSize);
+    }
+
+    private static <K> Map<K, Object> createMap(final int maxSize) {
+        return new LinkedHashMap<K, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the canonical form of the DN with the given encoding, or null if it is not cached
+     */
+    synchronized Object get(ByteBuffer encoding) {
+        return encodedNames.get(encoding);
+    }
+
+    /**
+     * Get the canonical form of the given DN String, or null if it is not cached
+     */
+    synchronized Object get(String name) {
+        return stringNames.get(name);
+    }
+
+    /**
+     * Cache the canonical form of the DN with the given encoding
+     * @return the interned canonical form
+     */
+    synchronized Object put(ByteBuffer encoding, Object canonicalName) {
+        Object interned = intern(canonicalName);
+        encodedNames.put(encoding, interned);
+        return interned;
+    }
+
+    /**
+     * Cache the canonical form of the given DN String
+     * @return the interned canonical form
+     */
+    synchronized Object put(String name, Object canonicalName) {
+        Object interned = intern(canonicalName);
+        stringNames.put(name, interned);
+        return interned;
+    }
+
+    /**
+     * Remove all of the cached names
+     */
+    public synchronized void clear() {
+        encodedNames.clear();
+        stringNames.clear();
+        canonicalNames.clear();
+    }
+
+    /**
+     * Return the number of cached names
+     */
+    public synchronized int size() {
+        return encodedNames.size() + stringNames.size();
+    }
+
+    private Object intern(Object canonicalName) {
+        Object interned = canonicalNames.putIfAbsent(canonicalName, canonicalName);
+        return interned == null ? canonicalName : interned;
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.wss4j.common.crypto;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
@@ -34,12 +35,12 @@ import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.UnrecoverableKeyException;
+import java.security.SecureRandom;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertStore;
+import java.security.cert.CertStoreException;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
@@ -52,22 +53,27 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
-import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.common.util.Loader;
 
 /**
@@ -119,21 +125,47 @@ public class Merlin extends CryptoBase {
      */
     public static final String X509_CRL_FILE = "x509crl.file";
 
+    /*
+     * Certificate path validation cache configuration
+     */
+    public static final String CERT_VALIDATION_CACHE_SIZE = "cert.validation.cache.size";
+    public static final String CERT_VALIDATION_CACHE_TTL = "cert.validation.cache.ttl";
+
+    /*
+     * Parsed certificate cache configuration
+     */
+    public static final String CERT_CACHE_SIZE = "cert.cache.size";
+
+    /*
+     * Canonical distinguished name cache configuration
+     */
+    public static final String NAME_CACHE_SIZE = "name.cache.size";
+
+    /*
+     * Reload configuration
+     */
+    public static final String RELOAD_INTERVAL = "reload.interval";
+
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final String COMMA_SEPARATOR = ",";
 
     protected Properties properties;
-    protected KeyStore keystore;
-    protected KeyStore truststore;
-    protected CertStore crlCertStore;
+    protected volatile KeyStore keystore;
+    protected volatile KeyStore truststore;
+    protected volatile CertStore crlCertStore;
     protected boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
 
     private boolean certProviderHandlesNameConstraints = false;
     private boolean enablePrivateKeyCaching = true;
-    private Map<String, PrivateKey> privateKeyCache = new ConcurrentHashMap<>();
+    private final byte[] privateKeyCacheSalt = createSalt();
+    // The stores, with their indexes, trust parameters and private keys, that requests read once per call
+    private final AtomicReference<Stores> stores = new AtomicReference<>(new Stores(null, null, null));
+    // The CRLs that were loaded from the X509_CRL_FILE locations, by location
+    private volatile Map<String, X509CRL> loadedCRLs = Collections.emptyMap();
+    private StoreReloader storeReloader;
 
     public Merlin() {
         // default constructor
@@ -171,6 +203,7 @@ public class Merlin extends CryptoBase {
         }
         this.properties = properties;
         this.passwordEncryptor = passwordEncryptor;
+        stopReloading();
 
         String prefix = PREFIX;
         for (Object key : properties.keySet()) {
@@ -221,24 +254,10 @@ public class Merlin extends CryptoBase {
         if (keyStoreLocation != null) {
             keyStoreLocation = keyStoreLocation.trim();
 
-            try (InputStream is = loadInputStream(loader, keyStoreLocation)) {
-                String passwd = properties.getProperty(prefix + KEYSTORE_PASSWORD, "security");
-                if (passwd != null) {
-                    passwd = passwd.trim();
-                    passwd = decryptPassword(passwd, passwordEncryptor);
-                }
-                String type = properties.getProperty(prefix + KEYSTORE_TYPE, KeyStore.getDefaultType());
-                if (type != null) {
-                    type = type.trim();
-                }
-                keystore = load(is, passwd, keystoreProvider, type);
-                LOG.debug(
-                    "The KeyStore {} of type {} has been loaded", keyStoreLocation, type
-                );
-                String privatePasswd = properties.getProperty(prefix + KEYSTORE_PRIVATE_PASSWORD);
-                if (privatePasswd != null) {
-                    privatePasswordSet = true;
-                }
+            keystore = loadKeyStore(loader, keyStoreLocation, prefix, keystoreProvider);
+            String privatePasswd = properties.getProperty(prefix + KEYSTORE_PRIVATE_PASSWORD);
+            if (privatePasswd != null) {
+                privatePasswordSet = true;
             }
 
             String privateKeyCachingProp = properties.getProperty(prefix + KEYSTORE_PRIVATE_KEY_CACHING);
@@ -271,22 +290,8 @@ public class Merlin extends CryptoBase {
         if (trustStoreLocation != null) {
             trustStoreLocation = trustStoreLocation.trim();
 
-            try (InputStream is = loadInputStream(loader, trustStoreLocation)) {
-                String passwd = properties.getProperty(prefix + TRUSTSTORE_PASSWORD, "changeit");
-                if (passwd != null) {
-                    passwd = passwd.trim();
-                    passwd = decryptPassword(passwd, passwordEncryptor);
-                }
-                String type = properties.getProperty(prefix + TRUSTSTORE_TYPE, KeyStore.getDefaultType());
-                if (type != null) {
-                    type = type.trim();
-                }
-                truststore = load(is, passwd, trustProvider, type);
-                LOG.debug(
-                    "The TrustStore {} of type {} has been loaded", trustStoreLocation, type
-                );
-                loadCACerts = false;
-            }
+            truststore = loadTrustStore(loader, trustStoreLocation, prefix, trustProvider);
+            loadCACerts = false;
         } else {
             String loadCacerts = properties.getProperty(prefix + LOAD_CA_CERTS, "false");
             if (loadCacerts != null) {
@@ -312,42 +317,324 @@ public class Merlin extends CryptoBase {
         //
         String crlLocations = properties.getProperty(prefix + X509_CRL_FILE);
         if (crlLocations != null) {
-            String[] splittedCrlsLocations = crlLocations.split(COMMA_SEPARATOR);
-            List<X509CRL> crls = new ArrayList<>(splittedCrlsLocations.length);
-            for (String crlLocation : splittedCrlsLocations) {
-                try (InputStream is = loadInputStream(loader, crlLocation.trim())) {
-                    CertificateFactory cf = getCertificateFactory();
-                    X509CRL crl = (X509CRL)cf.generateCRL(is);
-                    crls.add(crl);
-                } catch (Exception e) {
-                    LOG.debug(e.getMessage(), e);
-                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+            Map<String, X509CRL> crls = new LinkedHashMap<>();
+            for (String crlLocation : crlLocations.split(COMMA_SEPARATOR)) {
+                crls.put(crlLocation.trim(), loadCRL(loader, crlLocation.trim()));
+            }
+            crlCertStore = createCRLCertStore(crls.values(), keystoreProvider);
+            loadedCRLs = crls;
+            LOG.debug("The CRL files {} have been loaded", crlLocations);
+        }
+
+        configureCaches(prefix);
+        indexStores();
+        configureReloading(loader, prefix, keyStoreLocation, keystoreProvider, trustStoreLocation, trustProvider);
+    }
+
+    /**
+     * Configure the caches of validated certificate paths, parsed certificates and canonical distinguished
+     * names from the properties.
+     */
+    private void configureCaches(String prefix) throws WSSecurityException {
+        //
+        // Configure the cache of validated certificate paths
+        //
+        String cacheSize = properties.getProperty(prefix + CERT_VALIDATION_CACHE_SIZE);
+        if (cacheSize != null) {
+            String cacheTTL = properties.getProperty(prefix + CERT_VALIDATION_CACHE_TTL);
+            try {
+                int size = Integer.parseInt(cacheSize.trim());
+                long ttl = cacheTTL == null ? ValidatedCertPathCache.DEFAULT_TTL : Long.parseLong(cacheTTL.trim());
+                if (size > 0) {
+                    setValidatedCertPathCache(new ValidatedCertPathCache(size, ttl));
                 }
+            } catch (IllegalArgumentException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                    new Object[] {"Invalid certificate validation cache configuration"}
+                );
             }
+        }
+
+        //
+        // Configure the cache of parsed certificates, which is disabled with a size of 0
+        //
+        String certCacheSize = properties.getProperty(prefix + CERT_CACHE_SIZE);
+        if (certCacheSize != null) {
             try {
-                if (keystoreProvider == null || keystoreProvider.length() == 0) {
-                    crlCertStore =
-                            CertStore.getInstance(
-                                    "Collection",
-                                    new CollectionCertStoreParameters(crls)
-                            );
+                int size = Integer.parseInt(certCacheSize.trim());
+                setCertificateCache(size > 0 ? new CertificateCache(size) : null);
+            } catch (NumberFormatException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                    new Object[] {"Invalid certificate cache size " + certCacheSize}
+                );
+            }
+        }
 
-                } else {
-                    crlCertStore =
-                            CertStore.getInstance(
-                                    "Collection",
-                                    new CollectionCertStoreParameters(crls),
-                                    keystoreProvider
-                            );
-                }
-            } catch (Exception e) {
+        //
+        // Configure the cache of canonical distinguished names, which is disabled with a size of 0
+        //
+        String nameCacheSize = properties.getProperty(prefix + NAME_CACHE_SIZE);
+        if (nameCacheSize != null) {
+            try {
+                int size = Integer.parseInt(nameCacheSize.trim());
+                setNameCache(size > 0 ? new DistinguishedNameCache(size) : null);
+            } catch (NumberFormatException e) {
                 LOG.debug(e.getMessage(), e);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                    new Object[] {"Invalid distinguished name cache size " + nameCacheSize}
+                );
             }
-            LOG.debug("The CRL files {} have been loaded", crlLocations);
         }
     }
 
+    /**
+     * Index the certificates of the KeyStore and TrustStore
+     */
+    private void indexStores() throws WSSecurityException {
+        Stores snapshot = getStores();
+        if (snapshot.keystore != null) {
+            getCertificateIndex(snapshot, false);
+        }
+        if (snapshot.truststore != null) {
+            getCertificateIndex(snapshot, true);
+        }
+    }
+
+    /**
+     * Watch the KeyStore, TrustStore and CRL file(s) for changes, if the RELOAD_INTERVAL property is set.
+     */
+    private void configureReloading(
+        ClassLoader loader, String prefix, String keyStoreLocation, String keystoreProvider,
+        String trustStoreLocation, String trustProvider
+    ) throws WSSecurityException {
+        String reloadInterval = properties.getProperty(prefix + RELOAD_INTERVAL);
+        if (reloadInterval != null) {
+            long interval;
+            try {
+                interval = Long.parseLong(reloadInterval.trim());
+            } catch (NumberFormatException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                    new Object[] {"Invalid reload interval " + reloadInterval}
+                );
+            }
+            if (interval > 0) {
+                // The reloads must only reference this instance through their argument, so that it can be
+                // garbage collected while it is being watched
+                StoreReloader reloader = new StoreReloader(this);
+                if (keyStoreLocation != null) {
+                    reloader.watch("KeyStore", loader, keyStoreLocation, merlin -> merlin.reloadKeyStore(
+                        merlin.loadKeyStore(loader, keyStoreLocation, prefix, keystoreProvider)));
+                }
+                if (trustStoreLocation != null) {
+                    reloader.watch("TrustStore", loader, trustStoreLocation, merlin -> merlin.reloadTrustStore(
+                        merlin.loadTrustStore(loader, trustStoreLocation, prefix, trustProvider)));
+                }
+                // Each CRL file is watched on its own, so that only the CRL that has changed is reloaded
+                for (String location : loadedCRLs.keySet()) {
+                    reloader.watch("CRL", loader, location,
+                        merlin -> merlin.reloadCRL(merlin.loadCRL(loader, location), location, keystoreProvider));
+                }
+                reloader.start(interval);
+                storeReloader = reloader;
+            }
+        }
+    }
+
+    /**
+     * Stop watching the KeyStore, TrustStore and CRL file(s) for changes, if this instance was configured
+     * to reload them with the RELOAD_INTERVAL property.
+     */
+    public synchronized void stopReloading() {
+        if (storeReloader != null) {
+            storeReloader.stop();
+            storeReloader = null;
+        }
+    }
+
+    private KeyStore loadKeyStore(
+        ClassLoader loader, String location, String prefix, String provider
+    ) throws WSSecurityException, IOException {
+        try (InputStream is = loadInputStream(loader, location)) {
+            String passwd = properties.getProperty(prefix + KEYSTORE_PASSWORD, "security");
+            if (passwd != null) {
+                passwd = passwd.trim();
+                passwd = decryptPassword(passwd, passwordEncryptor);
+            }
+            String type = properties.getProperty(prefix + KEYSTORE_TYPE, KeyStore.getDefaultType());
+            if (type != null) {
+                type = type.trim();
+            }
+            KeyStore ks = load(is, passwd, provider, type);
+            LOG.debug(
+                "The KeyStore {} of type {} has been loaded", location, type
+            );
+            return ks;
+        }
+    }
+
+    private KeyStore loadTrustStore(
+        ClassLoader loader, String location, String prefix, String provider
+    ) throws WSSecurityException, IOException {
+        try (InputStream is = loadInputStream(loader, location)) {
+            String passwd = properties.getProperty(prefix + TRUSTSTORE_PASSWORD, "changeit");
+            if (passwd != null) {
+                passwd = passwd.trim();
+                passwd = decryptPassword(passwd, passwordEncryptor);
+            }
+            String type = properties.getProperty(prefix + TRUSTSTORE_TYPE, KeyStore.getDefaultType());
+            if (type != null) {
+                type = type.trim();
+            }
+            KeyStore ks = load(is, passwd, provider, type);
+            LOG.debug(
+                "The TrustStore {} of type {} has been loaded", location, type
+            );
+            return ks;
+        }
+    }
+
+    private X509CRL loadCRL(ClassLoader loader, String location) throws WSSecurityException {
+        try (InputStream is = loadInputStream(loader, location)) {
+            CertificateFactory cf = getCertificateFactory();
+            return (X509CRL)cf.generateCRL(is);
+        } catch (Exception e) {
+            LOG.debug(e.getMessage(), e);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+        }
+    }
+
+    private CertStore createCRLCertStore(Collection<X509CRL> crls, String provider) throws WSSecurityException {
+        // The CertStore keeps a reference to the collection rather than a copy
+        List<X509CRL> crlList = new ArrayList<>(crls);
+        CertStore certStore;
+        try {
+            if (provider == null || provider.length() == 0) {
+                certStore =
+                        CertStore.getInstance(
+                                "Collection",
+                                new CollectionCertStoreParameters(crlList)
+                        );
+
+            } else {
+                certStore =
+                        CertStore.getInstance(
+                                "Collection",
+                                new CollectionCertStoreParameters(crlList),
+                                provider
+                        );
+            }
+        } catch (Exception e) {
+            LOG.debug(e.getMessage(), e);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+        }
+        return certStore;
+    }
+
+    /**
+     * Publish a KeyStore that has been reloaded. It is indexed before it is published, so that requests
+     * that are in progress keep using the previous snapshot of the stores without waiting. The new snapshot
+     * starts with an empty private key cache, so that no key of the previous KeyStore is served from it.
+     */
+    private void reloadKeyStore(KeyStore keyStore) throws WSSecurityException {
+        CertificateIndex index = createCertificateIndex(keyStore);
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(current.replace(keyStore, current.truststore, current.crlCertStore).withKeystoreIndex(index));
+        }
+    }
+
+    /**
+     * Publish a TrustStore that has been reloaded. It is indexed before it is published, so that requests
+     * that are in progress keep using the previous snapshot of the stores without waiting.
+     */
+    private void reloadTrustStore(KeyStore trustStore) throws WSSecurityException {
+        CertificateIndex index = createCertificateIndex(trustStore);
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(current.replace(current.keystore, trustStore, current.crlCertStore).withTruststoreIndex(index));
+        }
+    }
+
+    /**
+     * Publish a CRL that has been reloaded, together with a CRL CertStore that holds it instead of the
+     * previous one. The index of the revoked certificates is updated with the new CRL only.
+     */
+    private void reloadCRL(X509CRL crl, String location, String provider) throws WSSecurityException {
+        synchronized (stores) {
+            Map<String, X509CRL> crls = new LinkedHashMap<>(loadedCRLs);
+            X509CRL previousCRL = crls.put(location, crl);
+            CertStore certStore = createCRLCertStore(crls.values(), provider);
+
+            Stores current = getStores();
+            Stores updated = current.replace(current.keystore, current.truststore, certStore);
+            CRLIndex index = current.crlIndex;
+            if (index != null && index.isCurrent(current.crlCertStore)) {
+                updated = updated.withCrlIndex(index.update(certStore, previousCRL, crl));
+            }
+            loadedCRLs = crls;
+            publish(updated);
+        }
+    }
+
+    /**
+     * Get the current snapshot of the stores. The keystore, truststore and crlCertStore fields mirror it, and
+     * the snapshot is taken again from these fields if a subclass has assigned one of them directly.
+     */
+    Stores getStores() {
+        Stores current = stores.get();
+        if (current.keystore == keystore && current.truststore == truststore
+            && current.crlCertStore == crlCertStore) {
+            return current;
+        }
+        synchronized (stores) {
+            current = stores.get();
+            if (current.keystore != keystore || current.truststore != truststore
+                || current.crlCertStore != crlCertStore) {
+                current = current.replace(keystore, truststore, crlCertStore);
+                stores.set(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Publish a new snapshot of the stores, and mirror it in the keystore, truststore and crlCertStore fields
+     */
+    private void publish(Stores snapshot) {
+        synchronized (stores) {
+            stores.set(snapshot);
+            keystore = snapshot.keystore;
+            truststore = snapshot.truststore;
+            crlCertStore = snapshot.crlCertStore;
+        }
+    }
+
+    /**
+     * Cache a value that was built from a snapshot of the stores in the current snapshot, as long as the
+     * current snapshot still holds the stores that the value was built from
+     */
+    private void cache(Predicate<Stores> isCurrent, UnaryOperator<Stores> update) {
+        Stores current = stores.get();
+        while (isCurrent.test(current) && !stores.compareAndSet(current, update.apply(current))) {
+            current = stores.get();
+        }
+    }
+
+    /**
+     * Called by the StoreReloader once it has published the stores that have changed, to rebuild the
+     * trust anchors in the background instead of on the next request.
+     */
+    void storesReloaded() {
+        getTrustState();
+    }
+
     /**
      * Load a KeyStore object as an InputStream, using the ClassLoader and location arguments
      */
@@ -403,7 +690,10 @@ public class Merlin extends CryptoBase {
      * @param keyStore the Keystore to set
      */
     public void setKeyStore(KeyStore keyStore) {
-        keystore = keyStore;
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(current.replace(keyStore, current.truststore, current.crlCertStore).withKeystoreIndex(null));
+        }
     }
 
     /**
@@ -421,7 +711,10 @@ public class Merlin extends CryptoBase {
      * @param trustStore the trust store to set
      */
     public void setTrustStore(KeyStore trustStore) {
-        truststore = trustStore;
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(current.replace(current.keystore, trustStore, current.crlCertStore).withTruststoreIndex(null));
+        }
     }
 
     /**
@@ -431,7 +724,10 @@ public class Merlin extends CryptoBase {
      * Revocation checking.
      */
     public void setCRLCertStore(CertStore crlCertStore) {
-        this.crlCertStore = crlCertStore;
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(current.replace(current.keystore, current.truststore, crlCertStore));
+        }
     }
 
     /**
@@ -460,8 +756,9 @@ public class Merlin extends CryptoBase {
 
         String provider = getCryptoProvider();
         String keyStoreProvider = null;
-        if (keystore != null) {
-            keyStoreProvider = keystore.getProvider().getName();
+        KeyStore keyStore = getStores().keystore;
+        if (keyStore != null) {
+            keyStoreProvider = keyStore.getProvider().getName();
         }
 
         try {
@@ -520,9 +817,10 @@ public class Merlin extends CryptoBase {
             return super.getDefaultX509Identifier();
         }
 
-        if (keystore != null) {
+        KeyStore keyStore = getStores().keystore;
+        if (keyStore != null) {
             try {
-                Enumeration<String> as = keystore.aliases();
+                Enumeration<String> as = keyStore.aliases();
                 if (as.hasMoreElements()) {
                     String alias = as.nextElement();
                     if (!as.hasMoreElements()) {
@@ -559,22 +857,23 @@ public class Merlin extends CryptoBase {
             return null;
         }
         CryptoType.TYPE type = cryptoType.getType();
+        Stores snapshot = getStores();
         X509Certificate[] certs = null;
         switch (type) {
         case ISSUER_SERIAL:
-            certs = getX509Certificates(cryptoType.getIssuer(), cryptoType.getSerial());
+            certs = getX509Certificates(snapshot, cryptoType.getIssuer(), cryptoType.getSerial());
             break;
         case THUMBPRINT_SHA1:
-            certs = getX509Certificates(cryptoType.getBytes());
+            certs = getX509Certificates(snapshot, cryptoType.getBytes());
             break;
         case SKI_BYTES:
-            certs = getX509CertificatesSKI(cryptoType.getBytes());
+            certs = getX509CertificatesSKI(snapshot, cryptoType.getBytes());
             break;
         case SUBJECT_DN:
-            certs = getX509CertificatesSubjectDN(cryptoType.getSubjectDN());
+            certs = getX509CertificatesSubjectDN(snapshot, cryptoType.getSubjectDN());
             break;
         case ALIAS:
-            certs = getX509Certificates(cryptoType.getAlias());
+            certs = getX509Certificates(snapshot, cryptoType.getAlias());
             break;
         case ENDPOINT:
             break;
@@ -591,13 +890,14 @@ public class Merlin extends CryptoBase {
      */
     public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
         String identifier = null;
+        Stores snapshot = getStores();
 
-        if (keystore != null) {
-            identifier = getIdentifier(cert, keystore);
+        if (snapshot.keystore != null) {
+            identifier = getIdentifier(cert, snapshot, false);
         }
 
-        if (identifier == null && truststore != null) {
-            identifier = getIdentifier(cert, truststore);
+        if (identifier == null && snapshot.truststore != null) {
+            identifier = getIdentifier(cert, snapshot, true);
         }
 
         return identifier;
@@ -614,7 +914,8 @@ public class Merlin extends CryptoBase {
         X509Certificate certificate,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
-        if (keystore == null) {
+        Stores snapshot = getStores();
+        if (snapshot.keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
@@ -623,11 +924,11 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(certificate, keystore);
+        String identifier = getIdentifier(certificate, snapshot, false);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for certificate";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(snapshot.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -639,7 +940,7 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        return getPrivateKey(snapshot, identifier, password);
     }
 
     /**
@@ -653,7 +954,8 @@ public class Merlin extends CryptoBase {
         PublicKey publicKey,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
-        if (keystore == null) {
+        Stores snapshot = getStores();
+        if (snapshot.keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
@@ -662,11 +964,11 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(publicKey, keystore);
+        String identifier = getIdentifier(publicKey, snapshot, false);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for corresponding public key";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(snapshot.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -678,7 +980,7 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        return getPrivateKey(snapshot, identifier, password);
     }
 
     /**
@@ -692,14 +994,27 @@ public class Merlin extends CryptoBase {
         String identifier,
         String password
     ) throws WSSecurityException {
-        if (keystore == null) {
+        return getPrivateKey(getStores(), identifier, password);
+    }
+
+    /**
+     * Gets the private key corresponding to the identifier from the keystore of the given snapshot. The
+     * private key cache of the snapshot is only used for the keys of its own keystore.
+     */
+    private PrivateKey getPrivateKey(
+        Stores snapshot,
+        String identifier,
+        String password
+    ) throws WSSecurityException {
+        KeyStore keyStore = snapshot.keystore;
+        if (keyStore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
         try {
-            if (identifier == null || !keystore.isKeyEntry(identifier)) {
+            if (identifier == null || !keyStore.isKeyEntry(identifier)) {
                 String msg = "Cannot find key for alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(keyStore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -715,34 +1030,55 @@ public class Merlin extends CryptoBase {
                     pwd = decryptPassword(pwd, passwordEncryptor);
                 }
             }
+            byte[] passwordDigest = null;
             if (enablePrivateKeyCaching) {
-                Key privateKey = privateKeyCache.get(identifier);
-                if (privateKey != null) {
-                    return (PrivateKey) privateKey;
+                // A Merlin instance may be shared by endpoints with different password CallbackHandlers,
+                // so a cached key is only returned to a caller that presents the same password
+                passwordDigest = digestPassword(pwd);
+                CachedPrivateKey cachedKey = snapshot.privateKeyCache.get(identifier);
+                if (cachedKey != null && MessageDigest.isEqual(cachedKey.passwordDigest, passwordDigest)) {
+                    return cachedKey.privateKey;
                 }
             }
 
-            Key keyTmp = keystore.getKey(identifier, pwd == null
+            Key keyTmp = keyStore.getKey(identifier, pwd == null
                                          ? new char[]{} : pwd.toCharArray());
             if (!(keyTmp instanceof PrivateKey)) {
                 String msg = "Key is not a private key, alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(keyStore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
             }
 
             if (enablePrivateKeyCaching) {
-                privateKeyCache.put(identifier, (PrivateKey) keyTmp);
+                snapshot.privateKeyCache.put(identifier, new CachedPrivateKey((PrivateKey) keyTmp, passwordDigest));
             }
             return (PrivateKey) keyTmp;
-        } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException ex) {
+        } catch (GeneralSecurityException ex) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, ex, "noPrivateKey", new Object[] {ex.getMessage()}
             );
         }
     }
 
+    private static byte[] createSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    private byte[] digestPassword(String password) throws GeneralSecurityException {
+        EnginePool<MessageDigest> digestPool = EnginePool.getMessageDigestPool("SHA-256");
+        MessageDigest digest = digestPool.get();
+        try {
+            digest.update(privateKeyCacheSalt);
+            return digest.digest((password == null ? "" : password).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            digestPool.release(digest);
+        }
+    }
+
     /**
      * Evaluate whether a given certificate chain should be trusted.
      *
@@ -757,6 +1093,8 @@ public class Merlin extends CryptoBase {
         boolean enableRevocation,
         Collection<Pattern> subjectCertConstraints
     ) throws WSSecurityException {
+        Stores snapshot = getStores();
+
         //
         // FIRST step - Search the keystore for the transmitted certificate
         //
@@ -764,9 +1102,7 @@ public class Merlin extends CryptoBase {
             String issuerString = certs[0].getIssuerX500Principal().getName();
             BigInteger issuerSerial = certs[0].getSerialNumber();
 
-            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
-            cryptoType.setIssuerSerial(issuerString, issuerSerial);
-            X509Certificate[] foundCerts = getX509Certificates(cryptoType);
+            X509Certificate[] foundCerts = getX509Certificates(snapshot, issuerString, issuerSerial);
 
             //
             // If a certificate has been found, the certificates must be compared
@@ -797,13 +1133,13 @@ public class Merlin extends CryptoBase {
 
             Object subject = convertSubjectToPrincipal(issuerString);
 
-            if (keystore != null) {
-                foundIssuingCertChains = getCertificates(subject, keystore, false);
+            if (snapshot.keystore != null) {
+                foundIssuingCertChains = getCertificates(subject, snapshot, false);
             }
 
             //If we can't find the issuer in the keystore then look at the truststore
-            if ((foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()) && truststore != null) {
-                foundIssuingCertChains = getCertificates(subject, truststore, true);
+            if ((foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()) && snapshot.truststore != null) {
+                foundIssuingCertChains = getCertificates(subject, snapshot, true);
             }
 
             if (foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()
@@ -828,20 +1164,6 @@ public class Merlin extends CryptoBase {
         );
 
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
-
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
             CertPathValidator validator = null;
@@ -851,7 +1173,7 @@ public class Merlin extends CryptoBase {
                 validator = CertPathValidator.getInstance("PKIX", provider);
             }
 
-            PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            PKIXParameters param = getPKIXParameters(snapshot, enableRevocation);
 
             // Generate cert path
             if (foundIssuingCertChains != null && !foundIssuingCertChains.isEmpty()) {
@@ -903,10 +1225,106 @@ public class Merlin extends CryptoBase {
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        ValidatedCertPathCache cache = getValidatedCertPathCache();
+        ValidatedCertPathCache.Key key = null;
+        TrustParameters trustState = null;
+        if (cache != null && certs != null && certs.length > 0) {
+            trustState = getTrustState();
+            if (trustState != null) {
+                key = ValidatedCertPathCache.createKey(
+                    certs, enableRevocation, subjectCertConstraints, issuerCertConstraints
+                );
+                if (cache.contains(key, trustState)) {
+                    LOG.debug(
+                        "Cached trust for certificate with {}", certs[0].getSubjectX500Principal().getName()
+                    );
+                    return;
+                }
+            }
+        }
+
         verifyTrust(certs, enableRevocation, subjectCertConstraints);
         if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (key != null) {
+            cache.add(key, trustState, certs, enableRevocation ? trustState.crlCertStore : null);
+        }
+    }
+
+    /**
+     * Get an object that represents the current state of the keystore, truststore and CRL CertStore, and
+     * that is replaced whenever one of them changes. Returns null if there is no trust material.
+     */
+    private TrustParameters getTrustState() {
+        try {
+            return getTrustParameters(getStores());
+        } catch (KeyStoreException | InvalidAlgorithmParameterException | WSSecurityException e) {
+            LOG.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the PKIXParameters to validate a certificate path with. The trust anchors are the certificates of
+     * the truststore, and of the keystore if there is no truststore, apart from the case that the truststore
+     * is the JDK CA certs. The parameters are built once with {@link #addTrustAnchors(Set, KeyStore)} and
+     * {@link #createPKIXParameters(Set, boolean)}, and are only rebuilt when the keystore, the truststore or
+     * the CRL CertStore changes, or when {@link #clearCache()} is called. They are shared by all threads, and
+     * so must not be modified.
+     *
+     * @param enableRevocation whether to enable CRL verification or not
+     * @return the PKIXParameters to validate a certificate path with
+     */
+    protected PKIXParameters getPKIXParameters(boolean enableRevocation)
+        throws KeyStoreException, InvalidAlgorithmParameterException, WSSecurityException {
+        return getPKIXParameters(getStores(), enableRevocation);
+    }
+
+    private PKIXParameters getPKIXParameters(Stores snapshot, boolean enableRevocation)
+        throws KeyStoreException, InvalidAlgorithmParameterException, WSSecurityException {
+        TrustParameters parameters = getTrustParameters(snapshot);
+        return enableRevocation ? parameters.revocationParameters : parameters.parameters;
+    }
+
+    /**
+     * Get the trust parameters of the given snapshot of the stores, building them if the snapshot does not
+     * hold them yet
+     */
+    private TrustParameters getTrustParameters(Stores snapshot)
+        throws KeyStoreException, InvalidAlgorithmParameterException, WSSecurityException {
+        CertificateIndex currentKeystoreIndex =
+            snapshot.keystore == null ? null : getCertificateIndex(snapshot, false);
+        CertificateIndex currentTruststoreIndex =
+            snapshot.truststore == null ? null : getCertificateIndex(snapshot, true);
+
+        TrustParameters parameters = snapshot.trustParameters;
+        if (parameters == null
+            || !parameters.isCurrent(currentKeystoreIndex, currentTruststoreIndex, snapshot.crlCertStore)) {
+            Set<TrustAnchor> set = new HashSet<>();
+            if (snapshot.truststore != null) {
+                addTrustAnchors(set, snapshot.truststore);
+            }
+
+            //
+            // Add certificates from the keystore - only if there is no TrustStore, apart from
+            // the case that the truststore is the JDK CA certs. This behaviour is preserved
+            // for backwards compatibility reasons
+            //
+            if (snapshot.keystore != null && (snapshot.truststore == null || loadCACerts)) {
+                addTrustAnchors(set, snapshot.keystore);
+            }
+
+            TrustParameters builtParameters =
+                new TrustParameters(currentKeystoreIndex, currentTruststoreIndex, snapshot.crlCertStore,
+                                    createPKIXParameters(set, false), createPKIXParameters(set, true));
+            cache(current -> builtParameters.isCurrent(current.keystoreIndex, current.truststoreIndex,
+                                                       current.crlCertStore),
+                  current -> current.withTrustParameters(builtParameters));
+            parameters = builtParameters;
+        }
+        return parameters;
     }
 
     // Separated out to allow subclasses to override it
@@ -915,13 +1333,40 @@ public class Merlin extends CryptoBase {
     ) throws InvalidAlgorithmParameterException {
         PKIXParameters param = new PKIXParameters(trustAnchors);
         param.setRevocationEnabled(enableRevocation);
+        CertStore crlCertStore = getStores().crlCertStore;
         if (enableRevocation && crlCertStore != null) {
-            param.addCertStore(crlCertStore);
+            CRLIndex index = getCRLIndex(crlCertStore);
+            if (index != null) {
+                // Look the certificates up in the index of the CRLs, instead of having PKIX search the CRLs
+                param.setRevocationEnabled(false);
+                param.addCertPathChecker(new CRLIndexChecker(index, trustAnchors));
+            } else {
+                param.addCertStore(crlCertStore);
+            }
         }
 
         return param;
     }
 
+    /**
+     * Get the index of the revoked certificates of the given CRL CertStore, building it if the CertStore
+     * has not been indexed yet. Returns null if the CertStore cannot be indexed.
+     */
+    private CRLIndex getCRLIndex(CertStore store) {
+        CRLIndex index = stores.get().crlIndex;
+        if (index == null || !index.isCurrent(store)) {
+            try {
+                index = CRLIndex.create(store);
+            } catch (CertStoreException e) {
+                LOG.debug(e.getMessage(), e);
+                return null;
+            }
+            CRLIndex builtIndex = index;
+            cache(current -> current.crlCertStore == store, current -> current.withCrlIndex(builtIndex));
+        }
+        return index;
+    }
+
     /**
      * Evaluate whether a given public key should be trusted.
      *
@@ -940,8 +1385,9 @@ public class Merlin extends CryptoBase {
         // Search the keystore for the transmitted public key (direct trust). If not found
         // then search the truststore for the transmitted public key (direct trust)
         //
-        if (!findPublicKeyInKeyStore(publicKey, keystore, false)
-            && !findPublicKeyInKeyStore(publicKey, truststore, true)) {
+        Stores snapshot = getStores();
+        if (!findPublicKeyInKeyStore(publicKey, snapshot, false)
+            && !findPublicKeyInKeyStore(publicKey, snapshot, true)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
     }
@@ -955,32 +1401,19 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException
      */
     private X509Certificate[] getX509Certificates(
+        Stores snapshot,
         String issuer,
         BigInteger serialNumber
     ) throws WSSecurityException {
-        //
-        // Convert the subject DN to a java X500Principal object first. This is to ensure
-        // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
-        // Then convert it to a BouncyCastle X509Name, which will order the attributes of
-        // the DN in a particular way (see WSS-168). If the conversion to an X500Principal
-        // object fails (e.g. if the DN contains "E" instead of "EMAILADDRESS"), then fall
-        // back on a direct conversion to a BC X509Name
-        //
-        Object issuerName = null;
-        try {
-            X500Principal issuerRDN = new X500Principal(issuer);
-            issuerName = createBCX509Name(issuerRDN.getName());
-        } catch (java.lang.IllegalArgumentException ex) {
-            issuerName = createBCX509Name(issuer);
-        }
+        Object issuerName = getCanonicalName(issuer);
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(issuerName, serialNumber, keystore, false);
+        if (snapshot.keystore != null) {
+            certs = getCertificates(issuerName, serialNumber, snapshot, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(issuerName, serialNumber, truststore, true);
+        if ((certs == null || certs.length == 0) && snapshot.truststore != null) {
+            certs = getCertificates(issuerName, serialNumber, snapshot, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -991,16 +1424,16 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
+     * Get an X509 Certificate (chain) of the X500Principal argument in the keystore or truststore
      * @param issuerRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
+     * @param snapshot The snapshot of the stores
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
     private Certificate[] getCertificates(
         Object issuerRDN,
         BigInteger serialNumber,
-        KeyStore store,
+        Stores snapshot,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1008,36 +1441,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert with issuer {} and serial {}", keystore, issuerRDN, serialNumber);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    LOG.debug("Keystore alias {} has issuer {} and serial {}", alias,
-                              x509cert.getIssuerX500Principal().getName(), x509cert.getSerialNumber());
-                    if (x509cert.getSerialNumber().compareTo(serialNumber) == 0) {
-                        Object certName =
-                            createBCX509Name(x509cert.getIssuerX500Principal().getName());
-                        if (certName.equals(issuerRDN)) {
-                            LOG.debug("Issuer Serial match found using keystore alias {}", alias);
-                            return certs;
-                        }
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getByIssuerSerial(issuerRDN, serialNumber);
+        if (entry != null) {
+            LOG.debug("Issuer Serial match found using keystore alias {}", entry.getAlias());
+            return entry.getCertificates();
         }
 
         LOG.debug("No issuer serial match found in {}", keystore);
@@ -1051,24 +1458,15 @@ public class Merlin extends CryptoBase {
      * @return the X509 Certificate (chain) that was found (can be null)
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
-    private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
-
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
-            );
-        }
+    private X509Certificate[] getX509Certificates(Stores snapshot, byte[] thumbprint) throws WSSecurityException {
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(thumbprint, keystore, sha, false);
+        if (snapshot.keystore != null) {
+            certs = getCertificatesFromThumbprint(thumbprint, snapshot, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(thumbprint, truststore, sha, true);
+        if ((certs == null || certs.length == 0) && snapshot.truststore != null) {
+            certs = getCertificatesFromThumbprint(thumbprint, snapshot, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -1079,16 +1477,15 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
+     * Get an X509 Certificate (chain) of the SHA-1 thumbprint argument in the keystore or truststore
      * @param thumbprint
-     * @param store The KeyStore
+     * @param snapshot The snapshot of the stores
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
-    private Certificate[] getCertificates(
+    private Certificate[] getCertificatesFromThumbprint(
         byte[] thumbprint,
-        KeyStore store,
-        MessageDigest sha,
+        Stores snapshot,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1096,39 +1493,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using a SHA-1 thumbprint", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    try {
-                        sha.update(x509cert.getEncoded());
-                    } catch (CertificateEncodingException ex) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                        );
-                    }
-                    byte[] data = sha.digest();
-
-                    if (Arrays.equals(data, thumbprint)) {
-                        LOG.debug("Thumbprint match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getByThumbprint(thumbprint);
+        if (entry != null) {
+            LOG.debug("Thumbprint match found using keystore alias {}", entry.getAlias());
+            return entry.getCertificates();
         }
 
         LOG.debug("No thumbprint match found in {}", keystore);
@@ -1141,15 +1509,15 @@ public class Merlin extends CryptoBase {
      * @param skiBytes The SKI bytes
      * @return the X509 certificate (chain) that was found (can be null)
      */
-    private X509Certificate[] getX509CertificatesSKI(byte[] skiBytes) throws WSSecurityException {
+    private X509Certificate[] getX509CertificatesSKI(Stores snapshot, byte[] skiBytes) throws WSSecurityException {
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(skiBytes, keystore, false);
+        if (snapshot.keystore != null) {
+            certs = getCertificates(skiBytes, snapshot, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(skiBytes, truststore, true);
+        if ((certs == null || certs.length == 0) && snapshot.truststore != null) {
+            certs = getCertificates(skiBytes, snapshot, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -1160,15 +1528,15 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
+     * Get an X509 Certificate (chain) of the SKI bytes argument in the keystore or truststore
      * @param skiBytes
-     * @param store The KeyStore
+     * @param snapshot The snapshot of the stores
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
     private Certificate[] getCertificates(
         byte[] skiBytes,
-        KeyStore store,
+        Stores snapshot,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1176,31 +1544,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using Subject Key Identifier bytes", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    byte[] data = getSKIBytesFromCert(x509cert);
-                    if (data.length == skiBytes.length && Arrays.equals(data, skiBytes)) {
-                        LOG.debug("SKI match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getBySKI(skiBytes);
+        if (entry != null) {
+            LOG.debug("SKI match found using keystore alias {}", entry.getAlias());
+            return entry.getCertificates();
         }
 
         LOG.debug("No SKI match found in {}", keystore);
@@ -1214,17 +1561,18 @@ public class Merlin extends CryptoBase {
      * @return An X509 Certificate (chain) with the same DN as given in the parameters
      * @throws WSSecurityException
      */
-    private X509Certificate[] getX509CertificatesSubjectDN(String subjectDN) throws WSSecurityException {
+    private X509Certificate[] getX509CertificatesSubjectDN(Stores snapshot, String subjectDN)
+        throws WSSecurityException {
         Object subject = convertSubjectToPrincipal(subjectDN);
 
         List<Certificate[]> certs = null;
-        if (keystore != null) {
-            certs = getCertificates(subject, keystore, false);
+        if (snapshot.keystore != null) {
+            certs = getCertificates(subject, snapshot, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.isEmpty()) && truststore != null) {
-            certs = getCertificates(subject, truststore, true);
+        if ((certs == null || certs.isEmpty()) && snapshot.truststore != null) {
+            certs = getCertificates(subject, snapshot, true);
         }
 
         if (certs == null || certs.isEmpty()) {
@@ -1236,20 +1584,7 @@ public class Merlin extends CryptoBase {
     }
 
     private Object convertSubjectToPrincipal(String subjectDN) {
-        //
-        // Convert the subject DN to a java X500Principal object first. This is to ensure
-        // interop with a DN constructed from .NET, where e.g. it uses "S" instead of "ST".
-        // Then convert it to a BouncyCastle X509Name, which will order the attributes of
-        // the DN in a particular way (see WSS-168). If the conversion to an X500Principal
-        // object fails (e.g. if the DN contains "E" instead of "EMAILADDRESS"), then fall
-        // back on a direct conversion to a BC X509Name
-        //
-        try {
-            X500Principal subjectRDN = new X500Principal(subjectDN);
-            return createBCX509Name(subjectRDN.getName());
-        } catch (java.lang.IllegalArgumentException ex) {
-            return createBCX509Name(subjectDN);
-        }
+        return getCanonicalName(subjectDN);
     }
 
     /**
@@ -1259,10 +1594,12 @@ public class Merlin extends CryptoBase {
      * @param identifier The identifier that corresponds to the returned certs
      * @return an X509 Certificate (chain) that corresponds to the identifier
      */
-    private X509Certificate[] getX509Certificates(String identifier) throws WSSecurityException {
+    private X509Certificate[] getX509Certificates(Stores snapshot, String identifier) throws WSSecurityException {
         if (identifier == null) {
             return null;
         }
+        KeyStore keystore = snapshot.keystore;
+        KeyStore truststore = snapshot.truststore;
         Certificate[] certs = null;
         try {
             if (keystore != null) {
@@ -1301,7 +1638,8 @@ public class Merlin extends CryptoBase {
     /**
      * Find the Public Key in a keystore.
      */
-    private boolean findPublicKeyInKeyStore(PublicKey publicKey, KeyStore keyStoreToSearch, boolean truststore) {
+    private boolean findPublicKeyInKeyStore(PublicKey publicKey, Stores snapshot, boolean truststore) {
+        KeyStore keyStoreToSearch = truststore ? snapshot.truststore : snapshot.keystore;
         if (keyStoreToSearch == null) {
             return false;
         }
@@ -1311,24 +1649,12 @@ public class Merlin extends CryptoBase {
         }
         LOG.debug("Searching {} for public key {}", keystore, publicKey);
         try {
-            for (Enumeration<String> e = keyStoreToSearch.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = keyStoreToSearch.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = keyStoreToSearch.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate
-                    && publicKey.equals(((X509Certificate)certs[0]).getPublicKey())) {
-                    LOG.debug("PublicKey match found using keystore alias {}", alias);
-                    return true;
-                }
+            CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getByPublicKey(publicKey);
+            if (entry != null) {
+                LOG.debug("PublicKey match found using keystore alias {}", entry.getAlias());
+                return true;
             }
-        } catch (KeyStoreException e) {
+        } catch (WSSecurityException e) {
             return false;
         }
 
@@ -1337,14 +1663,14 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore. If multiple
+     * Get an X509 Certificate (chain) of the X500Principal argument in the keystore or truststore. If multiple
      * certs match the Subject DN, then multiple cert chains are returned.
      * @param subjectRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
+     * @param snapshot The snapshot of the stores
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
-    private List<Certificate[]> getCertificates(Object subjectRDN, KeyStore store, boolean truststore)
+    private List<Certificate[]> getCertificates(Object subjectRDN, Stores snapshot, boolean truststore)
         throws WSSecurityException {
         String keystore = "keystore";
         if (truststore) {
@@ -1352,31 +1678,9 @@ public class Merlin extends CryptoBase {
         }
         LOG.debug("Searching {} for cert with Subject {}", keystore, subjectRDN);
         List<Certificate[]> foundCerts = new ArrayList<>();
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X500Principal foundRDN = ((X509Certificate)certs[0]).getSubjectX500Principal();
-                    Object certName = createBCX509Name(foundRDN.getName());
-
-                    if (subjectRDN.equals(certName)) {
-                        LOG.debug("Subject certificate match found using keystore alias {}", alias);
-                        foundCerts.add(certs);
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        for (CertificateIndex.Entry entry : getCertificateIndex(snapshot, truststore).getBySubject(subjectRDN)) {
+            LOG.debug("Subject certificate match found using keystore alias {}", entry.getAlias());
+            foundCerts.add(entry.getCertificates());
         }
 
         if (foundCerts.isEmpty()) {
@@ -1443,57 +1747,61 @@ public class Merlin extends CryptoBase {
      * Get an implementation-specific identifier that corresponds to the X509Certificate. In
      * this case, the identifier is the KeyStore alias.
      * @param cert The X509Certificate corresponding to the returned identifier
-     * @param store The KeyStore to search
+     * @param snapshot The snapshot of the stores
+     * @param truststore Whether to search the truststore rather than the keystore
      * @return An implementation-specific identifier that corresponds to the X509Certificate
      */
-    private String getIdentifier(X509Certificate cert, KeyStore store)
+    private String getIdentifier(X509Certificate cert, Stores snapshot, boolean truststore)
         throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
+        CertificateIndex.Entry entry =
+            getCertificateIndex(snapshot, truststore).getByCertificate(cert, getThumbprint(cert));
+        return entry == null ? null : entry.getAlias();
+    }
 
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
+    private String getIdentifier(PublicKey publicKey, Stores snapshot, boolean truststore)
+        throws WSSecurityException {
+        CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getByPublicKey(publicKey);
+        return entry == null ? null : entry.getAlias();
+    }
 
-                if (certs != null && certs.length > 0 && certs[0].equals(cert)) {
-                    return alias;
-                }
+    /**
+     * Get the index of the certificates of the keystore or truststore of the given snapshot, building it if
+     * the store has not been indexed yet, or if the number of its entries has changed since it was indexed.
+     * @param snapshot The snapshot of the stores
+     * @param truststore Whether to get the index of the truststore rather than the keystore
+     * @return the index of the certificates of the KeyStore
+     * @throws WSSecurityException
+     */
+    CertificateIndex getCertificateIndex(Stores snapshot, boolean truststore) throws WSSecurityException {
+        KeyStore store = truststore ? snapshot.truststore : snapshot.keystore;
+        CertificateIndex index = truststore ? snapshot.truststoreIndex : snapshot.keystoreIndex;
+        try {
+            if (index != null && index.isCurrent(store)) {
+                return index;
             }
         } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
+            );
         }
-        return null;
+        CertificateIndex builtIndex = createCertificateIndex(store);
+        // Don't cache the index of a KeyStore that has been replaced in the meantime
+        if (truststore) {
+            cache(current -> current.truststore == store, current -> current.withTruststoreIndex(builtIndex));
+        } else {
+            cache(current -> current.keystore == store, current -> current.withKeystoreIndex(builtIndex));
+        }
+        return builtIndex;
     }
 
-    private String getIdentifier(PublicKey publicKey, KeyStore store)
-        throws WSSecurityException {
+    private CertificateIndex createCertificateIndex(KeyStore store) throws WSSecurityException {
         try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].getPublicKey().equals(publicKey)) {
-                    return alias;
-                }
-            }
+            return new CertificateIndex(store, this);
         } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
+            );
         }
-        return null;
     }
 
     /**
@@ -1542,9 +1850,15 @@ public class Merlin extends CryptoBase {
         this.passwordEncryptor = passwordEncryptor;
     }
 
+    /**
+     * Clear the cached private keys, the index of the certificates of the keystore and truststore, the
+     * cached trust anchors and the index of the CRLs. This must be called if an entry of the keystore or
+     * truststore is replaced after it has been set.
+     */
     public void clearCache() {
-        if (enablePrivateKeyCaching) {
-            privateKeyCache.clear();
+        synchronized (stores) {
+            Stores current = getStores();
+            publish(new Stores(current.keystore, current.truststore, current.crlCertStore));
         }
     }
 
@@ -1555,4 +1869,120 @@ public class Merlin extends CryptoBase {
     public void setEnablePrivateKeyCaching(boolean enablePrivateKeyCaching) {
         this.enablePrivateKeyCaching = enablePrivateKeyCaching;
     }
+
+    /**
+     * The PKIXParameters built from a given state of the keystore, truststore and CRL CertStore
+     */
+    private static final class TrustParameters {
+        private final CertificateIndex keystoreIndex;
+        private final CertificateIndex truststoreIndex;
+        private final CertStore crlCertStore;
+        private final PKIXParameters parameters;
+        private final PKIXParameters revocationParameters;
+
+        TrustParameters(CertificateIndex keystoreIndex, CertificateIndex truststoreIndex, CertStore crlCertStore,
+                        PKIXParameters parameters, PKIXParameters revocationParameters) {
+            this.keystoreIndex = keystoreIndex;
+            this.truststoreIndex = truststoreIndex;
+            this.crlCertStore = crlCertStore;
+            this.parameters = parameters;
+            this.revocationParameters = revocationParameters;
+        }
+
+        boolean isCurrent(CertificateIndex currentKeystoreIndex, CertificateIndex currentTruststoreIndex,
+                          CertStore currentCrlCertStore) {
+            // A new index is built whenever a store is replaced or its number of entries changes
+            return keystoreIndex == currentKeystoreIndex && truststoreIndex == currentTruststoreIndex
+                && crlCertStore == currentCrlCertStore;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the keystore, truststore and CRL CertStore, with the indexes and trust
+     * parameters that have been built from them, and the private keys that have been loaded from the
+     * keystore. A request reads the snapshot once, so that it never mixes a store with the index or the
+     * private keys of another one.
+     */
+    static final class Stores {
+        private final KeyStore keystore;
+        private final KeyStore truststore;
+        private final CertStore crlCertStore;
+        private final CertificateIndex keystoreIndex;
+        private final CertificateIndex truststoreIndex;
+        private final CRLIndex crlIndex;
+        private final TrustParameters trustParameters;
+        // The private keys of the keystore, by identifier, with a salted digest of the password they were loaded with
+        private final Map<String, CachedPrivateKey> privateKeyCache;
+
+        Stores(KeyStore keystore, KeyStore truststore, CertStore crlCertStore) {
+            this(keystore, truststore, crlCertStore, null, null, null, null, new ConcurrentHashMap<>());
+        }
+
+        private Stores(KeyStore keystore, KeyStore truststore, CertStore crlCertStore,
+                       CertificateIndex keystoreIndex, CertificateIndex truststoreIndex, CRLIndex crlIndex,
+                       TrustParameters trustParameters, Map<String, CachedPrivateKey> privateKeyCache) {
+            this.keystore = keystore;
+            this.truststore = truststore;
+            this.crlCertStore = crlCertStore;
+            this.keystoreIndex = keystoreIndex;
+            this.truststoreIndex = truststoreIndex;
+            this.crlIndex = crlIndex;
+            this.trustParameters = trustParameters;
+            this.privateKeyCache = privateKeyCache;
+        }
+
+        KeyStore getKeyStore() {
+            return keystore;
+        }
+
+        KeyStore getTrustStore() {
+            return truststore;
+        }
+
+        /**
+         * Get a snapshot of the given stores, which keeps what has been built from the stores that are
+         * not replaced
+         */
+        Stores replace(KeyStore newKeystore, KeyStore newTruststore, CertStore newCrlCertStore) {
+            boolean sameKeystore = newKeystore == keystore;
+            boolean sameTruststore = newTruststore == truststore;
+            boolean sameCrlCertStore = newCrlCertStore == crlCertStore;
+            return new Stores(newKeystore, newTruststore, newCrlCertStore,
+                              sameKeystore ? keystoreIndex : null,
+                              sameTruststore ? truststoreIndex : null,
+                              sameCrlCertStore ? crlIndex : null,
+                              sameKeystore && sameTruststore && sameCrlCertStore ? trustParameters : null,
+                              sameKeystore ? privateKeyCache : new ConcurrentHashMap<>());
+        }
+
+        Stores withKeystoreIndex(CertificateIndex index) {
+            return new Stores(keystore, truststore, crlCertStore, index, truststoreIndex, crlIndex,
+                              trustParameters, privateKeyCache);
+        }
+
+        Stores withTruststoreIndex(CertificateIndex index) {
+            return new Stores(keystore, truststore, crlCertStore, keystoreIndex, index, crlIndex,
+                              trustParameters, privateKeyCache);
+        }
+
+        Stores withCrlIndex(CRLIndex index) {
+            return new Stores(keystore, truststore, crlCertStore, keystoreIndex, truststoreIndex, index,
+                              trustParameters, privateKeyCache);
+        }
+
+        Stores withTrustParameters(TrustParameters parameters) {
+            return new Stores(keystore, truststore, crlCertStore, keystoreIndex, truststoreIndex, crlIndex,
+                              parameters, privateKeyCache);
+        }
+    }
+
+    private static final class CachedPrivateKey {
+        private final PrivateKey privateKey;
+        private final byte[] passwordDigest;
+
+        CachedPrivateKey(PrivateKey privateKey, byte[] passwordDigest) {
+            this.privateKey = privateKey;
+            this.passwordDigest = passwordDigest;
+        }
+    }
 }
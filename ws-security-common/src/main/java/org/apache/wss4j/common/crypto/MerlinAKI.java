@@ -22,27 +22,21 @@ package org.apache.wss4j.common.crypto;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
-import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.PKIXParameters;
-import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
-import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -122,35 +116,31 @@ public class MerlinAKI extends Merlin {
         //
         X509Certificate[] x509certs = certs;
         String issuerString = certs[0].getIssuerX500Principal().getName();
-        try {
-            if (certs.length == 1) {
-                byte[] keyIdentifierBytes =
-                    BouncyCastleUtils.getAuthorityKeyIdentifierBytes(certs[0]);
-                X509Certificate[] foundCerts = getX509CertificatesFromKeyIdentifier(keyIdentifierBytes);
-
-                // If the certs have not been found, the issuer is not in the keystore/truststore
-                // As a direct result, do not trust the transmitted certificate
-                if (foundCerts == null || foundCerts.length < 1) {
-                    String subjectString = certs[0].getSubjectX500Principal().getName();
-                    LOG.debug(
-                        "No certs found in keystore for issuer {} of certificate for {}",
-                         issuerString, subjectString
-                    );
-                    throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.FAILURE, "certpath", new Object[] {"No trusted certs found"}
-                    );
-                }
-
-                //
-                // Form a certificate chain from the transmitted certificate
-                // and the certificate(s) of the issuer from the keystore/truststore
-                //
-                x509certs = new X509Certificate[foundCerts.length + 1];
-                x509certs[0] = certs[0];
-                System.arraycopy(foundCerts, 0, x509certs, 1, foundCerts.length);
+        if (certs.length == 1) {
+            byte[] keyIdentifierBytes =
+                BouncyCastleUtils.getAuthorityKeyIdentifierBytes(certs[0]);
+            X509Certificate[] foundCerts = getX509CertificatesFromKeyIdentifier(keyIdentifierBytes);
+
+            // If the certs have not been found, the issuer is not in the keystore/truststore
+            // As a direct result, do not trust the transmitted certificate
+            if (foundCerts == null || foundCerts.length < 1) {
+                String subjectString = certs[0].getSubjectX500Principal().getName();
+                LOG.debug(
+                    "No certs found in keystore for issuer {} of certificate for {}",
+                     issuerString, subjectString
+                );
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, "certpath", new Object[] {"No trusted certs found"}
+                );
             }
-        } catch (NoSuchAlgorithmException | CertificateException ex) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex, "certpath");
+
+            //
+            // Form a certificate chain from the transmitted certificate
+            // and the certificate(s) of the issuer from the keystore/truststore
+            //
+            x509certs = new X509Certificate[foundCerts.length + 1];
+            x509certs[0] = certs[0];
+            System.arraycopy(foundCerts, 0, x509certs, 1, foundCerts.length);
         }
 
         //
@@ -166,20 +156,6 @@ public class MerlinAKI extends Merlin {
             List<X509Certificate> certList = Arrays.asList(x509certs);
             CertPath path = getCertificateFactory().generateCertPath(certList);
 
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
-
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
             CertPathValidator validator = null;
@@ -189,7 +165,7 @@ public class MerlinAKI extends Merlin {
                 validator = CertPathValidator.getInstance("PKIX", provider);
             }
 
-            PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            PKIXParameters param = getPKIXParameters(enableRevocation);
             validator.validate(path, param);
         } catch (NoSuchProviderException | NoSuchAlgorithmException
             | CertificateException | InvalidAlgorithmParameterException
@@ -208,19 +184,20 @@ public class MerlinAKI extends Merlin {
 
     private X509Certificate[] getX509CertificatesFromKeyIdentifier(
         byte[] keyIdentifierBytes
-    ) throws WSSecurityException, NoSuchAlgorithmException, CertificateEncodingException {
+    ) throws WSSecurityException {
         if (keyIdentifierBytes == null) {
             return null;
         }
 
+        Stores snapshot = getStores();
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(keyIdentifierBytes, keystore);
+        if (snapshot.getKeyStore() != null) {
+            certs = getCertificates(keyIdentifierBytes, snapshot, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(keyIdentifierBytes, truststore);
+        if ((certs == null || certs.length == 0) && snapshot.getTrustStore() != null) {
+            certs = getCertificates(keyIdentifierBytes, snapshot, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -232,33 +209,12 @@ public class MerlinAKI extends Merlin {
 
     private Certificate[] getCertificates(
         byte[] keyIdentifier,
-        KeyStore store
-    ) throws WSSecurityException, NoSuchAlgorithmException, CertificateEncodingException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    byte[] subjectKeyIdentifier =
-                        BouncyCastleUtils.getSubjectKeyIdentifierBytes((X509Certificate)certs[0]);
-                    if (subjectKeyIdentifier != null
-                        && Arrays.equals(subjectKeyIdentifier, keyIdentifier)) {
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Stores snapshot,
+        boolean truststore
+    ) throws WSSecurityException {
+        CertificateIndex.Entry entry = getCertificateIndex(snapshot, truststore).getByKeyIdentifier(keyIdentifier);
+        if (entry != null) {
+            return entry.getCertificates();
         }
         return new Certificate[]{};
     }
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Polls the files that the stores of a Merlin instance were loaded from, and reloads a store in the background
+ * when the last modified time or the size of its file changes. If the reload fails, for example as a
+ * file is still being written, the store that is in use is kept, and the reload is tried again once the file
+ * changes again.
+ *
+ * Only locations that resolve to a file on the file system are watched. The Merlin instance is only weakly
+ * referenced, so that polling stops once it is no longer used.
+ */
+class StoreReloader implements Runnable {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(StoreReloader.class);
+
+    private static ScheduledThreadPoolExecutor executor;
+
+    private final WeakReference<Merlin> merlin;
+    private final List<WatchedStore> stores = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> future;
+
+    StoreReloader(Merlin merlin) {
+        this.merlin = new WeakReference<>(merlin);
+    }
+
+    /**
+     * Reload a store when the file at the given location changes
+     * @param description A description of the store for the log
+     * @param loader The ClassLoader that the location is resolved with
+     * @param location The location that the store was loaded from
+     * @param reload Loads and publishes the store. It must not reference the Merlin instance other than
+     *               through its argument.
+     */
+    void watch(String description, ClassLoader loader, String location, Reload reload) {
+        Path path = getPath(loader, location);
+        if (path == null) {
+            LOG.warn("The {} will not be reloaded as {} is not a file", description, location);
+            return;
+        }
+        stores.add(new WatchedStore(description, path, reload));
+    }
+
+    /**
+     * Start polling the watched files
+     * @param interval The interval between two polls, in seconds
+     */
+    synchronized void start(long interval) {
+        if (future == null && !stores.isEmpty()) {
+            future = getExecutor().scheduleWithFixedDelay(this, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop polling the watched files
+     */
+    synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        Merlin crypto = merlin.get();
+        if (crypto == null) {
+            stop();
+            return;
+        }
+        boolean reloaded = false;
+        for (WatchedStore store : stores) {
+            reloaded |= store.reloadIfChanged(crypto);
+        }
+        if (reloaded) {
+            crypto.storesReloaded();
+        }
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "wss4j-merlin-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Get the file that the given location resolves to, in the same order as Loader.loadInputStream resolves
+     * it, or null if it does not resolve to a file
+     */
+    private static Path getPath(ClassLoader loader, String location) {
+        try {
+            URL url = null;
+            try {
+                url = new URL(location);
+            } catch (MalformedURLException ex) { //NOPMD
+                // skip
+            }
+            if (url == null) {
+                url = Loader.getResource(loader, location);
+            }
+            if (url != null) {
+                return "file".equals(url.getProtocol()) ? Paths.get(url.toURI()) : null;
+            }
+            Path path = Paths.get(location);
+            return Files.isRegularFile(path) ? path : null;
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Loads a store, and publishes it on the given Merlin instance
+     */
+    interface Reload {
+        void reload(Merlin merlin) throws WSSecurityException, IOException;
+    }
+
+    private static final class WatchedStore {
+        private final String description;
+        private final Path path;
+        private final Reload reload;
+        // Only accessed by the thread that polls
+        private long[] loadedState;
+        private long[] failedState;
+
+        WatchedStore(String description, Path path, Reload reload) {
+            this.description = description;
+            this.path = path;
+            this.reload = reload;
+            loadedState = getState();
+        }
+
+        boolean reloadIfChanged(Merlin crypto) {
+            long[] state = getState();
+            if (state == null || Arrays.equals(state, loadedState) || Arrays.equals(state, failedState)) {
+                return false;
+            }
+            try {
+                reload.reload(crypto);
+                loadedState = state;
+                failedState = null;
+                LOG.info("The {} has been reloaded from {}", description, path);
+                return true;
+            } catch (WSSecurityException | IOException | RuntimeException ex) {
+                LOG.warn("The {} could not be reloaded from {}, the previous one is kept: {}",
+                         description, path, ex.getMessage());
+                LOG.debug(ex.getMessage(), ex);
+                failedState = state;
+                return false;
+            }
+        }
+
+        /**
+         * Get the last modified time and size of the file, or null if they cannot be read, for example
+         * as the file is being replaced
+         */
+        private long[] getState() {
+            try {
+                return new long[] {Files.getLastModifiedTime(path).toMillis(), Files.size(path)};
+            } catch (IOException ex) {
+                LOG.debug(ex.getMessage(), ex);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CRL;
+import java.security.cert.CertStore;
+import java.security.cert.CertStoreException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
+
+/**
+ * A cache of certificate chains that a Crypto implementation has found to be trusted, so that verifying trust
+ * in a chain that has been seen before costs a single hash lookup instead of a full PKIX validation. A chain
+ * is cached together with the revocation flag and the Subject and Issuer DN constraints that it was validated
+ * with, and with the state of the trust material of the Crypto at the time, so that a change of the
+ * truststore invalidates it.
+ *
+ * An entry expires at the earliest notAfter date of the certificates of the chain, at the earliest nextUpdate
+ * date of the CRLs if revocation was enabled, or when its time to live has passed, whichever comes first. The
+ * time to live also bounds the validity of any intermediate certificates that are taken from the truststore.
+ * When the cache is full, the least recently used entry is evicted.
+ */
+public class ValidatedCertPathCache {
+
+    /**
+     * The default maximum number of cached chains
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * The default time to live of a cached chain, in seconds
+     */
+    public static final long DEFAULT_TTL = 3600L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ValidatedCertPathCache.class);
+
+    private final long ttlMillis;
+    private final Map<Key, CachedPath> cache;
+
+    public ValidatedCertPathCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize The maximum number of cached chains
+     * @param ttl The time to live of a cached chain, in seconds
+     */
+    public ValidatedCertPathCache(final int maxSize, long ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maxSize parameter must be positive");
+        }
+        if (ttl < 1) {
+            throw new IllegalArgumentException("The ttl parameter must be positive");
+        }
+        ttlMillis = ttl * 1000L;
+        cache = new LinkedHashMap<Key, CachedPath>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedPath> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Create the key under which the validation of the given chain is cached
+     */
+    static Key createKey(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) throws WSSecurityException {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-256");
+        MessageDigest sha;
+        try {
+            sha = pool.get();
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+        byte[] digest;
+        try {
+            // The DER encodings are self-delimiting, so the digest of their concatenation identifies the chain
+            for (X509Certificate cert : certs) {
+                try {
+                    sha.update(cert.getEncoded());
+                } catch (CertificateEncodingException ex) {
+                    throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+                    );
+                }
+            }
+            digest = sha.digest();
+        } finally {
+            pool.release(sha);
+        }
+        return new Key(digest, enableRevocation,
+                       getConstraints(subjectCertConstraints), getConstraints(issuerCertConstraints));
+    }
+
+    /**
+     * Return true if the chain with the given key has been cached for the given state of the trust material,
+     * and has not expired
+     */
+    synchronized boolean contains(Key key, Object trustState) {
+        CachedPath entry = cache.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.trustState != trustState || entry.expiry <= System.currentTimeMillis()) {
+            cache.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cache the given chain, that has been found to be trusted for the given state of the trust material
+     * @param key The key of the chain, as returned by createKey
+     * @param trustState An object that is replaced whenever the trust material changes
+     * @param certs The chain
+     * @param crlCertStore The CertStore of the CRLs that the chain was checked against, or null if revocation
+     *                     was not enabled
+     */
+    void add(Key key, Object trustState, X509Certificate[] certs, CertStore crlCertStore) {
+        long now = System.currentTimeMillis();
+        long expiry = now + ttlMillis;
+        for (X509Certificate cert : certs) {
+            expiry = Math.min(expiry, cert.getNotAfter().getTime());
+        }
+        if (crlCertStore != null) {
+            try {
+                for (CRL crl : crlCertStore.getCRLs(null)) {
+                    Date nextUpdate = crl instanceof X509CRL ? ((X509CRL) crl).getNextUpdate() : null;
+                    if (nextUpdate != null) {
+                        expiry = Math.min(expiry, nextUpdate.getTime());
+                    }
+                }
+            } catch (CertStoreException ex) {
+                LOG.debug("Not caching the certificate path as the CRLs could not be read: {}", ex.getMessage());
+                return;
+            }
+        }
+
+        if (expiry > now) {
+            synchronized (this) {
+                cache.put(key, new CachedPath(trustState, expiry));
+            }
+        }
+    }
+
+    /**
+     * Remove all of the cached chains
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Return the number of cached chains, including those that have expired but have not been removed yet
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private static List<String> getConstraints(Collection<Pattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> constraints = new ArrayList<>(patterns.size());
+        for (Pattern pattern : patterns) {
+            constraints.add(pattern.flags() + ":" + pattern.pattern());
+        }
+        return constraints;
+    }
+
+    /**
+     * The digest of a chain, together with the parameters that it was validated with
+     */
+    static final class Key {
+        private final byte[] digest;
+        private final boolean enableRevocation;
+        private final List<String> subjectCertConstraints;
+        private final List<String> issuerCertConstraints;
+        private final int hashCode;
+
+        Key(byte[] digest, boolean enableRevocation,
+            List<String> subjectCertConstraints, List<String> issuerCertConstraints) {
+            this.digest = digest;
+            this.enableRevocation = enableRevocation;
+            this.subjectCertConstraints = subjectCertConstraints;
+            this.issuerCertConstraints = issuerCertConstraints;
+            hashCode = 31 * (31 * Arrays.hashCode(digest) + subjectCertConstraints.hashCode())
+                + issuerCertConstraints.hashCode() + (enableRevocation ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return enableRevocation == other.enableRevocation && Arrays.equals(digest, other.digest)
+                && subjectCertConstraints.equals(other.subjectCertConstraints)
+                && issuerCertConstraints.equals(other.issuerCertConstraints);
+        }
+    }
+
+    private static final class CachedPath {
+        private final Object trustState;
+        private final long expiry;
+
+        CachedPath(Object trustState, long expiry) {
+            this.trustState = trustState;
+            this.expiry = expiry;
+        }
+    }
+}
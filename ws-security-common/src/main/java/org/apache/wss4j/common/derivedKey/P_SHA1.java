@@ -44,9 +44,10 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.DestroyFailedException;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 
 public class P_SHA1 implements DerivationAlgorithm {
 
@@ -57,17 +58,22 @@ public class P_SHA1 implements DerivationAlgorithm {
     public byte[] createKey(byte[] secret, byte[] seed, int offset, long length)
             throws WSSecurityException {
 
+        EnginePool<Mac> pool = EnginePool.getMacPool("HmacSHA1");
         try {
-            Mac mac = Mac.getInstance("HmacSHA1");
-
-            byte[] tempBytes = pHash(secret, seed, mac, offset + (int) length);
+            Mac mac = pool.get();
+            byte[] tempBytes;
+            try {
+                tempBytes = pHash(secret, seed, mac, offset + (int) length);
+            } finally {
+                pool.release(mac);
+            }
 
             byte[] key = new byte[(int) length];
 
             System.arraycopy(tempBytes, offset, key, 0, key.length);
 
             return key;
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        } catch (GeneralSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "errorInKeyDerivation");
         }
     }
@@ -32,6 +32,7 @@ public class KerberosServiceContext {
     private GSSCredential delegationCredential;
     private GSSContext gssContext;
     private byte[] kerberosToken;
+    private int lifetime = -1;
 
     /**
      * @return the principal
@@ -85,4 +86,18 @@ public class KerberosServiceContext {
         this.kerberosToken = kerberosToken;
     }
 
+    /**
+     * @return the remaining lifetime of the security context in seconds, or -1 if it is not known
+     */
+    public int getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * @param lifetime the remaining lifetime of the security context in seconds
+     */
+    public void setLifetime(int lifetime) {
+        this.lifetime = lifetime;
+    }
+
 }
@@ -104,6 +104,7 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
             krbServiceCtx.setPrincipal(new KerberosPrincipal(clientName.toString()));
             krbServiceCtx.setGssContext(secContext);
             krbServiceCtx.setKerberosToken(returnedToken);
+            krbServiceCtx.setLifetime(secContext.getLifetime());
 
             try {
                 @SuppressWarnings("rawtypes")
@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Date;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+/**
+ * Caches the Subject that a Kerberos service obtains from a JAAS login, so that it can be shared by the
+ * threads that accept service tickets, instead of logging in for every ticket.
+ *
+ * The cached Subject is refreshed in the background once the given fraction of the lifetime of its
+ * ticket granting ticket has elapsed, while the current Subject is still returned. A Subject without a
+ * ticket granting ticket (for example from a keytab login with isInitiator=false) is refreshed once the
+ * maximum lifetime has elapsed. If the Subject has expired, the login is done on the calling thread.
+ *
+ * A replaced LoginContext is not logged out, as its Subject may still be used by a request in progress.
+ */
+public class KerberosServiceSubjectCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceSubjectCache.class);
+
+    private static final long DEFAULT_MAX_LIFETIME = 8L * 60L * 60L;
+    private static final double DEFAULT_REFRESH_FRACTION = 0.8;
+    private static final long RETRY_INTERVAL = 60L * 1000L;
+
+    private static ThreadPoolExecutor executor;
+
+    private final String contextName;
+    private final CallbackHandler callbackHandler;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Object lock = new Object();
+    private volatile CachedSubject cachedSubject;
+    private long maxLifetime = DEFAULT_MAX_LIFETIME;
+    private double refreshFraction = DEFAULT_REFRESH_FRACTION;
+
+    /**
+     * @param contextName the JAAS Login context name to use
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     */
+    public KerberosServiceSubjectCache(String contextName, CallbackHandler callbackHandler) {
+        this.contextName = contextName;
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Get the Subject of the service, logging in if there is no valid cached Subject
+     * @return the Subject of the service
+     * @throws LoginException if the login fails
+     */
+    public Subject getSubject() throws LoginException {
+        CachedSubject cached = cachedSubject;
+        long now = System.currentTimeMillis();
+        if (cached == null || now >= cached.expires) {
+            synchronized (lock) {
+                cached = cachedSubject;
+                if (cached == null || System.currentTimeMillis() >= cached.expires) {
+                    cached = createCachedSubject();
+                    cachedSubject = cached;
+                }
+            }
+        } else if (now >= cached.refresh && refreshing.compareAndSet(false, true)) {
+            refreshInBackground(cached);
+        }
+        return cached.subject;
+    }
+
+    /**
+     * Discard the cached Subject, so that the next call to getSubject logs in again
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            cachedSubject = null;
+        }
+    }
+
+    /**
+     * Log in and return the Subject of the service. It is called by at most one thread at a time.
+     * @return the Subject of the service
+     * @throws LoginException if the login fails
+     */
+    protected Subject login() throws LoginException {
+        LoginContext loginContext;
+        if (callbackHandler != null) {
+            loginContext = new LoginContext(contextName, callbackHandler);
+        } else {
+            loginContext = new LoginContext(contextName);
+        }
+        loginContext.login();
+        return loginContext.getSubject();
+    }
+
+    private void refreshInBackground(CachedSubject current) {
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    synchronized (lock) {
+                        if (cachedSubject == current) {
+                            cachedSubject = createCachedSubject();
+                            LOG.debug("The Subject of the {} login context has been refreshed", contextName);
+                        }
+                    }
+                } catch (LoginException | RuntimeException ex) {
+                    LOG.warn("The Subject of the {} login context could not be refreshed: {}",
+                             contextName, ex.getMessage());
+                    LOG.debug(ex.getMessage(), ex);
+                    // Retry later, rather than on every request
+                    current.refresh = Math.min(current.expires, System.currentTimeMillis() + RETRY_INTERVAL);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            refreshing.set(false);
+            throw ex;
+        }
+    }
+
+    private CachedSubject createCachedSubject() throws LoginException {
+        Subject subject = login();
+        long now = System.currentTimeMillis();
+        long start = now;
+        long expires = now + maxLifetime * 1000L;
+
+        KerberosTicket tgt = getTicketGrantingTicket(subject);
+        if (tgt != null && tgt.getEndTime() != null) {
+            Date startTime = tgt.getStartTime() != null ? tgt.getStartTime() : tgt.getAuthTime();
+            if (startTime != null && startTime.getTime() < now) {
+                start = startTime.getTime();
+            }
+            expires = Math.min(expires, tgt.getEndTime().getTime());
+        }
+        // Do not refresh again straight away if the login returns a ticket that is already close to its end
+        long refresh = start + (long)((expires - start) * refreshFraction);
+        refresh = Math.max(refresh, now + Math.min(RETRY_INTERVAL, (expires - now) / 2));
+        return new CachedSubject(subject, refresh, expires);
+    }
+
+    private static KerberosTicket getTicketGrantingTicket(Subject subject) {
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getServer() != null && ticket.getServer().getName().startsWith("krbtgt/")) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "wss4j-kerberos-login");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    public String getContextName() {
+        return contextName;
+    }
+
+    /**
+     * Get the maximum time for which a Subject is cached, in seconds. The default is 8 hours.
+     * @return the maximum time for which a Subject is cached, in seconds
+     */
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Set the maximum time for which a Subject is cached, in seconds. The lifetime of a Subject with a
+     * ticket granting ticket is also bounded by the end time of the ticket.
+     * @param maxLifetime the maximum time for which a Subject is cached, in seconds
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        if (maxLifetime <= 0) {
+            throw new IllegalArgumentException("The maximum lifetime must be positive");
+        }
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Get the fraction of the lifetime of a Subject after which it is refreshed in the background.
+     * The default is 0.8.
+     * @return the fraction of the lifetime of a Subject after which it is refreshed
+     */
+    public double getRefreshFraction() {
+        return refreshFraction;
+    }
+
+    /**
+     * Set the fraction of the lifetime of a Subject after which it is refreshed in the background.
+     * @param refreshFraction the fraction of the lifetime of a Subject after which it is refreshed, between
+     *                        0 and 1
+     */
+    public void setRefreshFraction(double refreshFraction) {
+        if (refreshFraction < 0 || refreshFraction > 1) {
+            throw new IllegalArgumentException("The refresh fraction must be between 0 and 1");
+        }
+        this.refreshFraction = refreshFraction;
+    }
+
+    private static final class CachedSubject {
+        private final Subject subject;
+        private final long expires;
+        private volatile long refresh;
+
+        CachedSubject(Subject subject, long refresh, long expires) {
+            this.subject = subject;
+            this.refresh = refresh;
+            this.expires = expires;
+        }
+    }
+}
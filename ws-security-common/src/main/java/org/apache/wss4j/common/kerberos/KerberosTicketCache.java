@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the Kerberos AP-REQ tokens that have been accepted by a service, keyed by the SHA-1 digest
+ * of the AP-REQ (the value of a KeyIdentifier with the Kerberosv5APREQSHA1 ValueType). It holds the client
+ * principal and the session key established by each token, until the service ticket expires or the
+ * maximum lifetime of an entry elapses, so that later references to the token can be resolved without
+ * accepting it again.
+ *
+ * As an AP-REQ contains an authenticator that must not be accepted twice, the cache also detects replays:
+ * a token is reserved before it is accepted, and a second reservation of the same token fails until its
+ * entry expires. This class is thread-safe.
+ */
+public class KerberosTicketCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_MAX_LIFETIME = 60L * 60L;
+
+    private final int maxEntries;
+    private final long maxLifetime;
+    private final Map<ByteBuffer, CachedTicket> tickets = new LinkedHashMap<>();
+
+    public KerberosTicketCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_LIFETIME);
+    }
+
+    /**
+     * @param maxEntries the maximum number of tokens in the cache
+     * @param maxLifetime the maximum time for which a token is cached, in seconds. It should be longer
+     *                    than the clock skew allowed for authenticators, so that replays are detected.
+     */
+    public KerberosTicketCache(int maxEntries, long maxLifetime) {
+        if (maxEntries <= 0 || maxLifetime <= 0) {
+            throw new IllegalArgumentException("The maximum number of entries and lifetime must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * Reserve the given token before it is accepted
+     * @param digest the SHA-1 digest of the AP-REQ token
+     * @return false if the token is already in the cache, i.e. if it is a replay
+     */
+    public synchronized boolean reserve(byte[] digest) {
+        long now = System.currentTimeMillis();
+        ByteBuffer key = ByteBuffer.wrap(digest.clone());
+        CachedTicket ticket = tickets.get(key);
+        if (ticket != null && now < ticket.expires) {
+            return false;
+        }
+        if (ticket == null && tickets.size() >= maxEntries) {
+            purge(now);
+        }
+        tickets.put(key, new CachedTicket(null, null, now + maxLifetime * 1000L));
+        return true;
+    }
+
+    /**
+     * Store the outcome of accepting a reserved token
+     * @param digest the SHA-1 digest of the AP-REQ token
+     * @param principal the client principal
+     * @param sessionKey the session key, if known
+     * @param lifetime the remaining lifetime of the service ticket in seconds, or a negative value if
+     *                 it is not known
+     */
+    public synchronized void put(byte[] digest, Principal principal, byte[] sessionKey, long lifetime) {
+        long now = System.currentTimeMillis();
+        long expires = now + maxLifetime * 1000L;
+        if (lifetime >= 0 && lifetime < maxLifetime) {
+            expires = now + lifetime * 1000L;
+        }
+        ByteBuffer key = ByteBuffer.wrap(digest.clone());
+        if (!tickets.containsKey(key) && tickets.size() >= maxEntries) {
+            purge(now);
+        }
+        tickets.put(key, new CachedTicket(principal, sessionKey == null ? null : sessionKey.clone(), expires));
+    }
+
+    /**
+     * Release a reserved token that could not be accepted
+     * @param digest the SHA-1 digest of the AP-REQ token
+     */
+    public synchronized void release(byte[] digest) {
+        ByteBuffer key = ByteBuffer.wrap(digest);
+        CachedTicket ticket = tickets.get(key);
+        if (ticket != null && ticket.principal == null) {
+            tickets.remove(key);
+        }
+    }
+
+    /**
+     * Get the accepted token with the given digest
+     * @param digest the SHA-1 digest of the AP-REQ token
+     * @return the accepted token, or null if it is not in the cache, has expired, or is being accepted
+     */
+    public synchronized CachedTicket get(byte[] digest) {
+        CachedTicket ticket = tickets.get(ByteBuffer.wrap(digest));
+        if (ticket == null || ticket.principal == null || System.currentTimeMillis() >= ticket.expires) {
+            return null;
+        }
+        return ticket;
+    }
+
+    public synchronized int size() {
+        return tickets.size();
+    }
+
+    public synchronized void clear() {
+        tickets.clear();
+    }
+
+    /**
+     * Remove the expired tokens, and then the oldest ones if the cache is still full
+     */
+    private void purge(long now) {
+        tickets.values().removeIf(ticket -> now >= ticket.expires);
+        Iterator<CachedTicket> iterator = tickets.values().iterator();
+        while (tickets.size() >= maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * An accepted AP-REQ token
+     */
+    public static final class CachedTicket {
+        private final Principal principal;
+        private final byte[] sessionKey;
+        private final long expires;
+
+        CachedTicket(Principal principal, byte[] sessionKey, long expires) {
+            this.principal = principal;
+            this.sessionKey = sessionKey;
+            this.expires = expires;
+        }
+
+        public Principal getPrincipal() {
+            return principal;
+        }
+
+        public byte[] getSessionKey() {
+            return sessionKey == null ? null : sessionKey.clone();
+        }
+
+        /**
+         * @return the time at which the entry expires, in milliseconds since the epoch
+         */
+        public long getExpires() {
+            return expires;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+/**
+ * A pool of JCA engine objects (MessageDigest, Mac, Cipher or CertificateFactory instances) of a given
+ * algorithm and provider, so that the hot paths do not pay for the provider lookup of getInstance on every
+ * operation. There is one shared pool per type, algorithm and provider.
+ *
+ * An engine is taken from the pool with {@link #get()}, used by the calling thread only, and given back with
+ * {@link #release(Object)}. The pool is a small array of slots that are claimed and filled with compare and
+ * set operations, starting at a slot that depends on the calling thread, so it neither blocks nor holds a
+ * reference per thread, which suits large numbers of (virtual) threads. If all of the slots that are probed
+ * are empty, a new engine is created, and if they are all full, a released engine is discarded.
+ *
+ * A MessageDigest or Mac is reset when it is released. A Mac or Cipher keeps the key that it was last
+ * initialized with until it is initialized again, so it must always be initialized after {@link #get()}.
+ */
+public final class EnginePool<T> {
+
+    private static final int SLOTS =
+        Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4));
+    private static final int PROBES = Math.min(4, SLOTS);
+
+    private static final ConcurrentMap<String, EnginePool<?>> POOLS = new ConcurrentHashMap<>();
+
+    private final Factory<T> factory;
+    private final Reset<T> reset;
+    private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SLOTS);
+
+    private EnginePool(Factory<T> factory, Reset<T> reset) {
+        this.factory = factory;
+        this.reset = reset;
+    }
+
+    /**
+     * Get the pool of MessageDigest instances of the given algorithm
+     */
+    public static EnginePool<MessageDigest> getMessageDigestPool(String algorithm) {
+        return getMessageDigestPool(algorithm, null);
+    }
+
+    /**
+     * Get the pool of MessageDigest instances of the given algorithm and provider
+     * @param provider The name of the provider, or null for the most preferred provider of the algorithm
+     */
+    public static EnginePool<MessageDigest> getMessageDigestPool(String algorithm, String provider) {
+        return getPool("MessageDigest", algorithm, provider,
+            () -> provider == null
+                ? MessageDigest.getInstance(algorithm) : MessageDigest.getInstance(algorithm, provider),
+            MessageDigest::reset);
+    }
+
+    /**
+     * Get the pool of Mac instances of the given algorithm
+     */
+    public static EnginePool<Mac> getMacPool(String algorithm) {
+        return getMacPool(algorithm, null);
+    }
+
+    /**
+     * Get the pool of Mac instances of the given algorithm and provider
+     * @param provider The name of the provider, or null for the most preferred provider of the algorithm
+     */
+    public static EnginePool<Mac> getMacPool(String algorithm, String provider) {
+        return getPool("Mac", algorithm, provider,
+            () -> provider == null ? Mac.getInstance(algorithm) : Mac.getInstance(algorithm, provider),
+            Mac::reset);
+    }
+
+    /**
+     * Get the pool of Cipher instances of the given transformation
+     */
+    public static EnginePool<Cipher> getCipherPool(String transformation) {
+        return getCipherPool(transformation, null);
+    }
+
+    /**
+     * Get the pool of Cipher instances of the given transformation and provider
+     * @param provider The name of the provider, or null for the most preferred provider of the transformation
+     */
+    public static EnginePool<Cipher> getCipherPool(String transformation, String provider) {
+        return getPool("Cipher", transformation, provider,
+            () -> provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider),
+            null);
+    }
+
+    /**
+     * Get the pool of CertificateFactory instances of the given type
+     */
+    public static EnginePool<CertificateFactory> getCertificateFactoryPool(String type) {
+        return getCertificateFactoryPool(type, null);
+    }
+
+    /**
+     * Get the pool of CertificateFactory instances of the given type and provider
+     * @param provider The name of the provider, or null for the most preferred provider of the type
+     */
+    public static EnginePool<CertificateFactory> getCertificateFactoryPool(String type, String provider) {
+        return getPool("CertificateFactory", type, provider,
+            () -> provider == null ? CertificateFactory.getInstance(type) : CertificateFactory.getInstance(type, provider),
+            null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> EnginePool<T> getPool(
+        String engineType, String algorithm, String provider, Factory<T> factory, Reset<T> reset
+    ) {
+        String key = engineType + '/' + algorithm + '/' + provider;
+        EnginePool<?> pool = POOLS.get(key);
+        if (pool == null) {
+            pool = POOLS.computeIfAbsent(key, k -> new EnginePool<>(factory, reset));
+        }
+        return (EnginePool<T>) pool;
+    }
+
+    /**
+     * Take an engine from the pool, or create one if there is no engine in the pool
+     * @return an engine, which must be given back with {@link #release(Object)} once it is no longer used
+     * @throws GeneralSecurityException if the algorithm or provider is not available
+     */
+    public T get() throws GeneralSecurityException {
+        int start = getStartSlot();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            T engine = slots.get(slot);
+            if (engine != null && slots.compareAndSet(slot, engine, null)) {
+                return engine;
+            }
+        }
+        return factory.create();
+    }
+
+    /**
+     * Give an engine back to the pool. It must have been taken from this pool, and must not be used after
+     * it has been released.
+     * @param engine The engine, or null
+     */
+    public void release(T engine) {
+        if (engine == null) {
+            return;
+        }
+        if (reset != null) {
+            reset.reset(engine);
+        }
+        int start = getStartSlot();
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, engine)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wrap a stream that uses an engine of this pool, so that the engine is released once the stream
+     * is closed
+     */
+    public InputStream releaseOnClose(InputStream inputStream, T engine) {
+        return new FilterInputStream(inputStream) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    release(engine);
+                }
+            }
+        };
+    }
+
+    private static int getStartSlot() {
+        // Spread the ids of the threads, so that threads that are created one after the other start
+        // at different slots
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) * 0x9E3779B9 >>> 16;
+    }
+
+    private interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    private interface Reset<T> {
+        void reset(T engine);
+    }
+}
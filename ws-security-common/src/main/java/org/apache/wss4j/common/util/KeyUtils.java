@@ -44,11 +44,6 @@ public final class KeyUtils {
 
     public static final String RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
 
-    /**
-     * A cached MessageDigest object
-     */
-    private static MessageDigest digest;
-
     static {
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5, 128);
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_RIPEMD160, 160);
@@ -227,18 +222,21 @@ public final class KeyUtils {
     }
 
     /**
-     * Generate a (SHA1) digest of the input bytes. The MessageDigest instance that backs this
-     * method is cached for efficiency.
+     * Generate a (SHA1) digest of the input bytes. The MessageDigest instances that back this
+     * method are pooled for efficiency.
      * @param inputBytes the bytes to digest
      * @return the digest of the input bytes
      * @throws WSSecurityException
      */
-    public static synchronized byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+    public static byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-1");
         try {
-            if (digest == null) {
-                digest = MessageDigest.getInstance("SHA-1");
+            MessageDigest digest = pool.get();
+            try {
+                return digest.digest(inputBytes);
+            } finally {
+                pool.release(digest);
             }
-            return digest.digest(inputBytes);
         } catch (Exception e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
                                           new Object[] {"Error in generating digest"}
@@ -21,8 +21,8 @@ package org.apache.wss4j.common.util;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -62,30 +62,35 @@ public final class UsernameTokenUtil {
         System.arraycopy(password, 0, pwSalt, 0, password.length);
         System.arraycopy(salt, 0, pwSalt, password.length, salt.length);
 
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA1");
         MessageDigest sha = null;
         try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
+            sha = pool.get();
+        } catch (GeneralSecurityException e) {
             LOG.debug(e.getMessage(), e);
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
         }
-        //
-        // Make the first hash round with start value
-        //
-        byte[] k = sha.digest(pwSalt);
-        //
-        // Perform the 1st up to iteration-1 hash rounds
-        //
-        int iter = iteration;
-        if (iter <= 0) {
-            iter = DEFAULT_ITERATION;
-        }
-        for (int i = 1; i < iter; i++) {
-            k = sha.digest(k);
+        try {
+            //
+            // Make the first hash round with start value
+            //
+            byte[] k = sha.digest(pwSalt);
+            //
+            // Perform the 1st up to iteration-1 hash rounds
+            //
+            int iter = iteration;
+            if (iter <= 0) {
+                iter = DEFAULT_ITERATION;
+            }
+            for (int i = 1; i < iter; i++) {
+                k = sha.digest(k);
+            }
+            return k;
+        } finally {
+            pool.release(sha);
         }
-        return k;
     }
 
     /**
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the AuthenticatedSubjectCache.
+ */
+public class AuthenticatedSubjectCacheTest {
+
+    @Test
+    public void testCachedSubject() throws Exception {
+        AuthenticatedSubjectCache subjectCache = new AuthenticatedSubjectCache();
+        Subject subject = createSubject("alice");
+
+        assertNull(subjectCache.get("alice", "password"));
+        subjectCache.put("alice", "password", subject);
+
+        Subject cached = subjectCache.get("alice", "password");
+        assertNotNull(cached);
+        assertEquals(subject.getPrincipals(), cached.getPrincipals());
+        // A copy of the Subject is returned
+        assertNotSame(subject, cached);
+        cached.getPrincipals().clear();
+        assertEquals(1, subjectCache.get("alice", "password").getPrincipals().size());
+
+        assertEquals(2, subjectCache.getHitCount());
+        assertEquals(1, subjectCache.getMissCount());
+    }
+
+    @Test
+    public void testWrongPassword() throws Exception {
+        AuthenticatedSubjectCache subjectCache = new AuthenticatedSubjectCache();
+        subjectCache.put("alice", "password", createSubject("alice"));
+
+        assertNull(subjectCache.get("alice", "other-password"));
+        assertNull(subjectCache.get("bob", "password"));
+        assertNull(subjectCache.get("alice", null));
+        assertEquals(0, subjectCache.getHitCount());
+
+        // A new password replaces the entry
+        subjectCache.put("alice", "other-password", createSubject("alice"));
+        assertNotNull(subjectCache.get("alice", "other-password"));
+        assertNull(subjectCache.get("alice", "password"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        AuthenticatedSubjectCache subjectCache = new AuthenticatedSubjectCache(10, 1L);
+        subjectCache.put("alice", "password", createSubject("alice"));
+        assertNotNull(subjectCache.get("alice", "password"));
+
+        Thread.sleep(1100L);
+        assertNull(subjectCache.get("alice", "password"));
+        assertEquals(0, subjectCache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        AuthenticatedSubjectCache subjectCache = new AuthenticatedSubjectCache();
+        subjectCache.put("alice", "password", createSubject("alice"));
+        subjectCache.put("bob", "password", createSubject("bob"));
+
+        subjectCache.invalidate("alice");
+        assertNull(subjectCache.get("alice", "password"));
+        assertNotNull(subjectCache.get("bob", "password"));
+
+        subjectCache.invalidateAll();
+        assertEquals(0, subjectCache.size());
+        assertNull(subjectCache.get("bob", "password"));
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        AuthenticatedSubjectCache subjectCache = new AuthenticatedSubjectCache(10, 60L);
+        for (int i = 0; i < 25; i++) {
+            subjectCache.put("user" + i, "password", createSubject("user" + i));
+            // Keep the first user in use
+            assertTrue(i == 0 || subjectCache.get("user0", "password") != null);
+        }
+        assertEquals(10, subjectCache.size());
+        assertEquals(15, subjectCache.getEvictionCount());
+        // The least recently used users are evicted first
+        assertNotNull(subjectCache.get("user0", "password"));
+        assertNull(subjectCache.get("user1", "password"));
+        assertNotNull(subjectCache.get("user24", "password"));
+    }
+
+    private static Subject createSubject(String username) {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new CustomTokenPrincipal(username));
+        return subject;
+    }
+}
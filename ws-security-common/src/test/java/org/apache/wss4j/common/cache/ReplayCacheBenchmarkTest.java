@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmarks for the ReplayCache implementations. The results are written to the log.
+ * Run with "mvn test -Dwss4j.benchmark=true".
+ */
+@EnabledIfSystemProperty(named = "wss4j.benchmark", matches = "true")
+public class ReplayCacheBenchmarkTest {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReplayCacheBenchmarkTest.class);
+
+    private static final long WARMUP_MILLIS = 1000L;
+    private static final long RUN_MILLIS = 3000L;
+    private static final int MAX_THREADS = 64;
+    private static final int CACHED_ENTRIES = 50000;
+    private static final int LOOKUPS = 200000;
+
+    @Test
+    public void testMemoryReplayCacheContention() throws Exception {
+        runContentionBenchmark("MemoryReplayCache", MemoryReplayCache::new);
+    }
+
+    @Test
+    public void testShardedMemoryReplayCacheContention() throws Exception {
+        runContentionBenchmark("ShardedMemoryReplayCache", ShardedMemoryReplayCache::new);
+    }
+
+    @Test
+    public void testEhCacheReplayCacheLookup() throws Exception {
+        runLookupBenchmark(false);
+    }
+
+    @Test
+    public void testEhCacheReplayCacheBloomFilterLookup() throws Exception {
+        runLookupBenchmark(true);
+    }
+
+    /**
+     * Each thread repeatedly adds a new identifier with addIfAbsent, as the SignatureProcessor and
+     * UsernameTokenProcessor do, and the throughput for 1 to 64 threads is logged.
+     */
+    static void runContentionBenchmark(String name, Supplier<ReplayCache> cacheSupplier) throws Exception {
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            try (ReplayCache replayCache = cacheSupplier.get()) {
+                runThreads(replayCache, threads, WARMUP_MILLIS);
+                long operations = runThreads(replayCache, threads, RUN_MILLIS);
+                assertTrue(operations > 0);
+                LOG.info("{}: {} threads, {} ops/s", name, threads, operations * 1000L / RUN_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Fill an EHCacheReplayCache so that it overflows to disk, and then log the latency of looking up
+     * identifiers that are not in the cache (the normal case), as well as the false positive rate of the
+     * Bloom filter if it is enabled.
+     */
+    private static void runLookupBenchmark(boolean useBloomFilter) throws Exception {
+        Path diskstorePath =
+            new File(System.getProperty("java.io.tmpdir"), "bench-" + UUID.randomUUID().toString()).toPath();
+        EHCacheReplayCache replayCache =
+            new EHCacheReplayCache("bench", diskstorePath, 50, 10000, false, useBloomFilter);
+        try {
+            for (int i = 0; i < CACHED_ENTRIES; i++) {
+                replayCache.add(UUID.randomUUID().toString());
+            }
+
+            String[] unseen = new String[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                unseen[i] = UUID.randomUUID().toString();
+            }
+
+            // Warm up
+            for (int i = 0; i < LOOKUPS / 10; i++) {
+                replayCache.contains(unseen[i]);
+            }
+
+            long start = System.nanoTime();
+            for (String id : unseen) {
+                assertFalse(replayCache.contains(id));
+            }
+            long elapsed = System.nanoTime() - start;
+            LOG.info("EHCacheReplayCache (bloomFilter={}): {} ns per lookup of an unseen identifier",
+                     useBloomFilter, elapsed / LOOKUPS);
+
+            if (useBloomFilter) {
+                int falsePositives = 0;
+                for (String id : unseen) {
+                    if (replayCache.getBloomFilter().mightContain(id)) {
+                        falsePositives++;
+                    }
+                }
+                LOG.info("EHCacheReplayCache Bloom filter: {} bits, {} hashes, false positive rate {}",
+                         replayCache.getBloomFilter().getNumBits(), replayCache.getBloomFilter().getNumHashes(),
+                         (double) falsePositives / LOOKUPS);
+            }
+        } finally {
+            replayCache.close();
+        }
+    }
+
+    private static long runThreads(ReplayCache replayCache, int threadCount, long millis) throws Exception {
+        LongAdder operations = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            String prefix = UUID.randomUUID().toString();
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                while (running.get()) {
+                    String id = prefix + count;
+                    replayCache.addIfAbsent(id, null);
+                    count++;
+                }
+                operations.add(count);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operations.sum();
+    }
+}
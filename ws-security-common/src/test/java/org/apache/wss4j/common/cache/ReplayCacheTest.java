@@ -24,9 +24,11 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -50,6 +52,128 @@ public class ReplayCacheTest {
         replayCache.close();
     }
 
+    @Test
+    public void testShardedMemoryReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new ShardedMemoryReplayCache();
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testShardedMemoryReplayCacheSweeper() throws Exception {
+        ShardedMemoryReplayCache replayCache = new ShardedMemoryReplayCache(4, 100L);
+
+        String id = UUID.randomUUID().toString();
+        replayCache.add(id, Instant.now().plusSeconds(1L));
+        String id2 = UUID.randomUUID().toString();
+        replayCache.add(id2, Instant.now().plusSeconds(100L));
+        assertEquals(2, replayCache.size());
+
+        // The sweeper removes the expired identifier without any call to contains
+        Thread.sleep(1500L);
+        assertEquals(1, replayCache.size());
+        assertTrue(replayCache.contains(id2));
+
+        replayCache.close();
+        assertEquals(0, replayCache.size());
+    }
+
+    @Test
+    public void testCompactReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new CompactReplayCache();
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testCompactReplayCacheFull() throws Exception {
+        CompactReplayCache replayCache = new CompactReplayCache(100);
+        assertEquals(128, replayCache.getCapacity());
+
+        // Once the cache is full, new identifiers are rejected rather than live entries evicted
+        String id = UUID.randomUUID().toString();
+        replayCache.add(id, Instant.now().plusSeconds(100L));
+        int rejected = 0;
+        for (int i = 0; i < 1000; i++) {
+            String newId = UUID.randomUUID().toString();
+            if (replayCache.addIfAbsent(newId, Instant.now().plusSeconds(200L))) {
+                assertTrue(replayCache.contains(newId));
+            } else {
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.addIfAbsent(id, null));
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testMappedFileReplayCache() throws Exception {
+        ReplayCache replayCache = new MappedFileReplayCache(getDiskstorePath("mapped"));
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testMappedFileReplayCacheRestart() throws Exception {
+        Path path = getDiskstorePath("mapped");
+        ReplayCache replayCache = new MappedFileReplayCache(path, 1000);
+
+        String id = UUID.randomUUID().toString();
+        replayCache.add(id);
+        String expiredId = UUID.randomUUID().toString();
+        replayCache.add(expiredId, Instant.now().plusSeconds(1L));
+        replayCache.close();
+
+        // The identifiers survive closing and re-opening the file
+        Thread.sleep(1250L);
+        replayCache = new MappedFileReplayCache(path, 1000);
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.contains(expiredId));
+        replayCache.close();
+
+        path.toFile().delete();
+    }
+
+    @Test
+    public void testMappedFileReplayCacheWrongCapacity() throws Exception {
+        Path path = getDiskstorePath("mapped");
+        ReplayCache replayCache = new MappedFileReplayCache(path, 1000);
+        replayCache.close();
+
+        Assertions.assertThrows(WSSecurityException.class, () ->
+                new MappedFileReplayCache(path, 5000));
+
+        path.toFile().delete();
+    }
+
+    @Test
+    public void testTimerWheel() throws Exception {
+        TimerWheel<Long> timerWheel = new TimerWheel<>(1000L);
+        long[] expiries = {1001L, 1063L, 1064L, 1065L, 1200L, 5095L, 5096L, 300000L};
+        for (long expiry : expiries) {
+            timerWheel.schedule(expiry, expiry);
+        }
+        assertEquals(expiries.length, timerWheel.size());
+
+        // Every timer must fire exactly on its tick
+        for (long expiry : expiries) {
+            assertTrue(timerWheel.advance(expiry - 1).isEmpty());
+            List<Long> expired = timerWheel.advance(expiry);
+            assertEquals(1, expired.size());
+            assertEquals(expiry, expired.get(0).longValue());
+        }
+        assertEquals(0, timerWheel.size());
+    }
+
     @Test
     public void testEhCacheReplayCache() throws Exception {
         ReplayCache replayCache = new EHCacheReplayCache("xyz", getDiskstorePath("abc"));
@@ -68,6 +192,72 @@ public class ReplayCacheTest {
         replayCache.close();
     }
 
+    @Test
+    public void testEhCacheReplayCacheBloomFilter() throws Exception {
+        EHCacheReplayCache replayCache =
+            new EHCacheReplayCache("xyz", getDiskstorePath("xyz"), 50, 10000, false, true);
+        assertNotNull(replayCache.getBloomFilter());
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testEhCacheReplayCacheBloomFilterPersistent() throws Exception {
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                new EHCacheReplayCache("abc", getDiskstorePath("abc"), 10, 10000, true, true));
+    }
+
+    @Test
+    public void testRotatingBloomFilter() throws Exception {
+        RotatingBloomFilter bloomFilter = new RotatingBloomFilter(1000L, 0.01);
+
+        long expiry = System.currentTimeMillis() + 500L;
+        for (int i = 0; i < 999; i++) {
+            bloomFilter.add(Integer.toString(i), expiry);
+        }
+        // No false negatives
+        for (int i = 0; i < 999; i++) {
+            assertTrue(bloomFilter.mightContain(Integer.toString(i)));
+        }
+
+        // The identifiers are still remembered after the first rotation, and forgotten after the second
+        bloomFilter.add("999", expiry);
+        assertTrue(bloomFilter.mightContain("0"));
+        Thread.sleep(600L);
+        long laterExpiry = System.currentTimeMillis() + 60000L;
+        for (int i = 1000; i < 2000; i++) {
+            bloomFilter.add(Integer.toString(i), laterExpiry);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (bloomFilter.mightContain(Integer.toString(i))) {
+                falsePositives++;
+            }
+        }
+        // The filter stays at its false positive probability however many identifiers are added
+        assertTrue(falsePositives < 50);
+        for (int i = 1000; i < 2000; i++) {
+            assertTrue(bloomFilter.mightContain(Integer.toString(i)));
+        }
+    }
+
+    @Test
+    public void testRotatingBloomFilterBeforeExpiry() throws Exception {
+        RotatingBloomFilter bloomFilter = new RotatingBloomFilter(100L, 0.01);
+
+        long expiry = System.currentTimeMillis() + 60000L;
+        for (int i = 0; i < 300; i++) {
+            bloomFilter.add(Integer.toString(i), expiry);
+        }
+        // The first identifiers have been dropped before they expire, so the filter can not rule out anything
+        for (int i = 0; i < 300; i++) {
+            assertTrue(bloomFilter.mightContain(Integer.toString(i)));
+        }
+        assertTrue(bloomFilter.mightContain("unseen"));
+    }
+
     @Test
     public void testEhCacheDifferentCaches() throws Exception {
         ReplayCache replayCache = new EHCacheReplayCache("abc", getDiskstorePath("abc"));
@@ -196,11 +386,18 @@ public class ReplayCacheTest {
         replayCache.add(id, Instant.now().plusSeconds(100L));
         assertTrue(replayCache.contains(id));
 
+        // Test atomic check-and-insert
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+        assertFalse(replayCache.addIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+
         // Test expiration
         id = UUID.randomUUID().toString();
         replayCache.add(id, Instant.now().plusSeconds(1L));
         Thread.sleep(1250L);
         assertFalse(replayCache.contains(id));
+        assertTrue(replayCache.addIfAbsent(id, null));
     }
 
     private Path getDiskstorePath(String prefix) {
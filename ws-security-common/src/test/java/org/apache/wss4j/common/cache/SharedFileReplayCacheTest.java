@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the SharedFileReplayCache, that fork several JVMs which use the same cache file.
+ */
+public class SharedFileReplayCacheTest {
+
+    private static final int PROCESSES = 4;
+    private static final int IDENTIFIERS = 2000;
+
+    @Test
+    public void testSharedFileReplayCache() throws Exception {
+        Path path = getCachePath();
+        SharedFileReplayCache replayCache = new SharedFileReplayCache(path, 1000);
+
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, null));
+        assertFalse(replayCache.addIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+
+        replayCache.close();
+        path.toFile().delete();
+    }
+
+    @Test
+    public void testInterruptedThread() throws Exception {
+        Path path = getCachePath();
+        SharedFileReplayCache replayCache = new SharedFileReplayCache(path, 1000);
+
+        // An interrupt must not close the channel that holds the locks
+        String id = UUID.randomUUID().toString();
+        Thread.currentThread().interrupt();
+        try {
+            assertTrue(replayCache.addIfAbsent(id, null));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(replayCache.getLockChannel().isOpen());
+        assertFalse(replayCache.addIfAbsent(id, null));
+
+        // Once the cache is closed, identifiers are rejected
+        replayCache.close();
+        assertFalse(replayCache.addIfAbsent(UUID.randomUUID().toString(), null));
+        assertTrue(replayCache.contains(UUID.randomUUID().toString()));
+        path.toFile().delete();
+    }
+
+    @Test
+    public void testLostSegmentLock() throws Exception {
+        Path path = getCachePath();
+        // Closes the channel, and so releases the lock of the segment, while the segment is accessed
+        SharedFileReplayCache replayCache = new SharedFileReplayCache(path, 1000) {
+            @Override
+            protected long getExpiry(int slot) {
+                try {
+                    getLockChannel().close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return super.getExpiry(slot);
+            }
+        };
+
+        String id = UUID.randomUUID().toString();
+        assertFalse(replayCache.addIfAbsent(id, null));
+        assertTrue(replayCache.contains(UUID.randomUUID().toString()));
+
+        replayCache.close();
+        path.toFile().delete();
+    }
+
+    @Test
+    public void testReplaysAcrossProcesses() throws Exception {
+        Path path = getCachePath();
+        // Every process tries to add the same identifiers - each one must be accepted by exactly one process
+        String prefix = UUID.randomUUID().toString();
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>(PROCESSES);
+        for (int i = 0; i < PROCESSES; i++) {
+            ProcessBuilder processBuilder =
+                new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                   Worker.class.getName(), path.toString(), prefix, Integer.toString(IDENTIFIERS));
+            processBuilder.redirectErrorStream(true);
+            processes.add(processBuilder.start());
+        }
+
+        int accepted = 0;
+        for (Process process : processes) {
+            String lastLine = null;
+            try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    lastLine = line;
+                    line = reader.readLine();
+                }
+            }
+            assertTrue(process.waitFor(60L, TimeUnit.SECONDS));
+            assertEquals(0, process.exitValue(), lastLine);
+            accepted += Integer.parseInt(lastLine.trim());
+        }
+        assertEquals(IDENTIFIERS, accepted);
+
+        // The identifiers added by the other processes are visible here as well
+        SharedFileReplayCache replayCache = new SharedFileReplayCache(path, 4 * IDENTIFIERS);
+        for (int i = 0; i < IDENTIFIERS; i++) {
+            assertTrue(replayCache.contains(prefix + i));
+        }
+        replayCache.close();
+
+        path.toFile().delete();
+    }
+
+    private Path getCachePath() {
+        return new File(System.getProperty("java.io.tmpdir"), "shared-" + UUID.randomUUID().toString()).toPath();
+    }
+
+    /**
+     * Adds the given identifiers to the shared cache, and prints the number that were not already there
+     */
+    public static final class Worker {
+
+        private Worker() {
+            // complete
+        }
+
+        public static void main(String[] args) throws Exception {
+            Path path = new File(args[0]).toPath();
+            String prefix = args[1];
+            int count = Integer.parseInt(args[2]);
+
+            int accepted = 0;
+            try (SharedFileReplayCache replayCache = new SharedFileReplayCache(path, 4 * count)) {
+                for (int i = 0; i < count; i++) {
+                    if (replayCache.addIfAbsent(prefix + i, null)) {
+                        accepted++;
+                    }
+                }
+            }
+            System.out.println(accepted);
+        }
+    }
+}
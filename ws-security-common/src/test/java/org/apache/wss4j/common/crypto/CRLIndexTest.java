@@ -0,0 +1,228 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V1TBSCertificateGenerator;
+import org.bouncycastle.asn1.x509.V2TBSCertListGenerator;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the revocation checking of Merlin against the index of its CRLs.
+ */
+public class CRLIndexTest {
+
+    private static final AlgorithmIdentifier SIGNATURE_ALGORITHM =
+        new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+    private static final long HOUR = 3600000L;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testRevokedCertificate() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.TRUSTSTORE_FILE, "keys/wss40CA.jks");
+        properties.put(Merlin.PREFIX + Merlin.TRUSTSTORE_PASSWORD, "security");
+        properties.put(Merlin.PREFIX + Merlin.X509_CRL_FILE, "keys/wss40CACRL.pem");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(CRLIndexTest.class), null);
+
+        X509Certificate cert = getCertificate("keys/wss40.jks", "wss40");
+        crypto.verifyTrust(new X509Certificate[] {cert}, true, null, null);
+
+        X509Certificate revokedCert = getCertificate("keys/wss40rev.jks", "wss40rev");
+        crypto.verifyTrust(new X509Certificate[] {revokedCert}, false, null, null);
+        assertRevoked(crypto, revokedCert, CertPathValidatorException.BasicReason.REVOKED);
+    }
+
+    @Test
+    public void testNoCRLForIssuer() throws Exception {
+        KeyPair caKeyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        X500Name caName = new X500Name("CN=CRL Test CA " + UUID.randomUUID().toString() + ", O=Apache WSS4J");
+        X509Certificate caCert = createCertificate(caName, caName, 1, caKeyPair.getPublic().getEncoded(),
+                                                   caKeyPair.getPrivate());
+        X509Certificate cert = createCertificate(caName, new X500Name("CN=Colm, O=Apache WSS4J"), 2,
+                                                 caKeyPair.getPublic().getEncoded(), caKeyPair.getPrivate());
+
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.X509_CRL_FILE, "keys/wss40CACRL.pem");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(CRLIndexTest.class), null);
+        crypto.setTrustStore(createTrustStore(caCert));
+
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null, null);
+        assertRevoked(crypto, cert, CertPathValidatorException.BasicReason.UNDETERMINED_REVOCATION_STATUS);
+    }
+
+    @Test
+    public void testReloadCRL() throws Exception {
+        KeyPair caKeyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        X500Name caName = new X500Name("CN=CRL Test CA " + UUID.randomUUID().toString() + ", O=Apache WSS4J");
+        X509Certificate caCert = createCertificate(caName, caName, 1, caKeyPair.getPublic().getEncoded(),
+                                                   caKeyPair.getPrivate());
+        KeyPair keyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        X500Name name = new X500Name("CN=Colm, O=Apache WSS4J");
+        X509Certificate cert1 =
+            createCertificate(caName, name, 10, keyPair.getPublic().getEncoded(), caKeyPair.getPrivate());
+        X509Certificate cert2 =
+            createCertificate(caName, name, 11, keyPair.getPublic().getEncoded(), caKeyPair.getPrivate());
+
+        Path crlFile = new File(System.getProperty("java.io.tmpdir"), "crl-" + UUID.randomUUID().toString()).toPath();
+        Files.write(crlFile, createCRL(caName, caKeyPair.getPrivate(), 10));
+
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.X509_CRL_FILE, "keys/wss40CACRL.pem," + crlFile.toString());
+        properties.put(Merlin.PREFIX + Merlin.RELOAD_INTERVAL, "1");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(CRLIndexTest.class), null);
+        crypto.setTrustStore(createTrustStore(caCert));
+        try {
+            assertRevoked(crypto, cert1, CertPathValidatorException.BasicReason.REVOKED);
+            crypto.verifyTrust(new X509Certificate[] {cert2}, true, null, null);
+
+            // Revoke the second certificate instead of the first one
+            Files.write(crlFile, createCRL(caName, caKeyPair.getPrivate(), 11));
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (true) {
+                try {
+                    crypto.verifyTrust(new X509Certificate[] {cert2}, true, null, null);
+                } catch (WSSecurityException ex) {
+                    break;
+                }
+                assertTrue(System.currentTimeMillis() < deadline, "The CRL has not been reloaded");
+                Thread.sleep(100L);
+            }
+            assertRevoked(crypto, cert2, CertPathValidatorException.BasicReason.REVOKED);
+            crypto.verifyTrust(new X509Certificate[] {cert1}, true, null, null);
+        } finally {
+            crypto.stopReloading();
+            Files.delete(crlFile);
+        }
+    }
+
+    private static void assertRevoked(Merlin crypto, X509Certificate cert, CertPathValidatorException.Reason reason) {
+        try {
+            crypto.verifyTrust(new X509Certificate[] {cert}, true,
+                               Collections.singletonList(Pattern.compile(".*")), null);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            assertEquals(reason, ((CertPathValidatorException) ex.getCause()).getReason());
+        }
+    }
+
+    private static X509Certificate getCertificate(String path, String alias) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(CRLIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, path)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return (X509Certificate) keyStore.getCertificate(alias);
+    }
+
+    private static KeyStore createTrustStore(X509Certificate caCert) throws Exception {
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", caCert);
+        return trustStore;
+    }
+
+    private static X509Certificate createCertificate(
+        X500Name issuer, X500Name subject, int serial, byte[] publicKey, PrivateKey signingKey
+    ) throws Exception {
+        long now = System.currentTimeMillis();
+        V1TBSCertificateGenerator generator = new V1TBSCertificateGenerator();
+        generator.setSerialNumber(new ASN1Integer(BigInteger.valueOf(serial)));
+        generator.setIssuer(issuer);
+        generator.setSubject(subject);
+        generator.setStartDate(new Time(new Date(now - HOUR)));
+        generator.setEndDate(new Time(new Date(now + HOUR)));
+        generator.setSignature(SIGNATURE_ALGORITHM);
+        generator.setSubjectPublicKeyInfo(SubjectPublicKeyInfo.getInstance(publicKey));
+        TBSCertificate tbsCertificate = generator.generateTBSCertificate();
+
+        byte[] encoded = sign(tbsCertificate, signingKey);
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    private static byte[] createCRL(X500Name issuer, PrivateKey signingKey, int revokedSerial) throws Exception {
+        long now = System.currentTimeMillis();
+        V2TBSCertListGenerator generator = new V2TBSCertListGenerator();
+        generator.setIssuer(issuer);
+        generator.setSignature(SIGNATURE_ALGORITHM);
+        generator.setThisUpdate(new Time(new Date(now - HOUR)));
+        generator.setNextUpdate(new Time(new Date(now + HOUR)));
+        generator.addCRLEntry(new ASN1Integer(BigInteger.valueOf(revokedSerial)), new Time(new Date(now - HOUR)), 0);
+        TBSCertList tbsCertList = generator.generateTBSCertList();
+        return sign(tbsCertList, signingKey);
+    }
+
+    private static byte[] sign(ASN1Encodable tbs, PrivateKey signingKey) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(signingKey);
+        signature.update(tbs.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+
+        ASN1EncodableVector signed = new ASN1EncodableVector();
+        signed.add(tbs);
+        signed.add(SIGNATURE_ALGORITHM);
+        signed.add(new DERBitString(signature.sign()));
+        return new DERSequence(signed).getEncoded(ASN1Encoding.DER);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Properties;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the cache of parsed certificates of CryptoBase.
+ */
+public class CertificateCacheTest {
+
+    private static X509Certificate cert;
+    private static X509Certificate caCert;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        cert = crypto.getX509Certificates(cryptoType)[0];
+        caCert = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(
+            Merlin.loadInputStream(Loader.getClassLoader(CertificateCacheTest.class), "keys/wss40CA.pem")
+        );
+    }
+
+    @Test
+    public void testLoadCertificate() throws Exception {
+        Merlin crypto = new Merlin();
+        byte[] data = cert.getEncoded();
+
+        X509Certificate parsed = crypto.loadCertificate(data);
+        assertEquals(cert, parsed);
+        assertSame(parsed, crypto.loadCertificate(data.clone()));
+        assertEquals(1, crypto.getCertificateCache().size());
+
+        // The SKI and thumbprint are cached with the certificate
+        byte[] ski = crypto.getSKIBytesFromCert(parsed);
+        assertArrayEquals(ski, crypto.getCertificateCache().getSKI(parsed));
+        assertArrayEquals(ski, crypto.getSKIBytesFromCert(parsed));
+        byte[] thumbprint = MessageDigest.getInstance("SHA-1").digest(data);
+        assertArrayEquals(thumbprint, crypto.getThumbprint(parsed));
+        assertArrayEquals(thumbprint, crypto.getCertificateCache().getThumbprint(parsed));
+
+        // A certificate that has not been parsed through the cache is not cached
+        assertArrayEquals(crypto.getSKIBytesFromCert(caCert), crypto.getSKIBytesFromCert(caCert));
+        assertNull(crypto.getCertificateCache().getSKI(caCert));
+    }
+
+    @Test
+    public void testCertificatesFromBytes() throws Exception {
+        Merlin crypto = new Merlin();
+        byte[] data = crypto.getBytesFromCertificates(new X509Certificate[] {cert, caCert});
+
+        X509Certificate[] certs = crypto.getCertificatesFromBytes(data);
+        assertEquals(2, certs.length);
+        assertEquals(cert, certs[0]);
+        assertEquals(caCert, certs[1]);
+
+        X509Certificate[] cachedCerts = crypto.getCertificatesFromBytes(data);
+        assertNotSame(certs, cachedCerts);
+        assertSame(certs[0], cachedCerts[0]);
+        assertSame(certs[1], cachedCerts[1]);
+
+        // The same bytes are not taken for a single certificate
+        try {
+            crypto.loadCertificate(data);
+            fail("Failure expected on parsing a certificate path as a certificate");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Merlin crypto = new Merlin();
+        CertificateCache cache = new CertificateCache(1);
+        crypto.setCertificateCache(cache);
+        crypto.loadCertificate(cert.getEncoded());
+        X509Certificate parsedCA = crypto.loadCertificate(caCert.getEncoded());
+        assertEquals(1, cache.size());
+        assertNull(cache.get(CertificateCache.createKey(CertificateCache.CERTIFICATE, cert.getEncoded())));
+        assertSame(parsedCA, cache.get(CertificateCache.createKey(CertificateCache.CERTIFICATE, caCert.getEncoded()))[0]);
+
+        // A new CertificateFactory clears the cache
+        crypto.setCertificateFactory(CertificateFactory.getInstance("X.509"));
+        assertEquals(0, crypto.getCertificateCache().size());
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.CERT_CACHE_SIZE, "0");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(CertificateCacheTest.class), null);
+        assertNull(crypto.getCertificateCache());
+
+        byte[] data = cert.getEncoded();
+        assertEquals(cert, crypto.loadCertificate(data));
+        assertArrayEquals(crypto.getSKIBytesFromCert(cert), crypto.getSKIBytesFromCert(cert));
+        assertArrayEquals(new Merlin().getThumbprint(cert), crypto.getThumbprint(cert));
+
+        X509Certificate parsed = new Merlin().loadCertificate(new ByteArrayInputStream(data));
+        assertEquals(cert, parsed);
+    }
+}
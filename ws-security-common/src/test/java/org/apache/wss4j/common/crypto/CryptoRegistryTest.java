@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.util.Properties;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the CryptoRegistry.
+ */
+public class CryptoRegistryTest {
+
+    private static ClassLoader classLoader;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+        classLoader = Loader.getClassLoader(CryptoRegistryTest.class);
+    }
+
+    @Test
+    public void testSharedInstance() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        Crypto crypto = registry.acquire(properties, classLoader, null);
+        assertTrue(crypto instanceof Merlin);
+
+        // The same configuration with the legacy property names and untrimmed values
+        Properties legacy = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            legacy.setProperty(name.replace("org.apache.wss4j.", "org.apache.ws.security."),
+                               " " + properties.getProperty(name) + " ");
+        }
+        legacy.setProperty("org.apache.ws.security.crypto.provider",
+                           "org.apache.ws.security.components.crypto.Merlin");
+        assertSame(crypto, registry.acquire(legacy, classLoader, null));
+        assertSame(crypto, registry.acquire(Merlin.class, properties, classLoader, null));
+        assertEquals(3, registry.getReferenceCount(crypto));
+        assertEquals(1, registry.size());
+
+        // A different configuration
+        Properties other = CryptoFactory.getProperties("wss40CA.properties", classLoader);
+        Crypto otherCrypto = registry.acquire(other, classLoader, null);
+        assertNotSame(crypto, otherCrypto);
+        assertEquals(2, registry.size());
+
+        // A later change to the properties does not change the shared instance
+        properties.setProperty(Merlin.PREFIX + Merlin.KEYSTORE_ALIAS, "wss40CA");
+        assertEquals("wss40", crypto.getDefaultX509Identifier());
+        assertNotSame(crypto, registry.acquire(properties, classLoader, null));
+    }
+
+    @Test
+    public void testPasswordEncryptor() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        PasswordEncryptor passwordEncryptor = new ReversingPasswordEncryptor();
+
+        // The PasswordEncryptor only matters if there is an encrypted password
+        Crypto crypto = registry.acquire(properties, classLoader, null);
+        assertSame(crypto, registry.acquire(properties, classLoader, passwordEncryptor));
+
+        Properties encrypted = new Properties();
+        encrypted.putAll(properties);
+        encrypted.setProperty(Merlin.PREFIX + Merlin.KEYSTORE_PASSWORD,
+                              "ENC(" + passwordEncryptor.encrypt("security") + ")");
+        Crypto encryptedCrypto = registry.acquire(encrypted, classLoader, passwordEncryptor);
+        assertNotSame(crypto, encryptedCrypto);
+        assertSame(encryptedCrypto, registry.acquire(encrypted, classLoader, passwordEncryptor));
+        assertNotSame(encryptedCrypto,
+                      registry.acquire(encrypted, classLoader, new ReversingPasswordEncryptor()));
+    }
+
+    @Test
+    public void testSharedPrivateKeyCache() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        Crypto crypto = registry.acquire(properties, classLoader, null);
+        Crypto sharedCrypto = registry.acquire(properties, classLoader, null);
+        assertSame(crypto, sharedCrypto);
+
+        assertEquals("RSA", crypto.getPrivateKey("wss40", "security").getAlgorithm());
+        // The cached private key is not returned to an endpoint with a different password
+        try {
+            sharedCrypto.getPrivateKey("wss40", "wrong-password");
+            fail("Failure expected on a wrong private key password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals("RSA", sharedCrypto.getPrivateKey("wss40", "security").getAlgorithm());
+    }
+
+    @Test
+    public void testReferenceCounting() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry(1);
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        Properties other = CryptoFactory.getProperties("wss40CA.properties", classLoader);
+
+        Crypto crypto = registry.acquire(properties, classLoader, null);
+        assertSame(crypto, registry.acquire(properties, classLoader, null));
+        Crypto otherCrypto = registry.acquire(other, classLoader, null);
+
+        assertTrue(registry.release(crypto));
+        assertEquals(1, registry.getReferenceCount(crypto));
+        assertTrue(registry.release(crypto));
+        assertEquals(0, registry.getReferenceCount(crypto));
+        assertFalse(registry.release(crypto));
+
+        // An idle instance is acquired again
+        assertSame(crypto, registry.acquire(properties, classLoader, null));
+        assertTrue(registry.release(crypto));
+
+        // The least recently released instance is evicted once there are too many idle instances
+        assertTrue(registry.release(otherCrypto));
+        assertEquals(1, registry.size());
+        assertNotSame(crypto, registry.acquire(properties, classLoader, null));
+        assertSame(otherCrypto, registry.acquire(other, classLoader, null));
+
+        // An instance that was not acquired from the registry is ignored
+        assertFalse(registry.release(new Merlin()));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        Crypto crypto = registry.acquire(properties, classLoader, null);
+        Crypto otherCrypto = registry.acquire(CryptoFactory.getProperties("wss40CA.properties", classLoader),
+                                              classLoader, null);
+        registry.release(crypto);
+        registry.clear();
+        assertEquals(1, registry.size());
+        assertEquals(1, registry.getReferenceCount(otherCrypto));
+        assertNotSame(crypto, registry.acquire(properties, classLoader, null));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CryptoRegistry registry = new CryptoRegistry();
+        Properties properties = CryptoFactory.getProperties("wss40.properties", classLoader);
+        properties.setProperty(Merlin.PREFIX + Merlin.KEYSTORE_FILE, "keys/nosuchfile.jks");
+        for (int i = 0; i < 2; i++) {
+            try {
+                registry.acquire(properties, classLoader, null);
+                fail("Failure expected on a missing keystore");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+        }
+        assertEquals(0, registry.size());
+    }
+
+    /**
+     * A PasswordEncryptor that reverses the passwords, so that the tests do not depend on Jasypt
+     */
+    private static final class ReversingPasswordEncryptor implements PasswordEncryptor {
+
+        @Override
+        public String encrypt(String password) {
+            return new StringBuilder(password).reverse().toString();
+        }
+
+        @Override
+        public String decrypt(String encryptedPassword) {
+            return new StringBuilder(encryptedPassword).reverse().toString();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the DNPatternMatcher.
+ */
+public class DNPatternMatcherTest {
+
+    @Test
+    public void testManyPatterns() throws Exception {
+        List<Pattern> patterns = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            patterns.add(Pattern.compile(".*CN=partner" + i + ",OU=Apache,O=Apache Software Foundation,C=US"));
+        }
+        DNPatternMatcher matcher = new DNPatternMatcher(patterns);
+        assertTrue(matcher.matches("CN=partner0,OU=Apache,O=Apache Software Foundation,C=US"));
+        assertTrue(matcher.matches("EMAILADDRESS=x,CN=partner299,OU=Apache,O=Apache Software Foundation,C=US"));
+        assertFalse(matcher.matches("CN=partner300,OU=Apache,O=Apache Software Foundation,C=US"));
+        // The whole name must match, as with Matcher.matches()
+        assertFalse(matcher.matches("CN=partner1,OU=Apache,O=Apache Software Foundation,C=USA"));
+
+        // The verdicts are cached
+        assertTrue(matcher.matches("CN=partner0,OU=Apache,O=Apache Software Foundation,C=US"));
+        assertFalse(matcher.matches("CN=partner300,OU=Apache,O=Apache Software Foundation,C=US"));
+        assertEquals(300, matcher.getPatterns().size());
+    }
+
+    @Test
+    public void testPatternsThatAreNotCombined() throws Exception {
+        DNPatternMatcher matcher = new DNPatternMatcher(Arrays.asList(
+            Pattern.compile("CN=(\\w+),O=\\1"),
+            Pattern.compile("CN=(?<cn>\\w+),OU=\\k<cn>"),
+            Pattern.compile("CN=(?<cn>\\w+),C=US"),
+            Pattern.compile("CN=Alice", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("CN=Bob.*", Pattern.LITERAL),
+            Pattern.compile("\\QCN=Carol(\\E")
+        ));
+        assertTrue(matcher.matches("CN=Apache,O=Apache"));
+        assertFalse(matcher.matches("CN=Apache,O=Other"));
+        assertTrue(matcher.matches("CN=Apache,OU=Apache"));
+        assertTrue(matcher.matches("CN=Apache,C=US"));
+        assertTrue(matcher.matches("cn=alice"));
+        assertTrue(matcher.matches("CN=Bob.*"));
+        assertFalse(matcher.matches("CN=Bobby"));
+        assertTrue(matcher.matches("CN=Carol("));
+    }
+
+    @Test
+    public void testInlineFlags() throws Exception {
+        DNPatternMatcher matcher = new DNPatternMatcher(Arrays.asList(
+            Pattern.compile("(?i)CN=Alice"),
+            Pattern.compile("CN=Bob")
+        ));
+        assertTrue(matcher.matches("cn=ALICE"));
+        assertTrue(matcher.matches("CN=Bob"));
+        // The flag of the first pattern does not apply to the second one
+        assertFalse(matcher.matches("cn=bob"));
+    }
+
+    @Test
+    public void testCollectionView() throws Exception {
+        List<Pattern> patterns = Arrays.asList(Pattern.compile(".*CN=wss40.*"), Pattern.compile(".*CN=wss86.*"));
+        DNPatternMatcher matcher = new DNPatternMatcher(patterns);
+        assertEquals(2, matcher.size());
+        assertEquals(patterns, new ArrayList<>(matcher));
+        assertThrows(UnsupportedOperationException.class, () -> matcher.add(Pattern.compile(".*")));
+
+        // A plain collection is matched pattern by pattern, with the same result
+        assertTrue(DNPatternMatcher.matches("CN=wss86,O=Apache", matcher));
+        assertTrue(DNPatternMatcher.matches("CN=wss86,O=Apache", patterns));
+        assertFalse(DNPatternMatcher.matches("CN=wss99,O=Apache", matcher));
+        assertFalse(DNPatternMatcher.matches("CN=wss99,O=Apache", patterns));
+    }
+
+    @Test
+    public void testCryptoBase() throws Exception {
+        Merlin crypto = new Merlin();
+        List<Pattern> patterns = Arrays.asList(Pattern.compile(".*CN=Alice.*"), Pattern.compile(".*CN=Bob.*"));
+        assertTrue(crypto.matchesName("CN=Bob,O=Apache", patterns));
+        assertFalse(crypto.matchesName("CN=Carol,O=Apache", patterns));
+        assertFalse(crypto.matchesName("", patterns));
+        assertTrue(crypto.matchesName("CN=Carol,O=Apache", new ArrayList<>()));
+        assertTrue(crypto.matchesName("CN=Bob,O=Apache", new DNPatternMatcher(patterns)));
+        assertFalse(crypto.matchesName("CN=Carol,O=Apache", new DNPatternMatcher(patterns)));
+    }
+}
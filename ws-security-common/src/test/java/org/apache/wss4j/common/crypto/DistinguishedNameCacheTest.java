@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.cert.X509Certificate;
+import java.util.Properties;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Some tests for the cache of canonical distinguished names of CryptoBase.
+ */
+public class DistinguishedNameCacheTest {
+
+    private static Crypto crypto;
+    private static X509Certificate cert;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        cert = crypto.getX509Certificates(cryptoType)[0];
+    }
+
+    @Test
+    public void testInternedNames() throws Exception {
+        Merlin merlin = new Merlin();
+        X500Principal issuer = cert.getIssuerX500Principal();
+
+        Object name = merlin.getCanonicalName(issuer);
+        assertEquals(merlin.createBCX509Name(issuer.getName()), name);
+        assertSame(name, merlin.getCanonicalName(new X500Principal(issuer.getEncoded())));
+
+        // The different String forms of the DN share the canonical name of the principal
+        assertSame(name, merlin.getCanonicalName(issuer.getName()));
+        assertSame(name, merlin.getCanonicalName(issuer.toString()));
+        assertEquals(3, merlin.getNameCache().size());
+    }
+
+    @Test
+    public void testIssuerSerial() throws Exception {
+        // The issuer DN in a different String form still finds the certificate
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().toString(), cert.getSerialNumber());
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+        assertNotNull(certs);
+        assertEquals(cert, certs[0]);
+        assertNotNull(((CryptoBase)crypto).getNameCache().get(cert.getIssuerX500Principal().toString()));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Merlin merlin = new Merlin();
+        DistinguishedNameCache cache = new DistinguishedNameCache(1);
+        merlin.setNameCache(cache);
+
+        merlin.getCanonicalName("CN=Alice");
+        merlin.getCanonicalName("CN=Bob");
+        assertEquals(1, cache.size());
+        assertNull(cache.get("CN=Alice"));
+        assertNotNull(cache.get("CN=Bob"));
+    }
+
+    @Test
+    public void testDisabledCache() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.NAME_CACHE_SIZE, "0");
+        Merlin merlin = new Merlin(properties, Loader.getClassLoader(DistinguishedNameCacheTest.class), null);
+        assertNull(merlin.getNameCache());
+
+        X500Principal subject = cert.getSubjectX500Principal();
+        assertEquals(merlin.createBCX509Name(subject.getName()), merlin.getCanonicalName(subject));
+        assertEquals(merlin.getCanonicalName(subject), merlin.getCanonicalName(subject.getName()));
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.util.Loader;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V1TBSCertificateGenerator;
+import org.bouncycastle.asn1.x509.V2TBSCertListGenerator;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Benchmarks for Merlin. The results are written to the log.
+ * Run with "mvn test -Dwss4j.benchmark=true".
+ */
+@EnabledIfSystemProperty(named = "wss4j.benchmark", matches = "true")
+public class MerlinBenchmarkTest {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MerlinBenchmarkTest.class);
+
+    private static final int[] TRUSTSTORE_SIZES = {10, 100, 1000, 10000, 20000};
+    private static final int[] CRL_SIZES = {10, 1000, 100000, 300000};
+    private static final int ITERATIONS = 2000;
+    private static final AlgorithmIdentifier SIGNATURE_ALGORITHM =
+        new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+
+    /**
+     * Log the latency of verifying trust in a certificate against truststores of increasing size. The issuer
+     * of the certificate is in the truststore, together with a number of unrelated self-signed certificates.
+     */
+    @Test
+    public void testVerifyTrustLatency() throws Exception {
+        WSProviderConfig.init();
+        X509Certificate cert = (X509Certificate) loadKeyStore("keys/wss40.jks").getCertificate("wss40");
+        X509Certificate caCert = (X509Certificate) loadKeyStore("keys/wss40CA.jks").getCertificate("wss40CA");
+        X509Certificate[] certs = {cert};
+        Collection<Pattern> constraints = Collections.singletonList(Pattern.compile(".*"));
+
+        KeyPair keyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+
+        for (int size : TRUSTSTORE_SIZES) {
+            KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(null, null);
+            trustStore.setCertificateEntry("wss40ca", caCert);
+            for (int i = 1; i < size; i++) {
+                trustStore.setCertificateEntry("cert" + i, createCertificate(keyPair, i, certificateFactory));
+            }
+
+            Merlin crypto = new Merlin();
+            crypto.setTrustStore(trustStore);
+
+            long start = System.nanoTime();
+            crypto.verifyTrust(certs, false, constraints, null);
+            long first = System.nanoTime() - start;
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                crypto.verifyTrust(certs, false, constraints, null);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                crypto.verifyTrust(certs, false, constraints, null);
+            }
+            long cached = (System.nanoTime() - start) / ITERATIONS;
+
+            // What every call used to pay to rebuild the trust anchors and PKIXParameters
+            start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                Set<TrustAnchor> set = new HashSet<>();
+                crypto.addTrustAnchors(set, trustStore);
+                crypto.createPKIXParameters(set, false);
+            }
+            long rebuild = (System.nanoTime() - start) / 10;
+
+            LOG.info("Merlin.verifyTrust with {} trusted certs: {} us for the first call, {} us per call after that, "
+                     + "{} us to rebuild the trust anchors", size, first / 1000L, cached / 1000L, rebuild / 1000L);
+        }
+    }
+
+    /**
+     * Log the latency of verifying trust in a certificate with revocation enabled, against a CRL of increasing
+     * size that does not revoke it, for the index of the CRLs and for a search of the CRLs by PKIX
+     */
+    @Test
+    public void testRevocationLatency() throws Exception {
+        WSProviderConfig.init();
+        KeyPair caKeyPair = KeyPairGenerator.getInstance("EC").generateKeyPair();
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        X500Name caName = new X500Name("CN=Benchmark CA, O=Apache WSS4J");
+        X509Certificate caCert = createCertificate(caName, caName, 1, caKeyPair.getPublic(),
+                                                   caKeyPair.getPrivate(), certificateFactory);
+        X509Certificate[] certs = {
+            createCertificate(caName, new X500Name("CN=Benchmark, O=Apache WSS4J"), 1, caKeyPair.getPublic(),
+                              caKeyPair.getPrivate(), certificateFactory)
+        };
+        Collection<Pattern> constraints = Collections.singletonList(Pattern.compile(".*"));
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", caCert);
+
+        for (int size : CRL_SIZES) {
+            X509CRL crl = createCRL(caName, caKeyPair.getPrivate(), size, certificateFactory);
+            CertStore crlCertStore =
+                CertStore.getInstance("Collection", new CollectionCertStoreParameters(Collections.singletonList(crl)));
+
+            Merlin indexed = new Merlin();
+            Merlin searched = new Merlin() {
+                @Override
+                protected PKIXParameters createPKIXParameters(
+                    Set<TrustAnchor> trustAnchors, boolean enableRevocation
+                ) throws InvalidAlgorithmParameterException {
+                    // How the CRLs used to be checked
+                    PKIXParameters param = new PKIXParameters(trustAnchors);
+                    param.setRevocationEnabled(enableRevocation);
+                    param.addCertStore(getCRLCertStore());
+                    return param;
+                }
+            };
+            long[] latencies = new long[2];
+            Merlin[] cryptos = {indexed, searched};
+            for (int i = 0; i < cryptos.length; i++) {
+                cryptos[i].setTrustStore(trustStore);
+                cryptos[i].setCRLCertStore(crlCertStore);
+                int iterations = ITERATIONS / 10;
+                for (int j = 0; j < iterations; j++) {
+                    cryptos[i].verifyTrust(certs, true, constraints, null);
+                }
+                long start = System.nanoTime();
+                for (int j = 0; j < iterations; j++) {
+                    cryptos[i].verifyTrust(certs, true, constraints, null);
+                }
+                latencies[i] = (System.nanoTime() - start) / iterations;
+            }
+
+            LOG.info("Merlin.verifyTrust with revocation against a CRL of {} serials: {} us with the index, "
+                     + "{} us with a search of the CRL", size, latencies[0] / 1000L, latencies[1] / 1000L);
+        }
+    }
+
+    /**
+     * Create a self-signed certificate with the given serial number, that is used as an unrelated trust anchor
+     */
+    private static X509Certificate createCertificate(
+        KeyPair keyPair, int serial, CertificateFactory certificateFactory
+    ) throws Exception {
+        X500Name name = new X500Name("CN=Benchmark " + serial + ", O=Apache WSS4J");
+        return createCertificate(name, name, serial, keyPair.getPublic(), keyPair.getPrivate(), certificateFactory);
+    }
+
+    private static X509Certificate createCertificate(
+        X500Name issuer, X500Name subject, int serial, PublicKey publicKey, PrivateKey signingKey,
+        CertificateFactory certificateFactory
+    ) throws Exception {
+        long now = System.currentTimeMillis();
+
+        V1TBSCertificateGenerator generator = new V1TBSCertificateGenerator();
+        generator.setSerialNumber(new ASN1Integer(BigInteger.valueOf(serial)));
+        generator.setIssuer(issuer);
+        generator.setSubject(subject);
+        generator.setStartDate(new Time(new Date(now - 3600000L)));
+        generator.setEndDate(new Time(new Date(now + 3600000L)));
+        generator.setSignature(SIGNATURE_ALGORITHM);
+        generator.setSubjectPublicKeyInfo(SubjectPublicKeyInfo.getInstance(publicKey.getEncoded()));
+        TBSCertificate tbsCertificate = generator.generateTBSCertificate();
+
+        byte[] encoded = sign(tbsCertificate, signingKey);
+        return (X509Certificate) certificateFactory.generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    /**
+     * Create a CRL that revokes the given number of certificates, with serial numbers from 1000 on
+     */
+    private static X509CRL createCRL(
+        X500Name issuer, PrivateKey signingKey, int revoked, CertificateFactory certificateFactory
+    ) throws Exception {
+        long now = System.currentTimeMillis();
+        V2TBSCertListGenerator generator = new V2TBSCertListGenerator();
+        generator.setIssuer(issuer);
+        generator.setSignature(SIGNATURE_ALGORITHM);
+        generator.setThisUpdate(new Time(new Date(now - 3600000L)));
+        generator.setNextUpdate(new Time(new Date(now + 3600000L)));
+        Time revocationDate = new Time(new Date(now - 3600000L));
+        for (int i = 0; i < revoked; i++) {
+            generator.addCRLEntry(new ASN1Integer(BigInteger.valueOf(1000L + i)), revocationDate, 0);
+        }
+        TBSCertList tbsCertList = generator.generateTBSCertList();
+
+        byte[] encoded = sign(tbsCertList, signingKey);
+        return (X509CRL) certificateFactory.generateCRL(new ByteArrayInputStream(encoded));
+    }
+
+    private static byte[] sign(ASN1Encodable tbs, PrivateKey signingKey) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(signingKey);
+        signature.update(tbs.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+
+        ASN1EncodableVector signed = new ASN1EncodableVector();
+        signed.add(tbs);
+        signed.add(SIGNATURE_ALGORITHM);
+        signed.add(new DERBitString(signature.sign()));
+        return new DERSequence(signed).getEncoded(ASN1Encoding.DER);
+    }
+
+    private static KeyStore loadKeyStore(String path) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinBenchmarkTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, path)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+}
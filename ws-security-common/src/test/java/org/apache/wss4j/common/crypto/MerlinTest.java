@@ -19,15 +19,35 @@
 
 package org.apache.wss4j.common.crypto;
 
+import java.io.File;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.Key;
 import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.Loader;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
 
 /**
  * Some tests for the Merlin Crypto provider
@@ -77,6 +97,170 @@ public class MerlinTest {
         assertNotNull(pkcs12Crypto.getX509Certificates(cryptoType));
     }
 
+    @Test
+    public void testIndexedLookups() throws Exception {
+        X509Certificate cert = getCertificate(jksCrypto, "wss40");
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+        assertEquals(cert, jksCrypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        cryptoType.setBytes(MessageDigest.getInstance("SHA-1").digest(cert.getEncoded()));
+        assertEquals(cert, jksCrypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+        cryptoType.setBytes(jksCrypto.getSKIBytesFromCert(cert));
+        assertEquals(cert, jksCrypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(cert.getSubjectX500Principal().getName());
+        // wss40 and wss40dsa have the same Subject DN
+        assertEquals(cert.getSubjectX500Principal(),
+                     jksCrypto.getX509Certificates(cryptoType)[0].getSubjectX500Principal());
+
+        assertEquals("wss40", jksCrypto.getX509Identifier(cert));
+        jksCrypto.verifyTrust(cert.getPublicKey());
+    }
+
+    @Test
+    public void testIndexFollowsKeyStoreChanges() throws Exception {
+        X509Certificate cert = getCertificate(jksCrypto, "wss40");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(trustStore);
+        assertNull(crypto.getX509Certificates(cryptoType));
+
+        // Adding or removing an entry of the truststore is picked up without setting it again
+        trustStore.setCertificateEntry("wss40", cert);
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+        assertEquals("wss40", crypto.getX509Identifier(cert));
+
+        trustStore.deleteEntry("wss40");
+        assertNull(crypto.getX509Certificates(cryptoType));
+    }
+
+    @Test
+    public void testPrivateKeyCacheFollowsKeyStore() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks", "security"));
+        PrivateKey privateKey = crypto.getPrivateKey("wss40", "security");
+        assertSame(privateKey, crypto.getPrivateKey("wss40", "security"));
+
+        // A rotated keystore holds another key under the same alias
+        KeyStore serverKeyStore = loadKeyStore("keys/wss40_server.jks", "security");
+        Key serverKey = serverKeyStore.getKey("wss40_server", "security".toCharArray());
+        KeyStore rotatedKeyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        rotatedKeyStore.load(null, null);
+        rotatedKeyStore.setKeyEntry("wss40", serverKey, "security".toCharArray(),
+                                    serverKeyStore.getCertificateChain("wss40_server"));
+        crypto.setKeyStore(rotatedKeyStore);
+
+        // The key of the previous keystore is not served from the cache
+        assertEquals(serverKey, crypto.getPrivateKey("wss40", "security"));
+        assertNotEquals(privateKey, crypto.getPrivateKey("wss40", "security"));
+    }
+
+    @Test
+    public void testValidatedCertPathCache() throws Exception {
+        X509Certificate[] certs = {getCertificate(jksCrypto, "wss40")};
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks", "security"));
+        ValidatedCertPathCache cache = new ValidatedCertPathCache(10, 60L);
+        crypto.setValidatedCertPathCache(cache);
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+
+        // The constraints are part of the key
+        crypto.verifyTrust(certs, false, Collections.singletonList(Pattern.compile(".*CN=Colm.*")), null);
+        assertEquals(2, cache.size());
+        try {
+            crypto.verifyTrust(certs, false, Collections.singletonList(Pattern.compile(".*CN=Other.*")), null);
+            fail("Failure expected on a certificate that does not match the constraints");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        assertEquals(2, cache.size());
+
+        // A cached chain is no longer trusted once the truststore changes
+        crypto.setTrustStore(loadKeyStore("keys/wss86.keystore", "security"));
+        try {
+            crypto.verifyTrust(certs, false, null, null);
+            fail("Failure expected on trying to validate an untrusted cert");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testReloadTrustStore() throws Exception {
+        X509Certificate[] certs = {getCertificate(jksCrypto, "wss40")};
+        ClassLoader loader = Loader.getClassLoader(MerlinTest.class);
+        Path trustStoreFile =
+            new File(System.getProperty("java.io.tmpdir"), "truststore-" + UUID.randomUUID().toString()).toPath();
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss86.keystore")) {
+            Files.copy(input, trustStoreFile);
+        }
+
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.TRUSTSTORE_FILE, trustStoreFile.toString());
+        properties.put(Merlin.PREFIX + Merlin.TRUSTSTORE_PASSWORD, "security");
+        properties.put(Merlin.PREFIX + Merlin.RELOAD_INTERVAL, "1");
+        Merlin crypto = new Merlin(properties, loader, null);
+        try {
+            try {
+                crypto.verifyTrust(certs, false, null, null);
+                fail("Failure expected on trying to validate an untrusted cert");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+
+            // Replacing the file with the CA truststore is picked up in the background
+            try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40CA.jks")) {
+                Files.copy(input, trustStoreFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            waitForTrust(crypto, certs);
+
+            // A truststore that cannot be loaded is ignored
+            KeyStore trustStore = crypto.getTrustStore();
+            Files.write(trustStoreFile, "corrupt".getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(2500L);
+            assertEquals(trustStore, crypto.getTrustStore());
+            crypto.verifyTrust(certs, false, null, null);
+        } finally {
+            crypto.stopReloading();
+            Files.delete(trustStoreFile);
+        }
+    }
+
+    private static void waitForTrust(Merlin crypto, X509Certificate[] certs) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (true) {
+            try {
+                crypto.verifyTrust(certs, false, null, null);
+                return;
+            } catch (WSSecurityException ex) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw ex;
+                }
+                Thread.sleep(100L);
+            }
+        }
+    }
+
+    private static X509Certificate getCertificate(Merlin crypto, String alias) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return crypto.getX509Certificates(cryptoType)[0];
+    }
+
     private static KeyStore loadKeyStore(String path, String password) throws Exception {
         KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
         ClassLoader loader = Loader.getClassLoader(MerlinTest.class);
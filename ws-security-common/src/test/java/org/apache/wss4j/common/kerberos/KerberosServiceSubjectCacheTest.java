@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the KerberosServiceSubjectCache, with a login that returns a Subject with a
+ * ticket granting ticket of a given lifetime.
+ */
+public class KerberosServiceSubjectCacheTest {
+
+    @Test
+    public void testCachedSubject() throws Exception {
+        TestSubjectCache subjectCache = new TestSubjectCache(-60L * 1000L, 60L * 60L * 1000L);
+
+        Subject subject = subjectCache.getSubject();
+        assertSame(subject, subjectCache.getSubject());
+        assertEquals(1, subjectCache.logins.get());
+
+        subjectCache.invalidate();
+        assertNotSame(subject, subjectCache.getSubject());
+        assertEquals(2, subjectCache.logins.get());
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        TestSubjectCache subjectCache = new TestSubjectCache(0L, 2000L);
+        subjectCache.setRefreshFraction(0.5);
+
+        Subject subject = subjectCache.getSubject();
+        Thread.sleep(1200L);
+        // The current Subject is returned while it is refreshed in the background
+        assertSame(subject, subjectCache.getSubject());
+
+        long end = System.currentTimeMillis() + 10000L;
+        while (subjectCache.getSubject() == subject && System.currentTimeMillis() < end) {
+            Thread.sleep(10L);
+        }
+        assertNotSame(subject, subjectCache.getSubject());
+        assertTrue(subjectCache.logins.get() >= 2);
+    }
+
+    @Test
+    public void testExpiredSubject() throws Exception {
+        TestSubjectCache subjectCache = new TestSubjectCache(-60L * 60L * 1000L, 10L);
+
+        Subject subject = subjectCache.getSubject();
+        Thread.sleep(50L);
+        // An expired Subject is replaced on the calling thread
+        assertNotSame(subject, subjectCache.getSubject());
+        assertEquals(2, subjectCache.logins.get());
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        TestSubjectCache subjectCache = new TestSubjectCache(0L, 0L);
+        subjectCache.setMaxLifetime(1L);
+
+        Subject subject = subjectCache.getSubject();
+        assertSame(subject, subjectCache.getSubject());
+        Thread.sleep(1100L);
+        assertNotSame(subject, subjectCache.getSubject());
+    }
+
+    private static final class TestSubjectCache extends KerberosServiceSubjectCache {
+        private final AtomicInteger logins = new AtomicInteger();
+        private final long startOffset;
+        private final long endOffset;
+
+        /**
+         * @param startOffset the start time of the ticket granting ticket, relative to the login
+         * @param endOffset the end time of the ticket granting ticket, relative to the login, or 0 for a
+         *                  Subject without a ticket granting ticket
+         */
+        TestSubjectCache(long startOffset, long endOffset) {
+            super("bob", null);
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        @Override
+        protected Subject login() throws LoginException {
+            logins.incrementAndGet();
+            Subject subject = new Subject();
+            KerberosPrincipal client = new KerberosPrincipal("bob/service.ws.apache.org@service.ws.apache.org");
+            subject.getPrincipals().add(client);
+            if (endOffset != 0) {
+                long now = System.currentTimeMillis();
+                KerberosTicket tgt = new KerberosTicket(
+                    new byte[] {1}, client,
+                    new KerberosPrincipal("krbtgt/service.ws.apache.org@service.ws.apache.org"),
+                    new byte[16], 17, null,
+                    new Date(now + startOffset), new Date(now + startOffset), new Date(now + endOffset),
+                    null, null
+                );
+                subject.getPrivateCredentials().add(tgt);
+            }
+            return subject;
+        }
+    }
+}
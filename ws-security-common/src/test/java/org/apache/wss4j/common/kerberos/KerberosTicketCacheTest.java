@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.security.auth.kerberos.KerberosPrincipal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the KerberosTicketCache.
+ */
+public class KerberosTicketCacheTest {
+
+    private static final KerberosPrincipal ALICE = new KerberosPrincipal("alice@service.ws.apache.org");
+
+    @Test
+    public void testAcceptedTicket() throws Exception {
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        byte[] digest = digest("AP-REQ 1");
+        byte[] sessionKey = new byte[16];
+
+        assertTrue(ticketCache.reserve(digest));
+        // A token that is being accepted cannot be looked up
+        assertNull(ticketCache.get(digest));
+
+        ticketCache.put(digest, ALICE, sessionKey, 3600L);
+        KerberosTicketCache.CachedTicket ticket = ticketCache.get(digest("AP-REQ 1"));
+        assertNotNull(ticket);
+        assertEquals(ALICE, ticket.getPrincipal());
+        assertArrayEquals(sessionKey, ticket.getSessionKey());
+
+        // The same token is a replay
+        assertFalse(ticketCache.reserve(digest));
+        assertTrue(ticketCache.reserve(digest("AP-REQ 2")));
+    }
+
+    @Test
+    public void testReleasedTicket() throws Exception {
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        byte[] digest = digest("AP-REQ 1");
+
+        assertTrue(ticketCache.reserve(digest));
+        assertFalse(ticketCache.reserve(digest));
+
+        // A token that could not be accepted is released
+        ticketCache.release(digest);
+        assertEquals(0, ticketCache.size());
+        assertTrue(ticketCache.reserve(digest));
+
+        // An accepted token is not released
+        ticketCache.put(digest, ALICE, null, -1L);
+        ticketCache.release(digest);
+        assertNotNull(ticketCache.get(digest));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        KerberosTicketCache ticketCache = new KerberosTicketCache();
+        byte[] digest = digest("AP-REQ 1");
+
+        assertTrue(ticketCache.reserve(digest));
+        // The service ticket expires before the maximum lifetime of an entry
+        ticketCache.put(digest, ALICE, new byte[16], 1L);
+        assertNotNull(ticketCache.get(digest));
+
+        Thread.sleep(1100L);
+        assertNull(ticketCache.get(digest));
+        assertTrue(ticketCache.reserve(digest));
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        KerberosTicketCache ticketCache = new KerberosTicketCache(10, 3600L);
+        for (int i = 0; i < 25; i++) {
+            byte[] digest = digest("AP-REQ " + i);
+            assertTrue(ticketCache.reserve(digest));
+            ticketCache.put(digest, ALICE, new byte[16], -1L);
+        }
+        assertEquals(10, ticketCache.size());
+        // The oldest tokens are evicted first
+        assertNull(ticketCache.get(digest("AP-REQ 0")));
+        assertNotNull(ticketCache.get(digest("AP-REQ 24")));
+    }
+
+    private static byte[] digest(String token) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmarks of the EnginePool against creating a JCA engine object for every operation. The results are
+ * written to the log.
+ * Run with "mvn test -Dwss4j.benchmark=true".
+ */
+@EnabledIfSystemProperty(named = "wss4j.benchmark", matches = "true")
+public class EnginePoolBenchmarkTest {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EnginePoolBenchmarkTest.class);
+
+    private static final long WARMUP_MILLIS = 1000L;
+    private static final long RUN_MILLIS = 3000L;
+    private static final int MAX_THREADS = 64;
+    private static final byte[] DATA = "a short input, such as a nonce, created and password"
+        .getBytes(StandardCharsets.UTF_8);
+    private static final SecretKeySpec HMAC_KEY = new SecretKeySpec(new byte[20], "HmacSHA1");
+    private static final SecretKeySpec AES_KEY = new SecretKeySpec(new byte[16], "AES");
+    private static final IvParameterSpec IV = new IvParameterSpec(new byte[16]);
+
+    /**
+     * A SHA-1 digest, as for a UsernameToken password digest or a thumbprint
+     */
+    @Test
+    public void testMessageDigest() throws Exception {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-1");
+        runBenchmark("MessageDigest SHA-1",
+            () -> MessageDigest.getInstance("SHA-1").digest(DATA),
+            () -> {
+                MessageDigest digest = pool.get();
+                digest.digest(DATA);
+                pool.release(digest);
+            });
+    }
+
+    /**
+     * An HmacSHA1, as for the P_SHA1 key derivation
+     */
+    @Test
+    public void testMac() throws Exception {
+        EnginePool<Mac> pool = EnginePool.getMacPool("HmacSHA1");
+        runBenchmark("Mac HmacSHA1",
+            () -> {
+                Mac mac = Mac.getInstance("HmacSHA1");
+                mac.init(HMAC_KEY);
+                mac.doFinal(DATA);
+            },
+            () -> {
+                Mac mac = pool.get();
+                mac.init(HMAC_KEY);
+                mac.doFinal(DATA);
+                pool.release(mac);
+            });
+    }
+
+    /**
+     * An AES-CBC encryption of a small attachment
+     */
+    @Test
+    public void testCipher() throws Exception {
+        EnginePool<Cipher> pool = EnginePool.getCipherPool("AES/CBC/ISO10126Padding");
+        runBenchmark("Cipher AES/CBC/ISO10126Padding",
+            () -> {
+                Cipher cipher = Cipher.getInstance("AES/CBC/ISO10126Padding");
+                cipher.init(Cipher.ENCRYPT_MODE, AES_KEY, IV);
+                cipher.doFinal(DATA);
+            },
+            () -> {
+                Cipher cipher = pool.get();
+                cipher.init(Cipher.ENCRYPT_MODE, AES_KEY, IV);
+                cipher.doFinal(DATA);
+                pool.release(cipher);
+            });
+    }
+
+    /**
+     * Log the throughput of an operation for 1 to 64 threads, with an engine object that is created for every
+     * operation, and with one that is taken from the pool
+     */
+    private static void runBenchmark(String name, Operation getInstance, Operation pooled) throws Exception {
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 4) {
+            runThreads(getInstance, threads, WARMUP_MILLIS);
+            long created = runThreads(getInstance, threads, RUN_MILLIS);
+            runThreads(pooled, threads, WARMUP_MILLIS);
+            long reused = runThreads(pooled, threads, RUN_MILLIS);
+            assertTrue(created > 0 && reused > 0);
+            LOG.info("{}: {} threads, {} ops/s with getInstance, {} ops/s with the EnginePool",
+                     name, threads, created * 1000L / RUN_MILLIS, reused * 1000L / RUN_MILLIS);
+        }
+    }
+
+    private static long runThreads(Operation operation, int threadCount, long millis) throws Exception {
+        LongAdder operations = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while (running.get()) {
+                        operation.run();
+                        count++;
+                    }
+                    operations.add(count);
+                } catch (Exception e) {
+                    LOG.error(e.getMessage(), e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operations.sum();
+    }
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+}
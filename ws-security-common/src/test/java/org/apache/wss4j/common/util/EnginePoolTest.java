@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the EnginePool.
+ */
+public class EnginePoolTest {
+
+    @Test
+    public void testSharedPools() throws Exception {
+        assertSame(EnginePool.getMessageDigestPool("SHA-256"), EnginePool.getMessageDigestPool("SHA-256", null));
+        assertSame(EnginePool.getMacPool("HmacSHA256"), EnginePool.getMacPool("HmacSHA256"));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-512");
+        MessageDigest digest = pool.get();
+        // An engine that is released in the middle of an operation is reset
+        digest.update("partial".getBytes(StandardCharsets.UTF_8));
+        pool.release(digest);
+
+        MessageDigest reused = pool.get();
+        assertSame(digest, reused);
+        byte[] expected = MessageDigest.getInstance("SHA-512").digest("data".getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(expected, reused.digest("data".getBytes(StandardCharsets.UTF_8)));
+        pool.release(reused);
+    }
+
+    @Test
+    public void testMac() throws Exception {
+        EnginePool<Mac> pool = EnginePool.getMacPool("HmacSHA256");
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        SecretKeySpec key = new SecretKeySpec(new byte[32], "HmacSHA256");
+
+        Mac mac = pool.get();
+        mac.init(key);
+        mac.update("partial".getBytes(StandardCharsets.UTF_8));
+        pool.release(mac);
+
+        mac = pool.get();
+        mac.init(key);
+        Mac expected = Mac.getInstance("HmacSHA256");
+        expected.init(key);
+        assertArrayEquals(expected.doFinal(data), mac.doFinal(data));
+        pool.release(mac);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-1");
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = MessageDigest.getInstance("SHA-1").digest(data);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 10000; j++) {
+                        MessageDigest digest = pool.get();
+                        digest.update(data);
+                        byte[] result = digest.digest();
+                        pool.release(digest);
+                        assertArrayEquals(expected, result);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testReleaseOnClose() throws Exception {
+        EnginePool<Cipher> pool = EnginePool.getCipherPool("AES/ECB/NoPadding");
+        Cipher cipher = pool.get();
+        InputStream inputStream = pool.releaseOnClose(new ByteArrayInputStream(new byte[] {1, 2, 3}), cipher);
+        assertEquals(1, inputStream.read());
+        inputStream.close();
+        // A second close does not release the cipher twice
+        inputStream.close();
+
+        Cipher reused = pool.get();
+        assertSame(cipher, reused);
+        Cipher other = pool.get();
+        if (other == cipher) {
+            fail("The cipher was released twice");
+        }
+        pool.release(reused);
+        pool.release(other);
+    }
+
+    @Test
+    public void testUnknownAlgorithm() throws Exception {
+        assertThrows(NoSuchAlgorithmException.class, () ->
+            EnginePool.getMessageDigestPool("NO-SUCH-DIGEST").get()
+        );
+    }
+}
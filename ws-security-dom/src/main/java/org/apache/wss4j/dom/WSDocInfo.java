@@ -33,7 +33,6 @@ package org.apache.wss4j.dom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -43,9 +42,11 @@ import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.callback.ElementIdIndex;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 public class WSDocInfo {
     private Document doc;
@@ -57,10 +58,13 @@ public class WSDocInfo {
     // creation or validation
     private final Map<String, TokenValue> tokens = new HashMap<>();
 
-    private final List<WSSecurityEngineResult> results = new LinkedList<>();
+    private final List<WSSecurityEngineResult> results = new ArrayList<>();
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
+    // The results by the (wsu) Id that they have when they are stored
+    private final Map<String, List<WSSecurityEngineResult>> resultsById = new HashMap<>();
     private CallbackLookup callbackLookup;
     private Element securityHeader;
+    private ElementIdIndex elementIdIndex;
 
     public WSDocInfo(Document doc) {
         //
@@ -83,9 +87,11 @@ public class WSDocInfo {
         doc = null;
         callbackLookup = null;
         securityHeader = null;
+        elementIdIndex = null;
         tokens.clear();
         results.clear();
         actionResults.clear();
+        resultsById.clear();
     }
 
     /**
@@ -207,12 +213,17 @@ public class WSDocInfo {
 
 
     /**
-     * Store a WSSecurityEngineResult for later retrieval.
+     * Store a WSSecurityEngineResult for later retrieval. It is indexed by the value of its TAG_ID
+     * at this point, so the Id must be set on the result before it is stored.
      * @param result is the WSSecurityEngineResult to store
      */
     public void addResult(WSSecurityEngineResult result) {
         results.add(result);
-        Integer resultTag = (Integer)result.get(WSSecurityEngineResult.TAG_ACTION);
+        String id = result.getId();
+        if (id != null) {
+            resultsById.computeIfAbsent(id, k -> new ArrayList<>(1)).add(result);
+        }
+        Integer resultTag = result.getAction();
         if (resultTag != null) {
             List<WSSecurityEngineResult> storedResults = actionResults.get(resultTag);
             if (storedResults == null) {
@@ -256,15 +267,8 @@ public class WSDocInfo {
             return null;
         }
 
-        if (!results.isEmpty()) {
-            for (WSSecurityEngineResult result : results) {
-                String cId = (String)result.get(WSSecurityEngineResult.TAG_ID);
-                if (id.equals(cId)) {
-                    return result;
-                }
-            }
-        }
-        return null;
+        List<WSSecurityEngineResult> idResults = resultsById.get(id);
+        return idResults == null ? null : idResults.get(0);
     }
 
     /**
@@ -288,10 +292,12 @@ public class WSDocInfo {
         }
 
         if (!actionResults.isEmpty() && actionResults.containsKey(tag)) {
-            for (WSSecurityEngineResult result : actionResults.get(tag)) {
-                String cId = (String)result.get(WSSecurityEngineResult.TAG_ID);
-                if (id.equals(cId)) {
-                    return true;
+            List<WSSecurityEngineResult> idResults = resultsById.get(id);
+            if (idResults != null) {
+                for (WSSecurityEngineResult result : idResults) {
+                    if (tag.equals(result.getAction())) {
+                        return true;
+                    }
                 }
             }
         }
@@ -352,6 +358,42 @@ public class WSDocInfo {
         this.securityHeader = securityHeader;
     }
 
+    /**
+     * Get the index of the Elements of the document by their Id. The index is built in a single
+     * traversal of the document when it is first requested.
+     * @return the index, or null if there is no document
+     */
+    public ElementIdIndex getElementIdIndex() {
+        if (elementIdIndex == null && doc != null && doc.getDocumentElement() != null) {
+            elementIdIndex = new ElementIdIndex(doc);
+        }
+        return elementIdIndex;
+    }
+
+    /**
+     * Add the Elements that have been decrypted to the index of the Elements by their Id, if the
+     * index has been built. The decryption of an Element may splice several nodes into the document,
+     * in place of the EncryptedData Element, so the whole parent of the decrypted Element is indexed
+     * again. If the decrypted Element is not known, e.g. because the decrypted data starts with some
+     * whitespace, the index is dropped, and built again from the document when it is next requested.
+     * @param dataRef The WSDataRef of the decrypted data
+     */
+    public void indexDecryptedElements(WSDataRef dataRef) {
+        if (elementIdIndex == null || dataRef.isAttachment()) {
+            return;
+        }
+        Element protectedElement = dataRef.getProtectedElement();
+        Node node = protectedElement;
+        if (protectedElement != null && !dataRef.isContent()) {
+            node = protectedElement.getParentNode();
+        }
+        if (node == null) {
+            elementIdIndex = null;
+        } else {
+            elementIdIndex.addElements(node);
+        }
+    }
+
     private static class TokenValue {
         private final String idName;
         private final String idNamespace;
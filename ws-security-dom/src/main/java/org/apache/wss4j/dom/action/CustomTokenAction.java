@@ -22,6 +22,7 @@ package org.apache.wss4j.dom.action;
 import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandler;
 import org.w3c.dom.Element;
@@ -29,6 +30,7 @@ import org.w3c.dom.Element;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 
+@Stateless
 public class CustomTokenAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken, RequestData reqData)
@@ -20,6 +20,7 @@
 package org.apache.wss4j.dom.action;
 
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
@@ -33,6 +34,7 @@ import org.apache.wss4j.dom.message.WSSecSignatureConfirmation;
 
 import java.util.List;
 
+@Stateless
 public class SignatureConfirmationAction implements Action {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SignatureConfirmationAction.class);
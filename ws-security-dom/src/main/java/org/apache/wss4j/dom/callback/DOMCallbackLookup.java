@@ -25,6 +25,7 @@ import java.util.List;
 import javax.xml.crypto.dom.DOMCryptoContext;
 
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -37,11 +38,22 @@ import org.w3c.dom.Element;
 public class DOMCallbackLookup implements CallbackLookup {
 
     private Document doc;
+    private WSDocInfo wsDocInfo;
 
     public DOMCallbackLookup(Document doc) {
         this.doc = doc;
     }
 
+    /**
+     * @param doc The document
+     * @param wsDocInfo The WSDocInfo of the document, whose ElementIdIndex is used to locate Elements
+     *        by their Id without walking the document for every lookup
+     */
+    public DOMCallbackLookup(Document doc, WSDocInfo wsDocInfo) {
+        this.doc = doc;
+        this.wsDocInfo = wsDocInfo;
+    }
+
     /**
      * Get the DOM element that corresponds to the given id and ValueType reference. The Id can
      * be a wsu:Id or else an Id attribute, or a SAML Id when the ValueType refers to a SAML
@@ -92,9 +104,28 @@ public class DOMCallbackLookup implements CallbackLookup {
                 return bodyElement;
             }
         }
-        // Otherwise do a general search
-        Element foundElement =
-            XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        boolean samlValueType = WSConstants.WSS_SAML_KI_VALUE_TYPE.equals(valueType)
+            || WSConstants.WSS_SAML2_KI_VALUE_TYPE.equals(valueType)
+            || "".equals(valueType)
+            || valueType == null;
+
+        //
+        // Otherwise look up the index of the Ids. If the Id is not in the index, or if there are
+        // multiple elements with the Id, do a general search
+        //
+        Element foundElement = null;
+        Element samlElement = null;
+        ElementIdIndex index = wsDocInfo != null && idToMatch != null ? wsDocInfo.getElementIdIndex() : null;
+        if (index != null && !index.hasDuplicates(idToMatch)) {
+            foundElement = index.getElement(idToMatch);
+            if (foundElement == null && samlValueType) {
+                samlElement = index.getSAMLElement(idToMatch);
+            }
+        }
+        if (foundElement == null && samlElement == null) {
+            foundElement =
+                XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        }
         if (foundElement != null) {
             if (context != null) {
                 if (foundElement.hasAttributeNS(WSConstants.WSU_NS, "Id")
@@ -113,14 +144,14 @@ public class DOMCallbackLookup implements CallbackLookup {
         // Try to find a SAML Assertion Element if the ValueType corresponds to a SAML Assertion
         // (or is empty)
         //
-        if (WSConstants.WSS_SAML_KI_VALUE_TYPE.equals(valueType)
-            || WSConstants.WSS_SAML2_KI_VALUE_TYPE.equals(valueType)
-            || "".equals(valueType)
-            || valueType == null) {
-            foundElement =
-                XMLUtils.findSAMLAssertionElementById(
-                    doc.getDocumentElement(), idToMatch
-                );
+        if (samlValueType) {
+            foundElement = samlElement;
+            if (foundElement == null) {
+                foundElement =
+                    XMLUtils.findSAMLAssertionElementById(
+                        doc.getDocumentElement(), idToMatch
+                    );
+            }
             if (foundElement != null) {
                 if (context != null) {
                     if (foundElement.hasAttributeNS(null, "ID")
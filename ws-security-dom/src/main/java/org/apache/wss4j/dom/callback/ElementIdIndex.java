@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An index of the Elements of a document by their Id, which is built in a single traversal of the
+ * document, so that the references of a message are resolved without walking the document for each
+ * of them. Duplicate Ids are detected in the same traversal.
+ *
+ * Two kinds of Ids are indexed, with the semantics of the corresponding XMLUtils lookups:
+ * a wsu:Id or an Id with no namespace, as for XMLUtils.findElementById, and an ID or AssertionID with
+ * no namespace, as for XMLUtils.findSAMLAssertionElementById. For each Id, the first Element in
+ * document order is kept.
+ *
+ * The index must be told about the Elements that are added to the document after it has been built,
+ * e.g. the Elements that are decrypted, via {@link #addElements(Node)}, which indexes the whole subtree of
+ * the given Node. An Element that has since been
+ * removed from the document, or whose Id has changed, is dropped when it is looked up. A lookup that
+ * misses the index, or that finds duplicates, should fall back on a walk of the document, in case the
+ * document has been changed in a way that the index does not know about.
+ */
+public class ElementIdIndex {
+
+    private final Map<String, Entry> ids = new HashMap<>();
+    private final Map<String, Entry> samlIds = new HashMap<>();
+
+    /**
+     * Build the index of the given document
+     */
+    public ElementIdIndex(Document doc) {
+        addElements(doc.getDocumentElement());
+    }
+
+    /**
+     * Index the Elements of the given subtree, e.g. an Element that has been decrypted
+     */
+    public final void addElements(Node startNode) {
+        Node node = startNode;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && node.hasAttributes()) {
+                index((Element) node);
+            }
+
+            Node nextNode = node.getFirstChild();
+            // no child, this node is done. Get the next sibling of this node, or of its
+            // closest ancestor that has one, without leaving the subtree.
+            while (nextNode == null && node != startNode) {
+                nextNode = node.getNextSibling();
+                if (nextNode == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = nextNode;
+        }
+    }
+
+    /**
+     * Get the Element with the given wsu:Id or Id, or null if there is no indexed Element with this Id
+     */
+    public Element getElement(String id) {
+        Entry entry = getEntry(ids, id);
+        return entry == null ? null : entry.element;
+    }
+
+    /**
+     * Return true if there are several Elements with the given wsu:Id or Id
+     */
+    public boolean hasDuplicates(String id) {
+        Entry entry = getEntry(ids, id);
+        return entry != null && entry.duplicate;
+    }
+
+    /**
+     * Get the Element with the given (SAML) ID or AssertionID, or null if there is no indexed Element with this
+     * ID, or if there are several of them
+     */
+    public Element getSAMLElement(String id) {
+        Entry entry = getEntry(samlIds, id);
+        return entry == null || entry.duplicate ? null : entry.element;
+    }
+
+    private void index(Element element) {
+        String wsuId = element.getAttributeNS(WSConstants.WSU_NS, "Id");
+        if (!wsuId.isEmpty()) {
+            add(ids, wsuId, element);
+        }
+        String id = element.getAttributeNS(null, "Id");
+        if (!id.isEmpty() && !id.equals(wsuId)) {
+            add(ids, id, element);
+        }
+
+        String samlId = element.getAttributeNS(null, "ID");
+        if (element.hasAttributeNS(null, "ID")) {
+            add(samlIds, samlId, element);
+        }
+        if (element.hasAttributeNS(null, "AssertionID")) {
+            String assertionId = element.getAttributeNS(null, "AssertionID");
+            if (!assertionId.equals(samlId)) {
+                add(samlIds, assertionId, element);
+            }
+        }
+    }
+
+    private void add(Map<String, Entry> index, String id, Element element) {
+        Entry entry = index.get(id);
+        if (entry == null || !isCurrent(entry, index, id)) {
+            index.put(id, new Entry(element));
+        } else if (entry.element != element) {
+            entry.duplicate = true;
+        }
+    }
+
+    private Entry getEntry(Map<String, Entry> index, String id) {
+        Entry entry = index.get(id);
+        if (entry != null && !isCurrent(entry, index, id)) {
+            index.remove(id);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Return true if the Element of the entry is still in the document, and still has the given Id
+     */
+    private boolean isCurrent(Entry entry, Map<String, Entry> index, String id) {
+        Element element = entry.element;
+        if (index == ids) {
+            if (!id.equals(element.getAttributeNS(WSConstants.WSU_NS, "Id"))
+                && !id.equals(element.getAttributeNS(null, "Id"))) {
+                return false;
+            }
+        } else if (!id.equals(element.getAttributeNS(null, "ID"))
+            && !id.equals(element.getAttributeNS(null, "AssertionID"))) {
+            return false;
+        }
+        Node node = element;
+        while (node.getParentNode() != null) {
+            node = node.getParentNode();
+        }
+        return node.getNodeType() == Node.DOCUMENT_NODE;
+    }
+
+    private static final class Entry {
+        private final Element element;
+        private boolean duplicate;
+
+        Entry(Element element) {
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.engine;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an Action, Processor or Validator class as stateless. When such a class is registered
+ * with a WSSConfig, a single instance of it is created and shared by all of the messages
+ * (see {@link WSSConfig#setShareStatelessInstances(boolean)}), instead of a new instance being
+ * created for every token or action.
+ *
+ * A class that carries this annotation guarantees that:
+ * <ul>
+ * <li>It has a public no-argument constructor.</li>
+ * <li>It has no mutable instance state, so that a single instance can be used by several
+ * threads concurrently. Any per-message state must be kept in the RequestData, the WSDocInfo
+ * or local variables.</li>
+ * <li>It does not hold on to objects that are not thread-safe, such as an XMLSignatureFactory.</li>
+ * </ul>
+ *
+ * The annotation is not inherited: a subclass of a stateless class must carry the annotation
+ * itself to be shared. Custom classes are therefore created for every token or action, as
+ * before, unless they opt in explicitly.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Stateless {
+
+}
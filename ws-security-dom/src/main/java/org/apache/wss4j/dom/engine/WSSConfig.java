@@ -298,6 +298,34 @@ public final class WSSConfig {
      */
     private final Map<QName, Object> validatorMap = new HashMap<>(DEFAULT_VALIDATORS);
 
+    /**
+     * The shared instances of the action, processor and validator classes that are annotated as
+     * {@link Stateless}, or NOT_SHARED for the other classes. A ClassValue is used so that the
+     * instances of custom classes do not prevent their ClassLoader from being unloaded.
+     */
+    private static final Object NOT_SHARED = new Object();
+    private static final ClassValue<Object> SHARED_INSTANCES = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            if (!type.isAnnotationPresent(Stateless.class)) {
+                return NOT_SHARED;
+            }
+            try {
+                return type.newInstance();
+            } catch (InstantiationException | IllegalAccessException ex) {
+                // Not cached, the class is instantiated (and the error reported) per invocation
+                throw new IllegalStateException(ex);
+            }
+        }
+    };
+
+    /**
+     * Whether a single instance of the action, processor and validator classes that are annotated
+     * as {@link Stateless} is shared, instead of a new instance being created per invocation.
+     * The default is true.
+     */
+    private boolean shareStatelessInstances = true;
+
     static {
         try {
             Transform.register(WSConstants.SWA_ATTACHMENT_CIPHERTEXT_TRANS,
@@ -401,6 +429,9 @@ public final class WSSConfig {
      *
      * This operation allows applications to supply their own
      * actions for well-known operations.
+     *
+     * A new instance of the class is created per invocation, unless the class is annotated
+     * as {@link Stateless}.
      */
     public Class<?> setAction(int code, Class<?> clazz) {
         Object result = actionMap.put(code, clazz);
@@ -423,13 +454,7 @@ public final class WSSConfig {
         final Object actionObject = actionMap.get(action);
 
         if (actionObject instanceof Class<?>) {
-            try {
-                return (Action)((Class<?>)actionObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)actionObject).getName()});
-            }
+            return loadInstance((Class<?>)actionObject, Action.class);
         } else if (actionObject instanceof Action) {
             return (Action)actionObject;
         }
@@ -458,6 +483,9 @@ public final class WSSConfig {
      * Associate a SOAP processor name with a specified SOAP Security header
      * element QName.  Processors registered under this QName will be
      * called when processing header elements with the specified type.
+     *
+     * A new instance of the class is created per invocation, unless the class is annotated
+     * as {@link Stateless}.
      */
     public Class<?> setProcessor(QName el, Class<?> clazz) {
         Object result = processorMap.put(el, clazz);
@@ -491,6 +519,9 @@ public final class WSSConfig {
      * Associate a SOAP validator name with a specified SOAP Security header
      * element QName.  validator registered under this QName will be
      * called when processing header elements with the specified type.
+     *
+     * A new instance of the class is created per invocation, unless the class is annotated
+     * as {@link Stateless}.
      */
     public Class<?> setValidator(QName el, Class<?> clazz) {
         Object result = validatorMap.put(el, clazz);
@@ -513,13 +544,7 @@ public final class WSSConfig {
         final Object validatorObject = validatorMap.get(el);
 
         if (validatorObject instanceof Class<?>) {
-            try {
-                return (Validator)((Class<?>)validatorObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                    "unableToLoadClass", new Object[] {((Class<?>)validatorObject).getName()});
-            }
+            return loadInstance((Class<?>)validatorObject, Validator.class);
         } else if (validatorObject instanceof Validator) {
             return (Validator)validatorObject;
         }
@@ -537,19 +562,56 @@ public final class WSSConfig {
         final Object processorObject = processorMap.get(el);
 
         if (processorObject instanceof Class<?>) {
-            try {
-                return (Processor)((Class<?>)processorObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)processorObject).getName()});
-            }
+            return loadInstance((Class<?>)processorObject, Processor.class);
         } else if (processorObject instanceof Processor) {
             return (Processor)processorObject;
         }
         return null;
     }
 
+    /**
+     * Get an instance of the given action, processor or validator class. If the sharing of stateless
+     * instances is enabled, and the class is annotated as {@link Stateless}, then the shared instance
+     * is returned, otherwise a new instance is created.
+     */
+    private <T> T loadInstance(Class<?> clazz, Class<T> type) throws WSSecurityException {
+        if (shareStatelessInstances) {
+            try {
+                Object instance = SHARED_INSTANCES.get(clazz);
+                if (type.isInstance(instance)) {
+                    return type.cast(instance);
+                }
+            } catch (RuntimeException ex) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+        }
+        try {
+            return type.cast(clazz.newInstance());
+        } catch (Exception ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
+                    "unableToLoadClass", new Object[] {clazz.getName()});
+        }
+    }
+
+    /**
+     * @return whether a single instance of the action, processor and validator classes that are
+     *         annotated as {@link Stateless} is shared
+     */
+    public boolean isShareStatelessInstances() {
+        return shareStatelessInstances;
+    }
+
+    /**
+     * Set whether a single instance of the action, processor and validator classes that are
+     * annotated as {@link Stateless} is shared by all of the messages, instead of a new instance
+     * being created for every token or action. The default is true. Classes that are not annotated,
+     * such as custom classes that do not opt in, are always instantiated per invocation.
+     */
+    public void setShareStatelessInstances(boolean shareStatelessInstances) {
+        this.shareStatelessInstances = shareStatelessInstances;
+    }
+
     public WSTimeSource getCurrentTime() {
         if (currentTime != null) {
             return currentTime;
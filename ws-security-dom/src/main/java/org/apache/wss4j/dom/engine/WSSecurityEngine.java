@@ -19,8 +19,8 @@
 
 package org.apache.wss4j.dom.engine;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -307,7 +307,7 @@ public class WSSecurityEngine {
         WSDocInfo wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
         CallbackLookup callbackLookupToUse = callbackLookup;
         if (callbackLookupToUse == null) {
-            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument());
+            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument(), wsDocInfo);
         }
         wsDocInfo.setCallbackLookup(callbackLookupToUse);
         wsDocInfo.setCrypto(requestData.getSigVerCrypto());
@@ -317,7 +317,9 @@ public class WSSecurityEngine {
         final WSSConfig cfg = getWssConfig();
         Node node = securityHeader.getFirstChild();
 
-        List<WSSecurityEngineResult> returnResults = new LinkedList<>();
+        // The results of each token, which are returned with the results of the last token first
+        List<List<WSSecurityEngineResult>> tokenResults = new ArrayList<>();
+        int resultCount = 0;
         boolean foundTimestamp = false;
         while (node != null) {
             Node nextSibling = node.getNextSibling();
@@ -339,7 +341,8 @@ public class WSSecurityEngine {
                 if (p != null) {
                     List<WSSecurityEngineResult> results = p.handleToken((Element) node, requestData);
                     if (!results.isEmpty()) {
-                        returnResults.addAll(0, results);
+                        tokenResults.add(results);
+                        resultCount += results.size();
                     }
                 } else {
                     if (doDebug) {
@@ -363,6 +366,11 @@ public class WSSecurityEngine {
             }
         }
 
+        List<WSSecurityEngineResult> returnResults = new ArrayList<>(resultCount);
+        for (int i = tokenResults.size() - 1; i >= 0; i--) {
+            returnResults.addAll(tokenResults.get(i));
+        }
+
         WSHandlerResult handlerResult =
             new WSHandlerResult(requestData.getActor(), returnResults, wsDocInfo.getActionResults());
 
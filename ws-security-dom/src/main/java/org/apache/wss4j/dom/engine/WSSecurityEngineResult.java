@@ -358,5 +358,18 @@ public class WSSecurityEngineResult extends java.util.HashMap<String, Object> {
         put(TAG_TOKEN_ELEMENT, token.getElement());
     }
 
+    /**
+     * @return the value of TAG_ACTION, i.e. the cryptographic operation performed
+     */
+    public Integer getAction() {
+        return (Integer)get(TAG_ACTION);
+    }
+
+    /**
+     * @return the value of TAG_ID, i.e. the (wsu) Id of the token corresponding to this result
+     */
+    public String getId() {
+        return (String)get(TAG_ID);
+    }
 
 }
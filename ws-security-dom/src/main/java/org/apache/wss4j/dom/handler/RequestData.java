@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.CallbackHandler;
@@ -39,8 +40,10 @@ import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.DNPatternMatcher;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -75,6 +78,7 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private KerberosTicketCache kerberosTicketCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -96,6 +100,8 @@ public class RequestData {
     private Serializer encryptionSerializer;
     private WSDocInfo wsDocInfo;
     private Provider signatureProvider;
+    private Executor signatureReferenceExecutor;
+    private Executor decryptionExecutor;
 
     /**
      * Whether to add an InclusiveNamespaces PrefixList as a CanonicalizationMethod
@@ -447,11 +453,33 @@ public class RequestData {
     }
 
     /**
-     * Set the Signature Subject Cert Constraints
+     * Set the cache of the Kerberos AP-REQ tokens that have been accepted, which is used to detect
+     * replayed tokens and to resolve references to a token that was received in an earlier message
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
+
+    /**
+     * Get the cache of the Kerberos AP-REQ tokens that have been accepted
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
+    /**
+     * Set the Signature Subject Cert Constraints. A DNPatternMatcher is kept as it is, if no constraints
+     * have been set before, so that it is not built again for every message.
      */
     public void setSubjectCertConstraints(Collection<Pattern> subjectCertConstraints) {
         if (subjectCertConstraints != null) {
-            subjectDNPatterns.addAll(subjectCertConstraints);
+            if (subjectDNPatterns.isEmpty() && subjectCertConstraints instanceof DNPatternMatcher) {
+                subjectDNPatterns = subjectCertConstraints;
+            } else {
+                Collection<Pattern> patterns = new ArrayList<>(subjectDNPatterns);
+                patterns.addAll(subjectCertConstraints);
+                subjectDNPatterns = patterns;
+            }
         }
     }
 
@@ -779,4 +807,41 @@ public class RequestData {
     public void setSignatureProvider(Provider signatureProvider) {
         this.signatureProvider = signatureProvider;
     }
+
+    public Executor getSignatureReferenceExecutor() {
+        return signatureReferenceExecutor;
+    }
+
+    /**
+     * Set an Executor (e.g. a ForkJoinPool, or an Executor of virtual threads) to validate the
+     * References of a Signature in parallel, once the signature value has been verified. The default
+     * is null, meaning that the References are validated one after the other on the calling thread.
+     *
+     * The References are validated concurrently against the same DOM document, so this should only
+     * be enabled if the DOM implementation supports concurrent reads of a document that is not
+     * being modified (e.g. a document that has not been parsed with deferred node expansion).
+     * References that dereference a SecurityTokenReference, or an attachment, are still validated
+     * on the calling thread.
+     */
+    public void setSignatureReferenceExecutor(Executor signatureReferenceExecutor) {
+        this.signatureReferenceExecutor = signatureReferenceExecutor;
+    }
+
+    public Executor getDecryptionExecutor() {
+        return decryptionExecutor;
+    }
+
+    /**
+     * Set an Executor (e.g. a ForkJoinPool, or an Executor of virtual threads) to decrypt the
+     * EncryptedData elements that are referenced by a ReferenceList or an EncryptedKey in parallel.
+     * The default is null, meaning that the EncryptedData elements are decrypted one after the other
+     * on the calling thread.
+     *
+     * Only the cipher payloads are decrypted by the Executor. The plaintexts are parsed and spliced
+     * into the document on the calling thread, in the order of the references, and EncryptedData
+     * elements that refer to an attachment are still decrypted on the calling thread.
+     */
+    public void setDecryptionExecutor(Executor decryptionExecutor) {
+        this.decryptionExecutor = decryptionExecutor;
+    }
 }
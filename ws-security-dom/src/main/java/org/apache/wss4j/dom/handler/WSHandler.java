@@ -28,14 +28,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 
+import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSConfig;
@@ -47,6 +50,7 @@ import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
@@ -65,6 +69,35 @@ public abstract class WSHandler {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<>();
+    // The Crypto instances that this handler has acquired from the CryptoRegistry, given back by close()
+    private final Queue<Crypto> sharedCryptos = new ConcurrentLinkedQueue<>();
+    private volatile WSHandlerProfile securityProfile;
+
+    /**
+     * Compile the current options of this handler into a WSHandlerProfile, which can then be set
+     * via {@link #setSecurityProfile(WSHandlerProfile)} so that the options are not decoded again
+     * for every message. The action option is not compiled, as it is decoded by the subclasses.
+     *
+     * @return the compiled WSHandlerProfile
+     * @throws WSSecurityException if an option has an illegal value
+     */
+    public WSHandlerProfile compileSecurityProfile() throws WSSecurityException {
+        return new WSHandlerProfile(this);
+    }
+
+    public WSHandlerProfile getSecurityProfile() {
+        return securityProfile;
+    }
+
+    /**
+     * Set the compiled options of this handler, which are then used instead of decoding the
+     * options for every message. The default is null, meaning that the options are decoded for
+     * every message. The profile must be compiled again, and set, if the options of this handler
+     * are changed afterwards.
+     */
+    public void setSecurityProfile(WSHandlerProfile securityProfile) {
+        this.securityProfile = securityProfile;
+    }
 
     /**
      * Performs all defined security actions to set-up the SOAP request.
@@ -609,14 +642,8 @@ public abstract class WSHandler {
             decodeBooleanConfigValue(mc, WSHandlerConstants.USE_2005_12_NAMESPACE, true);
         reqData.setUse200512Namespace(use200512Namespace);
 
-        String parts = getString(WSHandlerConstants.SIGNATURE_PARTS, mc);
-        if (parts != null) {
-            splitEncParts(true, parts, actionToken.getParts(), reqData);
-        }
-        parts = getString(WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS, mc);
-        if (parts != null) {
-            splitEncParts(false, parts, actionToken.getParts(), reqData);
-        }
+        addParts(WSHandlerConstants.SIGNATURE_PARTS, true, actionToken.getParts(), reqData);
+        addParts(WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS, false, actionToken.getParts(), reqData);
 
         boolean useSingleCert =
             decodeBooleanConfigValue(mc, WSHandlerConstants.USE_SINGLE_CERTIFICATE, true);
@@ -764,14 +791,8 @@ public abstract class WSHandler {
 
         handleSpecialUser(reqData);
 
-        String encParts = getString(WSHandlerConstants.ENCRYPTION_PARTS, mc);
-        if (encParts != null) {
-            splitEncParts(true, encParts, actionToken.getParts(), reqData);
-        }
-        encParts = getString(WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS, mc);
-        if (encParts != null) {
-            splitEncParts(false, encParts, actionToken.getParts(), reqData);
-        }
+        addParts(WSHandlerConstants.ENCRYPTION_PARTS, true, actionToken.getParts(), reqData);
+        addParts(WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS, false, actionToken.getParts(), reqData);
 
         boolean includeToken =
             decodeBooleanConfigValue(mc, WSHandlerConstants.INCLUDE_ENCRYPTION_TOKEN, false);
@@ -843,6 +864,13 @@ public abstract class WSHandler {
     protected boolean decodeBooleanConfigValue(
         Object messageContext, String configTag, boolean defaultToTrue
     ) throws WSSecurityException {
+        WSHandlerProfile profile = securityProfile;
+        if (profile != null) {
+            Boolean compiledValue = profile.getBoolean(configTag);
+            if (compiledValue != null) {
+                return compiledValue;
+            }
+        }
 
         String value = getString(configTag, messageContext);
 
@@ -930,7 +958,9 @@ public abstract class WSHandler {
     /**
      * Load a Crypto instance. Firstly, it tries to use the cryptoPropertyRefId tag to retrieve
      * a Crypto object via a custom reference Id. Failing this, it tries to load the crypto
-     * instance via the cryptoPropertyFile tag.
+     * instance via the cryptoPropertyFile tag. The Crypto instances that are loaded from
+     * Properties are shared with the other handlers of the same configuration via the
+     * CryptoRegistry. They are acquired once per handler, and given back by {@link #close()}.
      *
      * @param requestData the RequestData object
      * @return a Crypto instance to use for Encryption creation/verification
@@ -952,10 +982,11 @@ public abstract class WSHandler {
             if (crypto == null) {
                 Object obj = getProperty(mc, refId);
                 if (obj instanceof Properties) {
-                    crypto = CryptoFactory.getInstance((Properties)obj,
-                                                       Loader.getClassLoader(CryptoFactory.class),
-                                                       getPasswordEncryptor(requestData));
-                    cryptos.put(refId, crypto);
+                    crypto = acquireCrypto((Properties)obj, Loader.getClassLoader(CryptoFactory.class), requestData);
+                    Crypto existingCrypto = cryptos.putIfAbsent(refId, crypto);
+                    if (existingCrypto != null) {
+                        crypto = existingCrypto;
+                    }
                 } else if (obj instanceof Crypto) {
                     // No need to cache this as it's already loaded
                     crypto = (Crypto)obj;
@@ -977,7 +1008,12 @@ public abstract class WSHandler {
                 crypto = cryptos.get(propFile);
                 if (crypto == null) {
                     crypto = loadCryptoFromPropertiesFile(propFile, requestData);
-                    cryptos.put(propFile, crypto);
+                    if (crypto != null) {
+                        Crypto existingCrypto = cryptos.putIfAbsent(propFile, crypto);
+                        if (existingCrypto != null) {
+                            crypto = existingCrypto;
+                        }
+                    }
                 }
                 if (crypto == null) {
                     LOG.warn(
@@ -1004,10 +1040,39 @@ public abstract class WSHandler {
     ) throws WSSecurityException {
         ClassLoader classLoader = this.getClassLoader(reqData.getMsgContext());
         Properties properties = CryptoFactory.getProperties(propFilename, classLoader);
-        return
-            CryptoFactory.getInstance(
-                properties, classLoader, getPasswordEncryptor(reqData)
-            );
+        return acquireCrypto(properties, classLoader, reqData);
+    }
+
+    /**
+     * Acquire the shared Crypto instance of the given configuration from the CryptoRegistry. It is
+     * held by this handler until {@link #close()} is called.
+     * @param properties The crypto configuration
+     * @param classLoader The class loader to use
+     * @param reqData The RequestData object
+     * @return the shared Crypto instance
+     */
+    protected Crypto acquireCrypto(
+        Properties properties,
+        ClassLoader classLoader,
+        RequestData reqData
+    ) throws WSSecurityException {
+        Crypto crypto =
+            CryptoRegistry.getInstance().acquire(properties, classLoader, getPasswordEncryptor(reqData));
+        sharedCryptos.add(crypto);
+        return crypto;
+    }
+
+    /**
+     * Give back the shared Crypto instances that this handler has acquired from the CryptoRegistry,
+     * once the handler is no longer used. The Crypto instances are loaded again if it is used afterwards.
+     */
+    public void close() {
+        cryptos.clear();
+        Crypto crypto = sharedCryptos.poll();
+        while (crypto != null) {
+            CryptoRegistry.getInstance().release(crypto);
+            crypto = sharedCryptos.poll();
+        }
     }
 
     /**
@@ -1222,8 +1287,30 @@ public abstract class WSHandler {
         return new WSPasswordCallback(username, reason);
     }
 
-    private void splitEncParts(boolean required, String tmpS,
-                               List<WSEncryptionPart> parts, RequestData reqData)
+    /**
+     * Add the (optional) signature or encryption parts of the given configuration tag
+     */
+    private void addParts(String configTag, boolean required,
+                          List<WSEncryptionPart> parts, RequestData reqData)
+        throws WSSecurityException {
+        SOAPConstants soapConstants = reqData.getSoapConstants();
+        String envelopeURI = soapConstants == null ? null : soapConstants.getEnvelopeURI();
+        WSHandlerProfile profile = securityProfile;
+        if (profile != null) {
+            List<WSEncryptionPart> compiledParts = profile.getParts(configTag, envelopeURI);
+            if (compiledParts != null) {
+                parts.addAll(compiledParts);
+                return;
+            }
+        }
+        String tmpS = getString(configTag, reqData.getMsgContext());
+        if (tmpS != null) {
+            splitEncParts(required, tmpS, parts, envelopeURI);
+        }
+    }
+
+    static void splitEncParts(boolean required, String tmpS,
+                              List<WSEncryptionPart> parts, String envelopeURI)
         throws WSSecurityException {
         WSEncryptionPart encPart = null;
         String[] rawParts = tmpS.split(";");
@@ -1235,7 +1322,7 @@ public abstract class WSHandler {
                 LOG.debug("single partDef: '{}'", partDef[0]);
                 encPart =
                     new WSEncryptionPart(partDef[0].trim(),
-                            reqData.getSoapConstants().getEnvelopeURI(),
+                            envelopeURI,
                             "Content");
             } else if (partDef.length == 2) {
                 String mode = partDef[0].trim().substring(1);
@@ -1250,7 +1337,7 @@ public abstract class WSHandler {
                 }
                 String nmSpace = partDef[1].trim();
                 if (nmSpace.length() <= 1) {
-                    nmSpace = reqData.getSoapConstants().getEnvelopeURI();
+                    nmSpace = envelopeURI;
                 } else {
                     nmSpace = nmSpace.substring(1);
                     if (nmSpace.equals(WSConstants.NULL_NS)) {
@@ -1338,7 +1425,8 @@ public abstract class WSHandler {
             if (certConstraintsSeparator == null || certConstraintsSeparator.isEmpty()) {
                 certConstraintsSeparator = ",";
             }
-            Collection<Pattern> subjectCertConstraints = getCertConstraints(certConstraints, certConstraintsSeparator);
+            Collection<Pattern> subjectCertConstraints =
+                getCertConstraints(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, certConstraints, certConstraintsSeparator);
             reqData.setSubjectCertConstraints(subjectCertConstraints);
         }
         String issuerCertConstraintsStringValue =
@@ -1350,7 +1438,9 @@ public abstract class WSHandler {
                 certConstraintsSeparator = ",";
             }
             Collection<Pattern> issuerCertConstraints =
-                getCertConstraints(issuerCertConstraintsStringValue, certConstraintsSeparator);
+                getCertConstraints(
+                    WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS, issuerCertConstraintsStringValue, certConstraintsSeparator
+                );
             reqData.setIssuerDNPatterns(issuerCertConstraints);
         }
 
@@ -1370,7 +1460,20 @@ public abstract class WSHandler {
         reqData.setExpandXopInclude(expandXOP);
     }
 
-    private Collection<Pattern> getCertConstraints(String certConstraints, String separator) throws WSSecurityException {
+    private Collection<Pattern> getCertConstraints(
+        String configTag, String certConstraints, String separator
+    ) throws WSSecurityException {
+        WSHandlerProfile profile = securityProfile;
+        if (profile != null) {
+            Collection<Pattern> compiledConstraints = profile.getCertConstraints(configTag, separator);
+            if (compiledConstraints != null) {
+                return compiledConstraints;
+            }
+        }
+        return getCertConstraints(certConstraints, separator);
+    }
+
+    static Collection<Pattern> getCertConstraints(String certConstraints, String separator) throws WSSecurityException {
         String[] certConstraintsList = certConstraints.split(separator);
         if (certConstraintsList != null && certConstraintsList.length > 0) {
             Collection<Pattern> certConstraintsCollection =
@@ -1420,7 +1523,8 @@ public abstract class WSHandler {
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null");
         }
-        String s = getStringOption(key);
+        WSHandlerProfile profile = securityProfile;
+        String s = profile != null && profile.isCompiled(key) ? profile.getOption(key) : getStringOption(key);
         if (s != null) {
             return s;
         }
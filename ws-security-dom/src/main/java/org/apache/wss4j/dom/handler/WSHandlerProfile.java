@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.DNPatternMatcher;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+
+/**
+ * An immutable, precompiled form of the options of a WSHandler. The String options that the
+ * WSHandler decodes for every message are read once, and the values that are expensive to
+ * derive from them (the boolean flags, the signature and encryption parts and the certificate
+ * constraints) are decoded once. The per-message code then only has to copy
+ * the values that are modified while a message is processed, such as the parts.
+ *
+ * Handler options take precedence over the properties of the message context, so a value that
+ * is compiled here is used for every message. A configuration tag that is not set as a handler
+ * option is still looked up in the message context of each message.
+ *
+ * A profile is a snapshot of the handler options when it is compiled, so a new profile must be
+ * compiled and set on the WSHandler if the options are changed afterwards.
+ */
+public final class WSHandlerProfile {
+
+    /**
+     * The String configuration tags that are compiled
+     */
+    private static final List<String> STRING_KEYS = Arrays.asList(
+        WSHandlerConstants.ACTION,
+        WSHandlerConstants.USER,
+        WSHandlerConstants.ACTOR,
+        WSHandlerConstants.PASSWORD_TYPE,
+        WSHandlerConstants.PW_CALLBACK_CLASS,
+        WSHandlerConstants.SIG_PROP_FILE,
+        WSHandlerConstants.SIG_PROP_REF_ID,
+        WSHandlerConstants.SIG_VER_PROP_FILE,
+        WSHandlerConstants.SIG_VER_PROP_REF_ID,
+        WSHandlerConstants.DEC_PROP_FILE,
+        WSHandlerConstants.DEC_PROP_REF_ID,
+        WSHandlerConstants.ENC_PROP_FILE,
+        WSHandlerConstants.ENC_PROP_REF_ID,
+        WSHandlerConstants.SIGNATURE_USER,
+        WSHandlerConstants.SIG_KEY_ID,
+        WSHandlerConstants.SIG_ALGO,
+        WSHandlerConstants.SIG_DIGEST_ALGO,
+        WSHandlerConstants.SIG_C14N_ALGO,
+        WSHandlerConstants.SIGNATURE_PARTS,
+        WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS,
+        WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS,
+        WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS,
+        WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR,
+        WSHandlerConstants.ENCRYPTION_USER,
+        WSHandlerConstants.ENC_KEY_ID,
+        WSHandlerConstants.ENC_SYM_ALGO,
+        WSHandlerConstants.ENC_KEY_TRANSPORT,
+        WSHandlerConstants.ENC_DIGEST_ALGO,
+        WSHandlerConstants.ENC_MGF_ALGO,
+        WSHandlerConstants.ENC_SYM_ENC_KEY,
+        WSHandlerConstants.ENCRYPTION_PARTS,
+        WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS,
+        WSHandlerConstants.DERIVED_TOKEN_REFERENCE,
+        WSHandlerConstants.DERIVED_TOKEN_KEY_ID,
+        WSHandlerConstants.DERIVED_SIGNATURE_KEY_LENGTH,
+        WSHandlerConstants.DERIVED_ENCRYPTION_KEY_LENGTH,
+        WSHandlerConstants.DERIVED_KEY_ITERATIONS,
+        WSHandlerConstants.USE_DERIVED_KEY_FOR_MAC,
+        WSHandlerConstants.TTL_TIMESTAMP,
+        WSHandlerConstants.TTL_FUTURE_TIMESTAMP,
+        WSHandlerConstants.TTL_USERNAMETOKEN,
+        WSHandlerConstants.TTL_FUTURE_USERNAMETOKEN
+    );
+
+    /**
+     * The boolean configuration tags that are compiled
+     */
+    private static final List<String> BOOLEAN_KEYS = Arrays.asList(
+        WSHandlerConstants.MUST_UNDERSTAND,
+        WSHandlerConstants.USE_ENCODED_PASSWORDS,
+        WSHandlerConstants.TIMESTAMP_PRECISION,
+        WSHandlerConstants.TIMESTAMP_STRICT,
+        WSHandlerConstants.ADD_INCLUSIVE_PREFIXES,
+        WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION,
+        WSHandlerConstants.STORE_BYTES_IN_ATTACHMENT,
+        WSHandlerConstants.HANDLE_CUSTOM_PASSWORD_TYPES,
+        WSHandlerConstants.ALLOW_NAMESPACE_QUALIFIED_PASSWORD_TYPES,
+        WSHandlerConstants.ALLOW_USERNAMETOKEN_NOPASSWORD,
+        WSHandlerConstants.VALIDATE_SAML_SUBJECT_CONFIRMATION,
+        WSHandlerConstants.IS_BSP_COMPLIANT,
+        WSHandlerConstants.REQUIRE_SIGNED_ENCRYPTED_DATA_ELEMENTS,
+        WSHandlerConstants.REQUIRE_TIMESTAMP_EXPIRES,
+        WSHandlerConstants.ADD_USERNAMETOKEN_NONCE,
+        WSHandlerConstants.ADD_USERNAMETOKEN_CREATED,
+        WSHandlerConstants.USE_2005_12_NAMESPACE,
+        WSHandlerConstants.USE_SINGLE_CERTIFICATE,
+        WSHandlerConstants.INCLUDE_SIGNATURE_TOKEN,
+        WSHandlerConstants.INCLUDE_ENCRYPTION_TOKEN,
+        WSHandlerConstants.GET_SECRET_KEY_FROM_CALLBACK_HANDLER,
+        WSHandlerConstants.EXPAND_XOP_INCLUDE,
+        WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE,
+        WSHandlerConstants.ENABLE_REVOCATION,
+        WSHandlerConstants.ALLOW_RSA15_KEY_TRANSPORT_ALGORITHM
+    );
+
+    private static final List<String> PARTS_KEYS = Arrays.asList(
+        WSHandlerConstants.SIGNATURE_PARTS,
+        WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS,
+        WSHandlerConstants.ENCRYPTION_PARTS,
+        WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS
+    );
+
+    private static final List<String> CERT_CONSTRAINTS_KEYS = Arrays.asList(
+        WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS,
+        WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS
+    );
+
+    private static final Set<String> COMPILED_KEYS = new HashSet<>();
+
+    static {
+        COMPILED_KEYS.addAll(STRING_KEYS);
+        COMPILED_KEYS.addAll(BOOLEAN_KEYS);
+    }
+
+    private final Map<String, String> options = new HashMap<>();
+    private final Map<String, Boolean> booleans = new HashMap<>();
+    private final Map<String, List<WSEncryptionPart>> soap11Parts = new HashMap<>();
+    private final Map<String, List<WSEncryptionPart>> soap12Parts = new HashMap<>();
+    private final Map<String, Collection<Pattern>> certConstraints = new HashMap<>();
+    private final String certConstraintsSeparator;
+
+    /**
+     * Compile the current options of the given WSHandler
+     * @param handler The WSHandler whose options are compiled
+     * @throws WSSecurityException if an option has an illegal value
+     */
+    WSHandlerProfile(WSHandler handler) throws WSSecurityException {
+        for (String key : COMPILED_KEYS) {
+            String value = handler.getStringOption(key);
+            if (value != null) {
+                options.put(key, value);
+            }
+        }
+
+        for (String key : BOOLEAN_KEYS) {
+            String value = options.get(key);
+            if ("0".equals(value) || "false".equals(value)) {
+                booleans.put(key, Boolean.FALSE);
+            } else if ("1".equals(value) || "true".equals(value)) {
+                booleans.put(key, Boolean.TRUE);
+            } else if (value != null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                        "empty",
+                        new Object[] {"WSHandler: illegal " + key + " parameter"}
+                );
+            }
+        }
+
+        for (String key : PARTS_KEYS) {
+            String value = options.get(key);
+            if (value != null) {
+                boolean required = WSHandlerConstants.SIGNATURE_PARTS.equals(key)
+                    || WSHandlerConstants.ENCRYPTION_PARTS.equals(key);
+                List<WSEncryptionPart> parts = new ArrayList<>();
+                WSHandler.splitEncParts(required, value, parts, WSConstants.URI_SOAP11_ENV);
+                soap11Parts.put(key, parts);
+                parts = new ArrayList<>();
+                WSHandler.splitEncParts(required, value, parts, WSConstants.URI_SOAP12_ENV);
+                soap12Parts.put(key, parts);
+            }
+        }
+
+        String separator = options.get(WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR);
+        if (separator == null || separator.isEmpty()) {
+            separator = ",";
+        }
+        certConstraintsSeparator = separator;
+        for (String key : CERT_CONSTRAINTS_KEYS) {
+            String value = options.get(key);
+            if (value != null) {
+                certConstraints.put(key, new DNPatternMatcher(WSHandler.getCertConstraints(value, separator)));
+            }
+        }
+    }
+
+    /**
+     * Return true if the given configuration tag is compiled by this profile, i.e. if its
+     * handler option (or the absence of it) is known.
+     */
+    public boolean isCompiled(String key) {
+        return COMPILED_KEYS.contains(key);
+    }
+
+    /**
+     * Get the String handler option of the given configuration tag, or null if it is not set
+     */
+    public String getOption(String key) {
+        return options.get(key);
+    }
+
+    /**
+     * Get the decoded boolean handler option of the given configuration tag, or null if it is
+     * not set or not compiled
+     */
+    public Boolean getBoolean(String key) {
+        return booleans.get(key);
+    }
+
+    /**
+     * Get a copy of the (optional) signature or encryption parts of the given configuration tag,
+     * or null if the handler option is not set
+     * @param key The configuration tag of the parts
+     * @param envelopeURI The SOAP envelope namespace of the message, which is the default
+     *        namespace of the parts
+     */
+    public List<WSEncryptionPart> getParts(String key, String envelopeURI) {
+        List<WSEncryptionPart> parts =
+            WSConstants.URI_SOAP12_ENV.equals(envelopeURI) ? soap12Parts.get(key) : soap11Parts.get(key);
+        if (parts == null) {
+            return null;
+        }
+        // The parts are modified when the message is secured, so they are copied for every message
+        List<WSEncryptionPart> copy = new ArrayList<>(parts.size());
+        for (WSEncryptionPart part : parts) {
+            WSEncryptionPart partCopy;
+            if (part.getName() == null) {
+                partCopy = new WSEncryptionPart(part.getId(), part.getEncModifier());
+            } else {
+                partCopy = new WSEncryptionPart(part.getName(), part.getNamespace(), part.getEncModifier());
+            }
+            partCopy.setRequired(part.isRequired());
+            copy.add(partCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * Get the compiled certificate constraints of the given configuration tag, as a DNPatternMatcher
+     * that is shared by all of the messages, or null if the
+     * handler option is not set, or if they were compiled with another separator
+     * @param key The configuration tag of the certificate constraints
+     * @param separator The separator of the certificate constraints of the message
+     */
+    public Collection<Pattern> getCertConstraints(String key, String separator) {
+        if (!certConstraintsSeparator.equals(separator)) {
+            return null;
+        }
+        return certConstraints.get(key);
+    }
+}
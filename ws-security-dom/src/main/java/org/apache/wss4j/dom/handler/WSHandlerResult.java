@@ -19,6 +19,8 @@
 
 package org.apache.wss4j.dom.handler;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +30,7 @@ public class WSHandlerResult {
     private final String actor;
     private final List<WSSecurityEngineResult> wsSecurityResults;
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults;
+    private volatile IdIndex idIndex;
 
     /**
      * constructor
@@ -60,4 +63,52 @@ public class WSHandlerResult {
     public Map<Integer, List<WSSecurityEngineResult>> getActionResults() {
         return actionResults;
     }
+
+    /**
+     * Get the security results of the given action
+     * @param action the action (e.g. WSConstants.SIGN)
+     * @return the security results of the given action, or an empty list if there are none
+     */
+    public List<WSSecurityEngineResult> getActionResults(Integer action) {
+        List<WSSecurityEngineResult> results = actionResults == null ? null : actionResults.get(action);
+        return results == null ? Collections.emptyList() : results;
+    }
+
+    /**
+     * Get the security result with the given (wsu) Id. The Id index is built on first use, and
+     * is built again when results have been added to or removed from the list of results.
+     * @param id the Id of the token
+     * @return the first security result with the given Id, or null if there is none
+     */
+    public WSSecurityEngineResult getResult(String id) {
+        if (wsSecurityResults == null) {
+            return null;
+        }
+        IdIndex index = idIndex;
+        if (index == null || index.size != wsSecurityResults.size()) {
+            index = new IdIndex(wsSecurityResults);
+            idIndex = index;
+        }
+        return index.results.get(id);
+    }
+
+    /**
+     * An immutable index of the results by Id, together with the size of the list it was built from.
+     */
+    private static final class IdIndex {
+        private final int size;
+        private final Map<String, WSSecurityEngineResult> results;
+
+        IdIndex(List<WSSecurityEngineResult> wsSecurityResults) {
+            Map<String, WSSecurityEngineResult> index = new HashMap<>();
+            for (WSSecurityEngineResult result : wsSecurityResults) {
+                String resultId = result.getId();
+                if (resultId != null) {
+                    index.putIfAbsent(resultId, result);
+                }
+            }
+            this.size = wsSecurityResults.size();
+            this.results = index;
+        }
+    }
 }
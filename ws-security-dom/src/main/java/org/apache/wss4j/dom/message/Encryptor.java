@@ -40,6 +40,7 @@ import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -275,8 +276,6 @@ public class Encryptor {
         cipherData.appendChild(cipherValue);
         encryptedData.appendChild(cipherData);
 
-        Cipher cipher = createCipher(encryptionAlgorithm, secretKey);
-
         // Serialize and encrypt the element
         AbstractSerializer serializer = new TransformSerializer(true);
 
@@ -293,17 +292,23 @@ public class Encryptor {
             serializedOctets = serializer.serializeToByteArray(elementToEncrypt);
         }
 
+        EnginePool<Cipher> cipherPool =
+            EnginePool.getCipherPool(JCEMapper.translateURItoJCEID(encryptionAlgorithm));
+        Cipher cipher = createCipher(cipherPool, encryptionAlgorithm, secretKey);
         byte[] encryptedBytes = null;
+        byte[] iv = null;
         try {
             encryptedBytes = cipher.doFinal(serializedOctets);
+            iv = cipher.getIV();
         } catch (IllegalBlockSizeException ibse) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ibse);
         } catch (BadPaddingException bpe) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, bpe);
+        } finally {
+            cipherPool.release(cipher);
         }
 
         // Now build up to a properly XML Encryption encoded octet stream
-        byte[] iv = cipher.getIV();
         byte[] finalEncryptedBytes = new byte[iv.length + encryptedBytes.length];
         System.arraycopy(iv, 0, finalEncryptedBytes, 0, iv.length);
         System.arraycopy(encryptedBytes, 0, finalEncryptedBytes, iv.length, encryptedBytes.length);
@@ -396,13 +401,19 @@ public class Encryptor {
             resultAttachment.setId(attachmentId);
             resultAttachment.setMimeType("application/octet-stream");
 
-            Cipher cipher = createCipher(encryptionAlgorithm, secretKey);
+            EnginePool<Cipher> cipherPool =
+                EnginePool.getCipherPool(JCEMapper.translateURItoJCEID(encryptionAlgorithm));
+            Cipher cipher = createCipher(cipherPool, encryptionAlgorithm, secretKey);
 
+            // The cipher is given back to the pool once the encrypted attachment has been read and closed
             Map<String, String> headers = new HashMap<>(attachment.getHeaders());
             resultAttachment.setSourceStream(
-                AttachmentUtils.setupAttachmentEncryptionStream(
-                    cipher, "Element".equals(attachmentEncryptionPart.getEncModifier()),
-                    attachment, headers
+                cipherPool.releaseOnClose(
+                    AttachmentUtils.setupAttachmentEncryptionStream(
+                        cipher, "Element".equals(attachmentEncryptionPart.getEncModifier()),
+                        attachment, headers
+                    ),
+                    cipher
                 )
             );
             resultAttachment.addHeaders(headers);
@@ -418,11 +429,10 @@ public class Encryptor {
         }
     }
 
-    private Cipher createCipher(String encryptionAlgorithm, SecretKey secretKey)
+    private Cipher createCipher(EnginePool<Cipher> cipherPool, String encryptionAlgorithm, SecretKey secretKey)
         throws WSSecurityException {
-        String jceAlgorithm = JCEMapper.translateURItoJCEID(encryptionAlgorithm);
         try {
-            Cipher cipher = Cipher.getInstance(jceAlgorithm);
+            Cipher cipher = cipherPool.get();
 
             int ivLen = JCEMapper.getIVLengthFromURI(encryptionAlgorithm) / 8;
             byte[] iv = XMLSecurityConstants.generateBytes(ivLen);
@@ -28,6 +28,7 @@ import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.DerivedKeyToken;
 import org.apache.wss4j.dom.str.DerivedKeyTokenSTRParser;
@@ -38,6 +39,7 @@ import org.apache.wss4j.dom.str.STRParserResult;
 /**
  * The processor to process <code>wsc:DerivedKeyToken</code>.
  */
+@Stateless
 public class DerivedKeyTokenProcessor implements Processor {
 
     public List<WSSecurityEngineResult> handleToken(
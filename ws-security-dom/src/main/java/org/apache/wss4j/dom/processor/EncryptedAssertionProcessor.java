@@ -31,12 +31,14 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
  * This will process incoming <code>saml2:EncryptedAssertion</code> elements.
  */
+@Stateless
 public class EncryptedAssertionProcessor implements Processor {
 
     private static final org.slf4j.Logger LOG =
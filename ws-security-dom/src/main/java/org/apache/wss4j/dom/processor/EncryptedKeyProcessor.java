@@ -19,9 +19,6 @@
 
 package org.apache.wss4j.dom.processor;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
@@ -56,12 +53,14 @@ import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.str.EncryptedKeySTRParser;
 import org.apache.wss4j.dom.str.STRParser;
 import org.apache.wss4j.dom.str.STRParserParameters;
 import org.apache.wss4j.dom.str.STRParserResult;
+import org.apache.wss4j.dom.util.EncryptedDataBatch;
 import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -69,6 +68,7 @@ import org.apache.wss4j.dom.util.X509Util;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.XMLCipher;
 
+@Stateless
 public class EncryptedKeyProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(EncryptedKeyProcessor.class);
@@ -475,15 +475,9 @@ public class EncryptedKeyProcessor implements Processor {
                         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidCertData",
                                                       new Object[] {"0"});
                     }
-                    try (InputStream in = new ByteArrayInputStream(token)) {
-                        X509Certificate cert = data.getDecCrypto().loadCertificate(in);
-                        if (cert != null) {
-                            return new X509Certificate[]{cert};
-                        }
-                    } catch (IOException e) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
-                        );
+                    X509Certificate cert = data.getDecCrypto().loadCertificate(token);
+                    if (cert != null) {
+                        return new X509Certificate[]{cert};
                     }
                 }
             }
@@ -519,6 +513,12 @@ public class EncryptedKeyProcessor implements Processor {
         }
 
         List<WSDataRef> dataRefs = new ArrayList<>();
+        EncryptedDataBatch batch = null;
+        if (data.getDecryptionExecutor() != null) {
+            batch = new EncryptedDataBatch(
+                data.getDecryptionExecutor(), data.getAttachmentCallbackHandler(), data.getEncryptionSerializer()
+            );
+        }
         for (Node node = refList.getFirstChild(); node != null; node = node.getNextSibling()) {
             if (Node.ELEMENT_NODE == node.getNodeType()
                     && WSConstants.ENC_NS.equals(node.getNamespaceURI())
@@ -527,7 +527,17 @@ public class EncryptedKeyProcessor implements Processor {
                 dataRefURI = XMLUtils.getIDFromReference(dataRefURI);
 
                 WSDataRef dataRef =
-                    decryptDataRef(refList.getOwnerDocument(), dataRefURI, docInfo, decryptedBytes, data);
+                    decryptDataRef(refList.getOwnerDocument(), dataRefURI, docInfo, decryptedBytes, data, batch);
+                if (dataRef != null) {
+                    docInfo.indexDecryptedElements(dataRef);
+                    dataRefs.add(dataRef);
+                }
+            }
+        }
+
+        if (batch != null) {
+            for (WSDataRef dataRef : batch.decrypt()) {
+                docInfo.indexDecryptedElements(dataRef);
                 dataRefs.add(dataRef);
             }
         }
@@ -536,21 +546,27 @@ public class EncryptedKeyProcessor implements Processor {
     }
 
     /**
-     * Decrypt an EncryptedData element referenced by dataRefURI
+     * Decrypt an EncryptedData element referenced by dataRefURI. If a batch is given, then the
+     * EncryptedData element is added to it instead, and null is returned.
      */
     private WSDataRef decryptDataRef(
         Document doc,
         String dataRefURI,
         WSDocInfo docInfo,
         byte[] decryptedData,
-        RequestData data
+        RequestData data,
+        EncryptedDataBatch batch
     ) throws WSSecurityException {
         LOG.debug("found data reference: {}", dataRefURI);
         //
         // Find the encrypted data element referenced by dataRefURI
         //
-        Element encryptedDataElement =
-            EncryptionUtils.findEncryptedDataElement(doc, docInfo, dataRefURI);
+        Element encryptedDataElement;
+        if (batch != null) {
+            encryptedDataElement = batch.findEncryptedDataElement(doc, docInfo, dataRefURI);
+        } else {
+            encryptedDataElement = EncryptionUtils.findEncryptedDataElement(doc, docInfo, dataRefURI);
+        }
         if (encryptedDataElement != null && data.isRequireSignedEncryptedDataElements()) {
             List<WSSecurityEngineResult> signedResults =
                 docInfo.getResultsByTag(WSConstants.SIGN);
@@ -596,6 +612,10 @@ public class EncryptedKeyProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
+        if (batch != null) {
+            batch.add(doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo);
+            return null;
+        }
         return EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
             data.getEncryptionSerializer()
@@ -41,16 +41,19 @@ import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.str.STRParser;
 import org.apache.wss4j.dom.str.STRParserParameters;
 import org.apache.wss4j.dom.str.STRParserResult;
 import org.apache.wss4j.dom.str.SecurityTokenRefSTRParser;
+import org.apache.wss4j.dom.util.EncryptedDataBatch;
 import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.X509Util;
 
+@Stateless
 public class ReferenceListProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(ReferenceListProcessor.class);
@@ -83,6 +86,12 @@ public class ReferenceListProcessor implements Processor {
         RequestData data
     ) throws WSSecurityException {
         List<WSDataRef> dataRefs = new ArrayList<>();
+        EncryptedDataBatch batch = null;
+        if (data.getDecryptionExecutor() != null) {
+            batch = new EncryptedDataBatch(
+                data.getDecryptionExecutor(), data.getAttachmentCallbackHandler(), data.getEncryptionSerializer()
+            );
+        }
         for (Node node = elem.getFirstChild();
             node != null;
             node = node.getNextSibling()
@@ -96,30 +105,47 @@ public class ReferenceListProcessor implements Processor {
                 // See whether we have already processed the encrypted node
                 if (!data.getWsDocInfo().hasResult(WSConstants.ENCR, dataRefURI)) {
                     WSDataRef dataRef =
-                        decryptDataRefEmbedded(elem.getOwnerDocument(), dataRefURI, data);
-                    dataRefs.add(dataRef);
+                        decryptDataRefEmbedded(elem.getOwnerDocument(), dataRefURI, data, batch);
+                    if (dataRef != null) {
+                        data.getWsDocInfo().indexDecryptedElements(dataRef);
+                        dataRefs.add(dataRef);
+                    }
                 }
             }
         }
 
+        if (batch != null) {
+            for (WSDataRef dataRef : batch.decrypt()) {
+                data.getWsDocInfo().indexDecryptedElements(dataRef);
+                dataRefs.add(dataRef);
+            }
+        }
+
         return dataRefs;
     }
 
 
     /**
-     * Decrypt an (embedded) EncryptedData element referenced by dataRefURI.
+     * Decrypt an (embedded) EncryptedData element referenced by dataRefURI. If a batch is given, then
+     * the EncryptedData element is added to it instead, and null is returned.
      */
     private WSDataRef decryptDataRefEmbedded(
         Document doc,
         String dataRefURI,
-        RequestData data
+        RequestData data,
+        EncryptedDataBatch batch
     ) throws WSSecurityException {
         LOG.debug("Found data reference: {}", dataRefURI);
         //
         // Find the encrypted data element referenced by dataRefURI
         //
-        Element encryptedDataElement =
-            EncryptionUtils.findEncryptedDataElement(doc, data.getWsDocInfo(), dataRefURI);
+        Element encryptedDataElement;
+        if (batch != null) {
+            encryptedDataElement = batch.findEncryptedDataElement(doc, data.getWsDocInfo(), dataRefURI);
+        } else {
+            encryptedDataElement =
+                EncryptionUtils.findEncryptedDataElement(doc, data.getWsDocInfo(), dataRefURI);
+        }
 
         if (encryptedDataElement != null && data.isRequireSignedEncryptedDataElements()) {
             List<WSSecurityEngineResult> signedResults =
@@ -189,6 +215,10 @@ public class ReferenceListProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
+        if (batch != null) {
+            batch.add(doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo);
+            return null;
+        }
         return
             EncryptionUtils.decryptEncryptedData(
                 doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
@@ -30,6 +30,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.crypto.Data;
 import javax.xml.crypto.NodeSetData;
@@ -40,6 +47,7 @@ import javax.xml.crypto.dsig.SignedInfo;
 import javax.xml.crypto.dsig.Transform;
 import javax.xml.crypto.dsig.XMLObject;
 import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
 import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
@@ -378,7 +386,13 @@ public class SignatureProcessor implements Processor {
 
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, data, wsDocInfo);
 
-            boolean signatureOk = xmlSignature.validate(context);
+            boolean signatureOk;
+            Executor executor = data.getSignatureReferenceExecutor();
+            if (executor != null && xmlSignature.getSignedInfo().getReferences().size() > 1) {
+                signatureOk = validateInParallel(xmlSignature, context, executor);
+            } else {
+                signatureOk = xmlSignature.validate(context);
+            }
             if (signatureOk) {
                 return xmlSignature;
             }
@@ -412,6 +426,128 @@ public class SignatureProcessor implements Processor {
         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
     }
 
+    /**
+     * Validate the signature value, and then the References of the Signature in parallel using the
+     * given Executor. This returns false as soon as the signature value or a Reference fails to
+     * validate. The References that have not been validated yet are then skipped, and the ones that
+     * are being validated are waited for, so that no task reads the document once this returns.
+     *
+     * References with an STR-Transform or an attachment URI are validated first on the calling thread,
+     * as they use the WSDocInfo, may modify the document, or call the attachment CallbackHandler. As
+     * for XMLSignature.validate, the References of the Manifests are validated afterwards if the
+     * "org.jcp.xml.dsig.validateManifests" property is set on the context.
+     */
+    private boolean validateInParallel(
+        XMLSignature xmlSignature,
+        XMLValidateContext context,
+        Executor executor
+    ) throws Exception {
+        if (!xmlSignature.getSignatureValue().validate(context)) {
+            return false;
+        }
+
+        List<Reference> parallelReferences = new ArrayList<>();
+        for (Object refObject : xmlSignature.getSignedInfo().getReferences()) {
+            Reference reference = (Reference)refObject;
+            if (!isValidatedOnCallingThread(reference)) {
+                parallelReferences.add(reference);
+            } else if (!reference.validate(context)) {
+                return false;
+            }
+        }
+
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        List<ReferenceValidation> validations = new ArrayList<>(parallelReferences.size());
+        try {
+            for (Reference reference : parallelReferences) {
+                ReferenceValidation validation = new ReferenceValidation(reference, context);
+                validation.future = completionService.submit(validation);
+                validations.add(validation);
+            }
+            for (int i = 0; i < validations.size(); i++) {
+                if (!completionService.take().get()) {
+                    return false;
+                }
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        } finally {
+            awaitOrSkip(validations);
+        }
+
+        return validateManifests(xmlSignature, context);
+    }
+
+    /**
+     * Skip the given Reference validations that have not started yet, and wait for the others
+     */
+    private static void awaitOrSkip(List<ReferenceValidation> validations) {
+        boolean interrupted = false;
+        for (ReferenceValidation validation : validations) {
+            if (validation.skip()) {
+                continue;
+            }
+            while (true) {
+                try {
+                    validation.future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    LOG.debug(ex.getMessage(), ex);
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean validateManifests(
+        XMLSignature xmlSignature,
+        XMLValidateContext context
+    ) throws XMLSignatureException {
+        if (!Boolean.TRUE.equals(context.getProperty("org.jcp.xml.dsig.validateManifests"))) {
+            return true;
+        }
+        for (Object object : xmlSignature.getObjects()) {
+            for (Object xmlStructure : ((XMLObject)object).getContent()) {
+                if (xmlStructure instanceof Manifest) {
+                    for (Object refObject : ((Manifest)xmlStructure).getReferences()) {
+                        if (!((Reference)refObject).validate(context)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidatedOnCallingThread(Reference reference) {
+        String uri = reference.getURI();
+        if (uri == null || uri.startsWith("cid:")) {
+            return true;
+        }
+        for (Object transformObject : reference.getTransforms()) {
+            Transform transform = (Transform)transformObject;
+            if (STRTransform.TRANSFORM_URI.equals(transform.getAlgorithm())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Retrieve the Reference elements and set them on the ValidateContext
      * @param xmlSignature the XMLSignature object to get the references from
@@ -672,19 +808,13 @@ public class SignatureProcessor implements Processor {
         String identifier = timeStamp.getCreatedString() + "" + Arrays.hashCode(signatureValue)
             + "" + Arrays.hashCode(key.getEncoded());
 
-        if (replayCache.contains(identifier)) {
+        // Store the Timestamp/SignatureValue/Key combination in the cache
+        if (!replayCache.addIfAbsent(identifier, timeStamp.getExpires())) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
                 new Object[] {"A replay attack has been detected"});
         }
-
-        // Store the Timestamp/SignatureValue/Key combination in the cache
-        if (timeStamp.getExpires() != null) {
-            replayCache.add(identifier, timeStamp.getExpires());
-        } else {
-            replayCache.add(identifier);
-        }
     }
 
     /**
@@ -763,4 +893,35 @@ public class SignatureProcessor implements Processor {
         }
     }
 
+    /**
+     * The validation of a Reference on another thread, which is skipped if it has not started by the time
+     * the References are no longer being validated
+     */
+    private static final class ReferenceValidation implements Callable<Boolean> {
+        private final Reference reference;
+        private final XMLValidateContext context;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private Future<Boolean> future;
+
+        ReferenceValidation(Reference reference, XMLValidateContext context) {
+            this.reference = reference;
+            this.context = context;
+        }
+
+        @Override
+        public Boolean call() throws XMLSignatureException {
+            if (!started.compareAndSet(false, true)) {
+                return Boolean.FALSE;
+            }
+            return reference.validate(context);
+        }
+
+        /**
+         * Return true if the validation has not started yet, in which case it will not start at all
+         */
+        boolean skip() {
+            return started.compareAndSet(false, true);
+        }
+    }
+
 }
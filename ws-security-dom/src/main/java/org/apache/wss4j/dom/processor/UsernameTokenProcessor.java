@@ -29,6 +29,7 @@ import org.w3c.dom.Element;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
@@ -36,6 +37,7 @@ import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
 import org.apache.xml.security.utils.XMLUtils;
 
+@Stateless
 public class UsernameTokenProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(UsernameTokenProcessor.class);
@@ -147,23 +149,22 @@ public class UsernameTokenProcessor implements Processor {
         // Test for replay attacks
         ReplayCache replayCache = data.getNonceReplayCache();
         if (replayCache != null && ut.getNonce() != null) {
-            if (replayCache.contains(ut.getNonce())) {
+            // If no Created, then just cache for the default time
+            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
+            // older token will just get rejected anyway
+            Instant created = ut.getCreatedDate();
+            Instant expiry = null;
+            if (created != null && utTTL > 0) {
+                expiry = Instant.now().plusSeconds(utTTL);
+            }
+
+            if (!replayCache.addIfAbsent(ut.getNonce(), expiry)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badUsernameToken",
                     new Object[] {"A replay attack has been detected"}
                 );
             }
-
-            // If no Created, then just cache for the default time
-            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
-            // older token will just get rejected anyway
-            Instant created = ut.getCreatedDate();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(ut.getNonce());
-            } else {
-                replayCache.add(ut.getNonce(), Instant.now().plusSeconds(utTTL));
-            }
         }
 
         Credential credential = new Credential();
@@ -26,6 +26,7 @@ import java.util.List;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -164,6 +165,13 @@ public class DerivedKeyTokenSTRParser implements STRParser {
                             break;
                         }
                     }
+                    if (secretKey == null) {
+                        KerberosTicketCache.CachedTicket ticket =
+                            STRParserUtil.getCachedKerberosTicket(keyBytes, data);
+                        if (ticket != null) {
+                            secretKey = ticket.getSessionKey();
+                        }
+                    }
                 }
                 if (secretKey == null) {
                     throw new WSSecurityException(
@@ -28,6 +28,7 @@ import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.token.PKIPathSecurity;
@@ -286,6 +287,18 @@ public final class STRParserUtil {
         return null;
     }
 
+    /**
+     * Get the Kerberos AP-REQ token with the given (SHA-1) digest from the ticket cache of the RequestData,
+     * if it has been accepted in an earlier message
+     */
+    public static KerberosTicketCache.CachedTicket getCachedKerberosTicket(byte[] digest, RequestData data) {
+        KerberosTicketCache ticketCache = data.getKerberosTicketCache();
+        if (ticketCache == null || digest == null) {
+            return null;
+        }
+        return ticketCache.get(digest);
+    }
+
     public static Element getTokenElement(
         Document doc, WSDocInfo docInfo, CallbackHandler cb,
         String uri, String valueType
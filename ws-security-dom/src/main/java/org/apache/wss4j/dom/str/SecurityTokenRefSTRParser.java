@@ -26,6 +26,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -234,6 +235,13 @@ public class SecurityTokenRefSTRParser implements STRParser {
                             break;
                         }
                     }
+                    if (secretKey == null) {
+                        KerberosTicketCache.CachedTicket ticket =
+                            STRParserUtil.getCachedKerberosTicket(keyBytes, data);
+                        if (ticket != null) {
+                            secretKey = ticket.getSessionKey();
+                        }
+                    }
                 }
                 if (secretKey == null) {
                     throw new WSSecurityException(
@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.principal.CustomTokenPrincipal;
 import org.apache.wss4j.common.principal.SAMLTokenPrincipalImpl;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -181,6 +182,13 @@ public class SignatureSTRParser implements STRParser {
                         break;
                     }
                 }
+                if (secretKey == null) {
+                    KerberosTicketCache.CachedTicket ticket = STRParserUtil.getCachedKerberosTicket(keyBytes, data);
+                    if (ticket != null) {
+                        secretKey = ticket.getSessionKey();
+                        parserResult.setPrincipal(ticket.getPrincipal());
+                    }
+                }
             } else {
                 parserResult.setPrincipal(new CustomTokenPrincipal(secRef.getKeyIdentifierValue()));
             }
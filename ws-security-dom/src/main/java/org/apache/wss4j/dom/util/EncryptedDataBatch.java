@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.crypto.SecretKey;
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.encryption.Serializer;
+import org.apache.xml.security.encryption.XMLCipher;
+import org.apache.xml.security.encryption.XMLEncryptionException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A batch of EncryptedData elements that are decrypted in two stages. Copies of the EncryptedData
+ * elements are first decrypted concurrently into byte arrays with XMLCipher, using an Executor. The
+ * plaintexts are then parsed and spliced into the document on the calling thread, in the order in
+ * which the EncryptedData elements were added, so that the document is only read and modified by a
+ * single thread.
+ *
+ * EncryptedData elements that refer to an attachment, or whose CipherValue is an xop:Include, are
+ * decrypted on the calling thread during the second stage, as they use the attachment
+ * CallbackHandler, as are those with an algorithm that is not known to the JCEMapper. This class
+ * is not thread-safe.
+ */
+public class EncryptedDataBatch {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedDataBatch.class);
+
+    private final Executor executor;
+    private final CallbackHandler attachmentCallbackHandler;
+    private final Serializer encryptionSerializer;
+    private final List<Part> parts = new ArrayList<>();
+    private final List<WSDataRef> dataRefs = new ArrayList<>();
+
+    /**
+     * @param executor The Executor used to decrypt the cipher payloads
+     * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer used to parse the plaintexts, if any
+     */
+    public EncryptedDataBatch(
+        Executor executor,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer
+    ) {
+        this.executor = executor;
+        this.attachmentCallbackHandler = attachmentCallbackHandler;
+        this.encryptionSerializer = encryptionSerializer;
+    }
+
+    /**
+     * Look up the EncryptedData element referenced by dataRefURI, as
+     * {@link EncryptionUtils#findEncryptedDataElement(Document, WSDocInfo, String)} does. If the element
+     * cannot be found, or if it has already been added to the batch, then the pending EncryptedData
+     * elements are decrypted first, as it may be part of their plaintext, and the look up is retried.
+     */
+    public Element findEncryptedDataElement(
+        Document doc,
+        WSDocInfo wsDocInfo,
+        String dataRefURI
+    ) throws WSSecurityException {
+        if (parts.isEmpty()) {
+            return EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, dataRefURI);
+        }
+        try {
+            Element encData = EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, dataRefURI);
+            if (!isPending(encData)) {
+                return encData;
+            }
+        } catch (WSSecurityException ex) {
+            // Try again once the pending EncryptedData elements have been decrypted
+            LOG.debug(ex.getMessage(), ex);
+        }
+        flush();
+        return EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, dataRefURI);
+    }
+
+    /**
+     * Add an EncryptedData element to the batch
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     */
+    public void add(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo
+    ) throws WSSecurityException {
+        if (isPending(encData)) {
+            flush();
+        }
+        Part part = new Part(doc, dataRefURI, encData, symmetricKey, symEncAlgo);
+
+        String typeStr = encData.getAttributeNS(null, "Type");
+        Element cipherValue = EncryptionUtils.getCipherValueFromEncryptedData(encData);
+        if (!WSConstants.SWA_ATTACHMENT_ENCRYPTED_DATA_TYPE_CONTENT_ONLY.equals(typeStr)
+            && !WSConstants.SWA_ATTACHMENT_ENCRYPTED_DATA_TYPE_COMPLETE.equals(typeStr)
+            && cipherValue != null && EncryptionUtils.getXOPURIFromCipherValue(cipherValue) == null
+            && JCEMapper.translateURItoJCEID(symEncAlgo) != null) {
+            // Copy EncryptedData into a document of its own here, so that the document is only
+            // accessed by the calling thread
+            Document copy = doc.getImplementation().createDocument(null, null, null);
+            Element encDataCopy = (Element)copy.appendChild(copy.importNode(encData, true));
+            part.decryption = new FutureTask<>(() -> decrypt(encDataCopy, symmetricKey, symEncAlgo));
+        }
+        parts.add(part);
+    }
+
+    /**
+     * Decrypt the EncryptedData elements of the batch
+     * @return the WSDataRefs of the decrypted EncryptedData elements, in the order in which they were added
+     */
+    public List<WSDataRef> decrypt() throws WSSecurityException {
+        flush();
+        List<WSDataRef> result = new ArrayList<>(dataRefs);
+        dataRefs.clear();
+        return result;
+    }
+
+    private boolean isPending(Element encData) {
+        for (Part part : parts) {
+            if (part.encData == encData) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flush() throws WSSecurityException {
+        List<Part> pending = new ArrayList<>(parts);
+        parts.clear();
+
+        // A single payload is decrypted on the calling thread
+        int decryptions = 0;
+        for (Part part : pending) {
+            if (part.decryption != null) {
+                decryptions++;
+            }
+        }
+        if (decryptions > 1) {
+            for (Part part : pending) {
+                if (part.decryption != null) {
+                    executor.execute(part.decryption);
+                }
+            }
+        }
+
+        try {
+            for (Part part : pending) {
+                dataRefs.add(splice(part));
+            }
+        } finally {
+            for (Part part : pending) {
+                if (part.decryption != null) {
+                    part.decryption.cancel(false);
+                }
+            }
+        }
+    }
+
+    private WSDataRef splice(Part part) throws WSSecurityException {
+        if (part.decryption == null) {
+            return EncryptionUtils.decryptEncryptedData(
+                part.doc, part.dataRefURI, part.encData, part.symmetricKey, part.symEncAlgo,
+                attachmentCallbackHandler, encryptionSerializer
+            );
+        }
+
+        byte[] octets;
+        try {
+            part.decryption.run();
+            octets = part.decryption.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof WSSecurityException) {
+                throw (WSSecurityException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, (Exception)cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        }
+
+        Element encData = part.encData;
+        WSDataRef dataRef = new WSDataRef();
+        dataRef.setEncryptedElement(encData);
+        dataRef.setWsuId(part.dataRefURI);
+        dataRef.setAlgorithm(part.symEncAlgo);
+        dataRef.setContent(X509Util.isContent(encData));
+
+        Node encDataParent = encData.getParentNode();
+        Node previousSibling = encData.getPreviousSibling();
+        Node decryptedNode = EncryptionUtils.deserialize(octets, encDataParent, encryptionSerializer);
+        encDataParent.replaceChild(decryptedNode, encData);
+
+        if (dataRef.isContent()) {
+            return EncryptionUtils.completeDataRef(
+                dataRef, (Element)encDataParent, encDataParent.getParentNode(), previousSibling, null
+            );
+        }
+        return EncryptionUtils.completeDataRef(dataRef, encData, encDataParent, previousSibling, null);
+    }
+
+    /**
+     * Decrypt the given copy of an EncryptedData element with XMLCipher
+     */
+    private static byte[] decrypt(
+        Element encDataCopy, SecretKey symmetricKey, String symEncAlgo
+    ) throws WSSecurityException, XMLEncryptionException {
+        XMLCipher xmlCipher = EncryptionUtils.createDecryptionCipher(symmetricKey, symEncAlgo, null);
+        return xmlCipher.decryptToByteArray(encDataCopy);
+    }
+
+    private static final class Part {
+        private final Document doc;
+        private final String dataRefURI;
+        private final Element encData;
+        private final SecretKey symmetricKey;
+        private final String symEncAlgo;
+        private FutureTask<byte[]> decryption;
+
+        Part(Document doc, String dataRefURI, Element encData, SecretKey symmetricKey, String symEncAlgo) {
+            this.doc = doc;
+            this.dataRefURI = dataRefURI;
+            this.encData = encData;
+            this.symmetricKey = symmetricKey;
+            this.symEncAlgo = symEncAlgo;
+        }
+    }
+}
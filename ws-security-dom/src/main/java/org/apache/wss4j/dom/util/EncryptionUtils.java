@@ -24,12 +24,15 @@ import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.apache.xml.security.encryption.DocumentSerializer;
 import org.apache.xml.security.encryption.Serializer;
 import org.apache.xml.security.encryption.XMLCipher;
 import org.apache.xml.security.encryption.XMLEncryptionException;
@@ -43,7 +46,6 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import javax.crypto.Cipher;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -53,7 +55,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.util.List;
 
 public final class EncryptionUtils {
@@ -178,20 +180,7 @@ public final class EncryptionUtils {
             parent = encData.getParentNode();
         }
 
-        XMLCipher xmlCipher = null;
-        try {
-            if (encryptionSerializer != null) {
-                xmlCipher = XMLCipher.getInstance(symEncAlgo, encryptionSerializer);
-            } else {
-                xmlCipher = XMLCipher.getInstance(symEncAlgo);
-            }
-            xmlCipher.setSecureValidation(true);
-            xmlCipher.init(XMLCipher.DECRYPT_MODE, symmetricKey);
-        } catch (XMLEncryptionException ex) {
-            throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex
-            );
-        }
+        XMLCipher xmlCipher = createDecryptionCipher(symmetricKey, symEncAlgo, encryptionSerializer);
 
         Node decryptedNode = null;
         try {
@@ -216,6 +205,54 @@ public final class EncryptionUtils {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         }
 
+        return completeDataRef(dataRef, encData, parent, previousSibling, decryptedNode);
+    }
+
+    /**
+     * Create an XMLCipher to decrypt EncryptedData elements with the given SecretKey.
+     * @param symmetricKey The SecretKey with which to decrypt
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param encryptionSerializer The Serializer used to parse the decrypted data, if any
+     * @throws WSSecurityException
+     */
+    static XMLCipher createDecryptionCipher(
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        Serializer encryptionSerializer
+    ) throws WSSecurityException {
+        try {
+            XMLCipher xmlCipher;
+            if (encryptionSerializer != null) {
+                xmlCipher = XMLCipher.getInstance(symEncAlgo, encryptionSerializer);
+            } else {
+                xmlCipher = XMLCipher.getInstance(symEncAlgo);
+            }
+            xmlCipher.setSecureValidation(true);
+            xmlCipher.init(XMLCipher.DECRYPT_MODE, symmetricKey);
+            return xmlCipher;
+        } catch (XMLEncryptionException ex) {
+            throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex
+            );
+        }
+    }
+
+    /**
+     * Set the protected element and the xpath of the given WSDataRef, once the EncryptedData
+     * element has been replaced by the decrypted data.
+     * @param dataRef The WSDataRef of the EncryptedData element
+     * @param encData The EncryptedData element, or its parent for content encryption
+     * @param parent The parent of encData
+     * @param previousSibling The previous sibling of the EncryptedData element
+     * @param decryptedNode The decrypted node, if known
+     */
+    static WSDataRef completeDataRef(
+        WSDataRef dataRef,
+        Element encData,
+        Node parent,
+        Node previousSibling,
+        Node decryptedNode
+    ) {
         if (parent.getLocalName().equals(WSConstants.ENCRYPTED_HEADER)
             && parent.getNamespaceURI().equals(WSConstants.WSSE11_NS)
             || parent.getLocalName().equals(WSConstants.ENCRYPED_ASSERTION_LN)
@@ -227,7 +264,7 @@ public final class EncryptionUtils {
 
             dataRef.setProtectedElement((Element)decryptedHeader);
             dataRef.setXpath(getXPath(decryptedHeader));
-        } else if (content) {
+        } else if (dataRef.isContent()) {
             dataRef.setProtectedElement(encData);
             dataRef.setXpath(getXPath(encData));
         } else {
@@ -320,11 +357,15 @@ public final class EncryptionUtils {
             final String encAlgo = X509Util.getEncAlgo(encData);
             final String jceAlgorithm =
                     JCEMapper.translateURItoJCEID(encAlgo);
-            final Cipher cipher = Cipher.getInstance(jceAlgorithm);
+            final EnginePool<Cipher> cipherPool = EnginePool.getCipherPool(jceAlgorithm);
+            final Cipher cipher = cipherPool.get();
 
+            // The cipher is given back to the pool once the decrypted attachment has been read and closed
             InputStream attachmentInputStream =
-                    AttachmentUtils.setupAttachmentDecryptionStream(
-                            encAlgo, cipher, symmetricKey, attachment.getSourceStream());
+                    cipherPool.releaseOnClose(
+                            AttachmentUtils.setupAttachmentDecryptionStream(
+                                    encAlgo, cipher, symmetricKey, attachment.getSourceStream()),
+                            cipher);
 
             Attachment resultAttachment = new Attachment();
             resultAttachment.setId(attachment.getId());
@@ -343,8 +384,7 @@ public final class EncryptionUtils {
             attachmentResultCallback.setAttachmentId(resultAttachment.getId());
             attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
 
-        } catch (UnsupportedCallbackException | IOException
-            | NoSuchAlgorithmException | NoSuchPaddingException e) {
+        } catch (UnsupportedCallbackException | IOException | GeneralSecurityException e) {
             throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILED_CHECK, e);
         }
@@ -360,8 +400,8 @@ public final class EncryptionUtils {
     private static Node decryptXopAttachment(
        SecretKey symmetricKey, String symEncAlgo, CallbackHandler attachmentCallbackHandler,
        String xopURI, Element encData
-   ) throws WSSecurityException, IOException, UnsupportedCallbackException, NoSuchAlgorithmException,
-        NoSuchPaddingException, ParserConfigurationException, XMLParserException {
+   ) throws WSSecurityException, IOException, UnsupportedCallbackException, GeneralSecurityException,
+        ParserConfigurationException, XMLParserException {
 
         if (attachmentCallbackHandler == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
@@ -383,15 +423,19 @@ public final class EncryptionUtils {
 
         final String jceAlgorithm =
                 JCEMapper.translateURItoJCEID(symEncAlgo);
-        final Cipher cipher = Cipher.getInstance(jceAlgorithm);
-
-        InputStream attachmentInputStream =
-                AttachmentUtils.setupAttachmentDecryptionStream(
-                        symEncAlgo, cipher, symmetricKey, attachment.getSourceStream());
+        final EnginePool<Cipher> cipherPool = EnginePool.getCipherPool(jceAlgorithm);
+        final Cipher cipher = cipherPool.get();
 
         // For the xop:Include case, we need to replace the xop:Include Element with the
         // decrypted Element
-        byte[] bytes = JavaUtils.getBytesFromStream(attachmentInputStream);
+        byte[] bytes;
+        try (InputStream attachmentInputStream =
+                cipherPool.releaseOnClose(
+                        AttachmentUtils.setupAttachmentDecryptionStream(
+                                symEncAlgo, cipher, symmetricKey, attachment.getSourceStream()),
+                        cipher)) {
+            bytes = JavaUtils.getBytesFromStream(attachmentInputStream);
+        }
 
         Document document = null;
         try {
@@ -412,6 +456,28 @@ public final class EncryptionUtils {
         return decryptedNode;
     }
 
+    /**
+     * Parse the given decrypted octets in the context of the given node, as XMLCipher does.
+     * @param octets The decrypted octets
+     * @param ctx The node to which the decrypted nodes are to be added
+     * @param encryptionSerializer The Serializer to use to parse the octets, if any
+     * @return the parsed nodes
+     * @throws WSSecurityException
+     */
+    static Node deserialize(
+        byte[] octets, Node ctx, Serializer encryptionSerializer
+    ) throws WSSecurityException {
+        try {
+            Serializer serializer = encryptionSerializer;
+            if (serializer == null) {
+                serializer = new DocumentSerializer(true);
+            }
+            return serializer.deserialize(octets, ctx);
+        } catch (InvalidCanonicalizerException | XMLEncryptionException | IOException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        }
+    }
+
     /**
      * Set the parent prefix definitions on the "String" (representation of the Element to be parsed)
      */
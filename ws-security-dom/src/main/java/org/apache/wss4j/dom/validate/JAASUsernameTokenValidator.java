@@ -19,6 +19,8 @@
 
 package org.apache.wss4j.dom.validate;
 
+import java.security.GeneralSecurityException;
+
 import javax.security.auth.Subject;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.login.LoginContext;
@@ -26,6 +28,7 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticatedSubjectCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
@@ -42,6 +45,7 @@ public class JAASUsernameTokenValidator implements Validator {
         org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidator.class);
 
     private String contextName;
+    private AuthenticatedSubjectCache subjectCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -51,6 +55,20 @@ public class JAASUsernameTokenValidator implements Validator {
         return contextName;
     }
 
+    public AuthenticatedSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set a cache of the authenticated Subjects, so that a user that presents the same password again
+     * is not authenticated by the LoginContext until the cached Subject expires. The default is null,
+     * meaning that every UsernameToken is authenticated by the LoginContext.
+     * @param subjectCache the cache of the authenticated Subjects
+     */
+    public void setSubjectCache(AuthenticatedSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null UsernameToken. A
      * CallbackHandler implementation is also required to be set.
@@ -98,10 +116,16 @@ public class JAASUsernameTokenValidator implements Validator {
         }
 
         try {
-            CallbackHandler handler = getCallbackHandler(user, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            Subject subject = ctx.getSubject();
+            Subject subject = subjectCache != null ? subjectCache.get(user, password) : null;
+            if (subject == null) {
+                CallbackHandler handler = getCallbackHandler(user, password);
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+                if (subjectCache != null) {
+                    subjectCache.put(user, password, subject);
+                }
+            }
             credential.setSubject(subject);
 
         } catch (LoginException ex) {
@@ -109,6 +133,8 @@ public class JAASUsernameTokenValidator implements Validator {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
             );
+        } catch (GeneralSecurityException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
         }
 
         return credential;
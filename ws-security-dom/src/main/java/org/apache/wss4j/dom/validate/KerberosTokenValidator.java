@@ -33,9 +33,12 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.token.BinarySecurity;
+import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
 
@@ -52,6 +55,8 @@ public class KerberosTokenValidator implements Validator {
     private KerberosTokenDecoder kerberosTokenDecoder;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private boolean cacheServiceSubject;
+    private volatile KerberosServiceSubjectCache serviceSubjectCache;
 
     /**
      * Get the JAAS Login context name to use.
@@ -121,6 +126,59 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
 
+    /**
+     * Whether the Subject obtained from the JAAS login is cached and shared by the requests, rather
+     * than logging in for every token. The default is false.
+     * @return whether the Subject obtained from the JAAS login is cached
+     */
+    public boolean isCacheServiceSubject() {
+        return cacheServiceSubject;
+    }
+
+    /**
+     * Set whether the Subject obtained from the JAAS login is cached and shared by the requests, rather
+     * than logging in for every token. If no CallbackHandler is set on this Validator, the cache uses
+     * the CallbackHandler of the first request that logs in.
+     * @param cacheServiceSubject whether the Subject obtained from the JAAS login is cached
+     */
+    public void setCacheServiceSubject(boolean cacheServiceSubject) {
+        this.cacheServiceSubject = cacheServiceSubject;
+    }
+
+    /**
+     * Set the cache of the Subject obtained from the JAAS login. It takes precedence over the
+     * context name and CallbackHandler of this Validator.
+     * @param serviceSubjectCache the cache of the Subject obtained from the JAAS login
+     */
+    public void setServiceSubjectCache(KerberosServiceSubjectCache serviceSubjectCache) {
+        this.serviceSubjectCache = serviceSubjectCache;
+        if (serviceSubjectCache != null) {
+            cacheServiceSubject = true;
+        }
+    }
+
+    /**
+     * Get the cache of the Subject obtained from the JAAS login, creating it if the Subject is cached
+     * and no cache has been set
+     */
+    private KerberosServiceSubjectCache getServiceSubjectCache(RequestData data) {
+        if (!cacheServiceSubject) {
+            return null;
+        }
+        KerberosServiceSubjectCache subjectCache = serviceSubjectCache;
+        if (subjectCache == null) {
+            synchronized (this) {
+                subjectCache = serviceSubjectCache;
+                if (subjectCache == null) {
+                    CallbackHandler handler = callbackHandler != null ? callbackHandler : data.getCallbackHandler();
+                    subjectCache = new KerberosServiceSubjectCache(getContextName(), handler);
+                    serviceSubjectCache = subjectCache;
+                }
+            }
+        }
+        return subjectCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken.
      *
@@ -138,6 +196,43 @@ public class KerberosTokenValidator implements Validator {
             return credential;
         }
 
+        byte[] token = binarySecurity.getToken();
+
+        // An AP-REQ that is in the ticket cache has already been accepted
+        KerberosTicketCache ticketCache = data.getKerberosTicketCache();
+        byte[] tokenDigest = null;
+        if (ticketCache != null) {
+            tokenDigest = KeyUtils.generateDigest(token);
+            if (!ticketCache.reserve(tokenDigest)) {
+                throw new WSSecurityException(ErrorCode.INVALID_SECURITY_TOKEN, "kerberosTicketReplay");
+            }
+        }
+
+        KerberosServiceContext krbServiceCtx = null;
+        try {
+            krbServiceCtx = validateTicket(credential, data, token);
+        } finally {
+            if (ticketCache != null && krbServiceCtx == null) {
+                ticketCache.release(tokenDigest);
+            }
+        }
+
+        if (ticketCache != null) {
+            ticketCache.put(
+                tokenDigest, credential.getPrincipal(), credential.getSecretKey(), krbServiceCtx.getLifetime()
+            );
+        }
+
+        return credential;
+    }
+
+    /**
+     * Accept the given AP-REQ token, and set the principal, delegation credential and session key of
+     * the Credential
+     */
+    private KerberosServiceContext validateTicket(
+        Credential credential, RequestData data, byte[] token
+    ) throws WSSecurityException {
         if (LOG.isDebugEnabled()) {
             try {
                 String jaasAuth = System.getProperty("java.security.auth.login.config");
@@ -150,16 +245,23 @@ public class KerberosTokenValidator implements Validator {
         }
 
         // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
+        Subject subject = null;
         try {
-            if (callbackHandler != null) {
-                loginContext = new LoginContext(getContextName(), callbackHandler);
-            } else if (data.getCallbackHandler() != null) {
-                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
+            KerberosServiceSubjectCache subjectCache = getServiceSubjectCache(data);
+            if (subjectCache != null) {
+                subject = subjectCache.getSubject();
             } else {
-                loginContext = new LoginContext(getContextName());
+                LoginContext loginContext = null;
+                if (callbackHandler != null) {
+                    loginContext = new LoginContext(getContextName(), callbackHandler);
+                } else if (data.getCallbackHandler() != null) {
+                    loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
+                } else {
+                    loginContext = new LoginContext(getContextName());
+                }
+                loginContext.login();
+                subject = loginContext.getSubject();
             }
-            loginContext.login();
         } catch (LoginException ex) {
             LOG.debug(ex.getMessage(), ex);
             throw new WSSecurityException(
@@ -170,10 +272,7 @@ public class KerberosTokenValidator implements Validator {
         }
         LOG.debug("Successfully authenticated to the TGT");
 
-        byte[] token = binarySecurity.getToken();
-
         // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
         String service = serviceName;
         if (service == null) {
             Set<Principal> principals = subject.getPrincipals();
@@ -190,7 +289,7 @@ public class KerberosTokenValidator implements Validator {
         KerberosServiceExceptionAction action =
             new KerberosServiceExceptionAction(token, service,
                                                isUsernameServiceNameForm(), spnego);
-        KerberosServiceContext krbServiceCtx = null;
+        KerberosServiceContext krbServiceCtx;
         try {
             krbServiceCtx = Subject.doAs(subject, action);
         } catch (PrivilegedActionException e) {
@@ -242,7 +341,7 @@ public class KerberosTokenValidator implements Validator {
 
         LOG.debug("Successfully validated a ticket");
 
-        return credential;
+        return krbServiceCtx;
     }
 
     /**
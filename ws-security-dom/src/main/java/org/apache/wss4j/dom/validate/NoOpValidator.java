@@ -21,11 +21,13 @@ package org.apache.wss4j.dom.validate;
 
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
  * This class does not do any Validation at all.
  */
+@Stateless
 public class NoOpValidator implements Validator {
 
     /**
@@ -254,22 +254,18 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            Instant zonedExpires = null;
+            if (expires != null) {
+                zonedExpires = Instant.ofEpochMilli(expires.getMillis());
+            }
+
+            if (!replayCache.addIfAbsent(identifier, zonedExpires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Instant zonedExpires = Instant.ofEpochMilli(expires.getMillis());
-                replayCache.add(identifier, zonedExpires);
-            } else {
-                replayCache.add(identifier);
-            }
-
-            replayCache.add(identifier);
         }
     }
 
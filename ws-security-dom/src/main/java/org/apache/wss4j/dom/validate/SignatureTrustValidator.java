@@ -26,12 +26,14 @@ import java.util.regex.Pattern;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
  * This class verifies trust in a credential used to verify a signature, which is extracted
  * from the Credential passed to the validate method.
  */
+@Stateless
 public class SignatureTrustValidator implements Validator {
 
     private static final org.slf4j.Logger LOG =
@@ -30,6 +30,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
+import org.apache.wss4j.dom.engine.Stateless;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.xml.security.utils.XMLUtils;
@@ -38,6 +39,7 @@ import org.apache.xml.security.utils.XMLUtils;
  * This class validates a processed UsernameToken, extracted from the Credential passed to
  * the validate method.
  */
+@Stateless
 public class UsernameTokenValidator implements Validator {
 
     private static final org.slf4j.Logger LOG =
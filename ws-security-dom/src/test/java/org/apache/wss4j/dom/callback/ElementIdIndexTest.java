@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.common.SOAPUtil;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the ElementIdIndex.
+ */
+public class ElementIdIndexTest {
+
+    private static final String SOAP_MSG =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<SOAP-ENV:Envelope "
+        +   "xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+        +   "xmlns:wsu=\"" + WSConstants.WSU_NS + "\">"
+        +   "<SOAP-ENV:Header>"
+        +       "<Timestamp wsu:Id=\"TS-1\"/>"
+        +       "<Assertion ID=\"_saml\"/>"
+        +       "<Token Id=\"dup\"/>"
+        +   "</SOAP-ENV:Header>"
+        +   "<SOAP-ENV:Body wsu:Id=\"Body-1\">"
+        +       "<add xmlns=\"http://ws.apache.org/counter/counter_port_type\" Id=\"dup\">"
+        +           "<value xmlns=\"\">15</value>"
+        +       "</add>"
+        +   "</SOAP-ENV:Body>"
+        + "</SOAP-ENV:Envelope>";
+
+    @Test
+    public void testLookup() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        ElementIdIndex index = new ElementIdIndex(doc);
+
+        assertEquals("Timestamp", index.getElement("TS-1").getLocalName());
+        assertEquals("Body", index.getElement("Body-1").getLocalName());
+        assertEquals("Assertion", index.getSAMLElement("_saml").getLocalName());
+        assertNull(index.getElement("_saml"));
+        assertNull(index.getElement("unknown"));
+
+        assertFalse(index.hasDuplicates("TS-1"));
+        assertTrue(index.hasDuplicates("dup"));
+        assertEquals("Token", index.getElement("dup").getLocalName());
+    }
+
+    @Test
+    public void testChangedDocument() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        ElementIdIndex index = new ElementIdIndex(doc);
+
+        // A removed Element is no longer found
+        Element timestamp = index.getElement("TS-1");
+        timestamp.getParentNode().removeChild(timestamp);
+        assertNull(index.getElement("TS-1"));
+
+        // An added Element is found once it is indexed
+        Element added = doc.createElementNS(null, "Added");
+        added.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", "TS-1");
+        Element child = doc.createElementNS(null, "Child");
+        child.setAttributeNS(null, "Id", "Child-1");
+        added.appendChild(child);
+        doc.getDocumentElement().appendChild(added);
+        index.addElements(added);
+
+        assertSame(added, index.getElement("TS-1"));
+        assertSame(child, index.getElement("Child-1"));
+    }
+
+    @Test
+    public void testDOMCallbackLookup() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        WSDocInfo wsDocInfo = new WSDocInfo(doc);
+        DOMCallbackLookup callbackLookup = new DOMCallbackLookup(doc, wsDocInfo);
+
+        Element timestamp = callbackLookup.getElement("TS-1", null, false);
+        assertEquals("Timestamp", timestamp.getLocalName());
+        assertSame(timestamp, wsDocInfo.getElementIdIndex().getElement("TS-1"));
+        assertEquals("Assertion", callbackLookup.getElement("_saml", null, false).getLocalName());
+        assertEquals("Token", callbackLookup.getElement("dup", null, false).getLocalName());
+    }
+}
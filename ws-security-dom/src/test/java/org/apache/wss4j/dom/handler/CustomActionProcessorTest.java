@@ -43,6 +43,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -268,4 +270,34 @@ public class CustomActionProcessorTest {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that the stateless built-in actions, processors and validators are shared,
+     * and that custom classes are instantiated per invocation unless they opt in
+     */
+    @Test
+    public void
+    testSharedStatelessInstances() throws Exception {
+        WSSConfig cfg = WSSConfig.getNewInstance();
+        assertTrue(cfg.isShareStatelessInstances());
+        assertSame(cfg.getProcessor(WSConstants.TIMESTAMP), cfg.getProcessor(WSConstants.TIMESTAMP));
+        assertSame(cfg.getValidator(WSConstants.TIMESTAMP), cfg.getValidator(WSConstants.TIMESTAMP));
+        assertSame(cfg.getAction(WSConstants.TS), cfg.getAction(WSConstants.TS));
+        assertSame(
+            cfg.getProcessor(WSConstants.ENCRYPTED_KEY),
+            WSSConfig.getNewInstance().getProcessor(WSConstants.ENCRYPTED_KEY)
+        );
+
+        // Processors that hold an XMLSignatureFactory are not shared
+        assertNotSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+
+        // Custom classes are not shared unless they are annotated as Stateless
+        cfg.setProcessor(WSConstants.SIGNATURE, CustomProcessor.class);
+        assertNotSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+        cfg.setAction(WSConstants.CUSTOM_TOKEN, CustomAction.class);
+        assertNotSame(cfg.getAction(WSConstants.CUSTOM_TOKEN), cfg.getAction(WSConstants.CUSTOM_TOKEN));
+
+        cfg.setShareStatelessInstances(false);
+        assertNotSame(cfg.getProcessor(WSConstants.TIMESTAMP), cfg.getProcessor(WSConstants.TIMESTAMP));
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
+import org.apache.wss4j.common.util.Loader;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * A test for giving back the Crypto instances that a WSHandler acquires from the CryptoRegistry
+ * once the handler is closed.
+ */
+public class SharedCryptoTest {
+
+    @Test
+    public void testReleaseSharedCryptos() throws Exception {
+        ClassLoader classLoader = Loader.getTCL();
+        CryptoRegistry registry = CryptoRegistry.getInstance();
+        Crypto crypto = registry.acquire(
+            CryptoFactory.getProperties("wss40.properties", classLoader), classLoader, null
+        );
+        try {
+            int references = registry.getReferenceCount(crypto);
+            CustomHandler handler = new CustomHandler();
+
+            for (int i = 0; i < 3; i++) {
+                // The handler acquires the signature Crypto once, and holds it for all of the messages
+                RequestData reqData = new RequestData();
+                reqData.setWssConfig(WSSConfig.getNewInstance());
+                Map<String, Object> messageContext = new TreeMap<>();
+                messageContext.put(WSHandlerConstants.PW_CALLBACK_REF, new KeystoreCallbackHandler());
+                messageContext.put(WSHandlerConstants.SIGNATURE_USER, "wss40");
+                messageContext.put(WSHandlerConstants.SIG_PROP_FILE, "wss40.properties");
+                messageContext.put(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+                reqData.setMsgContext(messageContext);
+
+                Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+                List<HandlerAction> actions = new ArrayList<>();
+                actions.add(new HandlerAction(WSConstants.SIGN));
+                handler.send(doc, reqData, actions, true);
+                assertSame(crypto, reqData.getSignatureToken().getCrypto());
+                assertEquals(references + 1, registry.getReferenceCount(crypto));
+
+                RequestData receiveData = new RequestData();
+                Map<String, Object> receiveContext = new TreeMap<>();
+                receiveContext.put(WSHandlerConstants.SIG_VER_PROP_FILE, "wss40.properties");
+                receiveData.setMsgContext(receiveContext);
+                handler.receive(Collections.singletonList(WSConstants.SIGN), receiveData);
+                assertSame(crypto, receiveData.getSigVerCrypto());
+                new WSSecurityEngine().processSecurityHeader(doc, receiveData);
+                assertEquals(references + 1, registry.getReferenceCount(crypto));
+            }
+
+            handler.close();
+            assertEquals(references, registry.getReferenceCount(crypto));
+        } finally {
+            registry.release(crypto);
+        }
+    }
+}
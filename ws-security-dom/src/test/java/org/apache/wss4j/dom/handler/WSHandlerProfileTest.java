@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.wss4j.common.crypto.AlgorithmSuite;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for sending messages with a precompiled WSHandlerProfile.
+ */
+public class WSHandlerProfileTest {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(WSHandlerProfileTest.class);
+
+    private WSSecurityEngine secEngine = new WSSecurityEngine();
+
+    public WSHandlerProfileTest() throws Exception {
+        WSSConfig.init();
+    }
+
+    @Test
+    public void testCompiledOptions() throws Exception {
+        CustomHandler handler = createHandler();
+        handler.setOption(WSHandlerConstants.ENCRYPTION_PARTS, "{}{}Body");
+        WSHandlerProfile profile = handler.compileSecurityProfile();
+
+        assertEquals("wss40.properties", profile.getOption(WSHandlerConstants.SIG_PROP_FILE));
+        assertNull(profile.getOption(WSHandlerConstants.ENC_PROP_FILE));
+        assertTrue(profile.isCompiled(WSHandlerConstants.ENC_PROP_FILE));
+        assertFalse(profile.isCompiled("someCustomOption"));
+        assertEquals(Boolean.FALSE, profile.getBoolean(WSHandlerConstants.MUST_UNDERSTAND));
+        assertNull(profile.getBoolean(WSHandlerConstants.USE_SINGLE_CERTIFICATE));
+
+        // The default namespace of the parts depends on the SOAP version of the message
+        assertEquals(
+            WSConstants.URI_SOAP11_ENV,
+            profile.getParts(WSHandlerConstants.ENCRYPTION_PARTS, WSConstants.URI_SOAP11_ENV).get(0).getNamespace()
+        );
+        assertEquals(
+            WSConstants.URI_SOAP12_ENV,
+            profile.getParts(WSHandlerConstants.ENCRYPTION_PARTS, WSConstants.URI_SOAP12_ENV).get(0).getNamespace()
+        );
+    }
+
+    /**
+     * The algorithm suite of a message is decoded from the compiled options
+     */
+    @Test
+    public void testCompiledAlgorithmSuite() throws Exception {
+        CustomHandler handler = createHandler();
+        handler.setOption(WSHandlerConstants.SIG_ALGO, WSConstants.RSA_SHA256);
+        handler.setOption(WSHandlerConstants.ENC_SYM_ALGO, WSConstants.AES_128_GCM);
+        handler.setSecurityProfile(handler.compileSecurityProfile());
+        handler.setOption(WSHandlerConstants.SIG_ALGO, WSConstants.RSA_SHA1);
+
+        RequestData reqData = new RequestData();
+        Map<String, Object> messageContext = new TreeMap<>();
+        messageContext.put(WSHandlerConstants.SIG_DIGEST_ALGO, WSConstants.SHA256);
+        reqData.setMsgContext(messageContext);
+        handler.decodeAlgorithmSuite(reqData);
+
+        AlgorithmSuite algorithmSuite = reqData.getAlgorithmSuite();
+        assertEquals(Collections.singleton(WSConstants.RSA_SHA256), algorithmSuite.getSignatureMethods());
+        assertEquals(Collections.singleton(WSConstants.SHA256), algorithmSuite.getDigestAlgorithms());
+        assertEquals(Collections.singleton(WSConstants.AES_128_GCM), algorithmSuite.getEncryptionMethods());
+        assertTrue(algorithmSuite.getKeyWrapAlgorithms().isEmpty());
+    }
+
+    /**
+     * Send several messages with the same profile. The compiled parts are copied for each message.
+     */
+    @Test
+    public void testSendWithProfile() throws Exception {
+        CustomHandler handler = createHandler();
+        handler.setSecurityProfile(handler.compileSecurityProfile());
+
+        for (int i = 0; i < 2; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(new TreeMap<String, Object>());
+            reqData.setUsername("wss40");
+            List<HandlerAction> actions = WSSecurityUtil.decodeHandlerAction(
+                handler.getString(WSHandlerConstants.ACTION, reqData.getMsgContext()), WSSConfig.getNewInstance()
+            );
+            handler.send(doc, reqData, actions, true);
+
+            if (LOG.isDebugEnabled()) {
+                String outputString =
+                    XMLUtils.prettyDocumentToString(doc);
+                LOG.debug(outputString);
+            }
+
+            WSHandlerResult results = verify(doc);
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.SIGN).get(0);
+            @SuppressWarnings("unchecked")
+            final List<WSDataRef> refs =
+                (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+            assertEquals(2, refs.size());
+        }
+    }
+
+    /**
+     * The profile is a snapshot of the handler options, while the configuration tags that are not
+     * set as handler options are still read from the message context.
+     */
+    @Test
+    public void testProfileSnapshot() throws Exception {
+        CustomHandler handler = createHandler();
+        handler.setSecurityProfile(handler.compileSecurityProfile());
+        handler.setOption(WSHandlerConstants.SIG_KEY_ID, "SomeUnknownKeyIdentifier");
+
+        Map<String, Object> messageContext = new TreeMap<>();
+        messageContext.put(WSHandlerConstants.USE_SINGLE_CERTIFICATE, "false");
+        assertEquals("IssuerSerial", handler.getString(WSHandlerConstants.SIG_KEY_ID, messageContext));
+        assertEquals("false", handler.getString(WSHandlerConstants.USE_SINGLE_CERTIFICATE, messageContext));
+
+        // A compiled handler option takes precedence over the message context, as before
+        messageContext.put(WSHandlerConstants.SIG_PROP_FILE, "crypto.properties");
+        assertEquals("wss40.properties", handler.getString(WSHandlerConstants.SIG_PROP_FILE, messageContext));
+    }
+
+    @Test
+    public void testIllegalOption() throws Exception {
+        CustomHandler handler = createHandler();
+        handler.setOption(WSHandlerConstants.USE_SINGLE_CERTIFICATE, "yes");
+
+        try {
+            handler.compileSecurityProfile();
+            fail("Failure expected on an illegal boolean option");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+    }
+
+    private CustomHandler createHandler() {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.ACTION, "Timestamp Signature");
+        handler.setOption(WSHandlerConstants.SIG_PROP_FILE, "wss40.properties");
+        handler.setOption(WSHandlerConstants.SIG_KEY_ID, "IssuerSerial");
+        handler.setOption(WSHandlerConstants.MUST_UNDERSTAND, "false");
+        handler.setOption(WSHandlerConstants.PW_CALLBACK_REF, new KeystoreCallbackHandler());
+        handler.setOption(
+            WSHandlerConstants.SIGNATURE_PARTS,
+            "{}{" + WSConstants.WSU_NS + "}Timestamp;{}{" + WSConstants.URI_SOAP11_ENV + "}Body"
+        );
+        return handler;
+    }
+
+    private WSHandlerResult verify(Document doc) throws Exception {
+        return secEngine.processSecurityHeader(
+            doc, null, new KeystoreCallbackHandler(), CryptoFactory.getInstance("wss40.properties")
+        );
+    }
+}
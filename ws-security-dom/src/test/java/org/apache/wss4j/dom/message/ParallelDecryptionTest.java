@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+
+/**
+ * A set of test-cases for decrypting the EncryptedData elements of a message in parallel
+ */
+public class ParallelDecryptionTest {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ParallelDecryptionTest.class);
+    private static final String SOAPMSG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soapenv:Envelope xmlns:foo=\"urn:foo.bar\" xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">" +
+            "   <soapenv:Header>" +
+            "       <foo:bar1>baz1</foo:bar1>" +
+            "       <foo:foobar>baz</foo:foobar>" +
+            "       <foo:bar2 xmlns:bar=\"urn:bar\" bar:attr=\"&amp;\">baz2</foo:bar2>" +
+            "   </soapenv:Header>" +
+            "   <soapenv:Body>" +
+            "      <ns1:testMethod xmlns:ns1=\"http://axis/service/security/test6/LogTestService8\">" +
+            "          <foo:value>15</foo:value>" +
+            "      </ns1:testMethod>" +
+            "   </soapenv:Body>" +
+            "</soapenv:Envelope>";
+
+    private static final ForkJoinPool EXECUTOR = new ForkJoinPool(4);
+
+    private WSSecurityEngine secEngine = new WSSecurityEngine();
+    private Crypto crypto;
+
+    public ParallelDecryptionTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    @AfterAll
+    public static void cleanup() throws Exception {
+        EXECUTOR.shutdown();
+    }
+
+    @Test
+    public void testParallelDecryption() throws Exception {
+        Document encryptedDoc = createEncryptedDocument(WSConstants.AES_128);
+        Document serialDoc = (Document)encryptedDoc.cloneNode(true);
+
+        WSHandlerResult results = verify(encryptedDoc, EXECUTOR);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ENCR).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        // The references are returned in the order of the ReferenceList
+        assertEquals(3, refs.size());
+        assertEquals("/soapenv:Envelope/soapenv:Header/foo:bar1", refs.get(0).getXpath());
+        assertEquals("/soapenv:Envelope/soapenv:Header/foo:bar2", refs.get(1).getXpath());
+        assertEquals("/soapenv:Envelope/soapenv:Body", refs.get(2).getXpath());
+        assertTrue(refs.get(2).isContent());
+        for (WSDataRef ref : refs) {
+            assertEquals(WSConstants.AES_128, ref.getAlgorithm());
+        }
+
+        // The message is decrypted as it is by the serial decryption
+        verify(serialDoc, null);
+        assertEquals(XMLUtils.prettyDocumentToString(serialDoc), XMLUtils.prettyDocumentToString(encryptedDoc));
+        Element bar2 = XMLUtils.findElement(encryptedDoc.getDocumentElement(), "bar2", "urn:foo.bar");
+        assertEquals("&", bar2.getAttributeNS("urn:bar", "attr"));
+    }
+
+    @Test
+    public void testParallelGCMDecryption() throws Exception {
+        Document encryptedDoc = createEncryptedDocument(WSConstants.AES_256_GCM);
+        Document serialDoc = (Document)encryptedDoc.cloneNode(true);
+
+        verify(encryptedDoc, EXECUTOR);
+        verify(serialDoc, null);
+        assertEquals(XMLUtils.prettyDocumentToString(serialDoc), XMLUtils.prettyDocumentToString(encryptedDoc));
+    }
+
+    @Test
+    public void testModifiedCipherValue() throws Exception {
+        Document encryptedDoc = createEncryptedDocument(WSConstants.AES_128_GCM);
+
+        Element body = WSSecurityUtil.findBodyElement(encryptedDoc);
+        Element cipherValue = XMLUtils.findElement(body, "CipherValue", WSConstants.ENC_NS);
+        String value = cipherValue.getTextContent();
+        cipherValue.setTextContent((value.charAt(0) == 'A' ? "B" : "A") + value.substring(1));
+
+        try {
+            verify(encryptedDoc, EXECUTOR);
+            fail("Failure expected on a modified CipherValue");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+    }
+
+    private Document createEncryptedDocument(String symEncAlgo) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        encrypt.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        encrypt.setSymmetricEncAlgorithm(symEncAlgo);
+        encrypt.getParts().add(new WSEncryptionPart("bar1", "urn:foo.bar", "Element"));
+        encrypt.getParts().add(new WSEncryptionPart("bar2", "urn:foo.bar", "Element"));
+        String soapNamespace = WSSecurityUtil.getSOAPNamespace(doc.getDocumentElement());
+        encrypt.getParts().add(new WSEncryptionPart(WSConstants.ELEM_BODY, soapNamespace, "Content"));
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(symEncAlgo);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = encrypt.build(crypto, symmetricKey);
+
+        if (LOG.isDebugEnabled()) {
+            String outputString =
+                XMLUtils.prettyDocumentToString(encryptedDoc);
+            LOG.debug(outputString);
+        }
+        return encryptedDoc;
+    }
+
+    private WSHandlerResult verify(Document doc, Executor executor) throws Exception {
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setDecCrypto(crypto);
+        data.setCallbackHandler(new KeystoreCallbackHandler());
+        data.setDecryptionExecutor(executor);
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(doc, null);
+        return secEngine.processSecurityHeader(securityHeader, data);
+    }
+
+}
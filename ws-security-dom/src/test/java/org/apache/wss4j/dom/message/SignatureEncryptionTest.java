@@ -32,14 +32,17 @@ import org.apache.wss4j.dom.handler.HandlerAction;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
 
 import org.junit.jupiter.api.Test;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -52,6 +55,7 @@ import java.util.ArrayList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -497,6 +501,53 @@ public class SignatureEncryptionTest {
         verify(encryptedSignedDoc);
     }
 
+    /**
+     * Test that a signed element cannot be wrapped with two elements with the same Id, that are
+     * decrypted as the content of a single EncryptedData element of type Element, which starts
+     * with some whitespace.
+     */
+    @Test
+    public void testDuplicateIdsInEncryptedData() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        Element body = WSSecurityUtil.findBodyElement(doc);
+        Element add = XMLUtils.getDirectChildElement(body, "add", "http://ws.apache.org/counter/counter_port_type");
+        XMLUtils.setNamespace(add, WSConstants.WSU_NS, WSConstants.WSU_PREFIX);
+        add.setAttributeNS(WSConstants.WSU_NS, WSConstants.WSU_PREFIX + ":Id", "Add-1");
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        sign.getParts().add(new WSEncryptionPart("Add-1"));
+        sign.build(crypto);
+
+        // Add two copies of the signed element, which are encrypted as the content of a wrapper
+        Element wrapper = doc.createElementNS("urn:foo", "foo:wrapper");
+        wrapper.appendChild(doc.createTextNode("\n"));
+        wrapper.appendChild(add.cloneNode(true));
+        wrapper.appendChild(doc.createTextNode("\n"));
+        wrapper.appendChild(add.cloneNode(true));
+        body.appendChild(wrapper);
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        encrypt.getParts().add(new WSEncryptionPart("wrapper", "urn:foo", "Content"));
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.build(crypto, symmetricKey);
+
+        // Decrypt the content of the wrapper as an Element, in place of the wrapper
+        Element encData = XMLUtils.getDirectChildElement(wrapper, "EncryptedData", WSConstants.ENC_NS);
+        encData.setAttributeNS(null, "Type", WSConstants.ENC_NS + "Element");
+        body.replaceChild(encData, wrapper);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(XMLUtils.prettyDocumentToString(doc));
+        }
+        assertThrows(WSSecurityException.class, () -> verify(doc));
+    }
+
     /**
      * Verifies the soap envelope <p/>
      *
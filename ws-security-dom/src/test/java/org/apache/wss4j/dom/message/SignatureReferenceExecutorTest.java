@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+
+/**
+ * A set of test-cases for validating the References of a Signature in parallel
+ */
+public class SignatureReferenceExecutorTest {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SignatureReferenceExecutorTest.class);
+
+    private static final ForkJoinPool EXECUTOR = new ForkJoinPool(4);
+
+    private WSSecurityEngine secEngine = new WSSecurityEngine();
+    private Crypto crypto;
+
+    public SignatureReferenceExecutorTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance();
+    }
+
+    @AfterAll
+    public static void cleanup() throws Exception {
+        EXECUTOR.shutdown();
+    }
+
+    @Test
+    public void testParallelReferences() throws Exception {
+        Document signedDoc = createSignedDocument();
+
+        WSHandlerResult results = verify(signedDoc);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        // The references are returned in the order of the SignedInfo
+        assertEquals(2, refs.size());
+        assertEquals(WSConstants.TIMESTAMP_TOKEN_LN, refs.get(0).getProtectedElement().getLocalName());
+        assertEquals(WSConstants.ELEM_BODY, refs.get(1).getProtectedElement().getLocalName());
+    }
+
+    @Test
+    public void testModifiedReference() throws Exception {
+        Document signedDoc = createSignedDocument();
+
+        Element value = XMLUtils.findElement(signedDoc.getDocumentElement(), "value", "");
+        value.setTextContent("16");
+
+        try {
+            verify(signedDoc);
+            fail("Failure expected on a modified signed Body");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+    }
+
+    /**
+     * A failed verification returns without waiting for the References whose validation has not started
+     */
+    @Test
+    public void testFailFastSkipsPendingReferences() throws Exception {
+        // The validation of the Timestamp Reference is held back until the modified Body has failed
+        List<Runnable> heldTasks = new ArrayList<>();
+        Executor executor = command -> {
+            if (heldTasks.isEmpty()) {
+                heldTasks.add(command);
+            } else {
+                EXECUTOR.execute(command);
+            }
+        };
+        Document signedDoc = createSignedDocument();
+        Element value = XMLUtils.findElement(signedDoc.getDocumentElement(), "value", "");
+        value.setTextContent("16");
+
+        try {
+            verify(signedDoc, executor);
+            fail("Failure expected on a modified signed Body");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+        }
+        assertEquals(1, heldTasks.size());
+        heldTasks.get(0).run();
+    }
+
+    private Document createSignedDocument() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecTimestamp timestamp = new WSSecTimestamp(secHeader);
+        timestamp.build();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        builder.getParts().add(new WSEncryptionPart(WSConstants.TIMESTAMP_TOKEN_LN, WSConstants.WSU_NS, ""));
+        String soapNamespace = WSSecurityUtil.getSOAPNamespace(doc.getDocumentElement());
+        builder.getParts().add(new WSEncryptionPart(WSConstants.ELEM_BODY, soapNamespace, ""));
+        Document signedDoc = builder.build(crypto);
+
+        if (LOG.isDebugEnabled()) {
+            String outputString =
+                XMLUtils.prettyDocumentToString(signedDoc);
+            LOG.debug(outputString);
+        }
+        return signedDoc;
+    }
+
+    private WSHandlerResult verify(Document doc) throws Exception {
+        return verify(doc, EXECUTOR);
+    }
+
+    private WSHandlerResult verify(Document doc, Executor executor) throws Exception {
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setSigVerCrypto(crypto);
+        data.setCallbackHandler(new KeystoreCallbackHandler());
+        data.setSignatureReferenceExecutor(executor);
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(doc, null);
+        return secEngine.processSecurityHeader(securityHeader, data);
+    }
+
+}
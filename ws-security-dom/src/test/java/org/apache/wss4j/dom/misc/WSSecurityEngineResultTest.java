@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the Map view of WSSecurityEngineResult, and for looking up results by Id.
+ */
+public class WSSecurityEngineResultTest {
+
+    @Test
+    public void testMapView() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.UT);
+        result.put(WSSecurityEngineResult.TAG_ID, "UsernameToken-1");
+        result.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        result.put("custom-tag", "custom-value");
+
+        assertEquals(WSConstants.UT, result.getAction().intValue());
+        assertEquals("UsernameToken-1", result.getId());
+        assertEquals(4, result.size());
+        assertTrue(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertNull(result.get(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_SUBJECT));
+        assertEquals("custom-value", result.get("custom-tag"));
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put(WSSecurityEngineResult.TAG_ACTION, WSConstants.UT);
+        expected.put(WSSecurityEngineResult.TAG_ID, "UsernameToken-1");
+        expected.put(WSSecurityEngineResult.TAG_PRINCIPAL, null);
+        expected.put("custom-tag", "custom-value");
+        assertEquals(expected, result);
+        assertEquals(result, expected);
+        assertEquals(expected.hashCode(), result.hashCode());
+        assertEquals(expected, new HashMap<>(result));
+        assertEquals(expected, result.clone());
+
+        assertEquals("custom-value", result.remove("custom-tag"));
+        assertNull(result.remove(WSSecurityEngineResult.TAG_PRINCIPAL));
+        assertEquals(2, result.size());
+        assertFalse(result.containsKey(WSSecurityEngineResult.TAG_PRINCIPAL));
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.SIGN);
+        result.put(WSSecurityEngineResult.TAG_ID, "Signature-1");
+        result.put("custom-tag", "custom-value");
+
+        Iterator<Map.Entry<String, Object>> iterator = result.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            if (!WSSecurityEngineResult.TAG_ACTION.equals(entry.getKey())) {
+                iterator.remove();
+            }
+        }
+        assertEquals(1, result.size());
+        assertNull(result.getId());
+        assertFalse(result.containsKey("custom-tag"));
+        assertEquals(WSConstants.SIGN, result.getAction().intValue());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        WSSecurityEngineResult result = new WSSecurityEngineResult(WSConstants.ENCR);
+        result.put(WSSecurityEngineResult.TAG_ID, "EncryptedKey-1");
+        result.put("custom-tag", "custom-value");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(result);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(result, in.readObject());
+        }
+    }
+
+    @Test
+    public void testResultsById() throws Exception {
+        WSDocInfo wsDocInfo = new WSDocInfo(SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG));
+
+        WSSecurityEngineResult encResult = new WSSecurityEngineResult(WSConstants.ENCR);
+        encResult.put(WSSecurityEngineResult.TAG_ID, "Token-1");
+        wsDocInfo.addResult(encResult);
+        assertSame(encResult, wsDocInfo.getResult("#Token-1"));
+
+        // The first result that was stored with an Id is returned for it
+        WSSecurityEngineResult sigResult = new WSSecurityEngineResult(WSConstants.SIGN);
+        sigResult.put(WSSecurityEngineResult.TAG_ID, "Token-1");
+        wsDocInfo.addResult(sigResult);
+        assertSame(encResult, wsDocInfo.getResult("#Token-1"));
+        assertTrue(wsDocInfo.hasResult(WSConstants.ENCR, "#Token-1"));
+        assertTrue(wsDocInfo.hasResult(WSConstants.SIGN, "#Token-1"));
+        assertFalse(wsDocInfo.hasResult(WSConstants.UT, "#Token-1"));
+        assertFalse(wsDocInfo.hasResult(WSConstants.SIGN, "#Token-2"));
+        assertNull(wsDocInfo.getResult("#Token-2"));
+
+        wsDocInfo.clear();
+        assertNull(wsDocInfo.getResult("#Token-1"));
+        assertFalse(wsDocInfo.hasResult(WSConstants.SIGN, "#Token-1"));
+    }
+
+    @Test
+    public void testHandlerResult() throws Exception {
+        WSSecurityEngineResult encResult = new WSSecurityEngineResult(WSConstants.ENCR);
+        encResult.put(WSSecurityEngineResult.TAG_ID, "Token-1");
+        WSSecurityEngineResult sigResult = new WSSecurityEngineResult(WSConstants.SIGN);
+        sigResult.put(WSSecurityEngineResult.TAG_ID, "Token-2");
+
+        Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
+        actionResults.put(WSConstants.SIGN, Arrays.asList(sigResult));
+        WSHandlerResult handlerResult =
+            new WSHandlerResult(null, new ArrayList<>(Arrays.asList(encResult, sigResult)), actionResults);
+
+        assertSame(encResult, handlerResult.getResult("Token-1"));
+        assertSame(sigResult, handlerResult.getResult("Token-2"));
+        assertNull(handlerResult.getResult("Token-3"));
+
+        // A result that is added to the list after a lookup is found as well
+        WSSecurityEngineResult utResult = new WSSecurityEngineResult(WSConstants.UT);
+        utResult.put(WSSecurityEngineResult.TAG_ID, "Token-3");
+        handlerResult.getResults().add(utResult);
+        assertSame(utResult, handlerResult.getResult("Token-3"));
+        assertEquals(Arrays.asList(sigResult), handlerResult.getActionResults(WSConstants.SIGN));
+        assertTrue(handlerResult.getActionResults(WSConstants.ENCR).isEmpty());
+    }
+}
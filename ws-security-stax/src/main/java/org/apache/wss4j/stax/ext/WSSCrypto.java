@@ -18,13 +18,13 @@
  */
 package org.apache.wss4j.stax.ext;
 
-import java.lang.reflect.Constructor;
 import java.security.KeyStore;
 import java.security.cert.CertStore;
 import java.util.Properties;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoRegistry;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.util.Loader;
@@ -41,25 +41,27 @@ class WSSCrypto {
     private Class<? extends Merlin> cryptoClass = Merlin.class;
     private Properties cryptoProperties;
     private Crypto cachedCrypto;
+    private boolean cachedCryptoShared;
     private KeyStore cachedKeyStore;
     private KeyStore keyStore;
     private CertStore crlCertStore;
     private PasswordEncryptor passwordEncryptor;
 
-    public Crypto getCrypto() throws WSSConfigurationException {
+    public synchronized Crypto getCrypto() throws WSSConfigurationException {
 
         if (keyStore == cachedKeyStore && cachedCrypto != null) {
             return cachedCrypto;
         }
 
         Merlin crypto = null;
+        boolean shared = false;
         if (cryptoProperties != null) {
             try {
-                Constructor<?> ctor =
-                    cryptoClass.getConstructor(Properties.class, ClassLoader.class, PasswordEncryptor.class);
-                crypto = (Merlin)ctor.newInstance(cryptoProperties,
-                                                  Loader.getClassLoader(CryptoFactory.class),
-                                                  passwordEncryptor);
+                // The Crypto instance is shared with the other configurations of the same properties
+                crypto = CryptoRegistry.getInstance().acquire(cryptoClass, cryptoProperties,
+                                                              Loader.getClassLoader(CryptoFactory.class),
+                                                              passwordEncryptor);
+                shared = true;
                 keyStore = crypto.getKeyStore();
             } catch (Exception e) {
                 throw new WSSConfigurationException(WSSConfigurationException.ErrorCode.FAILURE, e, "signatureCryptoFailure");
@@ -77,56 +79,64 @@ class WSSCrypto {
             }
         }
 
-        cachedCrypto = crypto;
+        setCachedCrypto(crypto, shared);
         cachedKeyStore = crypto.getKeyStore();
         return crypto;
     }
 
-    public void setCrypto(Crypto crypto) {
-        cachedCrypto = crypto;
+    public synchronized void setCrypto(Crypto crypto) {
+        setCachedCrypto(crypto, false);
         if (crypto instanceof Merlin) {
             keyStore = ((Merlin)crypto).getKeyStore();
             cachedKeyStore = keyStore;
         }
     }
 
-    public Class<? extends Merlin> getCryptoClass() {
+    private void setCachedCrypto(Crypto crypto, boolean shared) {
+        if (cachedCryptoShared && cachedCrypto != crypto) {
+            CryptoRegistry.getInstance().release(cachedCrypto);
+        }
+        cachedCrypto = crypto;
+        cachedCryptoShared = shared;
+    }
+
+    public synchronized Class<? extends Merlin> getCryptoClass() {
         return cryptoClass;
     }
 
-    public void setCryptoClass(Class<? extends Merlin> cryptoClass) {
+    public synchronized void setCryptoClass(Class<? extends Merlin> cryptoClass) {
         this.cryptoClass = cryptoClass;
     }
 
-    public Properties getCryptoProperties() {
+    public synchronized Properties getCryptoProperties() {
         return cryptoProperties;
     }
 
-    public void setCryptoProperties(Properties cryptoProperties) {
+    public synchronized void setCryptoProperties(Properties cryptoProperties) {
         this.cryptoProperties = cryptoProperties;
     }
 
-    public KeyStore getKeyStore() {
+    public synchronized KeyStore getKeyStore() {
         return keyStore;
     }
 
-    public void setKeyStore(KeyStore keyStore) {
+    public synchronized void setKeyStore(KeyStore keyStore) {
         this.keyStore = keyStore;
     }
 
-    public CertStore getCrlCertStore() {
+    public synchronized CertStore getCrlCertStore() {
         return crlCertStore;
     }
 
-    public void setCrlCertStore(CertStore crlCertStore) {
+    public synchronized void setCrlCertStore(CertStore crlCertStore) {
         this.crlCertStore = crlCertStore;
     }
 
-    public PasswordEncryptor getPasswordEncryptor() {
+    public synchronized PasswordEncryptor getPasswordEncryptor() {
         return passwordEncryptor;
     }
 
-    public void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
+    public synchronized void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
         this.passwordEncryptor = passwordEncryptor;
     }
 }
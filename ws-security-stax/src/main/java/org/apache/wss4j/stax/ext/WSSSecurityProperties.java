@@ -40,9 +40,11 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.DNPatternMatcher;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -108,6 +110,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private KerberosTicketCache kerberosTicketCache;
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
@@ -164,6 +167,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.kerberosTicketCache = wssSecurityProperties.kerberosTicketCache;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -764,6 +768,21 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache of the Kerberos AP-REQ tokens that have been accepted, which is used to detect
+     * replayed tokens
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
+
+    /**
+     * Get the cache of the Kerberos AP-REQ tokens that have been accepted
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
@@ -861,11 +880,14 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     }
 
     /**
-     * Set the Signature Subject Cert Constraints
+     * Set the Signature Subject Cert Constraints. They are compiled into a DNPatternMatcher that is
+     * shared by all of the messages.
      */
     public void setSubjectCertConstraints(Collection<Pattern> subjectCertConstraints) {
         if (subjectCertConstraints != null) {
-            subjectDNPatterns.addAll(subjectCertConstraints);
+            Collection<Pattern> patterns = new ArrayList<>(subjectDNPatterns);
+            patterns.addAll(subjectCertConstraints);
+            subjectDNPatterns = new DNPatternMatcher(patterns);
         }
     }
 
@@ -876,10 +898,15 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return subjectDNPatterns;
     }
     /**
-     * Set the Signature Issuer Cert Constraints
+     * Set the Signature Issuer Cert Constraints. They are compiled into a DNPatternMatcher that is
+     * shared by all of the messages.
      */
     public void setIssuerDNConstraints(Collection<Pattern> issuerDNPatterns) {
-        this.issuerDNPatterns = issuerDNPatterns;
+        if (issuerDNPatterns == null || issuerDNPatterns instanceof DNPatternMatcher) {
+            this.issuerDNPatterns = issuerDNPatterns;
+        } else {
+            this.issuerDNPatterns = new DNPatternMatcher(issuerDNPatterns);
+        }
     }
     /**
      * Get the Signature Issuer Cert Constraints
@@ -82,18 +82,18 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         if (encodedNonce != null && replayCache != null) {
             // Check for replay attacks
             String nonce = encodedNonce.getValue();
-            if (replayCache.contains(nonce)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
 
             // If no Created, then just cache for the default time
             // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
             // older token will just get rejected anyway
             int utTTL = wssSecurityProperties.getUtTTL();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(nonce);
-            } else {
-                replayCache.add(nonce, Instant.now().plusSeconds(utTTL));
+            Instant expiry = null;
+            if (created != null && utTTL > 0) {
+                expiry = Instant.now().plusSeconds(utTTL);
+            }
+
+            if (!replayCache.addIfAbsent(nonce, expiry)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         }
 
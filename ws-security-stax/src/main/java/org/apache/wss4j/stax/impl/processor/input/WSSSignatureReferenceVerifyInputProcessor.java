@@ -22,7 +22,6 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.time.Instant;
 import java.time.temporal.ChronoField;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -316,16 +315,9 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             final String cacheKey =
                     timestampSecurityEvent.getCreated().get(ChronoField.MILLI_OF_SECOND)
                     + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
-            }
-
             // Store the Timestamp/SignatureValue combination in the cache
-            Instant expires = timestampSecurityEvent.getExpires();
-            if (expires != null) {
-                replayCache.add(cacheKey, expires);
-            } else {
-                replayCache.add(cacheKey);
+            if (!replayCache.addIfAbsent(cacheKey, timestampSecurityEvent.getExpires())) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
         }
     }
@@ -41,6 +41,7 @@ import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
@@ -262,9 +263,10 @@ public class EncryptOutputProcessor extends AbstractEncryptOutputProcessor {
                     throw new XMLSecurityException("algorithms.NoSuchMap", new Object[] {encryptionSymAlgorithm});
                 }
                 //initialize the cipher
+                EnginePool<Cipher> cipherPool = EnginePool.getCipherPool(jceAlgorithm);
                 Cipher cipher = null;
                 try {
-                    cipher = Cipher.getInstance(jceAlgorithm);
+                    cipher = cipherPool.get();
 
                     int ivLen = JCEMapper.getIVLengthFromURI(encryptionSymAlgorithm) / 8;
                     byte[] iv = XMLSecurityConstants.generateBytes(ivLen);
@@ -276,13 +278,17 @@ public class EncryptOutputProcessor extends AbstractEncryptOutputProcessor {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, e);
                 }
 
+                // The cipher is given back to the pool once the encrypted attachment has been read and closed
                 final Map<String, String> headers = new HashMap<>();
                 headers.putAll(attachment.getHeaders());
                 resultAttachment.setSourceStream(
-                        AttachmentUtils.setupAttachmentEncryptionStream(
-                                cipher,
-                                SecurePart.Modifier.Element == encryptionPartDef.getModifier(),
-                                attachment, headers
+                        cipherPool.releaseOnClose(
+                                AttachmentUtils.setupAttachmentEncryptionStream(
+                                        cipher,
+                                        SecurePart.Modifier.Element == encryptionPartDef.getModifier(),
+                                        attachment, headers
+                                ),
+                                cipher
                         ));
                 resultAttachment.addHeaders(headers);
 
@@ -36,6 +36,7 @@ import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosTicketCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -53,6 +54,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     private String kerberosTokenValueType;
 
     private KerberosTokenDecoder kerberosTokenDecoder;
+    private KerberosTicketCache kerberosTicketCache;
     private Subject subject;
     private Principal principal;
     private byte[] sessionKey;
@@ -80,6 +82,35 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
         if (sessionKey != null) {
             return sessionKey;
         }
+
+        // An AP-REQ that is in the ticket cache has already been accepted, unless by this token
+        byte[] tokenDigest = null;
+        if (kerberosTicketCache != null && principal == null) {
+            tokenDigest = KeyUtils.generateDigest(binaryContent);
+            if (!kerberosTicketCache.reserve(tokenDigest)) {
+                throw new WSSecurityException(ErrorCode.INVALID_SECURITY_TOKEN, "kerberosTicketReplay");
+            }
+        }
+
+        KerberosServiceContext krbServiceCtx = null;
+        try {
+            krbServiceCtx = acceptTicket();
+        } finally {
+            if (tokenDigest != null && krbServiceCtx == null) {
+                kerberosTicketCache.release(tokenDigest);
+            }
+        }
+
+        if (tokenDigest != null) {
+            kerberosTicketCache.put(tokenDigest, principal, sessionKey, krbServiceCtx.getLifetime());
+        }
+        return sessionKey;
+    }
+
+    /**
+     * Accept the AP-REQ token, and set the Subject, principal and session key of this token
+     */
+    private KerberosServiceContext acceptTicket() throws WSSecurityException {
         try {
             KerberosContextAndServiceNameCallback contextAndServiceNameCallback = new KerberosContextAndServiceNameCallback();
             callbackHandler.handle(new Callback[]{contextAndServiceNameCallback});
@@ -115,7 +146,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                                                    service,
                                                    contextAndServiceNameCallback.isUsernameServiceNameForm(),
                                                    false);
-            KerberosServiceContext krbServiceCtx = null;
+            KerberosServiceContext krbServiceCtx;
             try {
                 krbServiceCtx = Subject.doAs(subject, action);
             } catch (PrivilegedActionException e) {
@@ -141,7 +172,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 sessionKey = kerberosTokenDecoder.getSessionKey();
             }
 
-            return sessionKey;
+            return krbServiceCtx;
         } catch (LoginException | UnsupportedCallbackException | IOException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
         } catch (KerberosTokenDecoderException e) {
@@ -200,4 +231,21 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     public void setKerberosTokenDecoder(KerberosTokenDecoder kerberosTokenDecoder) {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
+
+    /**
+     * Get the cache of the Kerberos AP-REQ tokens that have been accepted
+     * @return the cache of the Kerberos AP-REQ tokens that have been accepted
+     */
+    public KerberosTicketCache getKerberosTicketCache() {
+        return kerberosTicketCache;
+    }
+
+    /**
+     * Set the cache of the Kerberos AP-REQ tokens that have been accepted, which is used to detect
+     * replayed tokens
+     * @param kerberosTicketCache the cache of the Kerberos AP-REQ tokens that have been accepted
+     */
+    public void setKerberosTicketCache(KerberosTicketCache kerberosTicketCache) {
+        this.kerberosTicketCache = kerberosTicketCache;
+    }
 }
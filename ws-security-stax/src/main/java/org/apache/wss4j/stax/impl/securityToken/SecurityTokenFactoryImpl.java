@@ -22,8 +22,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
@@ -39,6 +39,7 @@ import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -73,6 +74,8 @@ import org.apache.xml.security.utils.XMLUtils;
  */
 public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
 
+    private static final EnginePool<MessageDigest> SHA1_POOL = EnginePool.getMessageDigestPool("SHA-1");
+
     public SecurityTokenFactoryImpl() {
     }
 
@@ -275,27 +278,31 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                     securityTokenReferenceId, securityProperties);
         } else if (WSSConstants.NS_THUMBPRINT.equals(valueType)) {
             try {
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-                //first look if the token is included in the message (necessary for TokenInclusion policy)...
-                List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
-                        inboundSecurityContext.getRegisteredSecurityTokenProviders();
-                for (int i = 0; i < securityTokenProviders.size(); i++) {
-                    SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
-                    InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
-                    if (inboundSecurityToken instanceof X509SecurityToken) {
-                        X509SecurityToken x509SecurityToken = (X509SecurityToken)inboundSecurityToken;
-                        byte[] tokenDigest = messageDigest.digest(x509SecurityToken.getX509Certificates()[0].getEncoded());
-
-                        if (Arrays.equals(tokenDigest, binaryContent)) {
-                            return createSecurityTokenProxy(inboundSecurityToken,
-                                    WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
+                MessageDigest messageDigest = SHA1_POOL.get();
+                try {
+                    //first look if the token is included in the message (necessary for TokenInclusion policy)...
+                    List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
+                            inboundSecurityContext.getRegisteredSecurityTokenProviders();
+                    for (int i = 0; i < securityTokenProviders.size(); i++) {
+                        SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
+                        InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
+                        if (inboundSecurityToken instanceof X509SecurityToken) {
+                            X509SecurityToken x509SecurityToken = (X509SecurityToken)inboundSecurityToken;
+                            byte[] tokenDigest = messageDigest.digest(x509SecurityToken.getX509Certificates()[0].getEncoded());
+
+                            if (Arrays.equals(tokenDigest, binaryContent)) {
+                                return createSecurityTokenProxy(inboundSecurityToken,
+                                        WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
+                            }
                         }
                     }
+                } finally {
+                    SHA1_POOL.release(messageDigest);
                 }
-            } catch (NoSuchAlgorithmException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
             } catch (CertificateEncodingException e) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN);
+            } catch (GeneralSecurityException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
             }
 
             //...then if none is found create a new SecurityToken instance
@@ -335,23 +342,27 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
 
             try {
                 //ok we have to find the token via digesting...
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-                List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
-                        inboundSecurityContext.getRegisteredSecurityTokenProviders();
-                for (int i = 0; i < securityTokenProviders.size(); i++) {
-                    SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
-                    InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
-                    if (inboundSecurityToken instanceof KerberosServiceSecurityToken) {
-                        KerberosServiceSecurityToken kerberosSecurityToken =
-                            (KerberosServiceSecurityToken)inboundSecurityToken;
-                        byte[] tokenDigest = messageDigest.digest(kerberosSecurityToken.getBinaryContent());
-                        if (Arrays.equals(tokenDigest, binaryContent)) {
-                            return createSecurityTokenProxy(inboundSecurityToken,
-                                    WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
+                MessageDigest messageDigest = SHA1_POOL.get();
+                try {
+                    List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
+                            inboundSecurityContext.getRegisteredSecurityTokenProviders();
+                    for (int i = 0; i < securityTokenProviders.size(); i++) {
+                        SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
+                        InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
+                        if (inboundSecurityToken instanceof KerberosServiceSecurityToken) {
+                            KerberosServiceSecurityToken kerberosSecurityToken =
+                                (KerberosServiceSecurityToken)inboundSecurityToken;
+                            byte[] tokenDigest = messageDigest.digest(kerberosSecurityToken.getBinaryContent());
+                            if (Arrays.equals(tokenDigest, binaryContent)) {
+                                return createSecurityTokenProxy(inboundSecurityToken,
+                                        WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
+                            }
                         }
                     }
+                } finally {
+                    SHA1_POOL.release(messageDigest);
                 }
-            } catch (NoSuchAlgorithmException e) {
+            } catch (GeneralSecurityException e) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
             }
 
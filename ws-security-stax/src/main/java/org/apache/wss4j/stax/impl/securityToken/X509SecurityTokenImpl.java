@@ -22,7 +22,6 @@ import java.security.Key;
 import java.security.Principal;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.security.auth.Subject;
@@ -30,6 +29,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.DNPatternMatcher;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.PublicKeyPrincipalImpl;
@@ -141,18 +141,7 @@ public abstract class X509SecurityTokenImpl
                 return false;
             }
             String subjectName = cert.getSubjectX500Principal().getName();
-            boolean subjectMatch = false;
-            for (Pattern subjectDNPattern : subjectDNPatterns) {
-                final Matcher matcher = subjectDNPattern.matcher(subjectName);
-                if (matcher.matches()) {
-                    LOG.debug("Subject DN {} matches with pattern {}", subjectName, subjectDNPattern);
-                    subjectMatch = true;
-                    break;
-                }
-            }
-            if (!subjectMatch) {
-                return false;
-            }
+            return DNPatternMatcher.matches(subjectName, subjectDNPatterns);
         }
 
         return true;
@@ -19,18 +19,14 @@
 package org.apache.wss4j.stax.impl.securityToken;
 
 import org.apache.wss4j.common.crypto.Crypto;
-import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConfigurationException;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
-import org.apache.xml.security.utils.UnsyncByteArrayInputStream;
 
 import javax.security.auth.callback.CallbackHandler;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.cert.X509Certificate;
 
 public class X509V3SecurityTokenImpl extends X509SecurityTokenImpl {
@@ -44,12 +40,8 @@ public class X509V3SecurityTokenImpl extends X509SecurityTokenImpl {
         super(WSSecurityTokenConstants.X509V3Token, wsInboundSecurityContext, crypto, callbackHandler, id,
                 WSSecurityTokenConstants.KeyIdentifier_X509KeyIdentifier, securityProperties, true);
 
-        try (InputStream inputStream = new UnsyncByteArrayInputStream(binaryContent)) {
-            X509Certificate x509Certificate = getCrypto().loadCertificate(inputStream);
-            setX509Certificates(new X509Certificate[]{x509Certificate});
-        } catch (IOException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e, "parseError");
-        }
+        X509Certificate x509Certificate = getCrypto().loadCertificate(binaryContent);
+        setX509Certificates(new X509Certificate[]{x509Certificate});
 
         // Check to see if the certificates actually correspond to the decryption crypto
         if (getCrypto().getX509Identifier(getX509Certificates()[0]) == null) {
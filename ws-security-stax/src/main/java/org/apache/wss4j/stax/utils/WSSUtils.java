@@ -19,11 +19,10 @@
 package org.apache.wss4j.stax.utils;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
-import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -40,6 +39,7 @@ import javax.xml.stream.events.Attribute;
 
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.EnginePool;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityEvent.DerivedKeyTokenSecurityEvent;
@@ -232,12 +232,18 @@ public class WSSUtils extends XMLSecurityUtils {
                 abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain, encodedCert);
             } else {
                 try {
-                    CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+                    EnginePool<CertificateFactory> pool = EnginePool.getCertificateFactoryPool("X.509");
+                    CertificateFactory certificateFactory = pool.get();
                     List<X509Certificate> certificates = Arrays.asList(x509Certificates);
-                    String encodedCert =
-                        XMLUtils.encodeToString(certificateFactory.generateCertPath(certificates).getEncoded());
+                    String encodedCert;
+                    try {
+                        encodedCert =
+                            XMLUtils.encodeToString(certificateFactory.generateCertPath(certificates).getEncoded());
+                    } finally {
+                        pool.release(certificateFactory);
+                    }
                     abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain, encodedCert);
-                } catch (CertificateException e) {
+                } catch (GeneralSecurityException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
                 }
             }
@@ -307,11 +313,10 @@ public class WSSUtils extends XMLSecurityUtils {
                                                                    WSSConstants.TAG_WSSE_KEY_IDENTIFIER,
                                                                    false, attributes);
         try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-1");
-            byte[] data = sha.digest(x509Certificates[0].getEncoded());
+            byte[] data = digestSHA1(x509Certificates[0].getEncoded());
             abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain,
                                                                      XMLUtils.encodeToString(data));
-        } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
+        } catch (GeneralSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
         }
         abstractOutputProcessor.createEndElementAndOutputAsEvent(outputProcessorChain, WSSConstants.TAG_WSSE_KEY_IDENTIFIER);
@@ -322,15 +327,24 @@ public class WSSUtils extends XMLSecurityUtils {
             throws XMLStreamException, XMLSecurityException {
 
         try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-1");
-            byte[] data = sha.digest(key.getEncoded());
+            byte[] data = digestSHA1(key.getEncoded());
             createEncryptedKeySha1IdentifierStructure(abstractOutputProcessor, outputProcessorChain,
                                                       XMLUtils.encodeToString(data));
-        } catch (NoSuchAlgorithmException e) {
+        } catch (GeneralSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
         }
     }
 
+    private static byte[] digestSHA1(byte[] bytes) throws GeneralSecurityException {
+        EnginePool<MessageDigest> pool = EnginePool.getMessageDigestPool("SHA-1");
+        MessageDigest sha = pool.get();
+        try {
+            return sha.digest(bytes);
+        } finally {
+            pool.release(sha);
+        }
+    }
+
     public static void createEncryptedKeySha1IdentifierStructure(AbstractOutputProcessor abstractOutputProcessor,
                                                                  OutputProcessorChain outputProcessorChain, String identifier)
             throws XMLStreamException, XMLSecurityException {
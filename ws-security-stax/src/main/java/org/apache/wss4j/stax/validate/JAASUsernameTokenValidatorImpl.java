@@ -18,6 +18,8 @@
  */
 package org.apache.wss4j.stax.validate;
 
+import java.security.GeneralSecurityException;
+
 import javax.security.auth.Subject;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.login.LoginContext;
@@ -28,6 +30,7 @@ import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticatedSubjectCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
@@ -47,6 +50,7 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidatorImpl.class);
 
     private String contextName;
+    private AuthenticatedSubjectCache subjectCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -56,6 +60,20 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
         return contextName;
     }
 
+    public AuthenticatedSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set a cache of the authenticated Subjects, so that a user that presents the same password again
+     * is not authenticated by the LoginContext until the cached Subject expires. The default is null,
+     * meaning that every UsernameToken is authenticated by the LoginContext.
+     * @param subjectCache the cache of the authenticated Subjects
+     */
+    public void setSubjectCache(AuthenticatedSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
+
     @Override
     public <T extends UsernameSecurityToken & InboundSecurityToken> T validate(
             UsernameTokenType usernameTokenType, TokenContext tokenContext) throws WSSecurityException {
@@ -88,15 +106,23 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
 
         Subject subject;
         try {
-            CallbackHandler handler = getCallbackHandler(username, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            subject = ctx.getSubject();
+            subject = subjectCache != null ? subjectCache.get(username, password) : null;
+            if (subject == null) {
+                CallbackHandler handler = getCallbackHandler(username, password);
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+                if (subjectCache != null) {
+                    subjectCache.put(username, password, subject);
+                }
+            }
         } catch (LoginException ex) {
             LOG.info("Authentication failed", ex);
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
             );
+        } catch (GeneralSecurityException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
         }
 
         final EncodedString encodedNonce =